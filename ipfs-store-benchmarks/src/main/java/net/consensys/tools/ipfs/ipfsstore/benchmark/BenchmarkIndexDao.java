@@ -0,0 +1,39 @@
+package net.consensys.tools.ipfs.ipfsstore.benchmark;
+
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHits;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.ElasticSearchIndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+
+/**
+ * ElasticSearchIndexDao without client, exposing the conversions between the IPFS-Store and ElasticSearch models
+ */
+class BenchmarkIndexDao extends ElasticSearchIndexDao {
+
+    BenchmarkIndexDao() {
+        super((TransportClient) null);
+    }
+
+    QueryBuilder toElasticSearchQuery(Query query) {
+        return convertQuery(query);
+    }
+
+    Map<String, Object> toSource(List<IndexField> indexFields) {
+        return convert(indexFields);
+    }
+
+    static Metadata toMetadata(String index, String id, Map<String, Object> source) {
+        return convert(index, id, source);
+    }
+
+    static List<Metadata> toMetadata(SearchHits hits) {
+        return convert(hits);
+    }
+}
@@ -0,0 +1,96 @@
+package net.consensys.tools.ipfs.ipfsstore.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+
+/**
+ * Copy of a file to the response by the fetch endpoint (StoreController.getFile): the content fetched from IPFS is
+ * returned as a byte[] body, written to the response by the ByteArrayHttpMessageConverter of Spring MVC
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetchResponseBenchmark {
+
+    @Param({"4096", "1048576", "16777216"})
+    private int size;
+
+    private ByteArrayHttpMessageConverter converter;
+    private byte[] content;
+
+    @Setup
+    public void setup() {
+        converter = new ByteArrayHttpMessageConverter();
+        content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) i;
+        }
+    }
+
+    @Benchmark
+    public void writeBody(Blackhole blackhole) throws IOException {
+        converter.write(content, MediaType.APPLICATION_OCTET_STREAM, new DiscardingOutputMessage(blackhole));
+    }
+
+    /**
+     * Response discarding its body (8KB chunks, as the servlet output buffer)
+     */
+    private static final class DiscardingOutputMessage implements HttpOutputMessage {
+
+        private static final int BUFFER_SIZE = 8192;
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private final OutputStream body;
+
+        private DiscardingOutputMessage(Blackhole blackhole) {
+            this.body = new OutputStream() {
+                private final byte[] buffer = new byte[BUFFER_SIZE];
+
+                @Override
+                public void write(int b) {
+                    blackhole.consume(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) {
+                    for (int written = 0; written < length; written += BUFFER_SIZE) {
+                        int chunk = Math.min(BUFFER_SIZE, length - written);
+                        System.arraycopy(bytes, offset + written, buffer, 0, chunk);
+                    }
+                    blackhole.consume(buffer);
+                }
+            };
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package net.consensys.tools.ipfs.ipfsstore.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+
+/**
+ * Jackson (de)serialization of the API payloads:
+ * <pre>
+ * IndexerRequest : read by the controller (store and index / index)
+ * Query          : read by the controller (search), written by the clients
+ * Page<Metadata> : written by Spring MVC (search)
+ * </pre>
+ * The controller uses its own ObjectMapper, Spring MVC the one of Jackson2ObjectMapperBuilder (Spring Boot defaults).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private static final String INDEX = "documents";
+    private static final String HASH = "QmWPCRv8jBfr9sDjKuB5sxpVzXhMycZzwqxifrZZdQ6K9o";
+    private static final int PAGE_SIZE = 20;
+
+    private ObjectMapper controllerMapper;
+    private ObjectMapper mvcMapper;
+
+    private Query query;
+    private Page<Metadata> page;
+
+    private String indexerRequestJson;
+    private String queryJson;
+
+    @Setup
+    public void setup() throws Exception {
+        controllerMapper = new ObjectMapper();
+        mvcMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<IndexField> indexFields = Arrays.asList(
+                new IndexField("title", "Decentralized storage"),
+                new IndexField("author", "Paul Dupont"),
+                new IndexField("type", "pdf"),
+                new IndexField("date", 1514764800000L),
+                new IndexField("size", 1048576));
+
+        IndexerRequest indexerRequest = new IndexerRequest();
+        indexerRequest.setIndexName(INDEX);
+        indexerRequest.setDocumentId("1");
+        indexerRequest.setHash(HASH);
+        indexerRequest.setContentType("application/pdf");
+        indexerRequest.setIndexFields(indexFields);
+        indexerRequestJson = controllerMapper.writeValueAsString(indexerRequest);
+
+        query = Query.newQuery()
+                .fullText(new String[]{"title", "description"}, "decentralized storage")
+                .equals("author", "Paul Dupont")
+                .in("type", "pdf", "doc", "txt")
+                .greaterThanOrEquals("date", 1514764800000L);
+        queryJson = mvcMapper.writeValueAsString(query);
+
+        List<Metadata> content = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            content.add(new Metadata(INDEX, String.valueOf(i), HASH, "application/pdf", indexFields));
+        }
+        page = new PageImpl<>(content, new PageRequest(0, PAGE_SIZE), 1000);
+    }
+
+    @Benchmark
+    public IndexerRequest readIndexerRequest() throws Exception {
+        return controllerMapper.readValue(indexerRequestJson, IndexerRequest.class);
+    }
+
+    @Benchmark
+    public Query readQuery() throws Exception {
+        return mvcMapper.readValue(queryJson, Query.class);
+    }
+
+    @Benchmark
+    public String writeQuery() throws Exception {
+        return mvcMapper.writeValueAsString(query);
+    }
+
+    @Benchmark
+    public byte[] writePage() throws Exception {
+        return mvcMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,94 @@
+package net.consensys.tools.ipfs.ipfsstore.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+
+/**
+ * Conversions between Metadata/IndexField and the ElasticSearch documents: IndexField list to source (index), source
+ * to Metadata (get) and search hits to Metadata (search: the source of each hit is parsed)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataConversionBenchmark {
+
+    private static final String INDEX = "documents";
+    private static final String HASH = "QmWPCRv8jBfr9sDjKuB5sxpVzXhMycZzwqxifrZZdQ6K9o";
+
+    @Param({"5", "50"})
+    private int fields;
+
+    @Param({"20"})
+    private int hits;
+
+    private BenchmarkIndexDao dao;
+
+    private List<IndexField> indexFields;
+    private Map<String, Object> source;
+    private BytesReference sourceBytes;
+
+    @Setup
+    public void setup() {
+        dao = new BenchmarkIndexDao();
+
+        indexFields = new ArrayList<>();
+        for (int i = 0; i < fields; i++) {
+            indexFields.add(new IndexField("field" + i, i % 2 == 0 ? "value " + i : (Object) i));
+        }
+
+        source = new HashMap<>(dao.toSource(indexFields));
+        source.put("__hash", HASH);
+        source.put("__content_type", "application/pdf");
+
+        StringBuilder json = new StringBuilder("{\"__hash\":\"" + HASH + "\",\"__content_type\":\"application/pdf\"");
+        indexFields.forEach(field -> json.append(",\"").append(field.getName()).append("\":")
+                .append(field.getValue() instanceof String ? "\"" + field.getValue() + "\"" : field.getValue()));
+        sourceBytes = new BytesArray(json.append("}").toString());
+    }
+
+    @Benchmark
+    public Map<String, Object> indexFieldsToSource() {
+        return dao.toSource(indexFields);
+    }
+
+    @Benchmark
+    public Metadata sourceToMetadata() {
+        return BenchmarkIndexDao.toMetadata(INDEX, "1", source);
+    }
+
+    @Benchmark
+    public List<Metadata> searchHitsToMetadata() {
+        // New hits each time: a hit caches its parsed source
+        SearchHit[] searchHits = new SearchHit[hits];
+        for (int i = 0; i < hits; i++) {
+            searchHits[i] = new SearchHit(i, String.valueOf(i), new Text("_doc"), null).sourceRef(sourceBytes);
+        }
+        return BenchmarkIndexDao.toMetadata(new SearchHits(searchHits, hits, 1.0f));
+    }
+}
@@ -0,0 +1,66 @@
+package net.consensys.tools.ipfs.ipfsstore.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+
+/**
+ * Conversion of an IPFS-Store Query to an ElasticSearch query (ElasticSearchIndexDao.convertQuery), done for each
+ * search and count
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryConversionBenchmark {
+
+    private BenchmarkIndexDao dao;
+
+    private Query simpleQuery;
+    private Query complexQuery;
+
+    @Setup
+    public void setup() {
+        dao = new BenchmarkIndexDao();
+
+        simpleQuery = Query.newQuery()
+                .equals("author", "Paul Dupont");
+
+        complexQuery = Query.newQuery()
+                .fullText(new String[]{"title", "description"}, "decentralized storage")
+                .equals("author", "Paul Dupont")
+                .notEquals("status", "deleted")
+                .in("type", "pdf", "doc", "txt")
+                .greaterThanOrEquals("date", 1514764800000L)
+                .lessThan("size", 10485760);
+    }
+
+    @Benchmark
+    public QueryBuilder matchAll() {
+        return dao.toElasticSearchQuery(null);
+    }
+
+    @Benchmark
+    public QueryBuilder simple() {
+        return dao.toElasticSearchQuery(simpleQuery);
+    }
+
+    @Benchmark
+    public QueryBuilder complex() {
+        return dao.toElasticSearchQuery(complexQuery);
+    }
+}
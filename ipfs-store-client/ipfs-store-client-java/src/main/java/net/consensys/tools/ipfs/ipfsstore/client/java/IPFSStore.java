@@ -22,6 +22,7 @@ import org.springframework.data.domain.Sort.Direction;
 import net.consensys.tools.ipfs.ipfsstore.client.java.exception.IPFSStoreException;
 import net.consensys.tools.ipfs.ipfsstore.client.java.wrapper.IPFSStoreWrapper;
 import net.consensys.tools.ipfs.ipfsstore.client.java.wrapper.impl.RestIPFSStoreWrapperImpl;
+import net.consensys.tools.ipfs.ipfsstore.dto.DeleteResponse;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
@@ -483,6 +484,72 @@ public class IPFSStore {
         return this.searchAndFetch(indexName, query, pagination);
     }
 
+    /**
+     * Update the attributes of an indexed document (the content isn't stored again)
+     *
+     * @param indexName   Index name
+     * @param id          Index document Unique identifier
+     * @param indexFields Attributes (key/value) to add or replace
+     * @return New version of the document
+     * @throws IPFSStoreException
+     */
+    public Long update(String indexName, String id, Map<String, Object> indexFields) throws IPFSStoreException {
+        return this.update(indexName, id, indexFields, null);
+    }
+
+    /**
+     * Update the attributes of an indexed document if it is still at the expected version (optimistic concurrency: the
+     * request fails with a 409 if the document was modified in the meantime)
+     *
+     * @param indexName   Index name
+     * @param id          Index document Unique identifier
+     * @param indexFields Attributes (key/value) to add or replace
+     * @param version     Expected version (Metadata.version), null for any version
+     * @return New version of the document
+     * @throws IPFSStoreException
+     */
+    public Long update(String indexName, String id, Map<String, Object> indexFields, Long version) throws IPFSStoreException {
+        return this.wrapper.update(indexName, id, convert(indexFields), version).getVersion();
+    }
+
+    /**
+     * Delete a document from the index (the content stays pinned)
+     *
+     * @param indexName Index name
+     * @param id        Index document Unique identifier
+     * @return Number of documents deleted and content unpinned
+     * @throws IPFSStoreException
+     */
+    public DeleteResponse delete(String indexName, String id) throws IPFSStoreException {
+        return this.delete(indexName, id, false);
+    }
+
+    /**
+     * Delete a document from the index
+     *
+     * @param indexName Index name
+     * @param id        Index document Unique identifier
+     * @param unpin     Unpin the content if no other document (of any index) refers to it
+     * @return Number of documents deleted and content unpinned
+     * @throws IPFSStoreException
+     */
+    public DeleteResponse delete(String indexName, String id, boolean unpin) throws IPFSStoreException {
+        return this.wrapper.delete(indexName, id, unpin);
+    }
+
+    /**
+     * Delete the documents of the index matching a query (by batches)
+     *
+     * @param indexName Index name
+     * @param query     Query (null or empty: all the documents)
+     * @param unpin     Unpin the content no longer referenced by a document (of any index)
+     * @return Number of documents deleted and content unpinned
+     * @throws IPFSStoreException
+     */
+    public DeleteResponse deleteByQuery(String indexName, Query query, boolean unpin) throws IPFSStoreException {
+        return this.wrapper.deleteByQuery(indexName, query, unpin);
+    }
+
     /**
      * Create a new index
      *
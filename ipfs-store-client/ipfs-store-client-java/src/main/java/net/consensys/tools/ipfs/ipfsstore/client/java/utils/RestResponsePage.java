@@ -3,6 +3,7 @@ package net.consensys.tools.ipfs.ipfsstore.client.java.utils;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import org.springframework.data.domain.PageImpl;
@@ -14,6 +15,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import lombok.Getter;
 import lombok.Setter;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationResult;
 
 /**
  * RestResponsePage is a JSON serializable version of org.springframework.data.domain.PageImpl<T>
@@ -33,6 +35,7 @@ public class RestResponsePage<T extends Serializable> extends PageImpl<T> {
     private int numberOfElements;
     private long totalElements;
     private List<T> content;
+    private Map<String, AggregationResult> aggregations;
 
     @JsonIgnore
     private boolean previousPage;
@@ -73,12 +76,13 @@ public class RestResponsePage<T extends Serializable> extends PageImpl<T> {
                 totalPages == that.totalPages &&
                 numberOfElements == that.numberOfElements &&
                 totalElements == that.totalElements &&
-                Objects.equals(content, that.content);
+                Objects.equals(content, that.content) &&
+                Objects.equals(aggregations, that.aggregations);
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(super.hashCode(), number, size, totalPages, numberOfElements, totalElements, content);
+        return Objects.hash(super.hashCode(), number, size, totalPages, numberOfElements, totalElements, content, aggregations);
     }
 }
\ No newline at end of file
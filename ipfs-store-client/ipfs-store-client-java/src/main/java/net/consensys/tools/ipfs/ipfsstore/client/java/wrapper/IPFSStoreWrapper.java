@@ -1,10 +1,14 @@
 package net.consensys.tools.ipfs.ipfsstore.client.java.wrapper;
 
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.client.RestTemplate;
 
 import net.consensys.tools.ipfs.ipfsstore.client.java.exception.IPFSStoreException;
+import net.consensys.tools.ipfs.ipfsstore.dto.DeleteResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerResponse;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
@@ -67,6 +71,40 @@ public interface IPFSStoreWrapper {
      */
     Page<Metadata> search(String indexName, Query query, Pageable pageable) throws IPFSStoreException;
 
+    /**
+     * update the index fields of a document
+     *
+     * @param indexName
+     * @param id
+     * @param indexFields
+     * @param version     expected version (null: any)
+     * @return response
+     * @throws IPFSStoreException
+     */
+    IndexerResponse update(String indexName, String id, List<IndexField> indexFields, Long version) throws IPFSStoreException;
+
+    /**
+     * delete
+     *
+     * @param indexName
+     * @param id
+     * @param unpin
+     * @return response
+     * @throws IPFSStoreException
+     */
+    DeleteResponse delete(String indexName, String id, boolean unpin) throws IPFSStoreException;
+
+    /**
+     * delete by query
+     *
+     * @param indexName
+     * @param query
+     * @param unpin
+     * @return response
+     * @throws IPFSStoreException
+     */
+    DeleteResponse deleteByQuery(String indexName, Query query, boolean unpin) throws IPFSStoreException;
+
     /**
      * create index
      *
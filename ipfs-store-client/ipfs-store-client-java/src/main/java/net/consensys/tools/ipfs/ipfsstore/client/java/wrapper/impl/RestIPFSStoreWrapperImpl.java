@@ -2,6 +2,7 @@ package net.consensys.tools.ipfs.ipfsstore.client.java.wrapper.impl;
 
 import java.net.URI;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 import org.slf4j.Logger;
@@ -31,6 +32,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import net.consensys.tools.ipfs.ipfsstore.client.java.exception.IPFSStoreException;
 import net.consensys.tools.ipfs.ipfsstore.client.java.utils.RestResponsePage;
 import net.consensys.tools.ipfs.ipfsstore.client.java.wrapper.IPFSStoreWrapper;
+import net.consensys.tools.ipfs.ipfsstore.dto.DeleteResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerResponse;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
@@ -53,6 +56,8 @@ public class RestIPFSStoreWrapperImpl implements IPFSStoreWrapper {
     private static final String SEARCH_API_PATH = "/search";
     private static final String STORE_INDEX_API_PATH = "/store_index";
     private static final String CREATE_INDEX_API_PATH = "/config/index";
+    private static final String UPDATE_API_PATH = "/update";
+    private static final String DELETE_API_PATH = "/delete";
     private static final String DEFAULT_MIMETYPE = "application/octet-stream";
     private static final String MULTIPART_FILE = "file";
     private static final String MULTIPART_REQUEST = "request";
@@ -66,6 +71,7 @@ public class RestIPFSStoreWrapperImpl implements IPFSStoreWrapper {
         this.endpoint = endpoint;
 
         this.restTemplate = new RestTemplate();
+        this.restTemplate.getInterceptors().add(new TraceContextInterceptor()); // W3C traceparent
 
         this.mapper = new ObjectMapper();
         this.mapper.configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true);
@@ -290,6 +296,99 @@ public class RestIPFSStoreWrapperImpl implements IPFSStoreWrapper {
         }
     }
 
+    public IndexerResponse update(String indexName, String id, List<IndexField> indexFields, Long version) throws IPFSStoreException {
+
+        try {
+            LOGGER.debug("update [indexName={}, id={}, version={}]", indexName, id, version);
+
+            UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder
+                    .fromUriString(this.endpoint + BASE_API_PATH + UPDATE_API_PATH)
+                    .path("/" + indexName + "/" + id);
+
+            if (version != null) {
+                uriComponentsBuilder.queryParam("version", version);
+            }
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+
+            // POST (same as PATCH): PATCH isn't supported by the default request factory (HttpURLConnection)
+            IndexerResponse response = restTemplate.postForObject(
+                    uriComponentsBuilder.build().encode().toUri(),
+                    new HttpEntity<>(indexFields, headers),
+                    IndexerResponse.class);
+
+            LOGGER.debug("update [indexName={}, id={}] : {}", indexName, id, response);
+
+            return response;
+
+        } catch (RestClientException ex) {
+            LOGGER.error("Error while updating [indexName={}, id={}]", indexName, id, ex);
+            throw new IPFSStoreException("Error while updating [indexName=" + indexName + ", id=" + id + "]", ex);
+        }
+    }
+
+    public DeleteResponse delete(String indexName, String id, boolean unpin) throws IPFSStoreException {
+
+        try {
+            LOGGER.debug("delete [indexName={}, id={}, unpin={}]", indexName, id, unpin);
+
+            URI url = UriComponentsBuilder
+                    .fromUriString(this.endpoint + BASE_API_PATH + DELETE_API_PATH)
+                    .path("/" + indexName + "/" + id)
+                    .queryParam("unpin", unpin)
+                    .build().encode().toUri();
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+
+            ResponseEntity<DeleteResponse> response = restTemplate.exchange(
+                    url,
+                    HttpMethod.DELETE,
+                    new HttpEntity<>(headers),
+                    DeleteResponse.class);
+
+            LOGGER.debug("delete [indexName={}, id={}] : {}", indexName, id, response.getBody());
+
+            return response.getBody();
+
+        } catch (RestClientException ex) {
+            LOGGER.error("Error while deleting [indexName={}, id={}]", indexName, id, ex);
+            throw new IPFSStoreException("Error while deleting [indexName=" + indexName + ", id=" + id + "]", ex);
+        }
+    }
+
+    public DeleteResponse deleteByQuery(String indexName, Query query, boolean unpin) throws IPFSStoreException {
+
+        try {
+            LOGGER.debug("deleteByQuery [indexName={}, query={}, unpin={}]", indexName, query, unpin);
+
+            URI url = UriComponentsBuilder
+                    .fromUriString(this.endpoint + BASE_API_PATH + DELETE_API_PATH)
+                    .path("/" + indexName)
+                    .queryParam("unpin", unpin)
+                    .build().encode().toUri();
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+
+            DeleteResponse response = restTemplate.postForObject(
+                    url,
+                    new HttpEntity<>(query != null ? query : new Query(), headers),
+                    DeleteResponse.class);
+
+            LOGGER.debug("deleteByQuery [indexName={}, query={}] : {}", indexName, query, response);
+
+            return response;
+
+        } catch (RestClientException ex) {
+            LOGGER.error("Error while deleting [indexName={}, query={}]", indexName, query, ex);
+            throw new IPFSStoreException("Error while deleting [indexName=" + indexName + ", query=" + query + "]", ex);
+        }
+    }
+
     public RestTemplate getClient() {
         return restTemplate;
     }
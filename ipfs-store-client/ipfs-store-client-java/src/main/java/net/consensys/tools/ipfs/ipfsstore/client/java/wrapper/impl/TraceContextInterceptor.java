@@ -0,0 +1,40 @@
+package net.consensys.tools.ipfs.ipfsstore.client.java.wrapper.impl;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import io.opentelemetry.context.propagation.TextMapSetter;
+
+/**
+ * Propagate the trace of the caller (current OpenTelemetry context) to IPFS-Store with the W3C traceparent and
+ * tracestate headers, so the spans of the service join the trace of the application
+ * <p>
+ * Nothing is sent if the caller isn't traced.
+ */
+public class TraceContextInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final TextMapSetter<HttpRequest> HEADERS = (request, name, value) -> request.getHeaders().set(name, value);
+
+    private final TextMapPropagator propagator;
+
+    public TraceContextInterceptor() {
+        this(W3CTraceContextPropagator.getInstance());
+    }
+
+    public TraceContextInterceptor(TextMapPropagator propagator) {
+        this.propagator = propagator;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        propagator.inject(Context.current(), request, HEADERS);
+        return execution.execute(request, body);
+    }
+}
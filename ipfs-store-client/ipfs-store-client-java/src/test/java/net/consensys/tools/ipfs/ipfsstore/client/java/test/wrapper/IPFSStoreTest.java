@@ -34,6 +34,11 @@ import org.springframework.test.web.client.MockRestServiceServer;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Scope;
 import net.consensys.tools.ipfs.ipfsstore.client.java.exception.IPFSStoreException;
 import net.consensys.tools.ipfs.ipfsstore.client.java.IPFSStore;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
@@ -895,4 +900,30 @@ public class IPFSStoreTest {
 
     }
 
+    /* ********************************************************************
+     * TRACING
+     * ******************************************************************** */
+
+    @Test
+    public void propagateTraceContext() throws Exception {
+
+        String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        String spanId = "00f067aa0ba902b7";
+        SpanContext caller = SpanContext.create(traceId, spanId, TraceFlags.getSampled(), TraceState.getDefault());
+
+        // MOCK
+        mockServer.expect(requestTo(ENDPOINT + "/ipfs-store/config/index/" + INDEX_NAME))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(header("traceparent", "00-" + traceId + "-" + spanId + "-01"))
+                .andRespond(withSuccess());
+
+        // ###########################
+        try (Scope scope = Span.wrap(caller).makeCurrent()) {
+            this.undertest.createIndex(INDEX_NAME);
+        }
+        // ###########################
+
+        mockServer.verify();
+    }
+
 }
@@ -1,6 +1,7 @@
 package net.consensys.tools.ipfs.ipfsstore.client.springdata;
 
 import java.io.Serializable;
+import java.util.Map;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -38,6 +39,16 @@ public interface IPFSStoreCustomRepository<E, ID extends Serializable> {
      * @return Unique hash of the file
      */
     String saveWithoutAutoSetup(E entity);
+
+    /**
+     * Update index fields of a document without storing the entity again (the stored content is unchanged: only the
+     * searches see the new values)
+     *
+     * @param id     Entity ID
+     * @param fields Index fields to add or replace
+     * @return New version of the document, null if the update failed
+     */
+    Long updateIndexFields(ID id, Map<String, Object> fields);
 }
 
 
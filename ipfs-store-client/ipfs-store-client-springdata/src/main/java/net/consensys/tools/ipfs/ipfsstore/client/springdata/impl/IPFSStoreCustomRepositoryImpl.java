@@ -151,6 +151,24 @@ public abstract class IPFSStoreCustomRepositoryImpl<E, ID extends Serializable>
     }
 
 
+    @Override
+    public Long updateIndexFields(ID id, Map<String, Object> fields) {
+        try {
+            LOGGER.debug("Updating index fields [id={}, fields={}]", id, fields);
+
+            Long version = this.client.update(indexName, id.toString(), fields);
+
+            LOGGER.debug("Index fields updated [id={}] : version={}", id, version);
+
+            return version;
+
+        } catch (IPFSStoreException e) {
+            LOGGER.error("Error while updating the index fields [id=" + id + "]", e);
+            return null;
+        }
+    }
+
+
     protected Page<E> search(Query query, Pageable pageable) {
 
         try {
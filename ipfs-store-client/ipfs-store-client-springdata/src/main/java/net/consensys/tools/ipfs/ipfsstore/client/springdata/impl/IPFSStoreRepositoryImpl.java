@@ -16,10 +16,14 @@ import org.springframework.data.domain.Sort;
 import net.consensys.tools.ipfs.ipfsstore.client.java.IPFSStore;
 import net.consensys.tools.ipfs.ipfsstore.client.java.exception.IPFSStoreException;
 import net.consensys.tools.ipfs.ipfsstore.client.springdata.IPFSStoreRepository;
+import net.consensys.tools.ipfs.ipfsstore.dto.DeleteResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
 
 public class IPFSStoreRepositoryImpl<E, ID extends Serializable> extends IPFSStoreCustomRepositoryImpl<E, ID> implements IPFSStoreRepository<E, ID> {
     private static final Logger LOGGER = LoggerFactory.getLogger(IPFSStoreRepositoryImpl.class);
 
+    private boolean unpinOnDelete = false;
+
     @Autowired
     public IPFSStoreRepositoryImpl(IPFSStore client, String indexName, Set<String> indexFields, Set<String> externalIndexFields, Class<E> entityClazz) {
         super(client, indexName, indexFields, externalIndexFields, entityClazz);
@@ -30,6 +34,17 @@ public class IPFSStoreRepositoryImpl<E, ID extends Serializable> extends IPFSSto
         super(client, indexName, indexFields, externalIndexFields, entityClazz, attributeId, attributeHash);
     }
 
+    /**
+     * Unpin the content of the deleted entities from IPFS (default false)
+     * The service keeps a content pinned while a document of any index refers to it, but a content stored by other
+     * means than the service (same bytes added directly to IPFS) would be unpinned too.
+     *
+     * @param unpinOnDelete true to unpin the content of the deleted entities
+     */
+    public void setUnpinOnDelete(boolean unpinOnDelete) {
+        this.unpinOnDelete = unpinOnDelete;
+    }
+
     @Override
     public <S extends E> S save(S entity) {
         return this.save(entity, null);
@@ -128,46 +143,81 @@ public class IPFSStoreRepositoryImpl<E, ID extends Serializable> extends IPFSSto
         }
     }
 
-    private <S extends E> String printEntity(S entity, Map<String, Object> externalIndexFields) {
-        return "[entity=" + entity + ", externalIndexFields=" + externalIndexFields + "]";
-    }
+    @Override
+    public void delete(Serializable id) {
+        try {
+            LOGGER.debug("Delete entity [id={}]", id);
 
-    /*
-     * NOT IMPLEMENTED METHODS
-     */
+            // If enabled, the content of the entity is unpinned unless another document refers to it
+            this.client.delete(indexName, id.toString(), unpinOnDelete);
 
-    @Override
-    public <S extends E> Iterable<S> save(Iterable<S> entities) {
-        throw new UnsupportedOperationException();
+            LOGGER.debug("Entity [id={}] deleted", id);
+
+        } catch (IPFSStoreException e) {
+            LOGGER.error("Error while deleting the entity [id={}]", id, e);
+        }
     }
 
     @Override
     public void delete(E entity) {
-        throw new UnsupportedOperationException();
+        try {
+            String id = this.getId(entity);
+            if (id == null) {
+                LOGGER.warn("Entity without ID (never saved) - Ignore it: {}", entity);
+                return;
+            }
+            this.delete(id);
+
+        } catch (NoSuchMethodException |
+                SecurityException |
+                IllegalAccessException |
+                IllegalArgumentException |
+                InvocationTargetException e) {
+            LOGGER.error("Error while deleting the entity [entity={}]", entity, e);
+        }
     }
 
     @Override
     public void delete(Iterable<? extends E> entities) {
-        throw new UnsupportedOperationException();
+        for (E entity : entities) {
+            this.delete(entity);
+        }
     }
 
     @Override
     public void deleteAll() {
-        throw new UnsupportedOperationException();
+        try {
+            LOGGER.debug("Delete all the entities [index={}]", indexName);
+
+            DeleteResponse response = this.client.deleteByQuery(indexName, Query.newQuery(), unpinOnDelete);
+
+            LOGGER.debug("Entities deleted [index={}] : {}", indexName, response);
+
+        } catch (IPFSStoreException e) {
+            LOGGER.error("Error while deleting all the entities [index={}]", indexName, e);
+        }
+    }
+
+    private <S extends E> String printEntity(S entity, Map<String, Object> externalIndexFields) {
+        return "[entity=" + entity + ", externalIndexFields=" + externalIndexFields + "]";
     }
 
+    /*
+     * NOT IMPLEMENTED METHODS
+     */
+
     @Override
-    public long count() {
+    public <S extends E> Iterable<S> save(Iterable<S> entities) {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public Iterable<E> findAll(Iterable<ID> ids) {
+    public long count() {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public void delete(Serializable id) {
+    public Iterable<E> findAll(Iterable<ID> ids) {
         throw new UnsupportedOperationException();
     }
 
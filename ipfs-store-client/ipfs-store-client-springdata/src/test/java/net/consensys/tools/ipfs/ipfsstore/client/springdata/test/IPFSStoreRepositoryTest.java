@@ -343,25 +343,62 @@ public class IPFSStoreRepositoryTest {
         // #################################################
     }
 
-    @Test(expected = UnsupportedOperationException.class)
+    @Test
     public void delete() throws Exception {
         // #################################################
         underTest.delete("123");
         // #################################################
+
+        Mockito.verify(client, Mockito.times(1)).delete(eq(index), eq("123"), eq(false));
     }
 
-    @Test(expected = UnsupportedOperationException.class)
+    @Test
+    public void deleteUnpin() throws Exception {
+        ((TestRepository) underTest).setUnpinOnDelete(true);
+
+        // #################################################
+        underTest.delete("123");
+        underTest.deleteAll();
+        // #################################################
+
+        Mockito.verify(client, Mockito.times(1)).delete(eq(index), eq("123"), eq(true));
+        Mockito.verify(client, Mockito.times(1)).deleteByQuery(eq(index), any(Query.class), eq(true));
+    }
+
+    @Test
+    public void deleteException() throws Exception {
+        Mockito.when(client.delete(eq(index), eq("123"), eq(false))).thenThrow(new IPFSStoreException("error"));
+
+        // #################################################
+        underTest.delete("123");
+        // #################################################
+
+        Mockito.verify(client, Mockito.times(1)).delete(eq(index), eq("123"), eq(false));
+    }
+
+    @Test
     public void deleteIterable() throws Exception {
+        List<Entity> entities = new ArrayList<>();
+        entities.add(Factory.getEntity("1"));
+        entities.add(Factory.getEntity("2"));
+        entities.add(Factory.getEntity()); // never saved
+
         // #################################################
-        underTest.delete(Factory.getEntities(5));
+        underTest.delete(entities);
         // #################################################
+
+        Mockito.verify(client, Mockito.times(1)).delete(eq(index), eq("1"), eq(false));
+        Mockito.verify(client, Mockito.times(1)).delete(eq(index), eq("2"), eq(false));
+        Mockito.verify(client, Mockito.times(2)).delete(eq(index), anyString(), eq(false));
     }
 
-    @Test(expected = UnsupportedOperationException.class)
+    @Test
     public void deleteAll() throws Exception {
         // #################################################
         underTest.deleteAll();
         // #################################################
+
+        Mockito.verify(client, Mockito.times(1)).deleteByQuery(eq(index), any(Query.class), eq(false));
     }
 
     @Test(expected = UnsupportedOperationException.class)
@@ -379,11 +416,13 @@ public class IPFSStoreRepositoryTest {
         // #################################################
     }
 
-    @Test(expected = UnsupportedOperationException.class)
+    @Test
     public void deleteEntiy() throws Exception {
         // #################################################
-        underTest.delete(Factory.getEntity());
+        underTest.delete(Factory.getEntity(Factory.ID));
         // #################################################
+
+        Mockito.verify(client, Mockito.times(1)).delete(eq(index), eq(Factory.ID), eq(false));
     }
 
     @Test
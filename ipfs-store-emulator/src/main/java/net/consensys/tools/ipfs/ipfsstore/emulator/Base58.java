@@ -0,0 +1,32 @@
+package net.consensys.tools.ipfs.ipfsstore.emulator;
+
+import java.math.BigInteger;
+
+/**
+ * Base58 encoding (bitcoin alphabet) of the multihashes
+ */
+final class Base58 {
+
+    private static final String ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+    private static final BigInteger BASE = BigInteger.valueOf(58);
+
+    private Base58() {
+    }
+
+    static String encode(byte[] bytes) {
+        StringBuilder encoded = new StringBuilder();
+
+        BigInteger value = new BigInteger(1, bytes);
+        while (value.signum() > 0) {
+            BigInteger[] division = value.divideAndRemainder(BASE);
+            encoded.append(ALPHABET.charAt(division[1].intValue()));
+            value = division[0];
+        }
+        // Leading zeros
+        for (int i = 0; i < bytes.length && bytes[i] == 0; i++) {
+            encoded.append(ALPHABET.charAt(0));
+        }
+
+        return encoded.reverse().toString();
+    }
+}
@@ -0,0 +1,123 @@
+package net.consensys.tools.ipfs.ipfsstore.emulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Files of the emulator by hash
+ */
+interface ContentStore {
+
+    void put(String hash, byte[] content) throws IOException;
+
+    /**
+     * @return Content, null if unknown
+     */
+    byte[] get(String hash) throws IOException;
+
+    boolean contains(String hash);
+
+    /**
+     * @return true if the file was removed, false if unknown
+     */
+    boolean remove(String hash) throws IOException;
+
+    List<String> hashes() throws IOException;
+
+    /**
+     * Files kept in memory
+     */
+    final class Memory implements ContentStore {
+
+        private final Map<String, byte[]> contents = new ConcurrentHashMap<>();
+
+        @Override
+        public void put(String hash, byte[] content) {
+            contents.put(hash, content);
+        }
+
+        @Override
+        public byte[] get(String hash) {
+            return contents.get(hash);
+        }
+
+        @Override
+        public boolean contains(String hash) {
+            return contents.containsKey(hash);
+        }
+
+        @Override
+        public boolean remove(String hash) {
+            return contents.remove(hash) != null;
+        }
+
+        @Override
+        public List<String> hashes() {
+            return new ArrayList<>(contents.keySet());
+        }
+    }
+
+    /**
+     * Files written in a directory (one file per hash), kept across restarts
+     */
+    final class Disk implements ContentStore {
+
+        private final Path directory;
+
+        Disk(Path directory) {
+            try {
+                this.directory = Files.createDirectories(directory);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public void put(String hash, byte[] content) throws IOException {
+            Path file = directory.resolve(hash);
+            if (!Files.exists(file)) {
+                Path temp = Files.createTempFile(directory, hash, ".tmp");
+                Files.write(temp, content);
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        @Override
+        public byte[] get(String hash) throws IOException {
+            try {
+                return Files.readAllBytes(directory.resolve(hash));
+            } catch (NoSuchFileException ex) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean contains(String hash) {
+            return Files.exists(directory.resolve(hash));
+        }
+
+        @Override
+        public boolean remove(String hash) throws IOException {
+            return Files.deleteIfExists(directory.resolve(hash));
+        }
+
+        @Override
+        public List<String> hashes() throws IOException {
+            try (Stream<Path> files = Files.list(directory)) {
+                return files.map(file -> file.getFileName().toString())
+                        .filter(name -> !name.endsWith(".tmp"))
+                        .collect(Collectors.toList());
+            }
+        }
+    }
+}
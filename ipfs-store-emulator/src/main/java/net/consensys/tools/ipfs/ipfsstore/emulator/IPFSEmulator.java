@@ -0,0 +1,364 @@
+package net.consensys.tools.ipfs.ipfsstore.emulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Emulator of the IPFS HTTP API (the endpoints used by IPFS-Store) to run the service, its tests and benchmarks
+ * without a go-ipfs daemon:
+ * <pre>
+ * /api/v0/add        : add the files of a multipart request (pinned unless pin=false, stored unless only-hash)
+ * /api/v0/cat        : content of a file (cat/{hash} or cat?arg={hash})
+ * /api/v0/pin/add    : pin a file
+ * /api/v0/pin/rm     : unpin a file
+ * /api/v0/pin/ls     : pinned files (all pinned recursively)
+ * /api/v0/refs/local : hashes of the files
+ * /api/v0/repo/gc    : remove the files which are not pinned
+ * /api/v0/version    : version of the emulated daemon
+ * </pre>
+ * The hashes are the ones of go-ipfs (see MerkleDag). The files are kept in memory or in a directory. A latency
+ * (per request) and a bandwidth (per request body and response body) can be injected to emulate a remote node:
+ * <pre>
+ * IPFSEmulator ipfs = new IPFSEmulator(0).latency(20).bandwidth(10 * 1024 * 1024).start();
+ * new IPFS("localhost", ipfs.getPort());
+ * ...
+ * ipfs.close();
+ * </pre>
+ */
+public class IPFSEmulator implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(IPFSEmulator.class);
+
+    public static final String VERSION = "0.4.11";
+
+    private static final String API = "/api/v0/";
+    private static final String JSON = "application/json";
+    private static final String IPFS_PREFIX = "/ipfs/";
+
+    static {
+        // Without TCP_NODELAY, the delayed acknowledgements add ~40ms to each request of the clients
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final int port;
+    private long latency;
+    private long bandwidth;
+    private int threads = 200;
+    private ContentStore store = new ContentStore.Memory();
+
+    private final Set<String> pins = ConcurrentHashMap.newKeySet();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param port Port (0: any free port, see getPort)
+     */
+    public IPFSEmulator(int port) {
+        this.port = port;
+    }
+
+    /**
+     * @param latency Time (ms) added to each request
+     */
+    public IPFSEmulator latency(long latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * @param bandwidth Bandwidth (bytes/s) of each request and response body (0: unlimited)
+     */
+    public IPFSEmulator bandwidth(long bandwidth) {
+        this.bandwidth = bandwidth;
+        return this;
+    }
+
+    /**
+     * @param threads Number of requests handled concurrently
+     */
+    public IPFSEmulator threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * @param directory Directory of the files (default: in memory)
+     */
+    public IPFSEmulator storage(Path directory) {
+        this.store = new ContentStore.Disk(directory);
+        return this;
+    }
+
+    /**
+     * Start the emulator
+     */
+    public IPFSEmulator start() throws IOException {
+        Throttle throttle = new Throttle(latency, bandwidth);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ipfs-emulator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        server = HttpServer.create(new InetSocketAddress(port), threads);
+        server.createContext(API, exchange -> handle(exchange, throttle));
+        server.setExecutor(executor);
+        server.start();
+
+        LOGGER.info("IPFS emulator started [port: " + getPort() + ", latency: " + latency + "ms, bandwidth: "
+                + (bandwidth > 0 ? bandwidth + "B/s" : "unlimited") + ", storage: " + store.getClass().getSimpleName() + "]");
+
+        return this;
+    }
+
+    /**
+     * @return Port of the emulator
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            LOGGER.info("IPFS emulator stopped [port: " + getPort() + "]");
+        }
+    }
+
+    private void handle(HttpExchange exchange, Throttle throttle) throws IOException {
+        try {
+            throttle.delay();
+
+            String command = exchange.getRequestURI().getPath().substring(API.length());
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+
+            LOGGER.debug("IPFS emulator request [command: " + command + ", parameters: " + parameters + "]");
+
+            if (command.equals("add")) {
+                add(exchange, parameters, throttle);
+            } else if (command.equals("cat") || command.startsWith("cat/")) {
+                cat(exchange, command.equals("cat") ? parameters.get("arg") : command.substring("cat/".length()), throttle);
+            } else if (command.equals("pin/add")) {
+                pinAdd(exchange, parameters.get("arg"));
+            } else if (command.equals("pin/rm")) {
+                pinRm(exchange, parameters.get("arg"));
+            } else if (command.equals("pin/ls")) {
+                pinLs(exchange, parameters.getOrDefault("type", parameters.get("t")));
+            } else if (command.equals("refs/local")) {
+                refsLocal(exchange);
+            } else if (command.equals("repo/gc")) {
+                repoGc(exchange);
+            } else if (command.equals("version")) {
+                respond(exchange, 200, "{\"Version\":\"" + VERSION + "\",\"Commit\":\"emulator\",\"Repo\":\"6\"}");
+            } else {
+                error(exchange, 404, "unknown command " + command);
+            }
+
+        } catch (IllegalArgumentException ex) {
+            error(exchange, 400, ex.getMessage());
+        } catch (InterruptedIOException ex) {
+            LOGGER.debug("IPFS emulator request interrupted (stopped)");
+        } catch (IOException ex) {
+            LOGGER.warn("IPFS emulator error", ex);
+            throw ex;
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void add(HttpExchange exchange, Map<String, String> parameters, Throttle throttle) throws IOException {
+        byte[] body = throttle.read(exchange.getRequestBody());
+        List<Multipart.Part> parts = Multipart.parse(exchange.getRequestHeaders().getFirst("Content-Type"), body);
+
+        boolean onlyHash = isTrue(parameters.get("only-hash")) || isTrue(parameters.get("n"));
+        boolean pin = !"false".equals(parameters.get("pin"));
+
+        StringBuilder response = new StringBuilder();
+        for (Multipart.Part part : parts) {
+            String hash = MerkleDag.hash(part.content);
+            if (!onlyHash) {
+                store.put(hash, part.content);
+                if (pin) {
+                    pins.add(hash);
+                }
+            }
+            response.append("{\"Name\":\"").append(escape(part.name.isEmpty() ? hash : part.name))
+                    .append("\",\"Hash\":\"").append(hash)
+                    .append("\",\"Size\":\"").append(part.content.length)
+                    .append("\"}\n");
+        }
+        respond(exchange, 200, response.toString());
+    }
+
+    private void cat(HttpExchange exchange, String arg, Throttle throttle) throws IOException {
+        byte[] content = store.get(hash(arg));
+        if (content == null) {
+            error(exchange, 500, "merkledag: not found");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(200, content.length == 0 ? -1 : content.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            throttle.write(content, out);
+        }
+    }
+
+    private void pinAdd(HttpExchange exchange, String arg) throws IOException {
+        String hash = hash(arg);
+        if (!store.contains(hash)) {
+            error(exchange, 500, "pin: merkledag: not found");
+            return;
+        }
+        pins.add(hash);
+        respond(exchange, 200, "{\"Pins\":[\"" + hash + "\"]}");
+    }
+
+    private void pinRm(HttpExchange exchange, String arg) throws IOException {
+        String hash = hash(arg);
+        if (!pins.remove(hash)) {
+            error(exchange, 500, "not pinned");
+            return;
+        }
+        respond(exchange, 200, "{\"Pins\":[\"" + hash + "\"]}");
+    }
+
+    private void pinLs(HttpExchange exchange, String type) throws IOException {
+        StringBuilder response = new StringBuilder("{\"Keys\":{");
+        if (type == null || type.equals("all") || type.equals("recursive")) {
+            String separator = "";
+            for (String hash : pins) {
+                response.append(separator).append("\"").append(hash).append("\":{\"Type\":\"recursive\"}");
+                separator = ",";
+            }
+        }
+        respond(exchange, 200, response.append("}}").toString());
+    }
+
+    private void refsLocal(HttpExchange exchange) throws IOException {
+        StringBuilder response = new StringBuilder();
+        for (String hash : store.hashes()) {
+            response.append("{\"Ref\":\"").append(hash).append("\",\"Err\":\"\"}\n");
+        }
+        respond(exchange, 200, response.toString());
+    }
+
+    private void repoGc(HttpExchange exchange) throws IOException {
+        StringBuilder response = new StringBuilder();
+        for (String hash : store.hashes()) {
+            if (!pins.contains(hash) && store.remove(hash)) {
+                response.append("{\"Key\":{\"/\":\"").append(hash).append("\"}}\n");
+            }
+        }
+        respond(exchange, 200, response.toString());
+    }
+
+    /**
+     * @return Pinned hashes
+     */
+    public Set<String> getPins() {
+        return pins;
+    }
+
+    private static String hash(String arg) {
+        if (arg == null || arg.isEmpty()) {
+            throw new IllegalArgumentException("argument \"ipfs-path\" is required");
+        }
+        return arg.startsWith(IPFS_PREFIX) ? arg.substring(IPFS_PREFIX.length()) : arg;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Error in the format of go-ipfs
+     */
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        respond(exchange, status, "{\"Message\":\"" + escape(message) + "\",\"Code\":0,\"Type\":\"error\"}");
+    }
+
+    private static Map<String, String> parameters(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+                } else if (!parameter.isEmpty()) {
+                    parameters.put(URLDecoder.decode(parameter, "UTF-8"), "true");
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static boolean isTrue(String value) {
+        return "true".equals(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * Run the emulator standalone (until killed):
+     * <pre>
+     * IPFS_EMULATOR_PORT      : port (default 5001)
+     * IPFS_EMULATOR_LATENCY   : latency (ms) added to each request (default 0)
+     * IPFS_EMULATOR_BANDWIDTH : bandwidth (bytes/s) of each request and response body (default 0: unlimited)
+     * IPFS_EMULATOR_STORAGE   : directory of the files (default: in memory)
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        IPFSEmulator emulator = new IPFSEmulator(Integer.parseInt(env("IPFS_EMULATOR_PORT", "5001")))
+                .latency(Long.parseLong(env("IPFS_EMULATOR_LATENCY", "0")))
+                .bandwidth(Long.parseLong(env("IPFS_EMULATOR_BANDWIDTH", "0")));
+        String storage = System.getenv("IPFS_EMULATOR_STORAGE");
+        if (storage != null && !storage.isEmpty()) {
+            emulator.storage(Paths.get(storage));
+        }
+
+        emulator.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(emulator::close));
+        Thread.currentThread().join();
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+}
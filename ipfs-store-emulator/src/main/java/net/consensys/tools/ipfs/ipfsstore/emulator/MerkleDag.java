@@ -0,0 +1,184 @@
+package net.consensys.tools.ipfs.ipfsstore.emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash (CID v0, base58 sha2-256 multihash) of a file added to IPFS with the defaults of go-ipfs (ipfs add): UnixFS
+ * file in protobuf Merkle DAG nodes, 256KB chunks, balanced layout of 174 links per node.
+ * The hashes are the same as the ones of a go-ipfs daemon, so the content of a real node can be replayed.
+ */
+public final class MerkleDag {
+
+    public static final int CHUNK_SIZE = 256 * 1024;
+    public static final int MAX_LINKS = 174;
+
+    private static final int UNIXFS_FILE = 2;
+    private static final byte SHA2_256 = 0x12;
+
+    private MerkleDag() {
+    }
+
+    /**
+     * Hash of a file
+     *
+     * @param content File content
+     * @return Hash (Qm...)
+     */
+    public static String hash(byte[] content) {
+        return hash(content, CHUNK_SIZE, MAX_LINKS);
+    }
+
+    /**
+     * Hash of a file
+     *
+     * @param content   File content
+     * @param chunkSize Size of the chunks
+     * @param maxLinks  Maximum number of links of a node
+     * @return Hash (Qm...)
+     */
+    public static String hash(byte[] content, int chunkSize, int maxLinks) {
+        Chunks chunks = new Chunks(content, chunkSize);
+
+        // Balanced layout: each level wraps the previous root as first child and fills the node up
+        Node root = null;
+        for (int depth = 0; !chunks.done(); depth++) {
+            List<Node> children = new ArrayList<>();
+            if (root != null) {
+                children.add(root);
+            }
+            root = depth == 0 ? leaf(chunks.next()) : fill(chunks, depth, maxLinks, children);
+        }
+        if (root == null) {
+            root = leaf(new byte[0]);
+        }
+
+        return Base58.encode(root.multihash);
+    }
+
+    private static Node fill(Chunks chunks, int depth, int maxLinks, List<Node> children) {
+        while (children.size() < maxLinks && !chunks.done()) {
+            children.add(depth == 1 ? leaf(chunks.next()) : fill(chunks, depth - 1, maxLinks, new ArrayList<>()));
+        }
+        return node(children);
+    }
+
+    private static Node leaf(byte[] data) {
+        Protobuf unixfs = new Protobuf()
+                .varint(1, UNIXFS_FILE)
+                .bytes(2, data.length > 0 ? data : null)
+                .varint(3, data.length);
+
+        return new Node(new Protobuf().bytes(1, unixfs.toByteArray()).toByteArray(), data.length, 0);
+    }
+
+    private static Node node(List<Node> children) {
+        long fileSize = children.stream().mapToLong(child -> child.fileSize).sum();
+        long linksSize = children.stream().mapToLong(child -> child.totalSize).sum();
+
+        Protobuf unixfs = new Protobuf()
+                .varint(1, UNIXFS_FILE)
+                .varint(3, fileSize);
+        children.forEach(child -> unixfs.varint(4, child.fileSize));
+
+        // Links before data (go-ipfs encoding)
+        Protobuf node = new Protobuf();
+        children.forEach(child -> node.bytes(2, new Protobuf()
+                .bytes(1, child.multihash)
+                .bytes(2, new byte[0])
+                .varint(3, child.totalSize)
+                .toByteArray()));
+        node.bytes(1, unixfs.toByteArray());
+
+        return new Node(node.toByteArray(), fileSize, linksSize);
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Serialized node
+     */
+    private static final class Node {
+        private final byte[] multihash;
+        private final long fileSize;
+        private final long totalSize; // node and its descendants (link size)
+
+        private Node(byte[] encoded, long fileSize, long linksSize) {
+            byte[] digest = sha256(encoded);
+            this.multihash = new byte[digest.length + 2];
+            this.multihash[0] = SHA2_256;
+            this.multihash[1] = (byte) digest.length;
+            System.arraycopy(digest, 0, this.multihash, 2, digest.length);
+            this.fileSize = fileSize;
+            this.totalSize = encoded.length + linksSize;
+        }
+    }
+
+    /**
+     * Fixed size chunks of a content
+     */
+    private static final class Chunks {
+        private final byte[] content;
+        private final int chunkSize;
+        private int offset;
+
+        private Chunks(byte[] content, int chunkSize) {
+            this.content = content;
+            this.chunkSize = chunkSize;
+        }
+
+        private boolean done() {
+            return offset >= content.length;
+        }
+
+        private byte[] next() {
+            byte[] chunk = Arrays.copyOfRange(content, offset, Math.min(offset + chunkSize, content.length));
+            offset += chunk.length;
+            return chunk;
+        }
+    }
+
+    /**
+     * Minimal protobuf writer (varint and length-delimited fields)
+     */
+    private static final class Protobuf {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private Protobuf varint(int field, long value) {
+            writeVarint(field << 3);
+            writeVarint(value);
+            return this;
+        }
+
+        private Protobuf bytes(int field, byte[] value) {
+            if (value != null) {
+                writeVarint(field << 3 | 2);
+                writeVarint(value.length);
+                out.write(value, 0, value.length);
+            }
+            return this;
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        private byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package net.consensys.tools.ipfs.ipfsstore.emulator;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parser of the multipart/form-data bodies of the add requests (the files sent by the IPFS clients)
+ */
+final class Multipart {
+
+    private static final Pattern BOUNDARY = Pattern.compile("boundary=\"?([^\";]+)\"?");
+    private static final Pattern FILENAME = Pattern.compile("filename=\"([^\"]*)\"");
+    private static final byte[] HEADERS_END = "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final String DIRECTORY = "application/x-directory";
+
+    private Multipart() {
+    }
+
+    /**
+     * File of the body
+     */
+    static final class Part {
+        final String name;
+        final byte[] content;
+
+        private Part(String name, byte[] content) {
+            this.name = name;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Parse the files of a body (the directories are ignored)
+     *
+     * @param contentType Content type of the request (with the boundary)
+     * @param body        Body
+     * @return Files
+     */
+    static List<Part> parse(String contentType, byte[] body) {
+        Matcher boundaryMatcher = BOUNDARY.matcher(contentType == null ? "" : contentType);
+        if (!boundaryMatcher.find()) {
+            throw new IllegalArgumentException("Not a multipart request: " + contentType);
+        }
+        byte[] delimiter = ("--" + boundaryMatcher.group(1)).getBytes(StandardCharsets.ISO_8859_1);
+
+        List<Part> parts = new ArrayList<>();
+        int start = indexOf(body, delimiter, 0);
+        while (start >= 0) {
+            int headersStart = start + delimiter.length;
+            if (headersStart + 2 <= body.length && body[headersStart] == '-' && body[headersStart + 1] == '-') {
+                break; // closing delimiter
+            }
+            int headersEnd = indexOf(body, HEADERS_END, headersStart);
+            int next = indexOf(body, delimiter, headersStart);
+            if (headersEnd < 0 || next < 0) {
+                break;
+            }
+
+            String headers = new String(body, headersStart, headersEnd - headersStart, StandardCharsets.UTF_8);
+            int contentEnd = next - 2; // CRLF before the delimiter
+            byte[] content = Arrays.copyOfRange(body, headersEnd + HEADERS_END.length, Math.max(contentEnd, headersEnd + HEADERS_END.length));
+
+            if (!headers.toLowerCase().contains(DIRECTORY)) {
+                Matcher filename = FILENAME.matcher(headers);
+                parts.add(new Part(filename.find() ? decode(filename.group(1)) : "", content));
+            }
+            start = next;
+        }
+        return parts;
+    }
+
+    private static String decode(String filename) {
+        try {
+            return URLDecoder.decode(filename, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException ex) {
+            return filename;
+        }
+    }
+
+    private static int indexOf(byte[] array, byte[] target, int from) {
+        outer:
+        for (int i = from; i <= array.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (array[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
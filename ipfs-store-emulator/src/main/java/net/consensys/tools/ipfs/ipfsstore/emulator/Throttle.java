@@ -0,0 +1,83 @@
+package net.consensys.tools.ipfs.ipfsstore.emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Injected latency (per request) and bandwidth (per connection, both directions) of the emulator
+ */
+final class Throttle {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final long latency; // ms
+    private final long bandwidth; // bytes/s (0: unlimited)
+
+    Throttle(long latency, long bandwidth) {
+        this.latency = latency;
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * Wait for the latency
+     */
+    void delay() throws InterruptedIOException {
+        sleep(latency);
+    }
+
+    /**
+     * Read a request body at the bandwidth
+     */
+    byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[CHUNK_SIZE];
+        long start = System.nanoTime();
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+            pace(start, total);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a response body at the bandwidth (each chunk is sent once the bandwidth allows it)
+     */
+    void write(byte[] content, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, content.length - offset);
+            pace(start, offset + length);
+            out.write(content, offset, length);
+        }
+    }
+
+    /**
+     * Wait until the bytes transferred since the start fit in the bandwidth
+     */
+    private void pace(long start, long bytes) throws InterruptedIOException {
+        if (bandwidth <= 0) {
+            return;
+        }
+        long expected = bytes * 1000 / bandwidth;
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        sleep(expected - elapsed);
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package net.consensys.tools.ipfs.ipfsstore.emulator.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.consensys.tools.ipfs.ipfsstore.emulator.IPFSEmulator;
+import net.consensys.tools.ipfs.ipfsstore.emulator.MerkleDag;
+
+public class IPFSEmulatorTest {
+
+    private static final String HELLO_HASH = "QmT78zSuBmuS4z925WZfrqQ1qHaJ56DQaTfyMUF7F8ff5o"; // "hello world\n"
+    private static final String EMPTY_HASH = "QmbFMke1KXqnYyBBWxB74N4c5SBnJMVAiMNRcGu6x1AwQH";
+    private static final String BOUNDARY = "b0f8e4c2a1d3";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private IPFSEmulator emulator;
+
+    @After
+    public void tearDown() {
+        if (emulator != null) {
+            emulator.close();
+        }
+    }
+
+    @Test
+    public void hashTest() {
+        assertEquals(HELLO_HASH, MerkleDag.hash("hello world\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(EMPTY_HASH, MerkleDag.hash(new byte[0]));
+
+        // Several levels of nodes
+        byte[] content = new byte[1000];
+        new Random(42).nextBytes(content);
+        String hash = MerkleDag.hash(content, 10, 3);
+        assertEquals(hash, MerkleDag.hash(content, 10, 3));
+        assertNotEquals(hash, MerkleDag.hash(content, 10, 4));
+        assertTrue(hash.startsWith("Qm"));
+        assertEquals(46, hash.length());
+    }
+
+    @Test
+    public void multiChunkHashTest() throws Exception {
+        // 300KB of "a" (2 chunks), to compare with: head -c 307200 /dev/zero | tr '\0' a | ipfs add -n -q
+        byte[] content = new byte[300 * 1024];
+        Arrays.fill(content, (byte) 'a');
+        byte[] first = unixfsLeaf(Arrays.copyOfRange(content, 0, MerkleDag.CHUNK_SIZE));
+        byte[] second = unixfsLeaf(Arrays.copyOfRange(content, MerkleDag.CHUNK_SIZE, content.length));
+
+        // Root encoded from the dag-pb and UnixFS specs: links (hash, empty name, cumulative size) before the data
+        // (file type, file size, size of each block)
+        ByteArrayOutputStream unixfs = new ByteArrayOutputStream();
+        varint(unixfs, 1 << 3, 2);
+        varint(unixfs, 3 << 3, content.length);
+        varint(unixfs, 4 << 3, MerkleDag.CHUNK_SIZE);
+        varint(unixfs, 4 << 3, content.length - MerkleDag.CHUNK_SIZE);
+        ByteArrayOutputStream root = new ByteArrayOutputStream();
+        for (byte[] leaf : Arrays.asList(first, second)) {
+            ByteArrayOutputStream link = new ByteArrayOutputStream();
+            bytes(link, 1, multihash(leaf));
+            bytes(link, 2, new byte[0]);
+            varint(link, 3 << 3, leaf.length);
+            bytes(root, 2, link.toByteArray());
+        }
+        bytes(root, 1, unixfs.toByteArray());
+
+        // #################################################
+        String hash = MerkleDag.hash(content);
+        // #################################################
+
+        assertEquals(base58(multihash(first)), MerkleDag.hash(Arrays.copyOfRange(content, 0, MerkleDag.CHUNK_SIZE)));
+        assertEquals(base58(multihash(root.toByteArray())), hash);
+    }
+
+    @Test
+    public void apiTest() throws Exception {
+        emulator = new IPFSEmulator(0).start();
+
+        // #################################################
+        Response add = call("add?stream-channels=true&w=false", "hello world\n".getBytes(StandardCharsets.UTF_8));
+        Response catPath = call("cat/" + HELLO_HASH, null);
+        Response catArg = call("cat?arg=/ipfs/" + HELLO_HASH, null);
+        Response unpin = call("pin/rm?stream-channels=true&r=true&arg=" + HELLO_HASH, null);
+        Response unpinAgain = call("pin/rm?stream-channels=true&r=true&arg=" + HELLO_HASH, null);
+        Response pin = call("pin/add?stream-channels=true&arg=" + HELLO_HASH, null);
+        Response refs = call("refs/local", null);
+        Response version = call("version", null);
+        Response unknown = call("cat/" + EMPTY_HASH, null);
+        // #################################################
+
+        assertEquals(200, add.status);
+        assertEquals("{\"Name\":\"hello.txt\",\"Hash\":\"" + HELLO_HASH + "\",\"Size\":\"12\"}\n", add.text());
+        assertEquals("hello world\n", catPath.text());
+        assertEquals("hello world\n", catArg.text());
+        assertEquals("{\"Pins\":[\"" + HELLO_HASH + "\"]}", unpin.text());
+        assertEquals(500, unpinAgain.status);
+        assertEquals(200, pin.status);
+        assertTrue(emulator.getPins().contains(HELLO_HASH));
+        assertEquals("{\"Ref\":\"" + HELLO_HASH + "\",\"Err\":\"\"}\n", refs.text());
+        assertTrue(version.text().contains("\"Version\":\"" + IPFSEmulator.VERSION + "\""));
+        assertEquals(500, unknown.status);
+        assertTrue(unknown.text().contains("\"Message\""));
+    }
+
+    @Test
+    public void pinLsAndGcTest() throws Exception {
+        emulator = new IPFSEmulator(0).start();
+        call("add", "hello world\n".getBytes(StandardCharsets.UTF_8));
+        call("add?pin=false", new byte[0]);
+
+        // #################################################
+        Response pins = call("pin/ls?stream-types=true&t=recursive", null);
+        Response directPins = call("pin/ls?t=direct", null);
+        Response gc = call("repo/gc", null);
+        Response refs = call("refs/local", null);
+        // #################################################
+
+        assertEquals("{\"Keys\":{\"" + HELLO_HASH + "\":{\"Type\":\"recursive\"}}}", pins.text());
+        assertEquals("{\"Keys\":{}}", directPins.text());
+        assertEquals("{\"Key\":{\"/\":\"" + EMPTY_HASH + "\"}}\n", gc.text());
+        assertEquals("{\"Ref\":\"" + HELLO_HASH + "\",\"Err\":\"\"}\n", refs.text());
+    }
+
+    @Test
+    public void latencyAndBandwidthTest() throws Exception {
+        emulator = new IPFSEmulator(0).latency(100).bandwidth(100 * 1024).start();
+
+        byte[] content = new byte[50 * 1024];
+        new Random(42).nextBytes(content);
+        String hash = MerkleDag.hash(content);
+
+        // #################################################
+        long start = System.currentTimeMillis();
+        call("version", null);
+        long versionTime = System.currentTimeMillis() - start;
+
+        call("add", content);
+        start = System.currentTimeMillis();
+        Response cat = call("cat/" + hash, null);
+        long catTime = System.currentTimeMillis() - start;
+        // #################################################
+
+        assertArrayEquals(content, cat.body);
+        assertTrue("latency " + versionTime, versionTime >= 100);
+        assertTrue("latency + 50KB at 100KB/s " + catTime, catTime >= 100 + 450);
+    }
+
+    @Test
+    public void diskStorageTest() throws Exception {
+        emulator = new IPFSEmulator(0).storage(folder.getRoot().toPath()).start();
+        call("add", "hello world\n".getBytes(StandardCharsets.UTF_8));
+        call("add?only-hash=true", "not stored".getBytes(StandardCharsets.UTF_8));
+        emulator.close();
+
+        // #################################################
+        emulator = new IPFSEmulator(0).storage(folder.getRoot().toPath()).start();
+        Response cat = call("cat/" + HELLO_HASH, null);
+        Response refs = call("refs/local", null);
+        // #################################################
+
+        assertEquals("hello world\n", cat.text());
+        assertEquals("{\"Ref\":\"" + HELLO_HASH + "\",\"Err\":\"\"}\n", refs.text());
+        assertFalse(emulator.getPins().contains(HELLO_HASH)); // the pins are not kept
+    }
+
+    /**
+     * Call the emulator as the IPFS client (files sent as multipart/form-data, chunked)
+     */
+    private Response call(String command, byte[] file) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + emulator.getPort() + "/api/v0/" + command).openConnection();
+
+        if (file != null) {
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(4096);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(("--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: file; filename=\"hello.txt\"\r\n"
+                        + "Content-Type: application/octet-stream\r\n"
+                        + "Content-Transfer-Encoding: binary\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                out.write(file);
+                out.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while (in != null && (read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return new Response(status, body.toByteArray());
+        }
+    }
+
+    private static byte[] unixfsLeaf(byte[] data) {
+        ByteArrayOutputStream unixfs = new ByteArrayOutputStream();
+        varint(unixfs, 1 << 3, 2);
+        bytes(unixfs, 2, data);
+        varint(unixfs, 3 << 3, data.length);
+        ByteArrayOutputStream node = new ByteArrayOutputStream();
+        bytes(node, 1, unixfs.toByteArray());
+        return node.toByteArray();
+    }
+
+    private static void bytes(ByteArrayOutputStream out, int field, byte[] value) {
+        varint(out, field << 3 | 2, value.length);
+        out.write(value, 0, value.length);
+    }
+
+    private static void varint(ByteArrayOutputStream out, int key, long value) {
+        for (long v : new long[]{key, value}) {
+            while ((v & ~0x7FL) != 0) {
+                out.write((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+    }
+
+    private static byte[] multihash(byte[] node) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(node);
+        byte[] multihash = new byte[digest.length + 2];
+        multihash[0] = 0x12;
+        multihash[1] = (byte) digest.length;
+        System.arraycopy(digest, 0, multihash, 2, digest.length);
+        return multihash;
+    }
+
+    private static String base58(byte[] bytes) {
+        String alphabet = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+        StringBuilder encoded = new StringBuilder();
+        for (BigInteger n = new BigInteger(1, bytes); n.signum() > 0; n = n.divide(BigInteger.valueOf(58))) {
+            encoded.append(alphabet.charAt(n.mod(BigInteger.valueOf(58)).intValue()));
+        }
+        for (int i = 0; i < bytes.length && bytes[i] == 0; i++) {
+            encoded.append('1');
+        }
+        return encoded.reverse().toString();
+    }
+
+    private static final class Response {
+        private final int status;
+        private final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        private String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+}
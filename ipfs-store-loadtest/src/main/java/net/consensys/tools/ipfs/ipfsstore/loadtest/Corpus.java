@@ -0,0 +1,140 @@
+package net.consensys.tools.ipfs.ipfsstore.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+
+/**
+ * Synthetic corpus: the documents (content and index fields) and the search queries of a load test, generated from
+ * a seed so that two runs send the same payloads.
+ * The content of a document is a slice of a text generated once (words of random lengths), prefixed by the number of
+ * the document so that each document has its own hash: a payload costs a copy, not a generation, and doesn't slow
+ * the dispatch of the requests down.
+ */
+public class Corpus {
+
+    private static final String CONTENT_TYPE = "text/plain";
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+    private final long seed;
+    private final String index;
+    private final WeightedChoice<Integer> sizes;
+    private final Map<String, Integer> fields;
+    private final List<String> fieldNames;
+    private final byte[] text;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public Corpus(long seed, String index, WeightedChoice<Integer> sizes, Map<String, Integer> fields) {
+        this.seed = seed;
+        this.index = index;
+        this.sizes = sizes;
+        this.fields = fields;
+        this.fieldNames = new ArrayList<>(fields.keySet());
+
+        int maxSize = sizes.getValues().stream().mapToInt(Integer::intValue).max().orElse(0);
+        this.text = text(new Random(seed), 2 * maxSize);
+    }
+
+    /**
+     * Document of the corpus
+     */
+    public final class Document {
+        private final long number;
+        private final byte[] content;
+        private final List<IndexField> indexFields;
+
+        private Document(long number, byte[] content, List<IndexField> indexFields) {
+            this.number = number;
+            this.content = content;
+            this.indexFields = indexFields;
+        }
+
+        public String getId() {
+            return "doc-" + number;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * @return Index request of the document (JSON)
+         */
+        public String getIndexRequest() {
+            IndexerRequest request = new IndexerRequest();
+            request.setIndexName(index);
+            request.setDocumentId(getId());
+            request.setContentType(CONTENT_TYPE);
+            request.setIndexFields(indexFields);
+            return json(request);
+        }
+    }
+
+    /**
+     * Document number n (always the same for a seed)
+     *
+     * @param number Number of the document
+     * @return Document
+     */
+    public Document document(long number) {
+        Random random = new Random(seed * 31 + number);
+
+        int size = sizes.pick(random);
+        byte[] header = ("doc-" + number + "\n").getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[Math.max(size, header.length)];
+        System.arraycopy(header, 0, content, 0, header.length);
+        System.arraycopy(text, random.nextInt(text.length - size + 1), content, header.length, content.length - header.length);
+
+        List<IndexField> indexFields = new ArrayList<>();
+        fields.forEach((name, cardinality) -> indexFields.add(new IndexField(name, value(name, random.nextInt(cardinality)))));
+
+        return new Document(number, content, indexFields);
+    }
+
+    /**
+     * Search query: equals on one of the fields, with one of its values
+     *
+     * @param random Random
+     * @return Query (JSON)
+     */
+    public String query(Random random) {
+        String name = fieldNames.get(random.nextInt(fieldNames.size()));
+        return json(Query.newQuery().equals(name, value(name, random.nextInt(fields.get(name)))));
+    }
+
+    private static String value(String name, int value) {
+        return name + "-" + value;
+    }
+
+    private String json(Object object) {
+        try {
+            return mapper.writeValueAsString(object);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] text(Random random, int size) {
+        byte[] text = new byte[size];
+        int word = 0;
+        for (int i = 0; i < size; i++) {
+            if (word == 0) {
+                word = 2 + random.nextInt(9);
+                text[i] = ' ';
+            } else {
+                text[i] = (byte) ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                word--;
+            }
+        }
+        return text;
+    }
+}
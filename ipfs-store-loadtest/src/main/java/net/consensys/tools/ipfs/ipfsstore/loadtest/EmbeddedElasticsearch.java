@@ -0,0 +1,62 @@
+package net.consensys.tools.ipfs.ipfsstore.loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.node.InternalSettingsPreparer;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.node.NodeValidationException;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.transport.Netty4Plugin;
+
+/**
+ * Single node ElasticSearch cluster in the JVM (transport and HTTP), for the load tests on one machine
+ */
+public class EmbeddedElasticsearch implements Closeable {
+
+    private final Node node;
+
+    /**
+     * @param clusterName   Name of the cluster (elasticsearch.cluster-name of the service)
+     * @param transportPort Transport port (transport client of the service)
+     * @param httpPort      HTTP port (REST client of the service)
+     * @param home          Directory of the data
+     */
+    public EmbeddedElasticsearch(String clusterName, int transportPort, int httpPort, Path home) {
+        Settings settings = Settings.builder()
+                .put("cluster.name", clusterName)
+                .put("node.name", "loadtest")
+                .put("path.home", home.toString())
+                .put("discovery.type", "single-node")
+                .put("transport.type", "netty4")
+                .put("transport.tcp.port", transportPort)
+                .put("http.type", "netty4")
+                .put("http.port", httpPort)
+                .build();
+
+        this.node = new PluginNode(settings);
+    }
+
+    public EmbeddedElasticsearch start() throws NodeValidationException {
+        node.start();
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        node.close();
+    }
+
+    /**
+     * Node with the Netty transport plugin (loaded from the plugins directory by a standalone node)
+     */
+    private static final class PluginNode extends Node {
+
+        private PluginNode(Settings settings) {
+            super(InternalSettingsPreparer.prepareEnvironment(settings, null), Collections.<Class<? extends Plugin>>singletonList(Netty4Plugin.class));
+        }
+    }
+}
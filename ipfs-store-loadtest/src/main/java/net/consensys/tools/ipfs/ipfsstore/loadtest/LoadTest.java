@@ -0,0 +1,253 @@
+package net.consensys.tools.ipfs.ipfsstore.loadtest;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.apache.log4j.Logger;
+
+/**
+ * Load test of a running service through its API, open model: the operations (mix of store, store_index, fetch and
+ * search) are started at a constant arrival rate whatever the response times, and their latencies measured from the
+ * time they were due (see OperationStats).
+ * <pre>
+ * 1. preload : store and index documents (the targets of fetch)
+ * 2. warmup  : run the mix, latencies not kept
+ * 3. run     : run the mix, latencies and throughput reported per operation
+ * </pre>
+ * See loadtest.properties for the settings.
+ */
+public class LoadTest {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadTest.class);
+
+    private static final int PRELOAD_CONCURRENCY = 16;
+
+    private final LoadTestSettings settings;
+    private final Corpus corpus;
+    private final StoreClient client;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    private final List<String> hashes = new ArrayList<>(); // fetch targets
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private long nextDocument;
+    private long maxLag; // ns, dispatcher behind the arrival rate
+
+    public LoadTest(LoadTestSettings settings) {
+        this.settings = settings;
+        this.corpus = new Corpus(settings.getSeed(), settings.getIndex(), settings.getSizes(), settings.getFields());
+        this.client = new StoreClient(settings.getTarget(), settings.getClientId(), settings.getConnections(), settings.getTimeout());
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats(operation, settings.getTimeout()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.load();
+        LoadTest loadTest = new LoadTest(settings);
+        try {
+            loadTest.run();
+        } finally {
+            loadTest.client.close();
+        }
+    }
+
+    /**
+     * Run the load test and print the report
+     */
+    public void run() throws Exception {
+        LOGGER.info("Load test " + settings);
+        LOGGER.info("Mix [" + settings.getMix() + "], sizes [" + settings.getSizes() + "]");
+
+        StoreClient.Response created = client.createIndex(settings.getIndex()).join();
+        if (!created.isSuccess()) {
+            throw new IllegalStateException("Index " + settings.getIndex() + " not created: HTTP " + created.getStatus());
+        }
+
+        preload();
+
+        try (PrintStream histogramLog = settings.getHistograms().isEmpty() ? null : new PrintStream(new FileOutputStream(settings.getHistograms()))) {
+            HistogramLogWriter writer = histogramLog != null ? new HistogramLogWriter(histogramLog) : null;
+            dispatch(writer);
+            new Report(settings, stats, maxLag).print(System.out);
+        }
+    }
+
+    /**
+     * Store and index the first documents of the corpus
+     */
+    private void preload() throws InterruptedException {
+        LOGGER.info("Preloading " + settings.getPreload() + " documents");
+
+        Semaphore permits = new Semaphore(PRELOAD_CONCURRENCY);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (; nextDocument < settings.getPreload(); nextDocument++) {
+            permits.acquire();
+            Corpus.Document document = corpus.document(nextDocument);
+            futures.add(client.storeIndex(document.getId(), document.getContent(), document.getIndexRequest())
+                    .thenAccept(this::addHash)
+                    .whenComplete((result, ex) -> permits.release()));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        LOGGER.info("Preloaded " + hashes.size() + " documents");
+
+        if (hashes.isEmpty() && settings.getMix().getValues().contains(Operation.fetch)) {
+            throw new IllegalStateException("No document preloaded (every store failed, see the warnings above): fetch has no target");
+        }
+    }
+
+    /**
+     * Start the operations at the arrival rate during the warmup and the run, and wait for the last ones
+     */
+    private void dispatch(HistogramLogWriter writer) throws Exception {
+        Random random = new Random(settings.getSeed());
+        long period = (long) (TimeUnit.SECONDS.toNanos(1) / settings.getRate());
+        long warmupStart = System.nanoTime();
+        long runStart = warmupStart + TimeUnit.SECONDS.toNanos(settings.getWarmup());
+        long end = runStart + TimeUnit.SECONDS.toNanos(settings.getDuration());
+        long interval = TimeUnit.SECONDS.toNanos(settings.getInterval());
+        long nextReport = warmupStart + interval;
+        boolean warmupDone = settings.getWarmup() == 0;
+
+        if (writer != null) {
+            writer.outputStartTime(System.currentTimeMillis());
+            writer.outputLegend();
+        }
+        LOGGER.info(settings.getWarmup() > 0 ? "Warming up for " + settings.getWarmup() + "s" : "Running for " + settings.getDuration() + "s");
+
+        for (long i = 0; ; i++) {
+            long due = warmupStart + i * period;
+            if (due >= end) {
+                break;
+            }
+
+            // Progress and end of the warmup (between two operations)
+            long now = System.nanoTime();
+            if (!warmupDone && due >= runStart) {
+                intervals(false, null, (now - warmupStart) / 1_000_000_000.0);
+                warmupDone = true;
+                nextReport = runStart + interval;
+                LOGGER.info("Running for " + settings.getDuration() + "s");
+            } else if (now >= nextReport) {
+                intervals(warmupDone, writer, (now - warmupStart) / 1_000_000_000.0);
+                nextReport += interval;
+            }
+
+            while ((now = System.nanoTime()) < due) {
+                LockSupport.parkNanos(due - now);
+            }
+            maxLag = Math.max(maxLag, now - due);
+
+            start(settings.getMix().pick(random), due, random);
+        }
+
+        // Last responses (up to the timeout)
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.getTimeout());
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        intervals(true, writer, (System.nanoTime() - warmupStart) / 1_000_000_000.0);
+    }
+
+    private void start(Operation operation, long due, Random random) {
+        OperationStats operationStats = stats.get(operation);
+
+        CompletableFuture<StoreClient.Response> response;
+        switch (operation) {
+            case store: {
+                Corpus.Document document = corpus.document(nextDocument++);
+                response = client.store(document.getId(), document.getContent());
+                break;
+            }
+            case store_index: {
+                Corpus.Document document = corpus.document(nextDocument++);
+                response = client.storeIndex(document.getId(), document.getContent(), document.getIndexRequest());
+                break;
+            }
+            case fetch: {
+                String hash;
+                synchronized (hashes) {
+                    hash = hashes.get(random.nextInt(hashes.size()));
+                }
+                response = client.fetch(settings.getIndex(), hash);
+                break;
+            }
+            case search:
+                response = client.search(settings.getIndex(), corpus.query(random));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+
+        long sent = System.nanoTime();
+        inFlight.incrementAndGet();
+        response.whenComplete((result, ex) -> {
+            long now = System.nanoTime();
+            inFlight.decrementAndGet();
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                operationStats.failure(cause.getClass().getSimpleName());
+            } else if (!result.isSuccess()) {
+                operationStats.failure("HTTP " + result.getStatus());
+            } else {
+                operationStats.success(due, sent, now);
+                if (operation == Operation.store || operation == Operation.store_index) {
+                    addHash(result);
+                }
+            }
+        });
+    }
+
+    private void addHash(StoreClient.Response response) {
+        if (!response.isSuccess()) {
+            LOGGER.warn("Store failed: HTTP " + response.getStatus());
+            return;
+        }
+        try {
+            String hash = client.hash(response);
+            synchronized (hashes) {
+                hashes.add(hash);
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Store failed", ex);
+        }
+    }
+
+    /**
+     * Progress of an interval (logged) and totals
+     */
+    private void intervals(boolean measured, HistogramLogWriter writer, double elapsed) {
+        StringBuilder progress = new StringBuilder(String.format("[%6.1fs]%s in flight: %d", elapsed, measured ? "" : " (warmup)", inFlight.get()));
+        for (OperationStats operationStats : stats.values()) {
+            OperationStats.Interval interval = operationStats.interval(measured);
+            Histogram responseTimes = interval.getResponseTimes();
+            if (responseTimes.getTotalCount() == 0 && interval.getErrors() == 0) {
+                continue;
+            }
+            progress.append(String.format(" | %s: %d ok, %d ko, p99 %.1fms", operationStats.getOperation(),
+                    responseTimes.getTotalCount(), interval.getErrors(), responseTimes.getValueAtPercentile(99) / 1000.0));
+
+            if (writer != null && measured) {
+                responseTimes.setTag(operationStats.getOperation() + ".response");
+                writer.outputIntervalHistogram(responseTimes);
+                interval.getServiceTimes().setTag(operationStats.getOperation() + ".service");
+                writer.outputIntervalHistogram(interval.getServiceTimes());
+            }
+        }
+        LOGGER.info(progress);
+    }
+}
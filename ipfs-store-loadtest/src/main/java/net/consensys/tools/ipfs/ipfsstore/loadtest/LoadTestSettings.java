@@ -0,0 +1,109 @@
+package net.consensys.tools.ipfs.ipfsstore.loadtest;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Settings of a load test: loadtest.properties (classpath), overridden by the file -Dloadtest.config, overridden by
+ * the system properties (-Dloadtest.rate=200...)
+ */
+@Getter
+@ToString
+public class LoadTestSettings {
+
+    private static final String PREFIX = "loadtest.";
+
+    private final String target;
+    private final String index;
+    private final double rate;
+    private final int duration;
+    private final int warmup;
+    private final int preload;
+    private final WeightedChoice<Operation> mix;
+    private final WeightedChoice<Integer> sizes;
+    private final Map<String, Integer> fields;
+    private final long seed;
+    private final int connections;
+    private final int timeout;
+    private final String clientId;
+    private final int interval;
+    private final String histograms;
+
+    LoadTestSettings(Properties properties) {
+        this.target = get(properties, "target");
+        this.index = get(properties, "index");
+        this.rate = Double.parseDouble(get(properties, "rate"));
+        this.duration = Integer.parseInt(get(properties, "duration"));
+        this.warmup = Integer.parseInt(get(properties, "warmup"));
+        this.preload = Integer.parseInt(get(properties, "preload"));
+        this.mix = WeightedChoice.parse(get(properties, "mix"), Operation::valueOf);
+        this.sizes = WeightedChoice.parse(get(properties, "sizes"), LoadTestSettings::parseSize);
+        this.fields = WeightedChoice.parseMap(get(properties, "fields"), name -> name);
+        this.seed = Long.parseLong(get(properties, "seed"));
+        this.connections = Integer.parseInt(get(properties, "connections"));
+        this.timeout = Integer.parseInt(get(properties, "timeout"));
+        this.clientId = get(properties, "client-id");
+        this.interval = Integer.parseInt(get(properties, "interval"));
+        this.histograms = properties.getProperty(PREFIX + "histograms", "").trim();
+
+        // Validation
+        if (rate <= 0) throw new IllegalArgumentException("rate must be positive");
+        if (fields.values().stream().anyMatch(cardinality -> cardinality <= 0)) throw new IllegalArgumentException("field cardinalities must be positive");
+        if (preload <= 0 && mix.getValues().contains(Operation.fetch)) throw new IllegalArgumentException("fetch needs preloaded documents");
+    }
+
+    /**
+     * Load the settings
+     *
+     * @return Settings
+     * @throws IOException if the files can't be read
+     */
+    public static LoadTestSettings load() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream defaults = LoadTestSettings.class.getResourceAsStream("/loadtest.properties")) {
+            properties.load(defaults);
+        }
+
+        String file = System.getProperty(PREFIX + "config");
+        if (file != null) {
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            }
+        }
+
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PREFIX))
+                .forEach(name -> properties.setProperty(name, System.getProperty(name)));
+
+        return new LoadTestSettings(properties);
+    }
+
+    /**
+     * Parse a size: 512, 64KB, 1MB
+     */
+    static int parseSize(String size) {
+        String value = size.trim().toUpperCase();
+        if (value.endsWith("MB")) {
+            return Integer.parseInt(value.substring(0, value.length() - 2).trim()) * 1024 * 1024;
+        } else if (value.endsWith("KB")) {
+            return Integer.parseInt(value.substring(0, value.length() - 2).trim()) * 1024;
+        } else if (value.endsWith("B")) {
+            return Integer.parseInt(value.substring(0, value.length() - 1).trim());
+        }
+        return Integer.parseInt(value);
+    }
+
+    private static String get(Properties properties, String name) {
+        String value = properties.getProperty(PREFIX + name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(PREFIX + name + " cannot be null or empty");
+        }
+        return value.trim();
+    }
+}
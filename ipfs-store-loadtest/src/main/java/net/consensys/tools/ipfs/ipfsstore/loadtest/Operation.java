@@ -0,0 +1,11 @@
+package net.consensys.tools.ipfs.ipfsstore.loadtest;
+
+/**
+ * Operations of the load tests (endpoints of the service)
+ */
+public enum Operation {
+    store,          // POST /store
+    store_index,    // POST /store_index
+    fetch,          // GET /fetch/{index}/{hash}
+    search          // POST /search/{index}
+}
@@ -0,0 +1,132 @@
+package net.consensys.tools.ipfs.ipfsstore.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latencies (HdrHistogram) and errors of an operation:
+ * <pre>
+ * response time : from the time the request was due (arrival rate) to the response, waits of the client included
+ *                 (no coordinated omission: a slow service delays the next requests of a closed loop, not of this one)
+ * service time  : from the time the request was sent to the response
+ * </pre>
+ * The latencies are recorded in microseconds, the failed requests are counted by status (or exception) only.
+ */
+public class OperationStats {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Operation operation;
+    private final Recorder responseTimes;
+    private final Recorder serviceTimes;
+    private final Histogram totalResponseTimes;
+    private final Histogram totalServiceTimes;
+    private final LongAdder intervalErrors = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    public OperationStats(Operation operation, int timeout) {
+        long highest = TimeUnit.SECONDS.toMicros(timeout) * 10;
+        this.operation = operation;
+        this.responseTimes = new Recorder(highest, SIGNIFICANT_DIGITS);
+        this.serviceTimes = new Recorder(highest, SIGNIFICANT_DIGITS);
+        this.totalResponseTimes = new Histogram(highest, SIGNIFICANT_DIGITS);
+        this.totalServiceTimes = new Histogram(highest, SIGNIFICANT_DIGITS);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Record a successful request
+     *
+     * @param due  Time the request was due (nanoTime)
+     * @param sent Time the request was sent (nanoTime)
+     * @param end  Time of the response (nanoTime)
+     */
+    public void success(long due, long sent, long end) {
+        responseTimes.recordValue(micros(end - due));
+        serviceTimes.recordValue(micros(end - sent));
+    }
+
+    /**
+     * Record a failed request
+     *
+     * @param cause Status or exception
+     */
+    public void failure(String cause) {
+        intervalErrors.increment();
+        errors.computeIfAbsent(cause, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Latencies of the interval since the last call, added to the totals if measured (not warmup)
+     */
+    public synchronized Interval interval(boolean measured) {
+        Histogram responses = responseTimes.getIntervalHistogram();
+        Histogram services = serviceTimes.getIntervalHistogram();
+        long failed = intervalErrors.sumThenReset();
+        if (measured) {
+            totalResponseTimes.add(responses);
+            totalServiceTimes.add(services);
+        } else {
+            errors.clear();
+        }
+        return new Interval(responses, services, failed);
+    }
+
+    public Histogram getTotalResponseTimes() {
+        return totalResponseTimes;
+    }
+
+    public Histogram getTotalServiceTimes() {
+        return totalServiceTimes;
+    }
+
+    public long getErrorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public Map<String, Long> getErrors() {
+        Map<String, Long> counts = new TreeMap<>();
+        errors.forEach((cause, count) -> counts.put(cause, count.sum()));
+        return counts;
+    }
+
+    private static long micros(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Latencies and errors of an interval
+     */
+    public static final class Interval {
+        private final Histogram responseTimes;
+        private final Histogram serviceTimes;
+        private final long errors;
+
+        private Interval(Histogram responseTimes, Histogram serviceTimes, long errors) {
+            this.responseTimes = responseTimes;
+            this.serviceTimes = serviceTimes;
+            this.errors = errors;
+        }
+
+        public Histogram getResponseTimes() {
+            return responseTimes;
+        }
+
+        public Histogram getServiceTimes() {
+            return serviceTimes;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package net.consensys.tools.ipfs.ipfsstore.loadtest;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Report of a load test: throughput and percentiles of the response times (and service times) per operation
+ */
+public class Report {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final LoadTestSettings settings;
+    private final Map<Operation, OperationStats> stats;
+    private final long maxLag;
+
+    public Report(LoadTestSettings settings, Map<Operation, OperationStats> stats, long maxLag) {
+        this.settings = settings;
+        this.stats = stats;
+        this.maxLag = maxLag;
+    }
+
+    /**
+     * Print the report
+     *
+     * @param out Output
+     */
+    public void print(PrintStream out) {
+        double duration = settings.getDuration();
+
+        out.println();
+        out.println(String.format("Load test: %s, %.1f ops/s for %ds (warmup %ds), seed %d",
+                settings.getTarget(), settings.getRate(), settings.getDuration(), settings.getWarmup(), settings.getSeed()));
+        out.println("Mix [" + settings.getMix() + "], sizes [" + settings.getSizes() + "], fields " + settings.getFields());
+        out.println();
+
+        printTable(out, "Response time (ms, from the time the request was due)", duration, true);
+        printTable(out, "Service time (ms, from the time the request was sent)", duration, false);
+
+        stats.values().stream()
+                .filter(operationStats -> operationStats.getErrorCount() > 0)
+                .forEach(operationStats -> out.println("Errors " + operationStats.getOperation() + ": " + operationStats.getErrors()));
+
+        // Lagging by more than the interval between two requests: the generator itself was the bottleneck
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / settings.getRate());
+        out.println(String.format("Dispatcher max lag: %.1fms%s", maxLag / 1_000_000.0,
+                maxLag > interval ? " (the generator could not keep the rate, see the response times)" : ""));
+    }
+
+    private void printTable(PrintStream out, String title, double duration, boolean responseTimes) {
+        out.println(title);
+        StringBuilder header = new StringBuilder(String.format("%-12s %9s %7s %9s", "operation", "count", "errors", "ops/s"));
+        for (double percentile : PERCENTILES) {
+            header.append(String.format(" %9s", "p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile))));
+        }
+        header.append(String.format(" %9s", "max"));
+        out.println(header);
+
+        for (OperationStats operationStats : stats.values()) {
+            Histogram histogram = responseTimes ? operationStats.getTotalResponseTimes() : operationStats.getTotalServiceTimes();
+            if (histogram.getTotalCount() == 0 && operationStats.getErrorCount() == 0) {
+                continue;
+            }
+            StringBuilder line = new StringBuilder(String.format("%-12s %9d %7d %9.1f", operationStats.getOperation(),
+                    histogram.getTotalCount(), operationStats.getErrorCount(), histogram.getTotalCount() / duration));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(" %9.2f", histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+            line.append(String.format(" %9.2f", histogram.getMaxValue() / 1000.0));
+            out.println(line);
+        }
+        out.println();
+    }
+}
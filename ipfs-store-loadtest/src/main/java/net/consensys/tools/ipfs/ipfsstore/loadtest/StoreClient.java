@@ -0,0 +1,175 @@
+package net.consensys.tools.ipfs.ipfsstore.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Asynchronous client of the service API (non blocking I/O: a request in progress doesn't hold a thread, so the
+ * generator can keep a constant arrival rate while the service slows down)
+ */
+public class StoreClient implements Closeable {
+
+    private static final String BOUNDARY = "loadtest-7MA4YWxkTrZu0gW";
+    private static final String CLIENT_HEADER = "X-Client-Id";
+
+    private final String target;
+    private final String clientId;
+    private final CloseableHttpAsyncClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public StoreClient(String target, String clientId, int connections, int timeout) {
+        this.target = target;
+        this.clientId = clientId;
+
+        int timeoutMillis = (int) TimeUnit.SECONDS.toMillis(timeout);
+        this.client = HttpAsyncClients.custom()
+                .setMaxConnTotal(connections)
+                .setMaxConnPerRoute(connections)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(timeoutMillis)
+                        .setConnectionRequestTimeout(timeoutMillis)
+                        .setSocketTimeout(timeoutMillis)
+                        .build())
+                .build();
+        this.client.start();
+    }
+
+    /**
+     * Response of the service
+     */
+    public static final class Response {
+        private final int status;
+        private final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    public CompletableFuture<Response> createIndex(String index) {
+        return execute(new HttpPost(target + "/config/index/" + index));
+    }
+
+    public CompletableFuture<Response> store(String filename, byte[] content) {
+        return execute(multipart(target + "/store", filename, content, null));
+    }
+
+    public CompletableFuture<Response> storeIndex(String filename, byte[] content, String indexRequest) {
+        return execute(multipart(target + "/store_index", filename, content, indexRequest));
+    }
+
+    public CompletableFuture<Response> fetch(String index, String hash) {
+        HttpGet request = new HttpGet(target + "/fetch/" + index + "/" + hash);
+        request.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType()); // consumed type of the endpoint
+        return execute(request);
+    }
+
+    public CompletableFuture<Response> search(String index, String query) {
+        HttpPost request = new HttpPost(target + "/search/" + index);
+        request.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+        request.setEntity(new NByteArrayEntity(query.getBytes(StandardCharsets.UTF_8), ContentType.APPLICATION_JSON));
+        return execute(request);
+    }
+
+    /**
+     * @return Hash of the response of store or store_index
+     */
+    public String hash(Response response) throws IOException {
+        JsonNode hash = mapper.readTree(response.getBody()).get("hash");
+        if (hash == null) {
+            throw new IOException("No hash in the response " + new String(response.getBody(), StandardCharsets.UTF_8));
+        }
+        return hash.asText();
+    }
+
+    private CompletableFuture<Response> execute(HttpUriRequest request) {
+        request.setHeader(CLIENT_HEADER, clientId);
+
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        client.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    byte[] body = response.getEntity() != null ? EntityUtils.toByteArray(response.getEntity()) : new byte[0];
+                    future.complete(new Response(response.getStatusLine().getStatusCode(), body));
+                } catch (IOException ex) {
+                    future.completeExceptionally(ex);
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                future.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    private static HttpPost multipart(String url, String filename, byte[] content, String indexRequest) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 1024);
+        write(body, "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n");
+        body.write(content, 0, content.length);
+        if (indexRequest != null) {
+            write(body, "\r\n--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"request\"\r\n\r\n"
+                    + indexRequest);
+        }
+        write(body, "\r\n--" + BOUNDARY + "--\r\n");
+
+        HttpPost request = new HttpPost(url);
+        request.setEntity(new NByteArrayEntity(body.toByteArray(), ContentType.create("multipart/form-data").withParameters(
+                new BasicNameValuePair("boundary", BOUNDARY))));
+        return request;
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+}
@@ -0,0 +1,60 @@
+package net.consensys.tools.ipfs.ipfsstore.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.log4j.Logger;
+
+import net.consensys.tools.ipfs.ipfsstore.emulator.IPFSEmulator;
+
+/**
+ * Dependencies of the service on one offline machine: IPFS emulator and embedded ElasticSearch node (until killed)
+ * <pre>
+ * IPFS_EMULATOR_PORT      : port of the IPFS emulator (default 5001)
+ * IPFS_EMULATOR_LATENCY   : latency (ms) of the IPFS emulator (default 0)
+ * IPFS_EMULATOR_BANDWIDTH : bandwidth (bytes/s) of the IPFS emulator (default 0: unlimited)
+ * ELASTIC_CLUSTERNAME     : name of the cluster (default docker-cluster, as the service)
+ * ELASTIC_PORT            : transport port (default 9300)
+ * ELASTIC_HTTPPORT        : HTTP port (default 9200)
+ * ELASTIC_HOME            : directory of the data (default: temporary directory)
+ * </pre>
+ */
+public class TestEnvironment {
+
+    private static final Logger LOGGER = Logger.getLogger(TestEnvironment.class);
+
+    public static void main(String[] args) throws Exception {
+        IPFSEmulator ipfs = new IPFSEmulator(Integer.parseInt(env("IPFS_EMULATOR_PORT", "5001")))
+                .latency(Long.parseLong(env("IPFS_EMULATOR_LATENCY", "0")))
+                .bandwidth(Long.parseLong(env("IPFS_EMULATOR_BANDWIDTH", "0")))
+                .start();
+
+        String home = System.getenv("ELASTIC_HOME");
+        Path elasticHome = home != null && !home.isEmpty() ? Files.createDirectories(Paths.get(home)) : Files.createTempDirectory("ipfs-store-loadtest");
+        EmbeddedElasticsearch elasticsearch = new EmbeddedElasticsearch(
+                env("ELASTIC_CLUSTERNAME", "docker-cluster"),
+                Integer.parseInt(env("ELASTIC_PORT", "9300")),
+                Integer.parseInt(env("ELASTIC_HTTPPORT", "9200")),
+                elasticHome)
+                .start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                elasticsearch.close();
+            } catch (Exception ex) {
+                LOGGER.warn("Error while stopping ElasticSearch", ex);
+            }
+            ipfs.close();
+        }));
+
+        LOGGER.info("Test environment started: IPFS emulator on port " + ipfs.getPort() + ", ElasticSearch in " + elasticHome
+                + " (start the service with IPFS_HOST=localhost IPFS_PORT=" + ipfs.getPort() + ")");
+        Thread.currentThread().join();
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+}
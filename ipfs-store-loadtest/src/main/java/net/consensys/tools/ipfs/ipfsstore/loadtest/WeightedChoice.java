@@ -0,0 +1,94 @@
+package net.consensys.tools.ipfs.ipfsstore.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Random choice among weighted values, parsed from "value:weight,value:weight..." (a mix of operations, a
+ * distribution of sizes...)
+ *
+ * @param <T> Type of the values
+ */
+public class WeightedChoice<T> {
+
+    private final List<T> values = new ArrayList<>();
+    private final List<Integer> cumulatedWeights = new ArrayList<>();
+    private final int totalWeight;
+
+    public WeightedChoice(Map<T, Integer> weights) {
+        int total = 0;
+        for (Map.Entry<T, Integer> weight : weights.entrySet()) {
+            if (weight.getValue() < 0) {
+                throw new IllegalArgumentException("weight of " + weight.getKey() + " cannot be negative");
+            }
+            if (weight.getValue() > 0) {
+                total += weight.getValue();
+                values.add(weight.getKey());
+                cumulatedWeights.add(total);
+            }
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("weights cannot be null or empty");
+        }
+        this.totalWeight = total;
+    }
+
+    /**
+     * Parse "value:weight,value:weight..."
+     *
+     * @param spec   Values and weights
+     * @param parser Parser of a value
+     * @return Choice
+     */
+    public static <T> WeightedChoice<T> parse(String spec, Function<String, T> parser) {
+        return new WeightedChoice<>(parseMap(spec, parser));
+    }
+
+    /**
+     * Parse "key:number,key:number..." (in order)
+     */
+    static <T> Map<T, Integer> parseMap(String spec, Function<String, T> parser) {
+        Map<T, Integer> map = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected value:number, got [" + entry + "] in [" + spec + "]");
+            }
+            map.put(parser.apply(entry.substring(0, separator).trim()), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        return map;
+    }
+
+    public T pick(Random random) {
+        int point = random.nextInt(totalWeight);
+        for (int i = 0; i < values.size(); i++) {
+            if (point < cumulatedWeights.get(i)) {
+                return values.get(i);
+            }
+        }
+        throw new IllegalStateException("unreachable");
+    }
+
+    public List<T> getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        int previous = 0;
+        for (int i = 0; i < values.size(); i++) {
+            builder.append(i > 0 ? ", " : "").append(values.get(i)).append(": ")
+                    .append((cumulatedWeights.get(i) - previous) * 100 / totalWeight).append("%");
+            previous = cumulatedWeights.get(i);
+        }
+        return builder.toString();
+    }
+}
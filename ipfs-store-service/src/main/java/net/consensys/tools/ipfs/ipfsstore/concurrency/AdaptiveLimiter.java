@@ -0,0 +1,140 @@
+package net.consensys.tools.ipfs.ipfsstore.concurrency;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceUnavailableException;
+
+/**
+ * Adaptive concurrency limiter (AIMD: additive increase, multiplicative decrease)
+ * <p>
+ * The limit is the number of requests allowed in flight. A request arriving while the limit is reached is shed
+ * immediately. Each completed request adjusts the limit:
+ * <ul>
+ * <li>slower than the target latency or rejected downstream (saturated bulkhead): limit * backoff ratio</li>
+ * <li>otherwise, if at least half of the limit was in use: limit + 1</li>
+ * </ul>
+ * The limit converges to the concurrency the dependencies can absorb within the target latency, so the excess load
+ * is refused early instead of queuing until every request times out.
+ */
+public class AdaptiveLimiter {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveLimiter.class);
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatency;
+    private final double backoffRatio;
+    private final long retryAfter;
+
+    private double limit;
+    private int inFlight;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param name          Name (endpoint)
+     * @param initialLimit  Initial limit
+     * @param minLimit      Minimum limit
+     * @param maxLimit      Maximum limit
+     * @param targetLatency Latency (ms) above which a request is considered as a sign of overload
+     * @param backoffRatio  Ratio applied to the limit on overload (between 0 and 1)
+     * @param retryAfter    Delay (in seconds) advised to the clients whose request is shed
+     */
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, long targetLatency, double backoffRatio, long retryAfter) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatency = TimeUnit.MILLISECONDS.toNanos(targetLatency);
+        this.backoffRatio = backoffRatio;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Execute a request if the limit allows it
+     *
+     * @param request Request
+     * @return Future result of the request or a future completed exceptionally with a ServiceUnavailableException if
+     * the request is shed
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> request) {
+        if (!tryAcquire()) {
+            rejected.incrementAndGet();
+            LOGGER.debug("Request shed " + printLimiter());
+
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new ServiceUnavailableException("Service overloaded [" + name + "], retry later", retryAfter));
+            return future;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = request.get();
+
+        } catch (RuntimeException ex) {
+            release();
+            throw ex;
+        }
+
+        future.whenComplete((result, ex) -> release(System.nanoTime() - start, ex != null && isOverload(ex)));
+
+        return future;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Number of requests shed since the start
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    private synchronized void release() {
+        inFlight--;
+    }
+
+    private synchronized void release(long latency, boolean overload) {
+        if (overload || latency > targetLatency) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        inFlight--;
+    }
+
+    private static boolean isOverload(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof ServiceUnavailableException;
+    }
+
+    private String printLimiter() {
+        return "[name: " + name + ", limit: " + getLimit() + ", in-flight: " + getInFlight() + "]";
+    }
+}
@@ -0,0 +1,113 @@
+package net.consensys.tools.ipfs.ipfsstore.concurrency;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * One adaptive concurrency limiter per endpoint and class of request, configured with:
+ * <pre>
+ * limiter.enabled                   : enable the limiters (default true)
+ * limiter.[endpoint].initial-limit  : initial number of requests in flight
+ * limiter.[endpoint].min-limit      : minimum number of requests in flight
+ * limiter.[endpoint].max-limit      : maximum number of requests in flight
+ * limiter.[endpoint].target-latency : latency (ms) above which a request is a sign of overload
+ * limiter.backoff-ratio             : ratio applied to a limit on overload
+ * </pre>
+ * The batch requests of an endpoint have their own limiter ([endpoint].batch, same configuration unless overridden
+ * under limiter.[endpoint].batch), so they can't take the slots of the interactive requests.
+ */
+@Component
+public class AdaptiveLimiters implements PublicMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveLimiters.class);
+
+    private static final String PROPERTY_PREFIX = "limiter.";
+    private static final String METRIC_PREFIX = "limiter.";
+
+    private final Environment environment;
+    private final boolean enabled;
+    private final ConcurrentMap<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdaptiveLimiters(Environment environment) {
+        this.environment = environment;
+        this.enabled = environment.getProperty(PROPERTY_PREFIX + "enabled", Boolean.class, true);
+    }
+
+    /**
+     * Execute a request of an endpoint if the limit of the endpoint allows it
+     *
+     * @param endpoint Endpoint
+     * @param request  Request
+     * @return Future result of the request or a future completed exceptionally with a ServiceUnavailableException if
+     * the request is shed
+     */
+    public <T> CompletableFuture<T> execute(String endpoint, Supplier<CompletableFuture<T>> request) {
+        return execute(endpoint, RequestClass.interactive, request);
+    }
+
+    /**
+     * Execute a request of an endpoint if the limit of the endpoint for the class of the request allows it
+     *
+     * @param endpoint     Endpoint
+     * @param requestClass Class of the request
+     * @param request      Request
+     * @return Future result of the request or a future completed exceptionally with a ServiceUnavailableException if
+     * the request is shed
+     */
+    public <T> CompletableFuture<T> execute(String endpoint, RequestClass requestClass, Supplier<CompletableFuture<T>> request) {
+        if (!enabled) {
+            return request.get();
+        }
+        String name = requestClass == RequestClass.interactive ? endpoint : endpoint + "." + requestClass;
+        return limiters.computeIfAbsent(name, key -> create(endpoint, key)).execute(request);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+
+        for (AdaptiveLimiter limiter : limiters.values()) {
+            String prefix = METRIC_PREFIX + limiter.getName() + ".";
+            metrics.add(new Metric<>(prefix + "limit", limiter.getLimit()));
+            metrics.add(new Metric<>(prefix + "inflight", limiter.getInFlight()));
+            metrics.add(new Metric<>(prefix + "rejected", limiter.getRejected()));
+        }
+
+        return metrics;
+    }
+
+    private AdaptiveLimiter create(String endpoint, String name) {
+        int initialLimit = getProperty(endpoint, name, "initial-limit", Integer.class, 20);
+        int minLimit = getProperty(endpoint, name, "min-limit", Integer.class, 1);
+        int maxLimit = getProperty(endpoint, name, "max-limit", Integer.class, 1000);
+        long targetLatency = getProperty(endpoint, name, "target-latency", Long.class, 5000L);
+        double backoffRatio = environment.getProperty(PROPERTY_PREFIX + "backoff-ratio", Double.class, 0.9);
+        long retryAfter = environment.getProperty("bulkhead.retry-after", Long.class, 1L);
+
+        LOGGER.info("Adaptive limiter [name: " + name + ", initial-limit: " + initialLimit + ", min-limit: " + minLimit
+                + ", max-limit: " + maxLimit + ", target-latency: " + targetLatency + "ms]");
+
+        return new AdaptiveLimiter(name, initialLimit, minLimit, maxLimit, targetLatency, backoffRatio, retryAfter);
+    }
+
+    /**
+     * Property of a limiter (limiter.[name].[key]), defaulting to the property of its endpoint (limiter.[endpoint].[key])
+     */
+    private <T> T getProperty(String endpoint, String name, String key, Class<T> type, T defaultValue) {
+        T value = environment.getProperty(PROPERTY_PREFIX + endpoint + "." + key, type, defaultValue);
+        return environment.getProperty(PROPERTY_PREFIX + name + "." + key, type, value);
+    }
+}
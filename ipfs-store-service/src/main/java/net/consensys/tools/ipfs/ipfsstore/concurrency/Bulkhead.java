@@ -0,0 +1,311 @@
+package net.consensys.tools.ipfs.ipfsstore.concurrency;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+
+import net.consensys.tools.ipfs.ipfsstore.exception.DeadlineExceededException;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceUnavailableException;
+
+/**
+ * A bulkhead runs one type of operation on its own bounded pool of threads (concurrency limit) fed by a bounded queue,
+ * so a slow dependency only saturates the operations using it.
+ * An operation submitted while the queue is full is rejected immediately with a ServiceUnavailableException.
+ * <p>
+ * The queue is ordered by class of request (strict priority, FIFO within a class): the operations of the interactive
+ * requests run before the waiting operations of the batch requests. The batch operations can also occupy at most
+ * batchConcurrency threads (running or queued in the pool), so some threads stay available to the interactive
+ * operations arriving while batch operations run. The other batch operations wait in the bulkhead.
+ * <p>
+ * The operation runs with the context of the request which submitted it (see {@link RequestContext}) and its trace
+ * context (the spans of the operation are children of the span which submitted it). An operation whose request
+ * expired while it was waiting in the queue is skipped, and the future of an operation completes with a
+ * DeadlineExceededException as soon as its request is cancelled.
+ */
+public class Bulkhead {
+
+    private static final Logger LOGGER = Logger.getLogger(Bulkhead.class);
+
+    private static final double WAIT_SMOOTHING = 0.1; // weight of the last operation in the mean wait time
+
+    private final OperationType type;
+    private final int concurrency;
+    private final int queueCapacity;
+    private final int batchConcurrency;
+    private final long retryAfter;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Deque<Task> batchWaiting = new ArrayDeque<>(); // guarded by this
+    private int batchDispatched; // guarded by this
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong maxWait = new AtomicLong();
+    private double meanWait;
+
+    /**
+     * @param type          Type of operation
+     * @param concurrency   Maximum number of operations running at the same time
+     * @param queueCapacity Maximum number of operations waiting
+     * @param retryAfter    Delay (in seconds) advised to the clients whose operation is rejected
+     */
+    public Bulkhead(OperationType type, int concurrency, int queueCapacity, long retryAfter) {
+        this(type, concurrency, queueCapacity, concurrency, retryAfter);
+    }
+
+    /**
+     * @param type             Type of operation
+     * @param concurrency      Maximum number of operations running at the same time
+     * @param queueCapacity    Maximum number of operations waiting
+     * @param batchConcurrency Maximum number of threads occupied by the operations of batch requests
+     * @param retryAfter       Delay (in seconds) advised to the clients whose operation is rejected
+     */
+    public Bulkhead(OperationType type, int concurrency, int queueCapacity, int batchConcurrency, long retryAfter) {
+        this.type = type;
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+        this.batchConcurrency = Math.max(1, Math.min(batchConcurrency, concurrency));
+        this.retryAfter = retryAfter;
+
+        this.executor = new ThreadPoolExecutor(
+                concurrency,
+                concurrency,
+                0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                new CustomizableThreadFactory(type + "-"));
+    }
+
+    /**
+     * Submit an operation
+     *
+     * @param operation Operation
+     * @return Future result, completed exceptionally with the exception thrown by the operation,
+     * a ServiceUnavailableException if the bulkhead is saturated or a DeadlineExceededException if the request expired
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        RequestContext context = RequestContext.current();
+        Context traceContext = Context.current();
+
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            return reject(future);
+        }
+
+        Task task = new Task(context.getRequestClass(), sequence.incrementAndGet(), future, () -> {
+            recordWait(System.nanoTime() - submitted);
+
+            // The client doesn't wait for the result anymore
+            if (context.isExpired() || future.isDone()) {
+                expired.incrementAndGet();
+                future.completeExceptionally(new DeadlineExceededException("Deadline exceeded before the operation started [" + type + "]"));
+                return;
+            }
+
+            try (RequestContext.Scope scope = context.attach(); Scope traceScope = traceContext.makeCurrent()) {
+                future.complete(operation.call());
+            } catch (Exception ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+
+        if (!dispatch(task)) {
+            queued.decrementAndGet();
+            return reject(future);
+        }
+
+        context.onCancel(() -> future.completeExceptionally(new DeadlineExceededException("Deadline exceeded [" + type + "]")));
+
+        return future;
+    }
+
+    public OperationType getType() {
+        return type;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getBatchConcurrency() {
+        return batchConcurrency;
+    }
+
+    /**
+     * @return Number of operations waiting
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return Number of operations of batch requests waiting for a thread available to batch requests
+     */
+    public synchronized int getBatchWaiting() {
+        return batchWaiting.size();
+    }
+
+    /**
+     * @return Number of operations running
+     */
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return Number of operations rejected since the start
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return Number of operations skipped because their request expired while they were waiting
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * @return Moving average of the time spent by the operations in the queue (ms)
+     */
+    public synchronized double getMeanWait() {
+        return meanWait / 1_000_000d;
+    }
+
+    /**
+     * @return Longest time spent by an operation in the queue since the start (ms)
+     */
+    public double getMaxWait() {
+        return maxWait.get() / 1_000_000d;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Hand a task over to the pool, unless it's a batch task and the batch tasks already occupy their share of the
+     * pool: it then waits for a batch task to complete
+     *
+     * @param task Task
+     * @return false if the pool is shut down
+     */
+    private boolean dispatch(Task task) {
+        if (task.requestClass == RequestClass.batch) {
+            synchronized (this) {
+                if (batchDispatched >= batchConcurrency) {
+                    batchWaiting.add(task);
+                    return true;
+                }
+                batchDispatched++;
+            }
+        }
+
+        try {
+            executor.execute(task);
+            return true;
+
+        } catch (RejectedExecutionException ex) {
+            if (task.requestClass == RequestClass.batch) {
+                batchCompleted();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A batch task completed: hand the next waiting batch task over to the pool
+     */
+    private void batchCompleted() {
+        Task next;
+        synchronized (this) {
+            next = batchWaiting.poll();
+            if (next == null) {
+                batchDispatched--;
+                return;
+            }
+        }
+
+        try {
+            executor.execute(next);
+        } catch (RejectedExecutionException ex) {
+            queued.decrementAndGet();
+            reject(next.future);
+            batchCompleted();
+        }
+    }
+
+    private <T> CompletableFuture<T> reject(CompletableFuture<T> future) {
+        rejected.incrementAndGet();
+        LOGGER.warn("Operation rejected, bulkhead saturated " + printBulkhead());
+        future.completeExceptionally(new ServiceUnavailableException("Service saturated [" + type + "], retry later", retryAfter));
+        return future;
+    }
+
+    private synchronized void recordWait(long wait) {
+        meanWait = meanWait + WAIT_SMOOTHING * (wait - meanWait);
+        maxWait.accumulateAndGet(wait, Math::max);
+    }
+
+    private String printBulkhead() {
+        return "[type: " + type + ", concurrency: " + concurrency + ", queue-capacity: " + queueCapacity + "]";
+    }
+
+    /**
+     * Operation queued in the pool, ordered by class of request then submission
+     */
+    private final class Task implements Runnable, Comparable<Task> {
+
+        private final RequestClass requestClass;
+        private final long sequence;
+        private final CompletableFuture<?> future;
+        private final Runnable operation;
+
+        private Task(RequestClass requestClass, long sequence, CompletableFuture<?> future, Runnable operation) {
+            this.requestClass = requestClass;
+            this.sequence = sequence;
+            this.future = future;
+            this.operation = operation;
+        }
+
+        @Override
+        public void run() {
+            queued.decrementAndGet();
+            try {
+                operation.run();
+            } finally {
+                if (requestClass == RequestClass.batch) {
+                    batchCompleted();
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int result = requestClass.compareTo(other.requestClass);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
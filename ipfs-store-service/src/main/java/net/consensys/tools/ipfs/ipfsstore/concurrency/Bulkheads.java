@@ -0,0 +1,104 @@
+package net.consensys.tools.ipfs.ipfsstore.concurrency;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * One bulkhead per type of operation, configured with:
+ * <pre>
+ * bulkhead.[type].concurrency    : maximum number of operations running at the same time
+ * bulkhead.[type].queue-capacity : maximum number of operations waiting
+ * bulkhead.[type].batch-share    : share of the threads the operations of batch requests can occupy (default 0.5)
+ * bulkhead.retry-after           : delay (in seconds) advised to the clients when an operation is rejected
+ * </pre>
+ */
+@Component
+public class Bulkheads implements PublicMetrics, DisposableBean {
+
+    private static final Logger LOGGER = Logger.getLogger(Bulkheads.class);
+
+    private static final String PROPERTY_PREFIX = "bulkhead.";
+    private static final String METRIC_PREFIX = "bulkhead.";
+
+    private final Map<OperationType, Bulkhead> bulkheads = new EnumMap<>(OperationType.class);
+
+    @Autowired
+    public Bulkheads(Environment environment) {
+        long retryAfter = environment.getProperty(PROPERTY_PREFIX + "retry-after", Long.class, 1L);
+
+        for (OperationType type : OperationType.values()) {
+            int concurrency = environment.getProperty(PROPERTY_PREFIX + type + ".concurrency", Integer.class, defaultConcurrency(type));
+            int queueCapacity = environment.getProperty(PROPERTY_PREFIX + type + ".queue-capacity", Integer.class, 1000);
+            double batchShare = environment.getProperty(PROPERTY_PREFIX + type + ".batch-share", Double.class, 0.5);
+            int batchConcurrency = (int) Math.ceil(concurrency * batchShare);
+
+            LOGGER.info("Bulkhead [type: " + type + ", concurrency: " + concurrency + ", queue-capacity: " + queueCapacity
+                    + ", batch-concurrency: " + batchConcurrency + "]");
+
+            bulkheads.put(type, new Bulkhead(type, concurrency, queueCapacity, batchConcurrency, retryAfter));
+        }
+    }
+
+    /**
+     * Submit an operation to the bulkhead of its type
+     *
+     * @param type      Type of operation
+     * @param operation Operation
+     * @return Future result, completed exceptionally with the exception thrown by the operation
+     * or a ServiceUnavailableException if the bulkhead is saturated
+     */
+    public <T> CompletableFuture<T> submit(OperationType type, Callable<T> operation) {
+        return bulkheads.get(type).submit(operation);
+    }
+
+    public Bulkhead get(OperationType type) {
+        return bulkheads.get(type);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            String prefix = METRIC_PREFIX + bulkhead.getType() + ".";
+            metrics.add(new Metric<>(prefix + "queue", bulkhead.getQueueDepth()));
+            metrics.add(new Metric<>(prefix + "active", bulkhead.getActive()));
+            metrics.add(new Metric<>(prefix + "rejected", bulkhead.getRejected()));
+            metrics.add(new Metric<>(prefix + "expired", bulkhead.getExpired()));
+            metrics.add(new Metric<>(prefix + "batch.waiting", bulkhead.getBatchWaiting()));
+            metrics.add(new Metric<>(prefix + "wait.mean", bulkhead.getMeanWait()));
+            metrics.add(new Metric<>(prefix + "wait.max", bulkhead.getMaxWait()));
+        }
+
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        bulkheads.values().forEach(Bulkhead::shutdown);
+    }
+
+    private static int defaultConcurrency(OperationType type) {
+        switch (type) {
+            case cat:
+                return 32;
+            case search:
+                return 16;
+            default:
+                return 8;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package net.consensys.tools.ipfs.ipfsstore.concurrency;
+
+/**
+ * Type of operation run against the storage layer (IPFS) or the index (search engine)
+ * Each type of operation runs in its own bulkhead
+ */
+public enum OperationType {
+    add,
+    cat,
+    pin,
+    index,
+    search
+}
@@ -0,0 +1,11 @@
+package net.consensys.tools.ipfs.ipfsstore.concurrency;
+
+/**
+ * Class of a request, in priority order
+ * The operations of the interactive requests always run before the waiting operations of the batch requests, which
+ * use the remaining capacity.
+ */
+public enum RequestClass {
+    interactive,
+    batch
+}
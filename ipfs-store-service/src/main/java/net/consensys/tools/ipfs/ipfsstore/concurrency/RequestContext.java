@@ -0,0 +1,188 @@
+package net.consensys.tools.ipfs.ipfsstore.concurrency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Context of an HTTP request: class (priority), deadline and cancellation (deadline exceeded or connection error)
+ * <p>
+ * The context is bound to the thread handling the request and carried by the bulkheads to the threads running its
+ * operations, so the service and the DAOs find the context of the request they work for with {@link #current()}
+ * without passing it along every method.
+ */
+public final class RequestContext {
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    private static final RequestContext NONE = new RequestContext(RequestClass.interactive, 0, false);
+
+    private final RequestClass requestClass;
+    private final long deadline; // System.nanoTime()
+    private final boolean hasDeadline;
+
+    private volatile String caller;
+
+    private volatile boolean cancelled;
+    private final List<Runnable> listeners = new ArrayList<>();
+    private ScheduledFuture<?> expiry;
+
+    private RequestContext(RequestClass requestClass, long deadline, boolean hasDeadline) {
+        this.requestClass = requestClass;
+        this.deadline = deadline;
+        this.hasDeadline = hasDeadline;
+    }
+
+    /**
+     * Create a context expiring after a timeout
+     *
+     * @param timeout Timeout (ms)
+     * @return Context
+     */
+    public static RequestContext withTimeout(long timeout) {
+        return withTimeout(RequestClass.interactive, timeout);
+    }
+
+    /**
+     * Create a context expiring after a timeout
+     *
+     * @param requestClass Class of the request
+     * @param timeout      Timeout (ms)
+     * @return Context
+     */
+    public static RequestContext withTimeout(RequestClass requestClass, long timeout) {
+        return new RequestContext(requestClass, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout), true);
+    }
+
+    /**
+     * @return Context bound to the current thread, or a context without deadline
+     */
+    public static RequestContext current() {
+        RequestContext context = CURRENT.get();
+        return context != null ? context : NONE;
+    }
+
+    /**
+     * Bind the context to the current thread until the scope is closed
+     *
+     * @return Scope restoring the previous context when closed
+     */
+    public Scope attach() {
+        RequestContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    public RequestClass getRequestClass() {
+        return requestClass;
+    }
+
+    /**
+     * @return Client ID or address of the client which sent the request, null if unknown
+     */
+    public String getCaller() {
+        return caller;
+    }
+
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    /**
+     * @param unit Time unit
+     * @return Time left before the deadline (0 if exceeded), Long.MAX_VALUE if no deadline
+     */
+    public long remaining(TimeUnit unit) {
+        if (!hasDeadline) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return true if the deadline is exceeded or the request cancelled
+     */
+    public boolean isExpired() {
+        return cancelled || (hasDeadline && System.nanoTime() - deadline >= 0);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancel the request (deadline exceeded or connection error) and notify the listeners
+     */
+    public void cancel() {
+        if (this == NONE) {
+            return;
+        }
+
+        List<Runnable> notified;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            notified = new ArrayList<>(listeners);
+            listeners.clear();
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+        }
+        notified.forEach(Runnable::run);
+    }
+
+    /**
+     * Register a listener called when the request is cancelled (immediately if already cancelled)
+     *
+     * @param listener Listener
+     */
+    public void onCancel(Runnable listener) {
+        if (this == NONE) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Release the context once the request is completed (stop the expiry timer)
+     */
+    public synchronized void close() {
+        listeners.clear();
+        if (expiry != null) {
+            expiry.cancel(false);
+        }
+    }
+
+    synchronized void setExpiry(ScheduledFuture<?> expiry) {
+        this.expiry = expiry;
+    }
+
+    void setCaller(String caller) {
+        this.caller = caller;
+    }
+
+    /**
+     * Scope of a context bound to a thread
+     */
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,124 @@
+package net.consensys.tools.ipfs.ipfsstore.concurrency;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Create the context of the requests, with a deadline and a class configured with:
+ * <pre>
+ * deadline.default       : timeout (ms) of the requests
+ * deadline.[endpoint]    : timeout (ms) of the requests of an endpoint (default: deadline.default)
+ * deadline.header        : request header carrying a shorter timeout (ms) chosen by the client
+ * priority.header        : request header carrying the class of the request (interactive or batch)
+ * priority.client-header : request header carrying the client ID
+ * priority.batch-clients : client IDs whose requests are batch requests (comma separated)
+ * </pre>
+ * A request is interactive unless tagged or identified as batch. A context is cancelled when its deadline is exceeded.
+ */
+@Component
+public class RequestContexts implements DisposableBean {
+
+    private static final Logger LOGGER = Logger.getLogger(RequestContexts.class);
+
+    private static final String PROPERTY_PREFIX = "deadline.";
+
+    private final Environment environment;
+    private final long defaultTimeout;
+    private final String header;
+    private final String classHeader;
+    private final String clientHeader;
+    private final Set<String> batchClients;
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    @Autowired
+    public RequestContexts(Environment environment) {
+        this.environment = environment;
+        this.defaultTimeout = environment.getProperty(PROPERTY_PREFIX + "default", Long.class, 60000L);
+        this.header = environment.getProperty(PROPERTY_PREFIX + "header", "X-Request-Timeout");
+        this.classHeader = environment.getProperty("priority.header", "X-Request-Class");
+        this.clientHeader = environment.getProperty("priority.client-header", "X-Client-Id");
+        this.batchClients = Arrays.stream(environment.getProperty("priority.batch-clients", "").split(","))
+                .map(String::trim)
+                .filter(client -> !client.isEmpty())
+                .collect(Collectors.toSet());
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("deadline-");
+        threadFactory.setDaemon(true);
+        this.timer = new ScheduledThreadPoolExecutor(1, threadFactory);
+        this.timer.setRemoveOnCancelPolicy(true);
+
+        LOGGER.info("Request deadlines [default: " + defaultTimeout + "ms, header: " + header + "]");
+        LOGGER.info("Request classes [header: " + classHeader + ", client-header: " + clientHeader + ", batch-clients: " + batchClients + "]");
+    }
+
+    /**
+     * Create the context of a request
+     *
+     * @param endpoint      Endpoint
+     * @param headers       Headers of the request (name to value, null if absent)
+     * @param remoteAddress Address of the client (caller of the request if it doesn't send its client ID)
+     * @return Context, cancelled when its deadline is exceeded
+     */
+    public RequestContext create(String endpoint, Function<String, String> headers, String remoteAddress) {
+        long timeout = environment.getProperty(PROPERTY_PREFIX + endpoint, Long.class, defaultTimeout);
+
+        // Timeout requested by the client, ignored if invalid or longer than the timeout of the endpoint
+        String requestedTimeout = headers.apply(header);
+        if (requestedTimeout != null) {
+            try {
+                long requested = Long.parseLong(requestedTimeout.trim());
+                if (requested > 0 && requested < timeout) {
+                    timeout = requested;
+                }
+            } catch (NumberFormatException ex) {
+                LOGGER.warn("Invalid " + header + " [" + requestedTimeout + "] - Ignore it!");
+            }
+        }
+
+        RequestContext context = RequestContext.withTimeout(requestClass(headers), timeout);
+        context.setExpiry(timer.schedule(context::cancel, timeout, TimeUnit.MILLISECONDS));
+
+        String client = headers.apply(clientHeader);
+        context.setCaller(client != null ? client.trim() : remoteAddress);
+
+        return context;
+    }
+
+    /**
+     * Class of a request: a batch client can't claim interactive requests
+     */
+    private RequestClass requestClass(Function<String, String> headers) {
+        String client = headers.apply(clientHeader);
+        if (client != null && batchClients.contains(client.trim())) {
+            return RequestClass.batch;
+        }
+
+        String requested = headers.apply(classHeader);
+        if (requested != null) {
+            try {
+                return RequestClass.valueOf(requested.trim().toLowerCase());
+            } catch (IllegalArgumentException ex) {
+                LOGGER.warn("Invalid " + classHeader + " [" + requested + "] - Ignore it!");
+            }
+        }
+
+        return RequestClass.interactive;
+    }
+
+    @Override
+    public void destroy() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,269 @@
+package net.consensys.tools.ipfs.ipfsstore.concurrency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import net.consensys.tools.ipfs.ipfsstore.exception.PayloadTooLargeException;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceUnavailableException;
+
+/**
+ * Budget of bytes of uploaded content held in memory at the same time (store and store_index)
+ * <p>
+ * An upload reserves its size before its content is read into memory and releases it once stored. The reservation is
+ * asynchronous: an upload which doesn't fit in the remaining budget waits in a FIFO queue (no thread blocked) and is
+ * granted by the releases, up to a maximum wait, then is rejected with a ServiceUnavailableException. An upload larger
+ * than the whole budget is rejected immediately with a PayloadTooLargeException. Combined with spooling the multipart
+ * files to disk (spring.http.multipart.file-size-threshold), the heap used by the ingest is bounded by the budget.
+ */
+@Component
+public class UploadBudget implements PublicMetrics, DisposableBean {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadBudget.class);
+
+    private static final String METRIC_PREFIX = "upload.budget.";
+
+    private final long capacity;
+    private final long maxWait;
+    private final long retryAfter;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>(); // guarded by this
+    private long used; // guarded by this
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong tooLarge = new AtomicLong();
+
+    /**
+     * @param capacity   Maximum number of bytes of uploaded content in memory
+     * @param maxWait    Maximum time (ms) an upload waits for budget
+     * @param retryAfter Delay (in seconds) advised to the clients whose upload is rejected
+     */
+    @Autowired
+    public UploadBudget(
+            @Value("${upload.budget:268435456}") long capacity,
+            @Value("${upload.max-wait:5000}") long maxWait,
+            @Value("${bulkhead.retry-after:1}") long retryAfter) {
+
+        this.capacity = capacity;
+        this.maxWait = maxWait;
+        this.retryAfter = retryAfter;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("upload-budget-");
+        threadFactory.setDaemon(true);
+        this.timer = new ScheduledThreadPoolExecutor(1, threadFactory);
+        this.timer.setRemoveOnCancelPolicy(true);
+
+        LOGGER.info("Upload budget [capacity: " + capacity + " bytes, max-wait: " + maxWait + "ms]");
+    }
+
+    /**
+     * Reserve budget for an upload, queued until enough budget is released if necessary
+     * The future is completed by the thread releasing the budget: the caller should not run long operations in its
+     * continuation. Cancelling the future gives up the reservation.
+     *
+     * @param size Size of the upload (bytes)
+     * @return Future bytes reserved, to release once the upload is stored, completed exceptionally with a
+     * ServiceUnavailableException if the budget is still exhausted after the maximum wait or a PayloadTooLargeException
+     * if the upload is larger than the whole budget
+     */
+    public CompletableFuture<Long> acquire(long size) {
+        long bytes = Math.max(size, 0);
+        CompletableFuture<Long> future = new CompletableFuture<>();
+
+        if (bytes > capacity) {
+            tooLarge.incrementAndGet();
+            LOGGER.warn("Upload rejected, larger than the budget [size: " + size + ", capacity: " + capacity + "]");
+            future.completeExceptionally(new PayloadTooLargeException("Upload of " + size + " bytes larger than the upload budget (" + capacity + " bytes)"));
+            return future;
+        }
+
+        Waiter waiter = null;
+        boolean granted = false;
+        synchronized (this) {
+            if (waiters.isEmpty() && used + bytes <= capacity) { // FIFO: no upload overtakes a waiting one
+                used += bytes;
+                granted = true;
+            } else if (maxWait > 0) {
+                waiter = new Waiter(bytes, future);
+                waiters.addLast(waiter);
+            }
+        }
+
+        if (granted) {
+            future.complete(bytes);
+        } else if (waiter == null) {
+            reject(future, size);
+        } else {
+            Waiter queued = waiter;
+            queued.timeout = timer.schedule(() -> expire(queued, size), maxWait, TimeUnit.MILLISECONDS);
+            future.whenComplete((value, ex) -> {
+                if (future.isCancelled()) {
+                    abandon(queued);
+                }
+            });
+        }
+
+        return future;
+    }
+
+    /**
+     * Release budget reserved by an upload, granted to the waiting uploads in order
+     *
+     * @param bytes Bytes reserved
+     */
+    public void release(long bytes) {
+        List<Waiter> granted;
+        synchronized (this) {
+            used -= bytes;
+            granted = grant();
+        }
+        complete(granted);
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Bytes reserved by the uploads in progress
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * @return Number of uploads waiting for budget
+     */
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    /**
+     * @return Number of uploads rejected since the start (budget exhausted after the maximum wait)
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return Number of uploads rejected since the start because larger than the whole budget
+     */
+    public long getTooLarge() {
+        return tooLarge.get();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "capacity", capacity));
+        metrics.add(new Metric<>(METRIC_PREFIX + "used", getUsed()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "waiting", getWaiting()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "rejected", getRejected()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "too-large", getTooLarge()));
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Reserve the budget of the waiting uploads which fit, in order (the first one which doesn't fit blocks the next)
+     *
+     * @return Uploads granted, to complete outside of the lock
+     */
+    private List<Waiter> grant() {
+        List<Waiter> granted = new ArrayList<>();
+        while (!waiters.isEmpty()) {
+            Waiter head = waiters.peekFirst();
+            if (head.future.isDone()) { // cancelled
+                waiters.removeFirst();
+                continue;
+            }
+            if (used + head.bytes > capacity) {
+                break;
+            }
+            waiters.removeFirst();
+            used += head.bytes;
+            granted.add(head);
+        }
+        return granted;
+    }
+
+    private void complete(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            if (waiter.timeout != null) {
+                waiter.timeout.cancel(false);
+            }
+            if (!waiter.future.complete(waiter.bytes)) { // cancelled meanwhile
+                release(waiter.bytes);
+            }
+        }
+    }
+
+    private void expire(Waiter waiter, long size) {
+        List<Waiter> granted;
+        synchronized (this) {
+            if (!waiters.remove(waiter)) {
+                return; // granted or abandoned meanwhile
+            }
+            granted = grant(); // the next uploads may fit
+        }
+        reject(waiter.future, size);
+        complete(granted);
+    }
+
+    private void abandon(Waiter waiter) {
+        if (waiter.timeout != null) {
+            waiter.timeout.cancel(false);
+        }
+        List<Waiter> granted;
+        synchronized (this) {
+            if (!waiters.remove(waiter)) {
+                return;
+            }
+            granted = grant();
+        }
+        complete(granted);
+    }
+
+    private void reject(CompletableFuture<Long> future, long size) {
+        rejected.incrementAndGet();
+        LOGGER.warn("Upload rejected, budget exhausted [size: " + size + ", used: " + getUsed() + ", capacity: " + capacity + "]");
+        future.completeExceptionally(new ServiceUnavailableException("Upload budget exhausted, retry later", retryAfter));
+    }
+
+    /**
+     * Upload waiting for budget
+     */
+    private static final class Waiter {
+
+        private final long bytes;
+        private final CompletableFuture<Long> future;
+        private volatile ScheduledFuture<?> timeout;
+
+        private Waiter(long bytes, CompletableFuture<Long> future) {
+            this.bytes = bytes;
+            this.future = future;
+        }
+    }
+}
@@ -2,34 +2,62 @@ package net.consensys.tools.ipfs.ipfsstore.configuration;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.transport.TransportAddress;
 import org.elasticsearch.transport.client.PreBuiltTransportClient;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 
 /**
- * Configuration for ElasticSearch
+ * Configuration for ElasticSearch (TransportClient)
  *
  * @author Gregoire Jeanmart <gregoire.jeanmart@consensys.net>
  */
 @Configuration
+@ConditionalOnProperty(name = "index.engine", havingValue = "elasticsearch", matchIfMissing = true)
 public class ElasticsearchConfiguration implements FactoryBean<TransportClient>, InitializingBean, DisposableBean {
 
     private static final Logger LOGGER = Logger.getLogger(ElasticsearchConfiguration.class);
 
+    private static final int DEFAULT_TRANSPORT_PORT = 9300;
+
     @Value("${elasticsearch.cluster-nodes}")
     private String clusterNodes;
 
     @Value("${elasticsearch.cluster-name}")
     private String clusterName;
 
+    @Value("${elasticsearch.sniff:false}")
+    private boolean sniff;
+
+    @Value("${elasticsearch.ping-timeout:5s}")
+    private String pingTimeout;
+
+    @Value("${elasticsearch.nodes-sampler-interval:5s}")
+    private String nodesSamplerInterval;
+
+    @Value("${elasticsearch.ping-schedule:-1}")
+    private String pingSchedule;
+
+    @Value("${elasticsearch.connect-timeout:30s}")
+    private String connectTimeout;
+
+    @Value("${elasticsearch.connections-per-node.reg:6}")
+    private int connectionsPerNodeReg;
+
+    @Value("${elasticsearch.connections-per-node.bulk:3}")
+    private int connectionsPerNodeBulk;
+
     private TransportClient transportClient;
     private PreBuiltTransportClient preBuiltTransportClient;
 
@@ -68,23 +96,70 @@ public class ElasticsearchConfiguration implements FactoryBean<TransportClient>,
 
     /**
      * Generate a TransportClient object that can be used to access the ElasticSearch Java native API
+     * The client is seeded with all the nodes of the list (comma-separated host:port) and, if sniffing is enabled,
+     * discovers the other data nodes of the cluster. Requests are spread in round-robin over the connected nodes.
      */
     protected void buildClient() {
-        LOGGER.info("Connecting to ElasticSearch [clusterNodes: " + clusterNodes + "]");
+        LOGGER.info("Connecting to ElasticSearch [clusterNodes: " + clusterNodes + ", sniff: " + sniff + "]");
 
-        try {
-            preBuiltTransportClient = new PreBuiltTransportClient(settings());
+        List<TransportAddress> addresses = parseClusterNodes(clusterNodes);
+
+        preBuiltTransportClient = new PreBuiltTransportClient(settings());
+        transportClient = preBuiltTransportClient.addTransportAddresses(addresses.toArray(new TransportAddress[0]));
+
+        LOGGER.info("Connected to ElasticSearch [clusterNodes: " + clusterNodes + "] : " + transportClient.connectedNodes());
+    }
+
+    /**
+     * Parse a comma-separated list of nodes (host:port, default port 9300)
+     * A node whose host can't be resolved is skipped so the client can start with the remaining ones
+     *
+     * @param clusterNodes List of nodes
+     * @return Transport addresses (at least one)
+     * @throws IllegalArgumentException if a node is malformed (not host or host:port) or if no node can be resolved
+     */
+    public static List<TransportAddress> parseClusterNodes(String clusterNodes) {
+        List<TransportAddress> addresses = new ArrayList<>();
+
+        for (String node : clusterNodes.split(",")) {
+            node = node.trim();
+            if (node.isEmpty()) {
+                continue;
+            }
+
+            String[] inetSocket = node.split(":");
+            String address = inetSocket[0].trim();
+            int port = inetSocket.length > 1 ? parsePort(node, inetSocket[1]) : DEFAULT_TRANSPORT_PORT;
+
+            // Validation
+            if (inetSocket.length > 2 || address.isEmpty()) {
+                throw new IllegalArgumentException("Invalid ElasticSearch node [node: " + node + "] in elasticsearch.cluster-nodes (expected host or host:port)");
+            }
 
-            String[] inetSocket = clusterNodes.split(":");
-            String address = inetSocket[0];
-            Integer port = Integer.valueOf(inetSocket[1]);
-            transportClient = preBuiltTransportClient.addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(address), port));
+            try {
+                addresses.add(new InetSocketTransportAddress(InetAddress.getByName(address), port));
 
-            LOGGER.info("Connected to ElasticSearch [clusterNodes: " + clusterNodes + "] : " + transportClient.listedNodes());
+            } catch (UnknownHostException e) {
+                LOGGER.error("Error while resolving ElasticSearch node [node: " + node + "] - Ignore it!", e);
+            }
+        }
 
-        } catch (UnknownHostException e) {
-            LOGGER.error("Error while connecting to ElasticSearch [clusterNodes: " + clusterNodes + "]", e);
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("No valid ElasticSearch node [clusterNodes: " + clusterNodes + "] in elasticsearch.cluster-nodes");
+        }
+        return addresses;
+    }
+
+    private static int parsePort(String node, String port) {
+        try {
+            int value = Integer.parseInt(port.trim());
+            if (value > 0 && value <= 65535) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // invalid below
         }
+        throw new IllegalArgumentException("Invalid port of ElasticSearch node [node: " + node + "] in elasticsearch.cluster-nodes (expected host or host:port)");
     }
 
     /**
@@ -95,7 +170,13 @@ public class ElasticsearchConfiguration implements FactoryBean<TransportClient>,
     private Settings settings() {
         return Settings.builder()
                 .put("cluster.name", clusterName)
-                //TODO more settings
+                .put("client.transport.sniff", sniff)
+                .put("client.transport.ping_timeout", pingTimeout)
+                .put("client.transport.nodes_sampler_interval", nodesSamplerInterval)
+                .put("transport.ping_schedule", pingSchedule)
+                .put("transport.tcp.connect_timeout", connectTimeout)
+                .put("transport.connections_per_node.reg", connectionsPerNodeReg)
+                .put("transport.connections_per_node.bulk", connectionsPerNodeBulk)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package net.consensys.tools.ipfs.ipfsstore.configuration;
+
+import java.util.Arrays;
+
+import org.apache.http.HttpHost;
+import org.apache.log4j.Logger;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for ElasticSearch (asynchronous REST client over a pool of HTTP connections)
+ */
+@Configuration
+@ConditionalOnProperty(name = "index.engine", havingValue = "elasticsearch-rest")
+public class ElasticsearchRestConfiguration {
+
+    private static final Logger LOGGER = Logger.getLogger(ElasticsearchRestConfiguration.class);
+
+    @Value("${elasticsearch.rest.nodes}")
+    private String restNodes;
+
+    @Value("${elasticsearch.rest.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${elasticsearch.rest.max-connections-per-node:30}")
+    private int maxConnectionsPerNode;
+
+    @Value("${elasticsearch.rest.connect-timeout:1000}")
+    private int connectTimeout;
+
+    @Value("${elasticsearch.rest.socket-timeout:30000}")
+    private int socketTimeout;
+
+    @Bean(destroyMethod = "close")
+    public RestClient restClient() {
+        LOGGER.info("Connecting to ElasticSearch " + printRestClient());
+
+        HttpHost[] hosts = Arrays.stream(restNodes.split(","))
+                .map(String::trim)
+                .filter(node -> !node.isEmpty())
+                .map(HttpHost::create)
+                .toArray(HttpHost[]::new);
+
+        return RestClient.builder(hosts)
+                .setRequestConfigCallback(config -> config
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(socketTimeout))
+                .setMaxRetryTimeoutMillis(socketTimeout)
+                .setHttpClientConfigCallback(httpClient -> httpClient
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnectionsPerNode))
+                .build();
+    }
+
+    @Bean
+    public RestHighLevelClient restHighLevelClient(RestClient restClient) {
+        return new RestHighLevelClient(restClient);
+    }
+
+    private String printRestClient() {
+        return "[nodes: " + restNodes + ", max-connections: " + maxConnections + ", max-connections-per-node: " + maxConnectionsPerNode + "]";
+    }
+}
@@ -0,0 +1,91 @@
+package net.consensys.tools.ipfs.ipfsstore.configuration;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
+
+/**
+ * Configuration for the tracing (OpenTelemetry)
+ * <pre>
+ * tracing.exporter      : none (spans not recorded), logging (spans logged) or otlp (spans sent to a collector)
+ * tracing.otlp.endpoint : OTLP/gRPC endpoint of the collector
+ * tracing.sample-ratio  : ratio of the traces recorded (the decision of the caller is followed if it sends a traceparent)
+ * </pre>
+ */
+@Configuration
+public class TracingConfiguration {
+
+    private static final Logger LOGGER = Logger.getLogger(TracingConfiguration.class);
+
+    private static final String EXPORTER_NONE = "none";
+    private static final String EXPORTER_LOGGING = "logging";
+    private static final String EXPORTER_OTLP = "otlp";
+
+    @Value("${tracing.exporter:none}")
+    private String exporter;
+
+    @Value("${tracing.otlp.endpoint:http://localhost:4317}")
+    private String otlpEndpoint;
+
+    @Value("${tracing.sample-ratio:1.0}")
+    private double sampleRatio;
+
+    @Value("${tracing.service-name:ipfs-store}")
+    private String serviceName;
+
+    @Bean // the SDK is closed (remaining spans exported) with the context
+    public OpenTelemetry openTelemetry() {
+
+        OpenTelemetry openTelemetry;
+        if (EXPORTER_NONE.equalsIgnoreCase(exporter)) {
+            openTelemetry = OpenTelemetry.propagating(ContextPropagators.create(W3CTraceContextPropagator.getInstance())); // no span recorded
+
+        } else {
+            Resource resource = Resource.getDefault().merge(Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), serviceName)));
+
+            SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                    .setResource(resource)
+                    .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(sampleRatio)))
+                    .addSpanProcessor(BatchSpanProcessor.builder(spanExporter()).build())
+                    .build();
+
+            openTelemetry = OpenTelemetrySdk.builder()
+                    .setTracerProvider(tracerProvider)
+                    .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                    .build();
+        }
+
+        LOGGER.info("Tracing [exporter: " + exporter + (EXPORTER_OTLP.equalsIgnoreCase(exporter) ? ", endpoint: " + otlpEndpoint : "") + ", sample-ratio: " + sampleRatio + "]");
+
+        Tracing.install(openTelemetry);
+
+        return openTelemetry;
+    }
+
+    private SpanExporter spanExporter() {
+        switch (exporter.toLowerCase()) {
+            case EXPORTER_LOGGING:
+                return LoggingSpanExporter.create();
+            case EXPORTER_OTLP:
+                return OtlpGrpcSpanExporter.builder().setEndpoint(otlpEndpoint).build();
+            default:
+                throw new IllegalArgumentException("tracing.exporter [" + exporter + "] not supported (none, logging or otlp)");
+        }
+    }
+}
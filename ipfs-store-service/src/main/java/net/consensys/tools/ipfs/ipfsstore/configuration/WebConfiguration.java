@@ -0,0 +1,19 @@
+package net.consensys.tools.ipfs.ipfsstore.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import net.consensys.tools.ipfs.ipfsstore.endpoint.RequestContextInterceptor;
+
+/**
+ * Configuration for Spring MVC
+ */
+@Configuration
+public class WebConfiguration extends WebMvcConfigurerAdapter {
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerDeferredResultInterceptors(new RequestContextInterceptor());
+    }
+}
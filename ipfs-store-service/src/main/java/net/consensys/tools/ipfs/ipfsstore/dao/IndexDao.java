@@ -1,14 +1,22 @@
 package net.consensys.tools.ipfs.ipfsstore.dao;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
 import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
 import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
 import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
 
 
 /**
@@ -37,6 +45,42 @@ public interface IndexDao {
      */
     String index(String indexName, String documentId, String hash, String contentType, List<IndexField> indexFields) throws DaoException;
 
+    /**
+     * Index a batch of documents (same as index() for each document: an existing document is updated)
+     * (default implementation: one request per document)
+     *
+     * @param indexName Name of the index
+     * @param documents Documents (ID, hash, content type and index fields), the index name of a document being the name
+     *                  it is read by (e.g. an alias of the index, ElasticSearch type)
+     * @return Error of each document not indexed by document ID (empty if all the documents are indexed)
+     * @throws DaoException if the batch failed as a whole
+     */
+    default Map<String, String> index(String indexName, List<Metadata> documents) throws DaoException {
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (Metadata document : documents) {
+            try {
+                index(indexName, document.getDocumentId(), document.getHash(), document.getContentType(), document.getIndexFields());
+            } catch (DaoException ex) {
+                failures.put(document.getDocumentId(), ex.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Update some index fields of a document (partial update: the other fields are kept)
+     *
+     * @param indexName   Name of the index
+     * @param id          Document Identifier
+     * @param indexFields Fields to add or replace
+     * @param version     Expected current version of the document (optimistic concurrency control, null: any version)
+     * @return File Metadata once updated, with its new version
+     * @throws DaoException
+     * @throws NotFoundException        if the document doesn't exist
+     * @throws VersionConflictException if the current version of the document isn't the expected version
+     */
+    Metadata update(String indexName, String id, List<IndexField> indexFields, Long version) throws DaoException, NotFoundException, VersionConflictException;
+
     /**
      * Search content by its unique identifier
      *
@@ -58,6 +102,18 @@ public interface IndexDao {
      */
     List<Metadata> search(Pageable pageable, String indexName, Query query) throws DaoException;
 
+    /**
+     * Search content in the index (indexName) based on a query and compute the query aggregations (facets)
+     * in the same request
+     *
+     * @param pageable  Pagination and Sorting
+     * @param indexName Name of the index
+     * @param query     Search query (filters and aggregations)
+     * @return A page of File Metadata along with the aggregation results
+     * @throws DaoException
+     */
+    AggregatedPage<Metadata> searchAndAggregate(Pageable pageable, String indexName, Query query) throws DaoException;
+
     /**
      * Count content in the index (indexName) based on a query
      *
@@ -68,6 +124,16 @@ public interface IndexDao {
      */
     long count(String indexName, Query query) throws DaoException;
 
+    /**
+     * Count the documents matching a query in all the indices (e.g. the documents referring to a content, which can be
+     * shared by several indices)
+     *
+     * @param query Query
+     * @return Number of documents
+     * @throws DaoException
+     */
+    long countAll(Query query) throws DaoException;
+
     /**
      * Create an index
      *
@@ -76,4 +142,155 @@ public interface IndexDao {
      */
     void createIndex(String indexName) throws DaoException;
 
+    /**
+     * @param name Name of an index or alias
+     * @return true if an index has this name (false for an alias or an unknown name)
+     * @throws DaoException
+     */
+    boolean isIndex(String name) throws DaoException;
+
+    /**
+     * Delete a document
+     *
+     * @param indexName Name of the index
+     * @param id        Document Identifier
+     * @throws DaoException
+     * @throws NotFoundException if the document doesn't exist
+     */
+    void delete(String indexName, String id) throws DaoException, NotFoundException;
+
+    /**
+     * Delete a batch of documents in a single request, the deletions are visible to the searches once it returns
+     *
+     * @param indexName Name of the index
+     * @param ids       Document Identifiers (the unknown ones are ignored)
+     * @return Number of documents deleted
+     * @throws DaoException
+     */
+    long delete(String indexName, List<String> ids) throws DaoException;
+
+    /**
+     * Point an alias to an index, atomically removed from the indices it pointed to: the reads and writes on the alias
+     * go to the index
+     *
+     * @param alias     Alias
+     * @param indexName Name of the index
+     * @throws DaoException if the index doesn't exist or the alias is the name of an index
+     */
+    void alias(String alias, String indexName) throws DaoException;
+
+    /**
+     * Read all the documents of an index, batch after batch
+     * (default implementation: paginated searches, a document written during the scan can be missed or read twice)
+     *
+     * @param indexName Name of the index
+     * @param batchSize Number of documents read per batch
+     * @param consumer  Consumer of each batch of documents
+     * @return Number of documents read
+     * @throws DaoException
+     */
+    default long scroll(String indexName, int batchSize, Consumer<List<Metadata>> consumer) throws DaoException {
+        long read = 0;
+        for (int page = 0; ; page++) {
+            List<Metadata> documents = search(new PageRequest(page, batchSize), indexName, null);
+            if (documents.isEmpty()) {
+                return read;
+            }
+            consumer.accept(documents);
+            read += documents.size();
+            if (documents.size() < batchSize) {
+                return read;
+            }
+        }
+    }
+
+    /**
+     * Read the content hashes of all the documents of an index, batch after batch
+     * (default implementation: scroll() of the documents)
+     *
+     * @param indexName Name of the index
+     * @param batchSize Number of documents read per batch
+     * @param consumer  Consumer of each batch of hashes
+     * @return Number of documents read
+     * @throws DaoException
+     */
+    default long scrollHashes(String indexName, int batchSize, Consumer<List<String>> consumer) throws DaoException {
+        return scroll(indexName, batchSize,
+                documents -> consumer.accept(documents.stream().map(Metadata::getHash).filter(hash -> hash != null).collect(Collectors.toList())));
+    }
+
+    /**
+     * Search content by its unique identifier without blocking the caller
+     * (default implementation: blocking call returning a completed future)
+     *
+     * @param indexName Name of the index
+     * @param id        Document Identifier
+     * @return Future File Metadata, completed exceptionally with a DaoException or a NotFoundException
+     */
+    default CompletableFuture<Metadata> searchByIdAsync(String indexName, String id) {
+        CompletableFuture<Metadata> future = new CompletableFuture<>();
+        try {
+            future.complete(searchById(indexName, id));
+        } catch (DaoException | NotFoundException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Search content in the index (indexName) based on a query without blocking the caller
+     * (default implementation: blocking call returning a completed future)
+     *
+     * @param pageable  Pagination and Sorting
+     * @param indexName Name of the index
+     * @param query     Search query
+     * @return Future list of File Metadata, completed exceptionally with a DaoException
+     */
+    default CompletableFuture<List<Metadata>> searchAsync(Pageable pageable, String indexName, Query query) {
+        CompletableFuture<List<Metadata>> future = new CompletableFuture<>();
+        try {
+            future.complete(search(pageable, indexName, query));
+        } catch (DaoException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Search content and compute the query aggregations without blocking the caller
+     * (default implementation: blocking call returning a completed future)
+     *
+     * @param pageable  Pagination and Sorting
+     * @param indexName Name of the index
+     * @param query     Search query (filters and aggregations)
+     * @return Future page of File Metadata along with the aggregation results, completed exceptionally with a DaoException
+     */
+    default CompletableFuture<AggregatedPage<Metadata>> searchAndAggregateAsync(Pageable pageable, String indexName, Query query) {
+        CompletableFuture<AggregatedPage<Metadata>> future = new CompletableFuture<>();
+        try {
+            future.complete(searchAndAggregate(pageable, indexName, query));
+        } catch (DaoException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Count content in the index (indexName) based on a query without blocking the caller
+     * (default implementation: blocking call returning a completed future)
+     *
+     * @param indexName Name of the index
+     * @param query     Search query
+     * @return Future total count of the search, completed exceptionally with a DaoException
+     */
+    default CompletableFuture<Long> countAsync(String indexName, Query query) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        try {
+            future.complete(count(indexName, query));
+        } catch (DaoException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
 }
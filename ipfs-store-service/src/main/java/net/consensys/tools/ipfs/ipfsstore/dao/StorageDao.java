@@ -1,5 +1,7 @@
 package net.consensys.tools.ipfs.ipfsstore.dao;
 
+import java.util.Set;
+
 import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
 
 /**
@@ -42,4 +44,19 @@ public interface StorageDao {
      * @throws DaoException
      */
     void unpin(String hash) throws DaoException;
+
+    /**
+     * List the files pinned in the filesystem (pinned directly by the store, the files they contain are not listed)
+     *
+     * @return Unique identifiers of the pinned files
+     * @throws DaoException
+     */
+    Set<String> listPins() throws DaoException;
+
+    /**
+     * Garbage collect the files of the filesystem which are not pinned
+     *
+     * @throws DaoException
+     */
+    void gc() throws DaoException;
 }
@@ -0,0 +1,515 @@
+package net.consensys.tools.ipfs.ipfsstore.dao.impl;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+import org.springframework.beans.factory.annotation.Value;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationBucket;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationResult;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Aggregation;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationType;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.SlowQueryLog;
+import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Base of the ElasticSearch implementations of IndexDao (conversions between IPFS-Store and ElasticSearch objects)
+ * whatever the client used to reach the cluster
+ */
+public abstract class AbstractElasticSearchIndexDao implements IndexDao {
+
+    private static final Logger LOGGER = Logger.getLogger(AbstractElasticSearchIndexDao.class);
+    private static final String NULL = "null"; //must be lower case
+
+    protected static final String ERROR_NOT_NULL_OR_EMPTY = "cannot be null or empty";
+
+    private static final int DEFAULT_TERMS_SIZE = 10;
+    private static final String DEFAULT_DATE_HISTOGRAM_INTERVAL = "1d";
+
+    protected static final String ALL_INDICES = "_all";
+    protected static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+    protected static final int RETRY_ON_CONFLICT = 3;
+
+    private final ObjectMapper mapper;
+    private final SlowQueryLog slowQueryLog;
+
+    @Value("${parameters.indexNullValue}")
+    private boolean indexNullValue;
+
+    /*
+     * Constructor
+     */
+    protected AbstractElasticSearchIndexDao(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+        mapper = new ObjectMapper();
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        mapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
+                .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
+                .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
+                .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
+                .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+    }
+
+    /**
+     * Convert a list of IndexField (key/value) to a Map
+     *
+     * @param indexFields List of IndexField
+     * @return Map
+     */
+    protected Map<String, Object> convert(List<IndexField> indexFields) {
+        if (indexFields == null) {
+            return null;
+        }
+
+        return indexFields
+                .stream()
+                .collect(Collectors.toMap(
+                        field -> field.getName(),
+                        field -> handleNullValue(field.getValue())
+                ));
+    }
+
+    /**
+     * Convert a document to an ElasticSearch source (hash, content type and index fields)
+     *
+     * @param document Document
+     * @return Source
+     */
+    protected Map<String, Object> source(Metadata document) {
+        Map<String, Object> source = new HashMap<>();
+        source.put(IndexDao.HASH_INDEX_KEY, document.getHash());
+        source.put(IndexDao.CONTENT_TYPE_INDEX_KEY, document.getContentType());
+        if (document.getIndexFields() != null) {
+            source.putAll(convert(document.getIndexFields()));
+        }
+        return source;
+    }
+
+    /**
+     * ElasticSearch type of a document written in bulk: the name it is read by (see IndexDao.index(String, List))
+     *
+     * @param indexName Name of the index
+     * @param document  Document
+     * @return Type
+     */
+    protected static String type(String indexName, Metadata document) {
+        return (Strings.isEmpty(document.getIndexName()) ? indexName : document.getIndexName()).toLowerCase();
+    }
+
+    /**
+     * Replace null or empty string value by NULL to add it in the index (E.S. doesn't index null value)
+     *
+     * @param value Value
+     * @return Value replaced by NULL if null or empty
+     */
+    private Object handleNullValue(Object value) {
+        if (indexNullValue && (value == null || (value instanceof String && ((String) value).length() == 0))) {
+            return NULL;
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * Convert a ElasticSearch result to a Metadata
+     *
+     * @param index     Index
+     * @param id        ID
+     * @param sourceMap Map of attributes
+     * @return Metadata
+     */
+    protected static Metadata convert(String index, String id, Map<String, Object> sourceMap) {
+        return convert(index, id, -1, sourceMap);
+    }
+
+    /**
+     * Convert a ElasticSearch result to a Metadata
+     *
+     * @param index     Index
+     * @param id        ID
+     * @param version   Version of the document (negative if unknown)
+     * @param sourceMap Map of attributes
+     * @return Metadata
+     */
+    protected static Metadata convert(String index, String id, long version, Map<String, Object> sourceMap) {
+        String hash = null;
+        String contentType = null;
+
+        if (sourceMap != null) {
+
+            // Extract special key __hash
+            if (sourceMap.containsKey(HASH_INDEX_KEY) && sourceMap.get(HASH_INDEX_KEY) != null) {
+                hash = sourceMap.get(HASH_INDEX_KEY).toString();
+            }
+            // Extract special key __content_type
+            if (sourceMap.containsKey(CONTENT_TYPE_INDEX_KEY) && sourceMap.get(CONTENT_TYPE_INDEX_KEY) != null) {
+                contentType = sourceMap.get(CONTENT_TYPE_INDEX_KEY).toString();
+            }
+        }
+
+        return new Metadata(
+                index,
+                id,
+                hash,
+                contentType,
+                convert(sourceMap),
+                version >= 0 ? version : null);
+    }
+
+    /**
+     * Convert a Map to a list of IndexField (key/value)
+     *
+     * @param indexFields Map
+     * @return List of IndexField
+     */
+    private static List<IndexField> convert(Map<String, Object> indexFields) {
+        if (indexFields == null) {
+            return Collections.emptyList();
+        }
+
+        return indexFields.entrySet().stream()
+                .map(field -> new IndexField(field.getKey(), field.getValue()))
+                .collect(Collectors.toList()
+                );
+    }
+
+    /**
+     * Convert ElasticSearch search hits to a list of Metadata
+     *
+     * @param hits Search hits
+     * @return List of Metadata
+     */
+    protected static List<Metadata> convert(SearchHits hits) {
+        return Arrays.stream(hits.getHits())
+                .map(hit -> convert(hit.getIndex(), hit.getId(), hit.getVersion(), hit.getSourceAsMap()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Extract the content hashes of ElasticSearch search hits (the hits without hash are skipped)
+     *
+     * @param hits Search hits
+     * @return List of hashes
+     */
+    protected static List<String> hashes(SearchHits hits) {
+        return Arrays.stream(hits.getHits())
+                .map(hit -> hit.getSourceAsMap() != null ? hit.getSourceAsMap().get(HASH_INDEX_KEY) : null)
+                .filter(Objects::nonNull)
+                .map(Object::toString)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Convert ElasticSearch aggregation results to a map of AggregationResult (by aggregation name)
+     *
+     * @param aggregations ElasticSearch aggregation results
+     * @return Map of AggregationResult
+     */
+    protected static Map<String, AggregationResult> convert(Aggregations aggregations) {
+        Map<String, AggregationResult> result = new LinkedHashMap<>();
+
+        if (aggregations == null) {
+            return result;
+        }
+
+        for (org.elasticsearch.search.aggregations.Aggregation aggregation : aggregations) {
+            if (aggregation instanceof Cardinality) {
+                result.put(aggregation.getName(), new AggregationResult(AggregationType.cardinality, ((Cardinality) aggregation).getValue(), null));
+
+            } else if (aggregation instanceof Range) {
+                List<AggregationBucket> buckets = ((Range) aggregation).getBuckets().stream()
+                        .map(b -> new AggregationBucket(b.getKeyAsString(), convertBoundary(b.getFrom()), convertBoundary(b.getTo()), b.getDocCount()))
+                        .collect(Collectors.toList());
+                result.put(aggregation.getName(), new AggregationResult(AggregationType.range, null, buckets));
+
+            } else if (aggregation instanceof MultiBucketsAggregation) {
+                AggregationType type = aggregation.getType().startsWith("date_histogram") ? AggregationType.date_histogram : AggregationType.terms;
+                List<AggregationBucket> buckets = ((MultiBucketsAggregation) aggregation).getBuckets().stream()
+                        .map(b -> new AggregationBucket(b.getKeyAsString(), b.getDocCount()))
+                        .collect(Collectors.toList());
+                result.put(aggregation.getName(), new AggregationResult(type, null, buckets));
+
+            } else {
+                LOGGER.warn("Aggregation [" + aggregation.getName() + "] of type [" + aggregation.getType() + "] not supported - Ignore it!");
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Convert a range boundary (infinite means unbounded)
+     *
+     * @param boundary Range boundary
+     * @return Boundary or null if unbounded
+     */
+    private static Double convertBoundary(Object boundary) {
+        if (!(boundary instanceof Number) || Double.isInfinite(((Number) boundary).doubleValue())) {
+            return null;
+        }
+        return ((Number) boundary).doubleValue();
+    }
+
+    /**
+     * Convert a IPFS-Store Aggregation to a ElasticSearch aggregation
+     *
+     * @param aggregation IPFS-Store Aggregation
+     * @return ElasticSearch aggregation or null if the aggregation is invalid
+     */
+    protected AggregationBuilder convertAggregation(Aggregation aggregation) {
+        LOGGER.trace("Converting aggregation: " + aggregation);
+
+        if (aggregation.getType() == null || Strings.isEmpty(aggregation.getName()) || Strings.isEmpty(aggregation.getField())) {
+            LOGGER.warn("Aggregation [" + aggregation + "] requires a name, a type and a field - Ignore it!");
+            return null;
+        }
+
+        switch (aggregation.getType()) {
+            case terms:
+                return AggregationBuilders.terms(aggregation.getName())
+                        .field(aggregation.getField())
+                        .size(aggregation.getSize() != null ? aggregation.getSize() : DEFAULT_TERMS_SIZE);
+            case range:
+                RangeAggregationBuilder range = AggregationBuilders.range(aggregation.getName()).field(aggregation.getField());
+                if (aggregation.getRanges() != null) {
+                    aggregation.getRanges().forEach(r -> range.addRange(
+                            r.getKey(),
+                            r.getFrom() != null ? r.getFrom() : Double.NEGATIVE_INFINITY,
+                            r.getTo() != null ? r.getTo() : Double.POSITIVE_INFINITY));
+                }
+                return range;
+            case date_histogram:
+                return AggregationBuilders.dateHistogram(aggregation.getName())
+                        .field(aggregation.getField())
+                        .dateHistogramInterval(new DateHistogramInterval(aggregation.getInterval() != null ? aggregation.getInterval() : DEFAULT_DATE_HISTOGRAM_INTERVAL));
+            case cardinality:
+                return AggregationBuilders.cardinality(aggregation.getName()).field(aggregation.getField());
+            default:
+                LOGGER.warn("Aggregation type [" + aggregation.getType() + "] not supported for aggregation [" + aggregation + "] - Ignore it!");
+                return null;
+        }
+    }
+
+    /**
+     * Convert a IPFS-Store Query to a ElasticSearch query
+     *
+     * @param query IPFS-Store Query
+     * @return ElasticSearch query
+     */
+    protected QueryBuilder convertQuery(Query query) {
+        LOGGER.trace("Converting query: " + query);
+
+        BoolQueryBuilder elasticSearchQuery = QueryBuilders.boolQuery();
+
+        if (query == null || query.getFilterClauses().isEmpty()) {
+            return QueryBuilders.matchAllQuery();
+        }
+
+        query.getFilterClauses().forEach(f -> {
+
+            Object value = handleNullValue(f.getValue());
+
+            try {
+
+                switch (f.getOperation()) {
+                    case full_text:
+                        elasticSearchQuery.must(QueryBuilders.multiMatchQuery(value, f.getNames()).lenient(true));
+                        break;
+                    case equals:
+                        elasticSearchQuery.must(QueryBuilders.termQuery(f.getName(), value));
+                        break;
+                    case not_equals:
+                        elasticSearchQuery.mustNot(QueryBuilders.termQuery(f.getName(), value));
+                        break;
+                    case contains:
+                        elasticSearchQuery.must(QueryBuilders.matchQuery(f.getName(), value));
+                        break;
+                    case in:
+                        elasticSearchQuery.filter(QueryBuilders.termsQuery(
+                                f.getName(),
+                                asList((Object[]) value).stream().map(o -> o.toString().toLowerCase()).collect(Collectors.toList())));
+                        break;
+                    case lt:
+                        elasticSearchQuery.must(QueryBuilders.rangeQuery(f.getName()).lt(value));
+                        break;
+                    case lte:
+                        elasticSearchQuery.must(QueryBuilders.rangeQuery(f.getName()).lte(value));
+                        break;
+                    case gt:
+                        elasticSearchQuery.must(QueryBuilders.rangeQuery(f.getName()).gt(value));
+                        break;
+                    case gte:
+                        elasticSearchQuery.must(QueryBuilders.rangeQuery(f.getName()).gte(value));
+                        break;
+                    default:
+                        LOGGER.warn("Operation [" + f.getOperation() + "] not supported for  filter [" + f + "]- Ignore it!");
+                        break;
+                }
+
+            } catch (Exception e) {
+                LOGGER.warn("Error while converting filter [" + f + "] - Ignore it!", e);
+            }
+        });
+
+        LOGGER.debug(elasticSearchQuery.toString());
+
+        return elasticSearchQuery;
+    }
+
+    /**
+     * Convert an object to a JSON String
+     *
+     * @param object Object to convert to a JSON
+     * @return JSON representation of the object
+     */
+    protected String convertObjectToJsonString(Object object) {
+        try {
+            return mapper.writeValueAsString(object);
+        } catch (JsonProcessingException ex) {
+            LOGGER.error("Exception occur:{}", ex);
+        }
+        return null;
+    }
+
+    /**
+     * Time left before the deadline of the current request (see RequestContext) to bound an ElasticSearch request
+     *
+     * @return Time left (at least 1ms), null if the request has no deadline
+     */
+    protected static TimeValue timeLeft() {
+        RequestContext context = RequestContext.current();
+        if (!context.hasDeadline()) {
+            return null;
+        }
+        return TimeValue.timeValueMillis(Math.max(1, context.remaining(TimeUnit.MILLISECONDS)));
+    }
+
+    /**
+     * Record a search in the slow query log (logged if slow)
+     *
+     * @param operation Operation (search, count...)
+     * @param indexName Index name
+     * @param query     Query
+     * @param response  Search response
+     * @param context   Context of the request which sent the search
+     */
+    protected void recordSearch(String operation, String indexName, Query query, SearchResponse response, RequestContext context) {
+        if (response.getTook() == null) {
+            return;
+        }
+        slowQueryLog.record(operation, indexName, query, response.getTook().millis(),
+                response.getTotalShards(), response.getSuccessfulShards(), response.getFailedShards(), context.getCaller());
+    }
+
+    /**
+     * Record a search which timed out before any response in the slow query log (no shard searched successfully)
+     *
+     * @param operation Operation (search, count...)
+     * @param indexName Index name
+     * @param query     Query
+     * @param waited    Time waited for the response (ms)
+     * @param context   Context of the request which sent the search
+     */
+    protected void recordTimedOut(String operation, String indexName, Query query, long waited, RequestContext context) {
+        slowQueryLog.record(operation, indexName, query, waited, 0, 0, 0, context.getCaller());
+    }
+
+    /**
+     * Count the documents deleted by a bulk request (the failed deletions are logged)
+     *
+     * @param indexName Index name
+     * @param response  Bulk response
+     * @return Number of documents deleted
+     */
+    protected long countDeleted(String indexName, BulkResponse response) {
+        long deleted = 0;
+        for (BulkItemResponse item : response.getItems()) {
+            if (item.isFailed()) {
+                LOGGER.warn("Error while deleting document into ElasticSearch " + printSearchDocument(indexName, item.getId()) + ": " + item.getFailureMessage());
+            } else if (item.getResponse().getResult() == DocWriteResponse.Result.DELETED) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Failures of the documents of a bulk request (logged)
+     *
+     * @param indexName Name of the index
+     * @param response  Bulk response
+     * @return Error of each document not indexed by document ID
+     */
+    protected Map<String, String> failures(String indexName, BulkResponse response) {
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (BulkItemResponse item : response.getItems()) {
+            if (item.isFailed()) {
+                LOGGER.warn("Error while indexing document into ElasticSearch " + printSearchDocument(indexName, item.getId()) + ": " + item.getFailureMessage());
+                failures.put(item.getId(), item.getFailureMessage());
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return true if the exception (or its cause) is an ElasticSearch error of the given status
+     */
+    protected static boolean hasStatus(Exception ex, RestStatus status) {
+        return ExceptionsHelper.status(ex) == status;
+    }
+
+    protected String printSearchIndexName(String indexName) {
+        return "[indexName=" + indexName + "]";
+    }
+
+    protected String printSearchIndex(String indexName, String documentId, List<IndexField> indexFields) {
+        return "[indexName=" + indexName + ", documentId=" + documentId + ", indexFields=" + indexFields + "]";
+    }
+
+    protected String printSearchDocument(String indexName, String id) {
+        return "[indexName=" + indexName + ", id=" + id + "]";
+    }
+
+    protected String printSearchQuery(String indexName, Query query) {
+        return "[indexName=" + indexName + ", query=" + query + "]";
+    }
+
+}
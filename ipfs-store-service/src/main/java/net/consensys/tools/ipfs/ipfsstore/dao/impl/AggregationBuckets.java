@@ -0,0 +1,186 @@
+package net.consensys.tools.ipfs.ipfsstore.dao.impl;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationBucket;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationResult;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationRange;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationType;
+
+/**
+ * Results of the aggregations computed by the embedded implementations of IndexDao (Lucene, memory) from the counts
+ * collected by a search, with the same buckets as the ElasticSearch implementations (except the keys of the date
+ * histograms which are always ISO 8601 dates)
+ */
+final class AggregationBuckets {
+
+    static final int DEFAULT_TERMS_SIZE = 10;
+    static final String DEFAULT_DATE_HISTOGRAM_INTERVAL = "1d";
+
+    private static final int MAX_HISTOGRAM_BUCKETS = 10000;
+    private static final Pattern INTERVAL = Pattern.compile("(\\d+)(ms|s|m|h|d|w|M|q|y)");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private AggregationBuckets() {
+    }
+
+    /**
+     * @param counts Document count per value
+     * @param size   Number of buckets
+     * @return The [size] most frequent values (ties sorted by value)
+     */
+    static AggregationResult terms(Map<String, Long> counts, int size) {
+        List<AggregationBucket> buckets = counts.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<String, Long>>comparingLong(Map.Entry::getValue).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(size)
+                .map(entry -> new AggregationBucket(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+        return new AggregationResult(AggregationType.terms, null, buckets);
+    }
+
+    /**
+     * @param values Number of distinct values
+     */
+    static AggregationResult cardinality(long values) {
+        return new AggregationResult(AggregationType.cardinality, values, null);
+    }
+
+    /**
+     * @param ranges Ranges [from, to[
+     * @param counts Document count per range
+     * @return One bucket per range, keyed by the key of the range or "from-to"
+     */
+    static AggregationResult range(List<AggregationRange> ranges, long[] counts) {
+        List<AggregationBucket> buckets = new ArrayList<>();
+        for (int r = 0; r < ranges.size(); r++) {
+            AggregationRange range = ranges.get(r);
+            String key = range.getKey() != null ? range.getKey()
+                    : (range.getFrom() != null ? range.getFrom().toString() : "*") + "-" + (range.getTo() != null ? range.getTo().toString() : "*");
+            buckets.add(new AggregationBucket(key, range.getFrom(), range.getTo(), counts[r]));
+        }
+        return new AggregationResult(AggregationType.range, null, buckets);
+    }
+
+    /**
+     * @param interval Interval
+     * @param counts   Document count per start of interval
+     * @return One bucket per interval from the first to the last date, empty intervals included (up to 10000)
+     */
+    static AggregationResult dateHistogram(Interval interval, SortedMap<Long, Long> counts) {
+        List<AggregationBucket> buckets = new ArrayList<>();
+        if (!counts.isEmpty()) {
+            for (long key = counts.firstKey(); key <= counts.lastKey(); key = interval.next(key)) {
+                buckets.add(new AggregationBucket(DATE_FORMAT.format(Instant.ofEpochMilli(key)), counts.getOrDefault(key, 0L)));
+                if (buckets.size() > MAX_HISTOGRAM_BUCKETS) {
+                    // Interval too small for the dates: the empty intervals are left out
+                    buckets = counts.entrySet().stream()
+                            .map(entry -> new AggregationBucket(DATE_FORMAT.format(Instant.ofEpochMilli(entry.getKey())), entry.getValue()))
+                            .collect(Collectors.toList());
+                    break;
+                }
+            }
+        }
+        return new AggregationResult(AggregationType.date_histogram, null, buckets);
+    }
+
+    /**
+     * Interval of a date histogram: fixed (ms, s, m, h, d) or calendar (w, M, q, y, UTC)
+     */
+    static final class Interval {
+
+        private final long fixed; // ms, 0 if calendar
+        private final ChronoUnit unit; // calendar unit
+        private final int amount;
+
+        private Interval(long fixed, ChronoUnit unit, int amount) {
+            this.fixed = fixed;
+            this.unit = unit;
+            this.amount = amount;
+        }
+
+        /**
+         * @param interval Interval (e.g. 1d, 12h, 1w, 1M, 1y), null for the default interval (1d)
+         * @return Interval or null if invalid
+         */
+        static Interval parse(String interval) {
+            Matcher matcher = INTERVAL.matcher(interval != null ? interval.trim() : DEFAULT_DATE_HISTOGRAM_INTERVAL);
+            if (!matcher.matches() || Long.parseLong(matcher.group(1)) <= 0) {
+                return null;
+            }
+            long amount = Long.parseLong(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "ms":
+                    return new Interval(amount, null, 0);
+                case "s":
+                    return new Interval(TimeUnit.SECONDS.toMillis(amount), null, 0);
+                case "m":
+                    return new Interval(TimeUnit.MINUTES.toMillis(amount), null, 0);
+                case "h":
+                    return new Interval(TimeUnit.HOURS.toMillis(amount), null, 0);
+                case "d":
+                    return new Interval(TimeUnit.DAYS.toMillis(amount), null, 0);
+                case "w":
+                    return amount == 1 ? new Interval(0, ChronoUnit.WEEKS, 1) : null;
+                case "M":
+                    return amount == 1 ? new Interval(0, ChronoUnit.MONTHS, 1) : null;
+                case "q":
+                    return amount == 1 ? new Interval(0, ChronoUnit.MONTHS, 3) : null;
+                case "y":
+                    return amount == 1 ? new Interval(0, ChronoUnit.YEARS, 1) : null;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * @param millis Date (epoch milliseconds)
+         * @return Start of the interval of the date
+         */
+        long round(long millis) {
+            if (fixed > 0) {
+                return Math.floorDiv(millis, fixed) * fixed;
+            }
+
+            ZonedDateTime date = Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS);
+            switch (unit) {
+                case WEEKS:
+                    date = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                    break;
+                case YEARS:
+                    date = date.withDayOfYear(1);
+                    break;
+                default: // months and quarters
+                    date = date.withDayOfMonth(1).withMonth((date.getMonthValue() - 1) / amount * amount + 1);
+                    break;
+            }
+            return date.toInstant().toEpochMilli();
+        }
+
+        /**
+         * @param key Start of an interval
+         * @return Start of the next interval
+         */
+        long next(long key) {
+            if (fixed > 0) {
+                return key + fixed;
+            }
+            return Instant.ofEpochMilli(key).atZone(ZoneOffset.UTC).plus(amount, unit).toInstant().toEpochMilli();
+        }
+    }
+}
@@ -1,82 +1,79 @@
 package net.consensys.tools.ipfs.ipfsstore.dao.impl;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.apache.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchTimeoutException;
 import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequestBuilder;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.update.UpdateRequestBuilder;
+import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
-import org.elasticsearch.index.query.BoolQueryBuilder;
-import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort.Order;
 import org.springframework.stereotype.Service;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
-import com.fasterxml.jackson.annotation.PropertyAccessor;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-
-
+import io.opentelemetry.api.common.Attributes;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
 import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Aggregation;
 import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
 import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
 import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.SlowQueryLog;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
 import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
 
-import static java.util.Arrays.asList;
-
 /**
- * ElasticSearch implementation of IndexDao
+ * ElasticSearch implementation of IndexDao (TransportClient)
  *
  * @author Gregoire Jeanmart <gregoire.jeanmart@consensys.net>
  */
 @Service
-public class ElasticSearchIndexDao implements IndexDao {
+@ConditionalOnProperty(name = "index.engine", havingValue = "elasticsearch", matchIfMissing = true)
+public class ElasticSearchIndexDao extends AbstractElasticSearchIndexDao {
 
     private static final Logger LOGGER = Logger.getLogger(ElasticSearchIndexDao.class);
-    private static final String NULL = "null"; //must be lower case
-
-    private static final String ERROR_NOT_NULL_OR_EMPTY = "cannot be null or empty";
-
-    private final ObjectMapper mapper;
 
     private final TransportClient client;
 
-    @Value("${parameters.indexNullValue}")
-    private boolean indexNullValue;
-
     /*
      * Constructor
      */
-    @Autowired
     public ElasticSearchIndexDao(TransportClient client) {
-        mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        mapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
-        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-        mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
-                .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
-                .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
-                .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
-                .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+        this(client, SlowQueryLog.disabled());
+    }
 
+    @Autowired
+    public ElasticSearchIndexDao(TransportClient client, SlowQueryLog slowQueryLog) {
+        super(slowQueryLog);
         this.client = client;
     }
 
@@ -102,20 +99,25 @@ public class ElasticSearchIndexDao implements IndexDao {
 
             LOGGER.debug(source);
 
-            if (!this.doesExist(indexName, documentId)) {
-                response = client.prepareIndex(indexName.toLowerCase(), indexName.toLowerCase(), documentId)
+            Attributes attributes = Tracing.document(indexName, documentId);
+
+            if (!Tracing.trace("es.exists", attributes, () -> this.doesExist(indexName, documentId))) {
+                response = Tracing.trace("es.index", attributes, () -> client.prepareIndex(indexName.toLowerCase(), indexName.toLowerCase(), documentId)
                         .setSource(convertObjectToJsonString(source), XContentType.JSON)
-                        .get();
+                        .get());
 
             } else {
-                response = client.prepareUpdate(indexName.toLowerCase(), indexName.toLowerCase(), documentId)
+                response = Tracing.trace("es.update", attributes, () -> client.prepareUpdate(indexName.toLowerCase(), indexName.toLowerCase(), documentId)
                         .setDoc(convertObjectToJsonString(source), XContentType.JSON)
-                        .get();
+                        .get());
             }
 
             LOGGER.debug("Document indexed ElasticSearch " + printSearchIndex(indexName, documentId, indexFields) + ". Result ID=" + response.getId());
 
-            this.refreshIndex(indexName);
+            Tracing.trace("es.refresh", Tracing.index(indexName), () -> {
+                this.refreshIndex(indexName);
+                return null;
+            });
 
             return response.getId();
 
@@ -126,6 +128,95 @@ public class ElasticSearchIndexDao implements IndexDao {
     }
 
 
+    @Override
+    public Map<String, String> index(String indexName, List<Metadata> documents) throws DaoException {
+        LOGGER.debug("Index documents in ElasticSearch " + printSearchIndexName(indexName) + " [documents=" + (documents != null ? documents.size() : null) + "]");
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (documents == null) throw new IllegalArgumentException("documents " + ERROR_NOT_NULL_OR_EMPTY);
+        if (documents.stream().anyMatch(document -> Strings.isEmpty(document.getDocumentId()) || Strings.isEmpty(document.getHash())))
+            throw new IllegalArgumentException("document id and hash " + ERROR_NOT_NULL_OR_EMPTY);
+
+        if (documents.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        try {
+            // Upsert: an existing document is updated (same as index())
+            BulkRequestBuilder requestBuilder = client.prepareBulk();
+            for (Metadata document : documents) {
+                requestBuilder.add(client.prepareUpdate(indexName.toLowerCase(), type(indexName, document), document.getDocumentId())
+                        .setDoc(convertObjectToJsonString(source(document)), XContentType.JSON)
+                        .setDocAsUpsert(true));
+            }
+
+            BulkResponse response = Tracing.trace("es.bulk_index", Tracing.index(indexName), () -> requestBuilder.get());
+
+            Tracing.trace("es.refresh", Tracing.index(indexName), () -> {
+                this.refreshIndex(indexName);
+                return null;
+            });
+
+            Map<String, String> failures = failures(indexName, response);
+
+            LOGGER.debug("Documents indexed in ElasticSearch " + printSearchIndexName(indexName) + " : " + (documents.size() - failures.size()));
+
+            return failures;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while indexing documents into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while indexing documents into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+
+    @Override
+    public Metadata update(String indexName, String id, List<IndexField> indexFields, Long version) throws DaoException, NotFoundException, VersionConflictException {
+        LOGGER.debug("Update document in ElasticSearch " + printSearchIndex(indexName, id, indexFields) + " [version=" + version + "]");
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id " + ERROR_NOT_NULL_OR_EMPTY);
+        if (indexFields == null) throw new IllegalArgumentException("indexFields " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            UpdateRequestBuilder requestBuilder = client.prepareUpdate(indexName.toLowerCase(), indexName.toLowerCase(), id)
+                    .setDoc(convertObjectToJsonString(convert(indexFields)), XContentType.JSON)
+                    .setFetchSource(true);
+            if (version != null) {
+                requestBuilder.setVersion(version); // conflict if modified in the meantime
+            } else {
+                requestBuilder.setRetryOnConflict(RETRY_ON_CONFLICT); // last write wins
+            }
+
+            UpdateResponse response = Tracing.trace("es.update", Tracing.document(indexName, id), () -> requestBuilder.get());
+
+            Tracing.trace("es.refresh", Tracing.index(indexName), () -> {
+                this.refreshIndex(indexName);
+                return null;
+            });
+
+            Metadata metadata = convert(response.getIndex(), response.getId(), response.getVersion(), response.getGetResult().sourceAsMap());
+
+            LOGGER.debug("Document updated in ElasticSearch " + printSearchDocument(indexName, id) + " : " + metadata);
+
+            return metadata;
+
+        } catch (Exception ex) {
+            if (hasStatus(ex, RestStatus.NOT_FOUND)) {
+                LOGGER.warn("Document to update not found in ElasticSearch " + printSearchDocument(indexName, id));
+                throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
+            }
+            if (hasStatus(ex, RestStatus.CONFLICT)) {
+                LOGGER.warn("Version conflict while updating document in ElasticSearch " + printSearchDocument(indexName, id) + " [version=" + version + "]");
+                throw new VersionConflictException("Document " + printSearchDocument(indexName, id) + " modified in the meantime (expected version " + version + ")");
+            }
+            LOGGER.error("Error while updating document into ElasticSearch " + printSearchDocument(indexName, id), ex);
+            throw new DaoException("Error while updating document into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
     @Override
     public Metadata searchById(String indexName, String id) throws DaoException, NotFoundException {
         LOGGER.debug("Search in ElasticSearch by ID " + printSearchDocument(indexName, id));
@@ -135,7 +226,10 @@ public class ElasticSearchIndexDao implements IndexDao {
         if (Strings.isEmpty(id)) throw new IllegalArgumentException("id" + ERROR_NOT_NULL_OR_EMPTY);
 
         try {
-            GetResponse response = client.prepareGet(indexName.toLowerCase(), indexName.toLowerCase(), id).get();
+            TimeValue timeout = timeLeft();
+            GetRequestBuilder requestBuilder = client.prepareGet(indexName.toLowerCase(), indexName.toLowerCase(), id);
+            GetResponse response = Tracing.trace("es.get", Tracing.document(indexName, id),
+                    () -> timeout != null ? requestBuilder.get(timeout) : requestBuilder.get());
 
             LOGGER.trace("Search one document in ElasticSearch " + printSearchDocument(indexName, id) + " : response=" + response);
 
@@ -143,7 +237,7 @@ public class ElasticSearchIndexDao implements IndexDao {
                 throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
             }
 
-            Metadata metadata = convert(response.getIndex(), response.getId(), response.getSourceAsMap());
+            Metadata metadata = convert(response.getIndex(), response.getId(), response.getVersion(), response.getSourceAsMap());
 
             LOGGER.debug("Search one document in ElasticSearch " + printSearchDocument(indexName, id) + " : " + metadata);
 
@@ -169,27 +263,16 @@ public class ElasticSearchIndexDao implements IndexDao {
 
         try {
 
-            SearchRequestBuilder requestBuilder = client.prepareSearch(indexName)
-                    .setSearchType(SearchType.DFS_QUERY_THEN_FETCH)
-                    .setQuery(convertQuery(query))
-                    .setFrom(pageable.getOffset())
-                    .setSize(pageable.getPageSize());
-
-            if (pageable.getSort() != null) {
-                for (Order order : pageable.getSort()) {
-                    requestBuilder.addSort(new FieldSortBuilder(order.getProperty()).order(order.isAscending() ? SortOrder.ASC : SortOrder.DESC).unmappedType("date"));
-                }
-            }
-            
+            TimeValue timeout = timeLeft();
+            SearchRequestBuilder requestBuilder = prepareSearch(pageable, indexName, query, timeout);
+
             LOGGER.trace(requestBuilder);
 
-            SearchResponse searchResponse = requestBuilder.execute().actionGet();
+            SearchResponse searchResponse = Tracing.trace("es.search", Tracing.index(indexName), () -> execute("search", indexName, query, requestBuilder, timeout));
 
             LOGGER.trace("Search documents in ElasticSearch " + printSearchQuery(indexName, query) + " : " + searchResponse);
 
-            List<Metadata> result = Arrays.stream(searchResponse.getHits().getHits())
-                    .map(hit -> convert(hit.getIndex(), hit.getId(), hit.getSourceAsMap()))
-                    .collect(Collectors.toList());
+            List<Metadata> result = convert(searchResponse.getHits());
 
             LOGGER.debug("Search documents in ElasticSearch " + printSearchQuery(indexName, query) + " : " + result);
 
@@ -201,6 +284,50 @@ public class ElasticSearchIndexDao implements IndexDao {
         }
     }
 
+    @Override
+    public AggregatedPage<Metadata> searchAndAggregate(Pageable pageable, String indexName, Query query) throws DaoException {
+        LOGGER.debug("Search and aggregate documents in ElasticSearch " + printSearchQuery(indexName, query));
+
+        // Validation
+        if (pageable == null) throw new IllegalArgumentException("pageable " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+
+            TimeValue timeout = timeLeft();
+            SearchRequestBuilder requestBuilder = prepareSearch(pageable, indexName, query, timeout);
+
+            if (query != null && query.hasAggregations()) {
+                for (Aggregation aggregation : query.getAggregations()) {
+                    AggregationBuilder aggregationBuilder = convertAggregation(aggregation);
+                    if (aggregationBuilder != null) {
+                        requestBuilder.addAggregation(aggregationBuilder);
+                    }
+                }
+            }
+
+            LOGGER.trace(requestBuilder);
+
+            SearchResponse searchResponse = Tracing.trace("es.search", Tracing.index(indexName), () -> execute("searchAndAggregate", indexName, query, requestBuilder, timeout));
+
+            LOGGER.trace("Search and aggregate documents in ElasticSearch " + printSearchQuery(indexName, query) + " : " + searchResponse);
+
+            AggregatedPage<Metadata> result = new AggregatedPage<>(
+                    convert(searchResponse.getHits()),
+                    pageable,
+                    searchResponse.getHits().getTotalHits(),
+                    convert(searchResponse.getAggregations()));
+
+            LOGGER.debug("Search and aggregate documents in ElasticSearch " + printSearchQuery(indexName, query) + " : " + result.getContent() + ", " + result.getAggregations());
+
+            return result;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while searching and aggregating documents into ElasticSearch " + printSearchQuery(indexName, query), ex);
+            throw new DaoException("Error while searching and aggregating documents into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
     @Override
     public long count(String indexName, Query query) throws DaoException {
         LOGGER.debug("Count in ElasticSearch " + printSearchQuery(indexName, query));
@@ -210,11 +337,23 @@ public class ElasticSearchIndexDao implements IndexDao {
 
         try {
           
-          SearchResponse countResponse = client.prepareSearch(indexName)
+          TimeValue timeout = timeLeft();
+          SearchRequestBuilder requestBuilder = client.prepareSearch(indexName)
                 .setSearchType(SearchType.DFS_QUERY_THEN_FETCH)
                 .setQuery(convertQuery(query))
-                .setSize(0)
-                .get();
+                .setSize(0);
+          if (timeout != null) {
+              requestBuilder.setTimeout(timeout);
+          }
+
+          SearchResponse countResponse = Tracing.trace("es.count", Tracing.index(indexName), () -> {
+              if (timeout != null) {
+                  return execute("count", indexName, query, requestBuilder, timeout);
+              }
+              SearchResponse response = requestBuilder.get();
+              recordSearch("count", indexName, query, response, RequestContext.current());
+              return response;
+          });
 
             LOGGER.trace("Count in ElasticSearch " + printSearchQuery(indexName, query) + " : " + countResponse);
 
@@ -226,6 +365,11 @@ public class ElasticSearchIndexDao implements IndexDao {
         }
     }
 
+    @Override
+    public long countAll(Query query) throws DaoException {
+        return count(ALL_INDICES, query);
+    }
+
     @Override
     public void createIndex(String indexName) throws DaoException {
         LOGGER.debug("Create index in ElasticSearch " + printSearchIndexName(indexName));
@@ -234,12 +378,12 @@ public class ElasticSearchIndexDao implements IndexDao {
         if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
 
         try {
-            boolean exists = client.admin().indices()
+            boolean exists = Tracing.trace("es.index_exists", Tracing.index(indexName), () -> client.admin().indices()
                     .prepareExists(indexName)
-                    .execute().actionGet().isExists();
+                    .execute().actionGet().isExists());
 
             if (!exists) {
-                client.admin().indices().prepareCreate(indexName).get();
+                Tracing.trace("es.create_index", Tracing.index(indexName), () -> client.admin().indices().prepareCreate(indexName).get());
                 LOGGER.debug("Index created in ElasticSearch " + printSearchIndexName(indexName));
 
             } else {
@@ -252,184 +396,292 @@ public class ElasticSearchIndexDao implements IndexDao {
         }
     }
 
-    /**
-     * Check if a document exists in E.S.
-     *
-     * @param index Index Name
-     * @param id    Document ID
-     * @return true/false
-     * @throws ElasticsearchException
-     */
-    private Boolean doesExist(String index, String id) {
-        if (id == null || id.isEmpty()) {
-            return false;
+    @Override
+    public boolean isIndex(String name) throws DaoException {
+
+        // Validation
+        if (Strings.isEmpty(name)) throw new IllegalArgumentException("name " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            // The indices exists API matches the aliases too
+            return Tracing.trace("es.index_exists", Tracing.index(name), () ->
+                    client.admin().indices().prepareExists(name.toLowerCase()).execute().actionGet().isExists()
+                            && !client.admin().indices().prepareAliasesExist(name.toLowerCase()).execute().actionGet().exists());
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while checking the index into ElasticSearch " + printSearchIndexName(name), ex);
+            throw new DaoException("Error while checking the index into ElasticSearch: " + ex.getMessage());
         }
+    }
 
-        GetResponse response = client.prepareGet(index, index, id).setRefresh(true).get();
-        return response.isExists();
+    @Override
+    public void alias(String alias, String indexName) throws DaoException {
+        LOGGER.debug("Alias index in ElasticSearch " + printSearchIndexName(indexName) + " [alias=" + alias + "]");
+
+        // Validation
+        if (Strings.isEmpty(alias)) throw new IllegalArgumentException("alias " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            Tracing.trace("es.alias", Tracing.index(indexName), () -> {
+                // Removed from the indices it points to and added to the index in a single (atomic) request
+                IndicesAliasesRequestBuilder requestBuilder = client.admin().indices().prepareAliases();
+                ImmutableOpenMap<String, List<AliasMetaData>> aliases = client.admin().indices().prepareGetAliases(alias.toLowerCase()).get().getAliases();
+                aliases.keysIt().forEachRemaining(index -> {
+                    if (!aliases.get(index).isEmpty()) {
+                        requestBuilder.removeAlias(index, alias.toLowerCase());
+                    }
+                });
+                return requestBuilder.addAlias(indexName.toLowerCase(), alias.toLowerCase()).get();
+            });
+
+            LOGGER.debug("Index aliased in ElasticSearch " + printSearchIndexName(indexName) + " [alias=" + alias + "]");
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while aliasing the index into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while aliasing the index into ElasticSearch: " + ex.getMessage());
+        }
     }
 
-    /**
-     * Convert a list of IndexField (key/value) to a Map
-     *
-     * @param indexFields List of IndexField
-     * @return Map
-     */
-    private Map<String, Object> convert(List<IndexField> indexFields) {
-        if (indexFields == null) {
-            return null;
+    @Override
+    public void delete(String indexName, String id) throws DaoException, NotFoundException {
+        LOGGER.debug("Delete document in ElasticSearch " + printSearchDocument(indexName, id));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            DeleteResponse response = Tracing.trace("es.delete", Tracing.document(indexName, id),
+                    () -> client.prepareDelete(indexName.toLowerCase(), indexName.toLowerCase(), id).get());
+
+            if (response.getResult() == DocWriteResponse.Result.NOT_FOUND) {
+                throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
+            }
+
+            Tracing.trace("es.refresh", Tracing.index(indexName), () -> {
+                this.refreshIndex(indexName);
+                return null;
+            });
+
+            LOGGER.debug("Document deleted in ElasticSearch " + printSearchDocument(indexName, id));
+
+        } catch (NotFoundException ex) {
+            LOGGER.warn("Error while deleting document into ElasticSearch " + printSearchDocument(indexName, id), ex);
+            throw ex;
+        } catch (Exception ex) {
+            LOGGER.error("Error while deleting document into ElasticSearch " + printSearchDocument(indexName, id), ex);
+            throw new DaoException("Error while deleting document into ElasticSearch: " + ex.getMessage());
         }
+    }
 
-        return indexFields
-                .stream()
-                .collect(Collectors.toMap(
-                        field -> field.getName(),
-                        field -> handleNullValue(field.getValue())
-                ));
+    @Override
+    public long delete(String indexName, List<String> ids) throws DaoException {
+        LOGGER.debug("Delete documents in ElasticSearch " + printSearchIndexName(indexName) + " [ids=" + ids + "]");
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (ids == null) throw new IllegalArgumentException("ids " + ERROR_NOT_NULL_OR_EMPTY);
+
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            BulkRequestBuilder requestBuilder = client.prepareBulk();
+            for (String id : ids) {
+                requestBuilder.add(client.prepareDelete(indexName.toLowerCase(), indexName.toLowerCase(), id));
+            }
+
+            BulkResponse response = Tracing.trace("es.bulk_delete", Tracing.index(indexName), () -> requestBuilder.get());
+
+            Tracing.trace("es.refresh", Tracing.index(indexName), () -> {
+                this.refreshIndex(indexName);
+                return null;
+            });
+
+            long deleted = countDeleted(indexName, response);
+
+            LOGGER.debug("Documents deleted in ElasticSearch " + printSearchIndexName(indexName) + " : " + deleted);
+
+            return deleted;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while deleting documents into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while deleting documents into ElasticSearch: " + ex.getMessage());
+        }
     }
 
-    /**
-     * Replace null or empty string value by NULL to add it in the index (E.S. doesn't index null value)
-     *
-     * @param value Value
-     * @return Value replaced by NULL if null or empty
-     */
-    private Object handleNullValue(Object value) {
-        if (indexNullValue && (value == null || (value instanceof String && ((String) value).length() == 0))) {
-            return NULL;
-        } else {
-            return value;
+    @Override
+    public long scroll(String indexName, int batchSize, Consumer<List<Metadata>> consumer) throws DaoException {
+        LOGGER.debug("Scroll documents in ElasticSearch " + printSearchIndexName(indexName));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (consumer == null) throw new IllegalArgumentException("consumer " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            long read = scroll(indexName, batchSize, null, hits -> consumer.accept(convert(hits)));
+
+            LOGGER.debug("Documents scrolled in ElasticSearch " + printSearchIndexName(indexName) + " : " + read);
+
+            return read;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while scrolling documents into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while scrolling documents into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public long scrollHashes(String indexName, int batchSize, Consumer<List<String>> consumer) throws DaoException {
+        LOGGER.debug("Scroll hashes in ElasticSearch " + printSearchIndexName(indexName));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (consumer == null) throw new IllegalArgumentException("consumer " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            long read = scroll(indexName, batchSize, HASH_INDEX_KEY, hits -> consumer.accept(hashes(hits)));
+
+            LOGGER.debug("Hashes scrolled in ElasticSearch " + printSearchIndexName(indexName) + " : " + read);
+
+            return read;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while scrolling hashes into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while scrolling hashes into ElasticSearch: " + ex.getMessage());
         }
     }
 
     /**
-     * Convert a ElasticSearch result to a Metadata
+     * Scroll all the documents of an index in index order (_doc), the scroll cleared at the end
      *
-     * @param index     Index
-     * @param id        ID
-     * @param sourceMap Map of attributes
-     * @return Metadata
+     * @param indexName Name of the index
+     * @param batchSize Number of documents per batch
+     * @param includes  Field of the source fetched (null: whole source)
+     * @param consumer  Consumer of each batch of hits
+     * @return Number of documents read
      */
-    private static Metadata convert(String index, String id, Map<String, Object> sourceMap) {
-        String hash = null;
-        String contentType = null;
+    private long scroll(String indexName, int batchSize, String includes, Consumer<SearchHits> consumer) {
+        String scrollId = null;
+        try {
+            SearchRequestBuilder requestBuilder = client.prepareSearch(indexName)
+                    .setScroll(SCROLL_KEEP_ALIVE)
+                    .setQuery(QueryBuilders.matchAllQuery())
+                    .addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC)
+                    .setVersion(true)
+                    .setSize(batchSize);
+            if (includes != null) {
+                requestBuilder.setFetchSource(includes, null);
+            }
+            SearchResponse response = Tracing.trace("es.scroll", Tracing.index(indexName), () -> requestBuilder.get());
+
+            long read = 0;
+            while (response.getHits().getHits().length > 0) {
+                scrollId = response.getScrollId();
+                consumer.accept(response.getHits());
+                read += response.getHits().getHits().length;
+
+                String nextScrollId = scrollId;
+                response = Tracing.trace("es.scroll", Tracing.index(indexName), () -> client.prepareSearchScroll(nextScrollId)
+                        .setScroll(SCROLL_KEEP_ALIVE)
+                        .get());
+            }
+            scrollId = response.getScrollId();
 
-        if (sourceMap != null) {
+            return read;
 
-            // Extract special key __hash
-            if (sourceMap.containsKey(HASH_INDEX_KEY) && sourceMap.get(HASH_INDEX_KEY) != null) {
-                hash = sourceMap.get(HASH_INDEX_KEY).toString();
-            }
-            // Extract special key __content_type
-            if (sourceMap.containsKey(CONTENT_TYPE_INDEX_KEY) && sourceMap.get(CONTENT_TYPE_INDEX_KEY) != null) {
-                contentType = sourceMap.get(CONTENT_TYPE_INDEX_KEY).toString();
+        } finally {
+            if (scrollId != null) {
+                try {
+                    client.prepareClearScroll().addScrollId(scrollId).get();
+                } catch (Exception ex) {
+                    LOGGER.warn("Error while clearing scroll in ElasticSearch " + printSearchIndexName(indexName) + ": " + ex.getMessage());
+                }
             }
         }
-
-        return new Metadata(
-                index,
-                id,
-                hash,
-                contentType,
-                convert(sourceMap));
     }
 
     /**
-     * Convert a Map to a list of IndexField (key/value)
+     * Check if a document exists in E.S.
      *
-     * @param indexFields Map
-     * @return List of IndexField
+     * @param index Index Name
+     * @param id    Document ID
+     * @return true/false
+     * @throws ElasticsearchException
      */
-    private static List<IndexField> convert(Map<String, Object> indexFields) {
-        if (indexFields == null) {
-            return Collections.emptyList();
+    private Boolean doesExist(String index, String id) {
+        if (id == null || id.isEmpty()) {
+            return false;
         }
 
-        return indexFields.entrySet().stream()
-                .map(field -> new IndexField(field.getKey(), field.getValue()))
-                .collect(Collectors.toList()
-                );
+        GetResponse response = client.prepareGet(index, index, id).setRefresh(true).get();
+        return response.isExists();
     }
 
     /**
-     * Convert a IPFS-Store Query to a ElasticSearch query
+     * Prepare a search request (query, pagination and sorting)
      *
-     * @param query IPFS-Store Query
-     * @return ElasticSearch query
+     * @param pageable  Pagination and Sorting
+     * @param indexName Index name
+     * @param query     Search query
+     * @param timeout   Time left before the deadline of the request (null: no deadline)
+     * @return ElasticSearch search request
      */
-    private QueryBuilder convertQuery(Query query) {
-        LOGGER.trace("Converting query: " + query);
-
-        BoolQueryBuilder elasticSearchQuery = QueryBuilders.boolQuery();
+    private SearchRequestBuilder prepareSearch(Pageable pageable, String indexName, Query query, TimeValue timeout) {
+        SearchRequestBuilder requestBuilder = client.prepareSearch(indexName)
+                .setSearchType(SearchType.DFS_QUERY_THEN_FETCH)
+                .setQuery(convertQuery(query))
+                .setFrom(pageable.getOffset())
+                .setSize(pageable.getPageSize());
+        requestBuilder.setVersion(true); // version of each hit (optimistic concurrency of the updates)
 
-        if (query == null || query.getFilterClauses().isEmpty()) {
-            return QueryBuilders.matchAllQuery();
+        if (timeout != null) {
+            requestBuilder.setTimeout(timeout); // the shards stop searching at the deadline
         }
 
-        query.getFilterClauses().forEach(f -> {
-
-            Object value = handleNullValue(f.getValue());
-
-            try {
-
-                switch (f.getOperation()) {
-                    case full_text:
-                        elasticSearchQuery.must(QueryBuilders.multiMatchQuery(value, f.getNames()).lenient(true));
-                        break;
-                    case equals:
-                        elasticSearchQuery.must(QueryBuilders.termQuery(f.getName(), value));
-                        break;
-                    case not_equals:
-                        elasticSearchQuery.mustNot(QueryBuilders.termQuery(f.getName(), value));
-                        break;
-                    case contains:
-                        elasticSearchQuery.must(QueryBuilders.matchQuery(f.getName(), value));
-                        break;
-                    case in:
-                        elasticSearchQuery.filter(QueryBuilders.termsQuery(
-                                f.getName(),
-                                asList((Object[]) value).stream().map(o -> o.toString().toLowerCase()).collect(Collectors.toList())));
-                        break;
-                    case lt:
-                        elasticSearchQuery.must(QueryBuilders.rangeQuery(f.getName()).lt(value));
-                        break;
-                    case lte:
-                        elasticSearchQuery.must(QueryBuilders.rangeQuery(f.getName()).lte(value));
-                        break;
-                    case gt:
-                        elasticSearchQuery.must(QueryBuilders.rangeQuery(f.getName()).gt(value));
-                        break;
-                    case gte:
-                        elasticSearchQuery.must(QueryBuilders.rangeQuery(f.getName()).gte(value));
-                        break;
-                    default:
-                        LOGGER.warn("Operation [" + f.getOperation() + "] not supported for  filter [" + f + "]- Ignore it!");
-                        break;
-                }
-
-            } catch (Exception e) {
-                LOGGER.warn("Error while converting filter [" + f + "] - Ignore it!", e);
+        if (pageable.getSort() != null) {
+            for (Order order : pageable.getSort()) {
+                requestBuilder.addSort(new FieldSortBuilder(order.getProperty()).order(order.isAscending() ? SortOrder.ASC : SortOrder.DESC).unmappedType("date"));
             }
-        });
-
-        LOGGER.debug(elasticSearchQuery.toString());
+        }
 
-        return elasticSearchQuery;
+        return requestBuilder;
     }
 
     /**
-     * Convert an object to a JSON String
+     * Execute a search and wait for the response until the deadline of the request, then record it in the slow query
+     * log (timed out searches included)
      *
-     * @param object Object to convert to a JSON
-     * @return JSON representation of the object
+     * @param operation      Operation (search, count...)
+     * @param indexName      Index name
+     * @param query          Query
+     * @param requestBuilder Search request
+     * @param timeout        Time left before the deadline of the request (null: no deadline)
+     * @return Search response
+     * @throws DaoException if the search timed out (shards or client side)
      */
-    private String convertObjectToJsonString(Object object) {
+    private SearchResponse execute(String operation, String indexName, Query query, SearchRequestBuilder requestBuilder, TimeValue timeout) throws DaoException {
+        long start = System.nanoTime();
+        SearchResponse searchResponse;
         try {
-            return mapper.writeValueAsString(object);
-        } catch (JsonProcessingException ex) {
-            LOGGER.error("Exception occur:{}", ex);
+            searchResponse = timeout != null
+                    ? requestBuilder.execute().actionGet(timeout)
+                    : requestBuilder.execute().actionGet();
+
+        } catch (ElasticsearchTimeoutException ex) {
+            // No response: recorded with the time waited
+            recordTimedOut(operation, indexName, query, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), RequestContext.current());
+            throw new DaoException("Search timed out (deadline exceeded)");
         }
-        return null;
+
+        recordSearch(operation, indexName, query, searchResponse, RequestContext.current());
+
+        if (searchResponse.isTimedOut()) {
+            throw new DaoException("Search timed out (deadline exceeded)");
+        }
+        return searchResponse;
     }
 
     /**
@@ -441,20 +693,4 @@ public class ElasticSearchIndexDao implements IndexDao {
         this.client.admin().indices().prepareRefresh(index).get();
     }
 
-    private String printSearchIndexName(String indexName) {
-        return "[indexName=" + indexName + "]";
-    }
-
-    private String printSearchIndex(String indexName, String documentId, List<IndexField> indexFields) {
-        return "[indexName=" + indexName + ", documentId=" + documentId + ", indexFields=" + indexFields + "]";
-    }
-
-    private String printSearchDocument(String indexName, String id) {
-        return "[indexName=" + indexName + ", id=" + id + "]";
-    }
-
-    private String printSearchQuery(String indexName, Query query) {
-        return "[indexName=" + indexName + ", query=" + query + "]";
-    }
-
-}
+}
\ No newline at end of file
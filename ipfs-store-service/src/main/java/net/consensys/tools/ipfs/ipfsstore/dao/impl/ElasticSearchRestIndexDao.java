@@ -0,0 +1,780 @@
+package net.consensys.tools.ipfs.ipfsstore.dao.impl;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.stereotype.Service;
+
+import io.opentelemetry.api.common.Attributes;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Aggregation;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.SlowQueryLog;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
+import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
+
+/**
+ * ElasticSearch implementation of IndexDao (asynchronous REST client)
+ * <p>
+ * Searches are sent without blocking the caller over a pool of HTTP connections and return futures completed by the
+ * client I/O threads. The blocking methods wait for the corresponding future.
+ * The searches are bounded by the deadline of the current request (see RequestContext).
+ */
+@Service
+@ConditionalOnProperty(name = "index.engine", havingValue = "elasticsearch-rest")
+public class ElasticSearchRestIndexDao extends AbstractElasticSearchIndexDao {
+
+    private static final Logger LOGGER = Logger.getLogger(ElasticSearchRestIndexDao.class);
+
+    private static final int HTTP_OK = 200;
+
+    private final RestHighLevelClient client;
+    private final RestClient lowLevelClient;
+
+    /*
+     * Constructor
+     */
+    public ElasticSearchRestIndexDao(RestHighLevelClient client, RestClient lowLevelClient) {
+        this(client, lowLevelClient, SlowQueryLog.disabled());
+    }
+
+    @Autowired
+    public ElasticSearchRestIndexDao(RestHighLevelClient client, RestClient lowLevelClient, SlowQueryLog slowQueryLog) {
+        super(slowQueryLog);
+        this.client = client;
+        this.lowLevelClient = lowLevelClient;
+    }
+
+
+    @Override
+    public String index(String indexName, String documentId, String hash, String contentType, List<IndexField> indexFields) throws DaoException {
+        LOGGER.debug("Index document in ElasticSearch " + printSearchIndex(indexName, documentId, indexFields));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(hash)) throw new IllegalArgumentException("hash " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            DocWriteResponse response;
+            Map<String, Object> source = new HashMap<>();
+
+            // Populate the ElasticSearch Document
+            source.put(IndexDao.HASH_INDEX_KEY, hash);
+            source.put(IndexDao.CONTENT_TYPE_INDEX_KEY, contentType);
+            if (indexFields != null) {
+                source.putAll(convert(indexFields));
+            }
+
+            LOGGER.debug(source);
+
+            Attributes attributes = Tracing.document(indexName, documentId);
+
+            if (!Tracing.trace("es.exists", attributes, () -> this.doesExist(indexName.toLowerCase(), documentId))) {
+                response = Tracing.trace("es.index", attributes, () -> client.index(new IndexRequest(indexName.toLowerCase(), indexName.toLowerCase(), documentId)
+                        .source(convertObjectToJsonString(source), XContentType.JSON)));
+
+            } else {
+                response = Tracing.trace("es.update", attributes, () -> client.update(new UpdateRequest(indexName.toLowerCase(), indexName.toLowerCase(), documentId)
+                        .doc(convertObjectToJsonString(source), XContentType.JSON)));
+            }
+
+            LOGGER.debug("Document indexed ElasticSearch " + printSearchIndex(indexName, documentId, indexFields) + ". Result ID=" + response.getId());
+
+            Tracing.trace("es.refresh", Tracing.index(indexName), () -> {
+                this.refreshIndex(indexName);
+                return null;
+            });
+
+            return response.getId();
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while indexing document into ElasticSearch " + printSearchIndex(indexName, documentId, indexFields), ex);
+            throw new DaoException("Error while indexing document into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, String> index(String indexName, List<Metadata> documents) throws DaoException {
+        LOGGER.debug("Index documents in ElasticSearch " + printSearchIndexName(indexName) + " [documents=" + (documents != null ? documents.size() : null) + "]");
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (documents == null) throw new IllegalArgumentException("documents " + ERROR_NOT_NULL_OR_EMPTY);
+        if (documents.stream().anyMatch(document -> Strings.isEmpty(document.getDocumentId()) || Strings.isEmpty(document.getHash())))
+            throw new IllegalArgumentException("document id and hash " + ERROR_NOT_NULL_OR_EMPTY);
+
+        if (documents.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        try {
+            // Upsert: an existing document is updated (same as index())
+            BulkRequest request = new BulkRequest();
+            for (Metadata document : documents) {
+                request.add(new UpdateRequest(indexName.toLowerCase(), type(indexName, document), document.getDocumentId())
+                        .doc(convertObjectToJsonString(source(document)), XContentType.JSON)
+                        .docAsUpsert(true));
+            }
+
+            BulkResponse response = Tracing.trace("es.bulk_index", Tracing.index(indexName), () -> client.bulk(request));
+
+            Tracing.trace("es.refresh", Tracing.index(indexName), () -> {
+                this.refreshIndex(indexName);
+                return null;
+            });
+
+            Map<String, String> failures = failures(indexName, response);
+
+            LOGGER.debug("Documents indexed in ElasticSearch " + printSearchIndexName(indexName) + " : " + (documents.size() - failures.size()));
+
+            return failures;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while indexing documents into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while indexing documents into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+
+    @Override
+    public Metadata update(String indexName, String id, List<IndexField> indexFields, Long version) throws DaoException, NotFoundException, VersionConflictException {
+        LOGGER.debug("Update document in ElasticSearch " + printSearchIndex(indexName, id, indexFields) + " [version=" + version + "]");
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id " + ERROR_NOT_NULL_OR_EMPTY);
+        if (indexFields == null) throw new IllegalArgumentException("indexFields " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            UpdateRequest request = new UpdateRequest(indexName.toLowerCase(), indexName.toLowerCase(), id)
+                    .doc(convertObjectToJsonString(convert(indexFields)), XContentType.JSON)
+                    .fetchSource(true);
+            if (version != null) {
+                request.version(version); // conflict if modified in the meantime
+            } else {
+                request.retryOnConflict(RETRY_ON_CONFLICT); // last write wins
+            }
+
+            UpdateResponse response = Tracing.trace("es.update", Tracing.document(indexName, id), () -> client.update(request));
+
+            Tracing.trace("es.refresh", Tracing.index(indexName), () -> {
+                this.refreshIndex(indexName);
+                return null;
+            });
+
+            Metadata metadata = convert(response.getIndex(), response.getId(), response.getVersion(), response.getGetResult().sourceAsMap());
+
+            LOGGER.debug("Document updated in ElasticSearch " + printSearchDocument(indexName, id) + " : " + metadata);
+
+            return metadata;
+
+        } catch (Exception ex) {
+            if (hasStatus(ex, RestStatus.NOT_FOUND)) {
+                LOGGER.warn("Document to update not found in ElasticSearch " + printSearchDocument(indexName, id));
+                throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
+            }
+            if (hasStatus(ex, RestStatus.CONFLICT)) {
+                LOGGER.warn("Version conflict while updating document in ElasticSearch " + printSearchDocument(indexName, id) + " [version=" + version + "]");
+                throw new VersionConflictException("Document " + printSearchDocument(indexName, id) + " modified in the meantime (expected version " + version + ")");
+            }
+            LOGGER.error("Error while updating document into ElasticSearch " + printSearchDocument(indexName, id), ex);
+            throw new DaoException("Error while updating document into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public Metadata searchById(String indexName, String id) throws DaoException, NotFoundException {
+        try {
+            return get(searchByIdAsync(indexName, id));
+
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof NotFoundException) {
+                throw (NotFoundException) ex.getCause();
+            }
+            throw toDaoException(ex);
+        } catch (InterruptedException | TimeoutException ex) {
+            throw toDaoException(ex);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Metadata> searchByIdAsync(String indexName, String id) {
+        LOGGER.debug("Search in ElasticSearch by ID " + printSearchDocument(indexName, id));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName" + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id" + ERROR_NOT_NULL_OR_EMPTY);
+
+        return Tracing.traceAsync("es.get", Tracing.document(indexName, id), () -> {
+            CompletableFuture<Metadata> future = new CompletableFuture<>();
+
+            client.getAsync(new GetRequest(indexName.toLowerCase(), indexName.toLowerCase(), id), ActionListener.wrap(
+                    response -> {
+                        LOGGER.trace("Search one document in ElasticSearch " + printSearchDocument(indexName, id) + " : response=" + response);
+
+                        if (!response.isExists()) {
+                            LOGGER.warn("Document " + printSearchDocument(indexName, id) + " not found");
+                            future.completeExceptionally(new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found"));
+                            return;
+                        }
+
+                        Metadata metadata = convert(response.getIndex(), response.getId(), response.getVersion(), response.getSourceAsMap());
+
+                        LOGGER.debug("Search one document in ElasticSearch " + printSearchDocument(indexName, id) + " : " + metadata);
+
+                        future.complete(metadata);
+                    },
+                    ex -> {
+                        LOGGER.error("Error while searching into ElasticSearch " + printSearchDocument(indexName, id), ex);
+                        future.completeExceptionally(new DaoException("Error while searching into ElasticSearch: " + ex.getMessage()));
+                    }));
+
+            return future;
+        });
+    }
+
+    @Override
+    public List<Metadata> search(Pageable pageable, String indexName, Query query) throws DaoException {
+        return await(searchAsync(pageable, indexName, query));
+    }
+
+    @Override
+    public CompletableFuture<List<Metadata>> searchAsync(Pageable pageable, String indexName, Query query) {
+        LOGGER.debug("Search documents in ElasticSearch " + printSearchQuery(indexName, query));
+
+        // Validation
+        if (pageable == null) throw new IllegalArgumentException("pageable " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        return Tracing.traceAsync("es.search", Tracing.index(indexName), () -> {
+            CompletableFuture<List<Metadata>> future = new CompletableFuture<>();
+            RequestContext context = RequestContext.current();
+
+            SearchRequest request = prepareSearch(pageable, indexName, query);
+
+            LOGGER.trace(request);
+
+            client.searchAsync(request, ActionListener.wrap(
+                    searchResponse -> {
+                        LOGGER.trace("Search documents in ElasticSearch " + printSearchQuery(indexName, query) + " : " + searchResponse);
+
+                        recordSearch("search", indexName, query, searchResponse, context);
+
+                        if (searchResponse.isTimedOut()) {
+                            future.completeExceptionally(new DaoException("Error while searching documents into ElasticSearch: timed out (deadline exceeded)"));
+                            return;
+                        }
+
+                        List<Metadata> result = convert(searchResponse.getHits());
+
+                        LOGGER.debug("Search documents in ElasticSearch " + printSearchQuery(indexName, query) + " : " + result);
+
+                        future.complete(result);
+                    },
+                    ex -> {
+                        LOGGER.error("Error while searching documents into ElasticSearch " + printSearchQuery(indexName, query), ex);
+                        future.completeExceptionally(new DaoException("Error while searching documents into ElasticSearch: " + ex.getMessage()));
+                    }));
+
+            return future;
+        });
+    }
+
+    @Override
+    public AggregatedPage<Metadata> searchAndAggregate(Pageable pageable, String indexName, Query query) throws DaoException {
+        return await(searchAndAggregateAsync(pageable, indexName, query));
+    }
+
+    @Override
+    public CompletableFuture<AggregatedPage<Metadata>> searchAndAggregateAsync(Pageable pageable, String indexName, Query query) {
+        LOGGER.debug("Search and aggregate documents in ElasticSearch " + printSearchQuery(indexName, query));
+
+        // Validation
+        if (pageable == null) throw new IllegalArgumentException("pageable " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        return Tracing.traceAsync("es.search", Tracing.index(indexName), () -> {
+            CompletableFuture<AggregatedPage<Metadata>> future = new CompletableFuture<>();
+            RequestContext context = RequestContext.current();
+
+            SearchRequest request = prepareSearch(pageable, indexName, query);
+
+            if (query != null && query.hasAggregations()) {
+                for (Aggregation aggregation : query.getAggregations()) {
+                    AggregationBuilder aggregationBuilder = convertAggregation(aggregation);
+                    if (aggregationBuilder != null) {
+                        request.source().aggregation(aggregationBuilder);
+                    }
+                }
+            }
+
+            LOGGER.trace(request);
+
+            client.searchAsync(request, ActionListener.wrap(
+                    searchResponse -> {
+                        LOGGER.trace("Search and aggregate documents in ElasticSearch " + printSearchQuery(indexName, query) + " : " + searchResponse);
+
+                        recordSearch("searchAndAggregate", indexName, query, searchResponse, context);
+
+                        if (searchResponse.isTimedOut()) {
+                            future.completeExceptionally(new DaoException("Error while searching and aggregating documents into ElasticSearch: timed out (deadline exceeded)"));
+                            return;
+                        }
+
+                        AggregatedPage<Metadata> result = new AggregatedPage<>(
+                                convert(searchResponse.getHits()),
+                                pageable,
+                                searchResponse.getHits().getTotalHits(),
+                                convert(searchResponse.getAggregations()));
+
+                        LOGGER.debug("Search and aggregate documents in ElasticSearch " + printSearchQuery(indexName, query) + " : " + result.getContent() + ", " + result.getAggregations());
+
+                        future.complete(result);
+                    },
+                    ex -> {
+                        LOGGER.error("Error while searching and aggregating documents into ElasticSearch " + printSearchQuery(indexName, query), ex);
+                        future.completeExceptionally(new DaoException("Error while searching and aggregating documents into ElasticSearch: " + ex.getMessage()));
+                    }));
+
+            return future;
+        });
+    }
+
+    @Override
+    public long count(String indexName, Query query) throws DaoException {
+        return await(countAsync(indexName, query));
+    }
+
+    @Override
+    public long countAll(Query query) throws DaoException {
+        return count(ALL_INDICES, query);
+    }
+
+    @Override
+    public CompletableFuture<Long> countAsync(String indexName, Query query) {
+        LOGGER.debug("Count in ElasticSearch " + printSearchQuery(indexName, query));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        return Tracing.traceAsync("es.count", Tracing.index(indexName), () -> {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            RequestContext context = RequestContext.current();
+
+            SearchRequest request = new SearchRequest(indexName)
+                    .searchType(SearchType.DFS_QUERY_THEN_FETCH)
+                    .source(new SearchSourceBuilder()
+                            .query(convertQuery(query))
+                            .size(0)
+                            .timeout(timeLeft()));
+
+            client.searchAsync(request, ActionListener.wrap(
+                    countResponse -> {
+                        LOGGER.trace("Count in ElasticSearch " + printSearchQuery(indexName, query) + " : " + countResponse);
+
+                        recordSearch("count", indexName, query, countResponse, context);
+
+                        if (countResponse.isTimedOut()) {
+                            future.completeExceptionally(new DaoException("Error while counting into ElasticSearch: timed out (deadline exceeded)"));
+                            return;
+                        }
+
+                        future.complete(countResponse.getHits().getTotalHits());
+                    },
+                    ex -> {
+                        LOGGER.error("Error while counting into ElasticSearch " + printSearchQuery(indexName, query), ex);
+                        future.completeExceptionally(new DaoException("Error while counting into ElasticSearch: " + ex.getMessage()));
+                    }));
+
+            return future;
+        });
+    }
+
+    @Override
+    public void createIndex(String indexName) throws DaoException {
+        LOGGER.debug("Create index in ElasticSearch " + printSearchIndexName(indexName));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            Response response = Tracing.trace("es.index_exists", Tracing.index(indexName), () -> lowLevelClient.performRequest("HEAD", "/" + indexName));
+            boolean exists = response.getStatusLine().getStatusCode() == HTTP_OK;
+
+            if (!exists) {
+                Tracing.trace("es.create_index", Tracing.index(indexName), () -> lowLevelClient.performRequest("PUT", "/" + indexName));
+                LOGGER.debug("Index created in ElasticSearch " + printSearchIndexName(indexName));
+
+            } else {
+                LOGGER.debug("Index already exists in ElasticSearch " + printSearchIndexName(indexName));
+            }
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while creating the index into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while creating the index into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isIndex(String name) throws DaoException {
+
+        // Validation
+        if (Strings.isEmpty(name)) throw new IllegalArgumentException("name " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            // HEAD /{name} matches the aliases too
+            return Tracing.trace("es.index_exists", Tracing.index(name), () ->
+                    lowLevelClient.performRequest("HEAD", "/" + name.toLowerCase()).getStatusLine().getStatusCode() == HTTP_OK
+                            && lowLevelClient.performRequest("HEAD", "/_alias/" + name.toLowerCase()).getStatusLine().getStatusCode() != HTTP_OK);
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while checking the index into ElasticSearch " + printSearchIndexName(name), ex);
+            throw new DaoException("Error while checking the index into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void alias(String alias, String indexName) throws DaoException {
+        LOGGER.debug("Alias index in ElasticSearch " + printSearchIndexName(indexName) + " [alias=" + alias + "]");
+
+        // Validation
+        if (Strings.isEmpty(alias)) throw new IllegalArgumentException("alias " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            Tracing.trace("es.alias", Tracing.index(indexName), () -> {
+                // Removed from the indices it points to and added to the index in a single (atomic) request
+                Response response = lowLevelClient.performRequest("GET", "/_alias/" + alias.toLowerCase(), Collections.singletonMap("ignore", "404"));
+                Set<String> indices = response.getStatusLine().getStatusCode() == HTTP_OK
+                        ? XContentHelper.convertToMap(XContentType.JSON.xContent(), response.getEntity().getContent(), false).keySet()
+                        : Collections.emptySet();
+
+                XContentBuilder actions = XContentFactory.jsonBuilder().startObject().startArray("actions");
+                for (String index : indices) {
+                    actions.startObject().startObject("remove").field("index", index).field("alias", alias.toLowerCase()).endObject().endObject();
+                }
+                actions.startObject().startObject("add").field("index", indexName.toLowerCase()).field("alias", alias.toLowerCase()).endObject().endObject();
+                actions.endArray().endObject();
+
+                return lowLevelClient.performRequest("POST", "/_aliases", Collections.emptyMap(),
+                        new NStringEntity(actions.string(), ContentType.APPLICATION_JSON));
+            });
+
+            LOGGER.debug("Index aliased in ElasticSearch " + printSearchIndexName(indexName) + " [alias=" + alias + "]");
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while aliasing the index into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while aliasing the index into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(String indexName, String id) throws DaoException, NotFoundException {
+        LOGGER.debug("Delete document in ElasticSearch " + printSearchDocument(indexName, id));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            DeleteResponse response = Tracing.trace("es.delete", Tracing.document(indexName, id),
+                    () -> client.delete(new DeleteRequest(indexName.toLowerCase(), indexName.toLowerCase(), id)));
+
+            if (response.getResult() == DocWriteResponse.Result.NOT_FOUND) {
+                throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
+            }
+
+            Tracing.trace("es.refresh", Tracing.index(indexName), () -> {
+                this.refreshIndex(indexName);
+                return null;
+            });
+
+            LOGGER.debug("Document deleted in ElasticSearch " + printSearchDocument(indexName, id));
+
+        } catch (NotFoundException ex) {
+            LOGGER.warn("Error while deleting document into ElasticSearch " + printSearchDocument(indexName, id), ex);
+            throw ex;
+        } catch (Exception ex) {
+            LOGGER.error("Error while deleting document into ElasticSearch " + printSearchDocument(indexName, id), ex);
+            throw new DaoException("Error while deleting document into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public long delete(String indexName, List<String> ids) throws DaoException {
+        LOGGER.debug("Delete documents in ElasticSearch " + printSearchIndexName(indexName) + " [ids=" + ids + "]");
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (ids == null) throw new IllegalArgumentException("ids " + ERROR_NOT_NULL_OR_EMPTY);
+
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            BulkRequest request = new BulkRequest();
+            for (String id : ids) {
+                request.add(new DeleteRequest(indexName.toLowerCase(), indexName.toLowerCase(), id));
+            }
+
+            BulkResponse response = Tracing.trace("es.bulk_delete", Tracing.index(indexName), () -> client.bulk(request));
+
+            Tracing.trace("es.refresh", Tracing.index(indexName), () -> {
+                this.refreshIndex(indexName);
+                return null;
+            });
+
+            long deleted = countDeleted(indexName, response);
+
+            LOGGER.debug("Documents deleted in ElasticSearch " + printSearchIndexName(indexName) + " : " + deleted);
+
+            return deleted;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while deleting documents into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while deleting documents into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public long scroll(String indexName, int batchSize, Consumer<List<Metadata>> consumer) throws DaoException {
+        LOGGER.debug("Scroll documents in ElasticSearch " + printSearchIndexName(indexName));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (consumer == null) throw new IllegalArgumentException("consumer " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            long read = scroll(indexName, batchSize, null, hits -> consumer.accept(convert(hits)));
+
+            LOGGER.debug("Documents scrolled in ElasticSearch " + printSearchIndexName(indexName) + " : " + read);
+
+            return read;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while scrolling documents into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while scrolling documents into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public long scrollHashes(String indexName, int batchSize, Consumer<List<String>> consumer) throws DaoException {
+        LOGGER.debug("Scroll hashes in ElasticSearch " + printSearchIndexName(indexName));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (consumer == null) throw new IllegalArgumentException("consumer " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            long read = scroll(indexName, batchSize, HASH_INDEX_KEY, hits -> consumer.accept(hashes(hits)));
+
+            LOGGER.debug("Hashes scrolled in ElasticSearch " + printSearchIndexName(indexName) + " : " + read);
+
+            return read;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while scrolling hashes into ElasticSearch " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while scrolling hashes into ElasticSearch: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Scroll all the documents of an index in index order (_doc), the scroll cleared at the end
+     *
+     * @param indexName Name of the index
+     * @param batchSize Number of documents per batch
+     * @param includes  Field of the source fetched (null: whole source)
+     * @param consumer  Consumer of each batch of hits
+     * @return Number of documents read
+     * @throws IOException
+     */
+    private long scroll(String indexName, int batchSize, String includes, Consumer<SearchHits> consumer) throws IOException {
+        String scrollId = null;
+        try {
+            SearchSourceBuilder source = new SearchSourceBuilder()
+                    .query(QueryBuilders.matchAllQuery())
+                    .sort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC)
+                    .version(true)
+                    .size(batchSize);
+            if (includes != null) {
+                source.fetchSource(includes, null);
+            }
+            SearchRequest request = new SearchRequest(indexName)
+                    .scroll(SCROLL_KEEP_ALIVE)
+                    .source(source);
+            SearchResponse response = Tracing.trace("es.scroll", Tracing.index(indexName), () -> client.search(request));
+
+            long read = 0;
+            while (response.getHits().getHits().length > 0) {
+                scrollId = response.getScrollId();
+                consumer.accept(response.getHits());
+                read += response.getHits().getHits().length;
+
+                SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId).scroll(SCROLL_KEEP_ALIVE);
+                response = Tracing.trace("es.scroll", Tracing.index(indexName), () -> client.searchScroll(scrollRequest));
+            }
+            scrollId = response.getScrollId();
+
+            return read;
+
+        } finally {
+            if (scrollId != null) {
+                try {
+                    ClearScrollRequest clearRequest = new ClearScrollRequest();
+                    clearRequest.addScrollId(scrollId);
+                    client.clearScroll(clearRequest);
+                } catch (Exception ex) {
+                    LOGGER.warn("Error while clearing scroll in ElasticSearch " + printSearchIndexName(indexName) + ": " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if a document exists in E.S.
+     *
+     * @param index Index Name
+     * @param id    Document ID
+     * @return true/false
+     * @throws IOException
+     */
+    private boolean doesExist(String index, String id) throws IOException {
+        if (id == null || id.isEmpty()) {
+            return false;
+        }
+
+        return client.exists(new GetRequest(index, index, id).refresh(true));
+    }
+
+    /**
+     * Prepare a search request (query, pagination and sorting)
+     *
+     * @param pageable  Pagination and Sorting
+     * @param indexName Index name
+     * @param query     Search query
+     * @return ElasticSearch search request
+     */
+    private SearchRequest prepareSearch(Pageable pageable, String indexName, Query query) {
+        SearchSourceBuilder source = new SearchSourceBuilder()
+                .query(convertQuery(query))
+                .from(pageable.getOffset())
+                .size(pageable.getPageSize())
+                .version(true) // version of each hit (optimistic concurrency of the updates)
+                .timeout(timeLeft()); // the shards stop searching at the deadline
+
+        if (pageable.getSort() != null) {
+            for (Order order : pageable.getSort()) {
+                source.sort(new FieldSortBuilder(order.getProperty()).order(order.isAscending() ? SortOrder.ASC : SortOrder.DESC).unmappedType("date"));
+            }
+        }
+
+        return new SearchRequest(indexName)
+                .searchType(SearchType.DFS_QUERY_THEN_FETCH)
+                .source(source);
+    }
+
+    /**
+     * Refresh an index
+     *
+     * @param index Index name
+     * @throws IOException
+     */
+    private void refreshIndex(String index) throws IOException {
+        this.lowLevelClient.performRequest("POST", "/" + index + "/_refresh");
+    }
+
+    /**
+     * Wait for the result of an asynchronous request
+     *
+     * @param future Future result
+     * @return Result
+     * @throws DaoException
+     */
+    private static <T> T await(CompletableFuture<T> future) throws DaoException {
+        try {
+            return get(future);
+
+        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
+            throw toDaoException(ex);
+        }
+    }
+
+    /**
+     * Wait for the result of an asynchronous request until the deadline of the current request
+     */
+    private static <T> T get(CompletableFuture<T> future) throws InterruptedException, ExecutionException, TimeoutException {
+        RequestContext context = RequestContext.current();
+        if (!context.hasDeadline()) {
+            return future.get();
+        }
+        return future.get(context.remaining(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+    }
+
+    private static DaoException toDaoException(Exception ex) {
+        if (ex instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+            return new DaoException("Interrupted while waiting for ElasticSearch");
+        }
+        if (ex instanceof TimeoutException) {
+            return new DaoException("Deadline exceeded while waiting for ElasticSearch");
+        }
+        if (ex.getCause() instanceof DaoException) {
+            return (DaoException) ex.getCause();
+        }
+        return new DaoException("Error while waiting for ElasticSearch: " + ex.getMessage());
+    }
+
+}
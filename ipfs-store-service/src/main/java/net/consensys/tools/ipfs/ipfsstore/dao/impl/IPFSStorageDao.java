@@ -1,6 +1,9 @@
 package net.consensys.tools.ipfs.ipfsstore.dao.impl;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,8 +13,12 @@ import io.ipfs.api.IPFS;
 import io.ipfs.api.MerkleNode;
 import io.ipfs.api.NamedStreamable;
 import io.ipfs.multihash.Multihash;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
 import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
 import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
 import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
 
 /**
@@ -43,7 +50,11 @@ public class IPFSStorageDao implements StorageDao {
 
         try {
             NamedStreamable.ByteArrayWrapper requestFile = new NamedStreamable.ByteArrayWrapper(content);
-            MerkleNode response = this.ipfs.add(requestFile).get(0);
+            MerkleNode response = Tracing.trace("ipfs.add", Tracing.bytes(content.length), () -> {
+                MerkleNode node = this.ipfs.add(requestFile).get(0);
+                Span.current().setAttribute(Tracing.HASH, node.hash.toString());
+                return node;
+            });
 
             String hash = response.hash.toString();
 
@@ -67,9 +78,18 @@ public class IPFSStorageDao implements StorageDao {
         // Validation
         if (Strings.isEmpty(hash)) throw new IllegalArgumentException("hash " + ERROR_NOT_NULL_OR_EMPTY);
 
+        // The IPFS client can't abort a call in progress: at least don't start one for an expired request
+        if (RequestContext.current().isExpired()) {
+            throw new DaoException("Deadline exceeded before getting file in IPFS " + printHash(hash));
+        }
+
         try {
             Multihash filePointer = Multihash.fromBase58(hash);
-            byte[] content = this.ipfs.cat(filePointer);
+            byte[] content = Tracing.trace("ipfs.cat", Tracing.hash(hash), () -> {
+                byte[] bytes = this.ipfs.cat(filePointer);
+                Span.current().setAttribute(Tracing.BYTES, bytes.length);
+                return bytes;
+            });
 
             LOGGER.debug("Get file in IPFS [hash=" + hash + "]");
 
@@ -91,7 +111,7 @@ public class IPFSStorageDao implements StorageDao {
 
         try {
             Multihash filePointer = Multihash.fromBase58(hash);
-            this.ipfs.pin.add(filePointer);
+            Tracing.trace("ipfs.pin", Tracing.hash(hash), () -> this.ipfs.pin.add(filePointer));
 
             LOGGER.debug("File pined in IPFS [hash=" + hash + "]");
 
@@ -111,7 +131,7 @@ public class IPFSStorageDao implements StorageDao {
 
         try {
             Multihash filePointer = Multihash.fromBase58(hash);
-            this.ipfs.pin.rm(filePointer);
+            Tracing.trace("ipfs.unpin", Tracing.hash(hash), () -> this.ipfs.pin.rm(filePointer));
 
             LOGGER.debug("File unpined in IPFS " + printHash(hash));
 
@@ -122,6 +142,44 @@ public class IPFSStorageDao implements StorageDao {
 
     }
 
+    @Override
+    public Set<String> listPins() throws DaoException {
+
+        LOGGER.debug("List pinned files in IPFS ...");
+
+        try {
+            Map<Multihash, Object> pins = Tracing.trace("ipfs.pin_ls", Attributes.empty(), () -> {
+                Map<Multihash, Object> recursivePins = this.ipfs.pin.ls(IPFS.PinType.recursive);
+                Span.current().setAttribute(Tracing.RESULTS, (long) recursivePins.size());
+                return recursivePins;
+            });
+
+            LOGGER.debug("Pinned files listed in IPFS [count=" + pins.size() + "]");
+
+            return pins.keySet().stream().map(Multihash::toBase58).collect(Collectors.toSet());
+
+        } catch (IOException ex) {
+            LOGGER.error("Exception while listing pinned files in IPFS", ex);
+            throw new DaoException("Exception while listing pinned files in IPFS: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void gc() throws DaoException {
+
+        LOGGER.debug("Garbage collect IPFS ...");
+
+        try {
+            Tracing.trace("ipfs.gc", Attributes.empty(), () -> this.ipfs.repo.gc());
+
+            LOGGER.debug("IPFS garbage collected");
+
+        } catch (IOException ex) {
+            LOGGER.error("Exception while garbage collecting IPFS", ex);
+            throw new DaoException("Exception while garbage collecting IPFS: " + ex.getMessage());
+        }
+    }
+
     private String printHash(String hash) {
         return "[hash=" + hash + "]";
     }
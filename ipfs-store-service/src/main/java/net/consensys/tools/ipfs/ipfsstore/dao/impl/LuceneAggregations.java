@@ -0,0 +1,318 @@
+package net.consensys.tools.ipfs.ipfsstore.dao.impl;
+
+import java.io.IOException;
+import java.util.*;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.AggregationBuckets.Interval;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.LuceneIndex.FieldType;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationResult;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Aggregation;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationRange;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationType;
+import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
+
+/**
+ * Aggregations of the Lucene implementation of IndexDao, computed from the sorted values (doc values) of the documents
+ * collected by a search:
+ * <pre>
+ * terms          : document count per value (keyword and numeric fields), the [size] most frequent values
+ * range          : document count per range [from, to[ (numeric fields)
+ * date_histogram : document count per interval (numeric fields, epoch milliseconds), empty intervals included (up to 10000)
+ * cardinality    : number of distinct values (exact)
+ * </pre>
+ * Same results as the ElasticSearch implementations, except the keys of the date histograms which are always ISO 8601
+ * dates. An aggregation on a field without any value returns no bucket (or 0).
+ */
+final class LuceneAggregations extends SimpleCollector {
+
+    private static final Logger LOGGER = Logger.getLogger(LuceneAggregations.class);
+
+    private final List<Aggregator> aggregators = new ArrayList<>();
+
+    /**
+     * @param index        Index searched
+     * @param aggregations Aggregations of the query (the invalid ones are ignored)
+     */
+    LuceneAggregations(LuceneIndex index, List<Aggregation> aggregations) {
+        for (Aggregation aggregation : aggregations) {
+            Aggregator aggregator = aggregator(index, aggregation);
+            if (aggregator != null) {
+                aggregators.add(aggregator);
+            }
+        }
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        for (Aggregator aggregator : aggregators) {
+            aggregator.setNextReader(context.reader());
+        }
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        for (Aggregator aggregator : aggregators) {
+            aggregator.collect(doc);
+        }
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    /**
+     * @return Aggregation results by aggregation name
+     */
+    Map<String, AggregationResult> results() {
+        Map<String, AggregationResult> results = new LinkedHashMap<>();
+        for (Aggregator aggregator : aggregators) {
+            results.put(aggregator.name, aggregator.result());
+        }
+        return results;
+    }
+
+    /**
+     * Convert a IPFS-Store Aggregation to an aggregator
+     *
+     * @param index       Index searched
+     * @param aggregation IPFS-Store Aggregation
+     * @return Aggregator or null if the aggregation is invalid
+     */
+    private static Aggregator aggregator(LuceneIndex index, Aggregation aggregation) {
+        LOGGER.trace("Converting aggregation: " + aggregation);
+
+        if (aggregation.getType() == null || Strings.isEmpty(aggregation.getName()) || Strings.isEmpty(aggregation.getField())) {
+            LOGGER.warn("Aggregation [" + aggregation + "] requires a name, a type and a field - Ignore it!");
+            return null;
+        }
+
+        FieldType fieldType = index.fieldType(aggregation.getField());
+
+        switch (aggregation.getType()) {
+            case terms:
+                return new TermsAggregator(aggregation, fieldType);
+            case cardinality:
+                return new CardinalityAggregator(aggregation, fieldType);
+            case range:
+            case date_histogram:
+                if (fieldType == FieldType.keyword) {
+                    LOGGER.warn("Aggregation [" + aggregation + "] requires a numeric field - Ignore it!");
+                    return null;
+                }
+                if (aggregation.getType() == AggregationType.range) {
+                    return new RangeAggregator(aggregation, fieldType);
+                }
+                Interval interval = Interval.parse(aggregation.getInterval());
+                if (interval == null) {
+                    LOGGER.warn("Invalid interval for aggregation [" + aggregation + "] - Ignore it!");
+                    return null;
+                }
+                return new DateHistogramAggregator(aggregation, fieldType, interval);
+            default:
+                LOGGER.warn("Aggregation type [" + aggregation.getType() + "] not supported for aggregation [" + aggregation + "] - Ignore it!");
+                return null;
+        }
+    }
+
+    /**
+     * Aggregator of the values of a field
+     */
+    private abstract static class Aggregator {
+
+        final String name;
+        final String field;
+        final FieldType fieldType;
+
+        SortedSetDocValues keywords;
+        SortedNumericDocValues numbers;
+
+        Aggregator(Aggregation aggregation, FieldType fieldType) {
+            this.name = aggregation.getName();
+            this.field = aggregation.getField();
+            this.fieldType = fieldType;
+        }
+
+        void setNextReader(LeafReader reader) throws IOException {
+            if (fieldType == FieldType.keyword) {
+                keywords = DocValues.getSortedSet(reader, field);
+            } else {
+                numbers = DocValues.getSortedNumeric(reader, field);
+            }
+        }
+
+        abstract void collect(int doc) throws IOException;
+
+        abstract AggregationResult result();
+
+        /**
+         * @param value Sorted value of a numeric field
+         * @return Value
+         */
+        double toDouble(long value) {
+            return fieldType == FieldType.decimal ? NumericUtils.sortableLongToDouble(value) : value;
+        }
+
+        String toKey(long value) {
+            return fieldType == FieldType.decimal ? Double.toString(NumericUtils.sortableLongToDouble(value)) : Long.toString(value);
+        }
+    }
+
+    private static final class TermsAggregator extends Aggregator {
+
+        private final int size;
+        private final Map<String, Long> counts = new HashMap<>();
+        private long[] ordCounts = new long[0]; // counts by ordinal of the current segment (keywords)
+
+        TermsAggregator(Aggregation aggregation, FieldType fieldType) {
+            super(aggregation, fieldType);
+            this.size = aggregation.getSize() != null ? aggregation.getSize() : AggregationBuckets.DEFAULT_TERMS_SIZE;
+        }
+
+        @Override
+        void setNextReader(LeafReader reader) throws IOException {
+            flushOrdinals();
+            super.setNextReader(reader);
+            if (keywords != null) {
+                ordCounts = new long[(int) keywords.getValueCount()];
+            }
+        }
+
+        @Override
+        void collect(int doc) {
+            if (keywords != null) {
+                keywords.setDocument(doc);
+                for (long ord = keywords.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = keywords.nextOrd()) {
+                    ordCounts[(int) ord]++;
+                }
+
+            } else {
+                numbers.setDocument(doc);
+                long previous = 0;
+                for (int i = 0; i < numbers.count(); i++) {
+                    long value = numbers.valueAt(i);
+                    if (i == 0 || value != previous) { // sorted values: a document counts once per value
+                        counts.merge(toKey(value), 1L, Long::sum);
+                    }
+                    previous = value;
+                }
+            }
+        }
+
+        private void flushOrdinals() {
+            for (int ord = 0; ord < ordCounts.length; ord++) {
+                if (ordCounts[ord] > 0) {
+                    counts.merge(keywords.lookupOrd(ord).utf8ToString(), ordCounts[ord], Long::sum);
+                }
+            }
+            ordCounts = new long[0];
+        }
+
+        @Override
+        AggregationResult result() {
+            flushOrdinals();
+            return AggregationBuckets.terms(counts, size);
+        }
+    }
+
+    private static final class CardinalityAggregator extends Aggregator {
+
+        private final Set<Object> values = new HashSet<>();
+
+        CardinalityAggregator(Aggregation aggregation, FieldType fieldType) {
+            super(aggregation, fieldType);
+        }
+
+        @Override
+        void collect(int doc) {
+            if (keywords != null) {
+                keywords.setDocument(doc);
+                for (long ord = keywords.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = keywords.nextOrd()) {
+                    values.add(BytesRef.deepCopyOf(keywords.lookupOrd(ord)));
+                }
+
+            } else {
+                numbers.setDocument(doc);
+                for (int i = 0; i < numbers.count(); i++) {
+                    values.add(numbers.valueAt(i));
+                }
+            }
+        }
+
+        @Override
+        AggregationResult result() {
+            return AggregationBuckets.cardinality(values.size());
+        }
+    }
+
+    private static final class RangeAggregator extends Aggregator {
+
+        private final List<AggregationRange> ranges;
+        private final long[] counts;
+
+        RangeAggregator(Aggregation aggregation, FieldType fieldType) {
+            super(aggregation, fieldType);
+            this.ranges = aggregation.getRanges() != null ? aggregation.getRanges() : Collections.emptyList();
+            this.counts = new long[ranges.size()];
+        }
+
+        @Override
+        void collect(int doc) {
+            numbers.setDocument(doc);
+            for (int r = 0; r < ranges.size(); r++) {
+                AggregationRange range = ranges.get(r);
+                for (int i = 0; i < numbers.count(); i++) {
+                    double value = toDouble(numbers.valueAt(i));
+                    if ((range.getFrom() == null || value >= range.getFrom()) && (range.getTo() == null || value < range.getTo())) {
+                        counts[r]++; // a document counts once per range
+                        break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        AggregationResult result() {
+            return AggregationBuckets.range(ranges, counts);
+        }
+    }
+
+    private static final class DateHistogramAggregator extends Aggregator {
+
+        private final Interval interval;
+        private final SortedMap<Long, Long> counts = new TreeMap<>();
+
+        DateHistogramAggregator(Aggregation aggregation, FieldType fieldType, Interval interval) {
+            super(aggregation, fieldType);
+            this.interval = interval;
+        }
+
+        @Override
+        void collect(int doc) {
+            numbers.setDocument(doc);
+            long previous = 0;
+            for (int i = 0; i < numbers.count(); i++) {
+                long key = interval.round((long) toDouble(numbers.valueAt(i)));
+                if (i == 0 || key != previous) { // sorted values: a document counts once per interval
+                    counts.merge(key, 1L, Long::sum);
+                }
+                previous = key;
+            }
+        }
+
+        @Override
+        AggregationResult result() {
+            return AggregationBuckets.dateHistogram(interval, counts);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package net.consensys.tools.ipfs.ipfsstore.dao.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Lucene index (see LuceneIndexDao): a memory-mapped directory, its writer, the near-real-time searchers opened from
+ * the writer and the type of each field, set by the first value indexed and kept in the user data of the commits
+ */
+final class LuceneIndex implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(LuceneIndex.class);
+
+    private static final String FIELDS_COMMIT_KEY = "fields";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Type of a field
+     */
+    enum FieldType {
+        keyword,    // Strings and booleans: exact (lower case) term, analyzed text and sorted values
+        integer,    // Integers (long): points and sorted values
+        decimal     // Decimals (double): points and sorted values
+    }
+
+    private final String name;
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final Map<String, FieldType> fields;
+    private volatile boolean fieldsChanged;
+
+    // Source of the documents deleted since the last refresh (see pendingSource)
+    static final Map<String, Object> DELETED = Collections.unmodifiableMap(new HashMap<>());
+
+    // Sources of the documents written since the last refresh (real-time gets), dropped once visible to the searches
+    private volatile Map<String, Map<String, Object>> pending = new ConcurrentHashMap<>();
+    private volatile Map<String, Map<String, Object>> refreshing = Collections.emptyMap();
+
+    private LuceneIndex(String name, Directory directory, IndexWriter writer, Map<String, FieldType> fields) throws IOException {
+        this.name = name;
+        this.directory = directory;
+        this.writer = writer;
+        this.fields = new ConcurrentHashMap<>(fields);
+        this.searcherManager = new SearcherManager(writer, true, false, null);
+    }
+
+    /**
+     * Open an index
+     *
+     * @param path      Directory of the index
+     * @param name      Name of the index
+     * @param analyzer  Analyzer of the text fields
+     * @param ramBuffer Memory (MB) buffering the documents before they are flushed to a new segment
+     * @param create    Create the index if it doesn't exist
+     * @return Index, null if it doesn't exist and create is false
+     * @throws IOException
+     */
+    static LuceneIndex open(Path path, String name, Analyzer analyzer, double ramBuffer, boolean create) throws IOException {
+        Directory directory = new MMapDirectory(path);
+        try {
+            boolean exists = DirectoryReader.indexExists(directory);
+            if (!exists && !create) {
+                directory.close();
+                return null;
+            }
+
+            Map<String, FieldType> fields = exists
+                    ? readFields(SegmentInfos.readLatestCommit(directory).getUserData())
+                    : Collections.emptyMap();
+
+            IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                    .setRAMBufferSizeMB(ramBuffer);
+            IndexWriter writer = new IndexWriter(directory, config);
+            if (!exists) {
+                writer.commit(); // visible to the next startup even if nothing is indexed
+            }
+
+            LOGGER.info("Lucene index [" + name + "] opened in " + path + " [fields: " + fields.size() + ", documents: " + writer.numDocs() + "]");
+
+            return new LuceneIndex(name, directory, writer, fields);
+
+        } catch (IOException | RuntimeException ex) {
+            directory.close();
+            throw ex;
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @param field Field name
+     * @return Type of the field, null if no value of this field was indexed
+     */
+    FieldType fieldType(String field) {
+        return fields.get(field);
+    }
+
+    /**
+     * Set the type of a field if it is a new field
+     *
+     * @param field Field name
+     * @param type  Type of its first value
+     * @return Type of the field (the type of the first value indexed if the field already exists)
+     */
+    FieldType addField(String field, FieldType type) {
+        FieldType existing = fields.putIfAbsent(field, type);
+        if (existing != null) {
+            return existing;
+        }
+        fieldsChanged = true;
+        return type;
+    }
+
+    /**
+     * Add or replace a document
+     *
+     * @param idField  Field of the document ID
+     * @param id       Document ID
+     * @param document Document
+     * @param source   Source of the document
+     * @throws IOException
+     */
+    void update(String idField, String id, Document document, Map<String, Object> source) throws IOException {
+        writer.updateDocument(new Term(idField, id), document);
+        pending.put(id, source);
+    }
+
+    /**
+     * Delete a document
+     *
+     * @param idField Field of the document ID
+     * @param id      Document ID
+     * @throws IOException
+     */
+    void delete(String idField, String id) throws IOException {
+        writer.deleteDocuments(new Term(idField, id));
+        pending.put(id, DELETED);
+    }
+
+    /**
+     * @param id Document ID
+     * @return Source of the document if written since the last refresh (DELETED if deleted since), null otherwise
+     */
+    Map<String, Object> pendingSource(String id) {
+        Map<String, Object> source = pending.get(id);
+        return source != null ? source : refreshing.get(id);
+    }
+
+    /**
+     * @return Searcher on the last refreshed point in time, to release after use
+     * @throws IOException
+     */
+    IndexSearcher acquire() throws IOException {
+        return searcherManager.acquire();
+    }
+
+    void release(IndexSearcher searcher) throws IOException {
+        searcherManager.release(searcher);
+    }
+
+    /**
+     * Make the changes visible to the searches (reopen the searcher from the writer, without commit)
+     *
+     * @throws IOException
+     */
+    synchronized void refresh() throws IOException {
+        refreshing = pending;
+        pending = new ConcurrentHashMap<>();
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } finally {
+            refreshing = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Commit the changes (durable) and the types of the fields, if anything changed since the last commit
+     *
+     * @throws IOException
+     */
+    void commit() throws IOException {
+        if (!writer.hasUncommittedChanges() && !fieldsChanged) {
+            return;
+        }
+        fieldsChanged = false;
+        writer.setLiveCommitData(Collections.singletonMap(FIELDS_COMMIT_KEY, MAPPER.writeValueAsString(fields)).entrySet());
+        writer.commit();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        }
+    }
+
+    private static Map<String, FieldType> readFields(Map<String, String> userData) throws IOException {
+        String fields = userData.get(FIELDS_COMMIT_KEY);
+        if (fields == null) {
+            return Collections.emptyMap();
+        }
+        return MAPPER.readValue(fields, new TypeReference<Map<String, FieldType>>() {
+        });
+    }
+}
@@ -0,0 +1,1224 @@
+package net.consensys.tools.ipfs.ipfsstore.dao.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.MultiCollector;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.SortedSetSortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.LuceneIndex.FieldType;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Filter;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.SlowQueryLog;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
+import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
+
+/**
+ * Embedded Lucene implementation of IndexDao, for single-node deployments (no search engine to run, no network hop)
+ * <pre>
+ * lucene.path             : directory of the indexes (one memory-mapped sub-directory per index)
+ * lucene.refresh-interval : time (ms) between two refreshes of the searchers (0: refreshed after each write)
+ * lucene.commit-interval  : time (ms) between two commits (durability, the changes are also committed at shutdown)
+ * lucene.ram-buffer       : memory (MB) buffering the documents of an index before they are flushed to a segment
+ * </pre>
+ * The fields are typed by their first value, like the dynamic mapping of ElasticSearch: integers and decimals are
+ * numeric fields (points and sorted values), the other values are keyword fields indexed three times: exact value in
+ * lower case (equals, not_equals, in, ranges), analyzed text (contains, full_text) and sorted value (sorting, terms).
+ * Keyword values longer than 256 characters are only analyzed. The documents are stored as JSON, like the source of
+ * the ElasticSearch documents, and updated in place when indexed again with the same ID (new fields merged).
+ * <p>
+ * Searches run on near-real-time searchers opened from the writer: with a refresh interval, a search can miss the
+ * writes of the last interval. A search by ID is real-time (the sources written since the last refresh are kept).
+ */
+@Service
+@ConditionalOnProperty(name = "index.engine", havingValue = "lucene")
+public class LuceneIndexDao implements IndexDao, DisposableBean {
+
+    private static final Logger LOGGER = Logger.getLogger(LuceneIndexDao.class);
+    private static final String NULL = "null"; //must be lower case
+
+    private static final String ERROR_NOT_NULL_OR_EMPTY = "cannot be null or empty";
+
+    private static final String ID_FIELD = "_id";
+    private static final String SOURCE_FIELD = "_source";
+    private static final String VERSION_FIELD = "_version"; // kept in the source, not indexed
+    private static final String TEXT_FIELD_SUFFIX = "#text";
+    private static final Set<String> STORED_FIELDS = new HashSet<>(Arrays.asList(ID_FIELD, SOURCE_FIELD));
+    private static final int IGNORE_ABOVE = 256;
+    private static final Pattern INDEX_NAME = Pattern.compile("[a-z0-9][a-z0-9_.\\-]*");
+    private static final int WRITE_LOCKS = 64;
+    private static final String ALIASES_FILE = "aliases.properties";
+
+    private final Path path;
+    private final long refreshInterval;
+    private final double ramBuffer;
+    private final boolean indexNullValue;
+    private final SlowQueryLog slowQueryLog;
+
+    private final Analyzer analyzer = new StandardAnalyzer(CharArraySet.EMPTY_SET); // ElasticSearch standard analyzer
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, LuceneIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<String, String> aliases = new ConcurrentHashMap<>(); // persisted in ALIASES_FILE
+    private final Object[] writeLocks = new Object[WRITE_LOCKS]; // updates of a document ID serialized
+    private final ScheduledExecutorService scheduler;
+
+    /*
+     * Constructor
+     */
+    public LuceneIndexDao(String path, long refreshInterval) {
+        this(path, refreshInterval, 0, 16, true, SlowQueryLog.disabled());
+    }
+
+    @Autowired
+    public LuceneIndexDao(
+            @Value("${lucene.path}") String path,
+            @Value("${lucene.refresh-interval:0}") long refreshInterval,
+            @Value("${lucene.commit-interval:5000}") long commitInterval,
+            @Value("${lucene.ram-buffer:64}") double ramBuffer,
+            @Value("${parameters.indexNullValue:true}") boolean indexNullValue,
+            SlowQueryLog slowQueryLog) {
+
+        this.path = Paths.get(path);
+        this.refreshInterval = refreshInterval;
+        this.ramBuffer = ramBuffer;
+        this.indexNullValue = indexNullValue;
+        this.slowQueryLog = slowQueryLog;
+        for (int i = 0; i < WRITE_LOCKS; i++) {
+            writeLocks[i] = new Object();
+        }
+
+        Path aliasesPath = this.path.resolve(ALIASES_FILE);
+        if (Files.exists(aliasesPath)) {
+            try (InputStream input = Files.newInputStream(aliasesPath)) {
+                Properties properties = new Properties();
+                properties.load(input);
+                properties.stringPropertyNames().forEach(alias -> aliases.put(alias, properties.getProperty(alias)));
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Error while reading the aliases " + aliasesPath, ex);
+            }
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("lucene-");
+        threadFactory.setDaemon(true);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+        if (refreshInterval > 0) {
+            scheduler.scheduleWithFixedDelay(() -> forEachIndex("refresh", LuceneIndex::refresh), refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+        if (commitInterval > 0) {
+            scheduler.scheduleWithFixedDelay(() -> forEachIndex("commit", LuceneIndex::commit), commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+        }
+
+        LOGGER.info("Lucene indexes in " + this.path.toAbsolutePath() + " [refresh-interval: " + refreshInterval + "ms, commit-interval: "
+                + commitInterval + "ms, ram-buffer: " + ramBuffer + "MB]");
+    }
+
+
+    @Override
+    public String index(String indexName, String documentId, String hash, String contentType, List<IndexField> indexFields) throws DaoException {
+        LOGGER.debug("Index document in Lucene " + printSearchIndex(indexName, documentId, indexFields));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(hash)) throw new IllegalArgumentException("hash " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            LuceneIndex index = index(indexName, true);
+            Map<String, Object> source = new HashMap<>();
+
+            // Populate the Lucene Document
+            source.put(IndexDao.HASH_INDEX_KEY, hash);
+            source.put(IndexDao.CONTENT_TYPE_INDEX_KEY, contentType);
+            if (indexFields != null) {
+                source.putAll(convert(indexFields));
+            }
+
+            LOGGER.debug(source);
+
+            String id = Tracing.trace("lucene.index", Tracing.document(indexName, documentId), () -> {
+                if (Strings.isEmpty(documentId)) {
+                    String generatedId = UUID.randomUUID().toString();
+                    source.put(VERSION_FIELD, 1L);
+                    index.update(ID_FIELD, generatedId, document(index, generatedId, source), source);
+                    return generatedId;
+                }
+
+                synchronized (writeLocks[Math.floorMod(documentId.hashCode(), WRITE_LOCKS)]) {
+                    // Existing document: the new fields are merged into its fields
+                    Map<String, Object> existing = source(index, documentId);
+                    Map<String, Object> merged = existing != null ? new HashMap<>(existing) : source;
+                    if (existing != null) {
+                        merged.putAll(source);
+                    }
+                    merged.put(VERSION_FIELD, version(existing) + 1);
+                    index.update(ID_FIELD, documentId, document(index, documentId, merged), merged);
+                    return documentId;
+                }
+            });
+
+            LOGGER.debug("Document indexed Lucene " + printSearchIndex(indexName, documentId, indexFields) + ". Result ID=" + id);
+
+            if (refreshInterval <= 0) {
+                Tracing.trace("lucene.refresh", Tracing.index(indexName), () -> {
+                    index.refresh();
+                    return null;
+                });
+            }
+
+            return id;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while indexing document into Lucene " + printSearchIndex(indexName, documentId, indexFields), ex);
+            throw new DaoException("Error while indexing document into Lucene: " + ex.getMessage());
+        }
+    }
+
+
+    @Override
+    public Metadata update(String indexName, String id, List<IndexField> indexFields, Long version) throws DaoException, NotFoundException, VersionConflictException {
+        LOGGER.debug("Update document in Lucene " + printSearchIndex(indexName, id, indexFields) + " [version=" + version + "]");
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id " + ERROR_NOT_NULL_OR_EMPTY);
+        if (indexFields == null) throw new IllegalArgumentException("indexFields cannot be null");
+
+        try {
+            LuceneIndex index = index(indexName, false);
+
+            Map<String, Object> merged = Tracing.trace("lucene.update", Tracing.document(indexName, id), () -> {
+                synchronized (writeLocks[Math.floorMod(id.hashCode(), WRITE_LOCKS)]) {
+                    Map<String, Object> existing = source(index, id);
+                    if (existing == null) {
+                        throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
+                    }
+                    long current = version(existing);
+                    if (version != null && version != current) {
+                        throw new VersionConflictException("Document " + printSearchDocument(indexName, id) + " is at version " + current
+                                + " (expected " + version + ")");
+                    }
+
+                    Map<String, Object> source = new HashMap<>(existing);
+                    source.putAll(convert(indexFields));
+                    source.put(VERSION_FIELD, current + 1);
+                    index.update(ID_FIELD, id, document(index, id, source), source);
+                    return source;
+                }
+            });
+
+            if (refreshInterval <= 0) {
+                Tracing.trace("lucene.refresh", Tracing.index(indexName), () -> {
+                    index.refresh();
+                    return null;
+                });
+            }
+
+            Metadata metadata = convert(index.getName(), id, merged);
+
+            LOGGER.debug("Document updated in Lucene " + printSearchDocument(indexName, id) + " [version=" + metadata.getVersion() + "]");
+
+            return metadata;
+
+        } catch (NotFoundException | VersionConflictException ex) {
+            LOGGER.warn("Error while updating document into Lucene " + printSearchDocument(indexName, id), ex);
+            throw ex;
+        } catch (Exception ex) {
+            LOGGER.error("Error while updating document into Lucene " + printSearchDocument(indexName, id), ex);
+            throw new DaoException("Error while updating document into Lucene: " + ex.getMessage());
+        }
+    }
+
+
+    @Override
+    public Metadata searchById(String indexName, String id) throws DaoException, NotFoundException {
+        LOGGER.debug("Search in Lucene by ID " + printSearchDocument(indexName, id));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName" + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id" + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            LuceneIndex index = index(indexName, false);
+            Map<String, Object> source = Tracing.trace("lucene.get", Tracing.document(indexName, id), () -> source(index, id));
+
+            if (source == null) {
+                throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
+            }
+
+            Metadata metadata = convert(index.getName(), id, source);
+
+            LOGGER.debug("Search one document in Lucene " + printSearchDocument(indexName, id) + " : " + metadata);
+
+            return metadata;
+
+        } catch (NotFoundException ex) {
+            LOGGER.warn("Error while searching into Lucene " + printSearchDocument(indexName, id), ex);
+            throw ex;
+        } catch (Exception ex) {
+            LOGGER.error("Error while searching into Lucene " + printSearchDocument(indexName, id), ex);
+            throw new DaoException("Error while searching into Lucene: " + ex.getMessage());
+        }
+    }
+
+
+    @Override
+    public List<Metadata> search(Pageable pageable, String indexName, Query query) throws DaoException {
+        LOGGER.debug("Search documents in Lucene " + printSearchQuery(indexName, query));
+
+        // Validation
+        if (pageable == null) throw new IllegalArgumentException("pageable " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            LuceneIndex index = index(indexName, false);
+
+            List<Metadata> result = Tracing.trace("lucene.search", Tracing.index(indexName),
+                    () -> execute("search", index, query, searcher -> {
+                        TopDocsCollector<?> collector = collector(index, pageable);
+                        searcher.search(convertQuery(index, query), bounded(collector));
+                        return convert(index, searcher, collector.topDocs(pageable.getOffset(), pageable.getPageSize()));
+                    }));
+
+            LOGGER.debug("Search documents in Lucene " + printSearchQuery(indexName, query) + " : " + result);
+
+            return result;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while searching documents into Lucene " + printSearchQuery(indexName, query), ex);
+            throw new DaoException("Error while searching documents into Lucene: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public AggregatedPage<Metadata> searchAndAggregate(Pageable pageable, String indexName, Query query) throws DaoException {
+        LOGGER.debug("Search and aggregate documents in Lucene " + printSearchQuery(indexName, query));
+
+        // Validation
+        if (pageable == null) throw new IllegalArgumentException("pageable " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            LuceneIndex index = index(indexName, false);
+
+            AggregatedPage<Metadata> result = Tracing.trace("lucene.search", Tracing.index(indexName),
+                    () -> execute("searchAndAggregate", index, query, searcher -> {
+                        TopDocsCollector<?> collector = collector(index, pageable);
+                        LuceneAggregations aggregations = new LuceneAggregations(index,
+                                query != null && query.hasAggregations() ? query.getAggregations() : Collections.emptyList());
+                        searcher.search(convertQuery(index, query), bounded(MultiCollector.wrap(collector, aggregations)));
+                        return new AggregatedPage<>(
+                                convert(index, searcher, collector.topDocs(pageable.getOffset(), pageable.getPageSize())),
+                                pageable,
+                                collector.getTotalHits(),
+                                aggregations.results());
+                    }));
+
+            LOGGER.debug("Search and aggregate documents in Lucene " + printSearchQuery(indexName, query) + " : " + result.getContent() + ", " + result.getAggregations());
+
+            return result;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while searching and aggregating documents into Lucene " + printSearchQuery(indexName, query), ex);
+            throw new DaoException("Error while searching and aggregating documents into Lucene: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public long count(String indexName, Query query) throws DaoException {
+        LOGGER.debug("Count in Lucene " + printSearchQuery(indexName, query));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            LuceneIndex index = index(indexName, false);
+
+            long count = Tracing.trace("lucene.count", Tracing.index(indexName),
+                    () -> execute("count", index, query, searcher -> {
+                        TotalHitCountCollector collector = new TotalHitCountCollector();
+                        searcher.search(convertQuery(index, query), bounded(collector));
+                        return (long) collector.getTotalHits();
+                    }));
+
+            LOGGER.trace("Count in Lucene " + printSearchQuery(indexName, query) + " : " + count);
+
+            return count;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while counting into Lucene " + printSearchQuery(indexName, query), ex);
+            throw new DaoException("Error while counting into Lucene: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public long countAll(Query query) throws DaoException {
+        long count = 0;
+        for (String indexName : indexNames()) {
+            count += count(indexName, query);
+        }
+        return count;
+    }
+
+    @Override
+    public void createIndex(String indexName) throws DaoException {
+        LOGGER.debug("Create index in Lucene " + printSearchIndexName(indexName));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            index(indexName, true);
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while creating the index into Lucene " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while creating the index into Lucene: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isIndex(String name) throws DaoException {
+
+        // Validation
+        if (Strings.isEmpty(name)) throw new IllegalArgumentException("name " + ERROR_NOT_NULL_OR_EMPTY);
+
+        return indexNames().contains(name.toLowerCase());
+    }
+
+    @Override
+    public void delete(String indexName, String id) throws DaoException, NotFoundException {
+        LOGGER.debug("Delete document in Lucene " + printSearchDocument(indexName, id));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            LuceneIndex index = index(indexName, false);
+
+            boolean deleted = Tracing.trace("lucene.delete", Tracing.document(indexName, id), () -> delete(index, id));
+            if (!deleted) {
+                throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
+            }
+
+            if (refreshInterval <= 0) {
+                Tracing.trace("lucene.refresh", Tracing.index(indexName), () -> {
+                    index.refresh();
+                    return null;
+                });
+            }
+
+            LOGGER.debug("Document deleted in Lucene " + printSearchDocument(indexName, id));
+
+        } catch (NotFoundException ex) {
+            LOGGER.warn("Error while deleting document into Lucene " + printSearchDocument(indexName, id), ex);
+            throw ex;
+        } catch (Exception ex) {
+            LOGGER.error("Error while deleting document into Lucene " + printSearchDocument(indexName, id), ex);
+            throw new DaoException("Error while deleting document into Lucene: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public long delete(String indexName, List<String> ids) throws DaoException {
+        LOGGER.debug("Delete documents in Lucene " + printSearchIndexName(indexName) + " [ids=" + ids + "]");
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (ids == null) throw new IllegalArgumentException("ids " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            LuceneIndex index = index(indexName, false);
+
+            long deleted = Tracing.trace("lucene.bulk_delete", Tracing.index(indexName), () -> {
+                long count = 0;
+                for (String id : ids) {
+                    if (delete(index, id)) {
+                        count++;
+                    }
+                }
+                return count;
+            });
+
+            // Refreshed whatever the refresh interval: the next batch of a delete by query must not find them
+            Tracing.trace("lucene.refresh", Tracing.index(indexName), () -> {
+                index.refresh();
+                return null;
+            });
+
+            LOGGER.debug("Documents deleted in Lucene " + printSearchIndexName(indexName) + " : " + deleted);
+
+            return deleted;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while deleting documents into Lucene " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while deleting documents into Lucene: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Read all the documents of an index in index order, with a single searcher (point-in-time view of the index,
+     * the documents written during the scan are not read) and searchAfter: each batch resumes after the last document
+     * of the previous one instead of collecting all the documents before it
+     */
+    @Override
+    public long scroll(String indexName, int batchSize, Consumer<List<Metadata>> consumer) throws DaoException {
+        LOGGER.debug("Scroll documents in Lucene " + printSearchIndexName(indexName));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        if (consumer == null) throw new IllegalArgumentException("consumer " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            LuceneIndex index = index(indexName, false);
+
+            long read = 0;
+            IndexSearcher searcher = index.acquire();
+            try {
+                ScoreDoc after = null;
+                while (true) {
+                    ScoreDoc last = after;
+                    TopDocs topDocs = Tracing.trace("lucene.scroll", Tracing.index(indexName),
+                            () -> searcher.searchAfter(last, new MatchAllDocsQuery(), batchSize, Sort.INDEXORDER));
+                    if (topDocs.scoreDocs.length == 0) {
+                        break;
+                    }
+                    consumer.accept(convert(index, searcher, topDocs));
+                    read += topDocs.scoreDocs.length;
+                    if (topDocs.scoreDocs.length < batchSize) {
+                        break;
+                    }
+                    after = topDocs.scoreDocs[topDocs.scoreDocs.length - 1];
+                }
+            } finally {
+                index.release(searcher);
+            }
+
+            LOGGER.debug("Documents scrolled in Lucene " + printSearchIndexName(indexName) + " : " + read);
+
+            return read;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while scrolling documents into Lucene " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while scrolling documents into Lucene: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Commit and close the indexes
+     */
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        forEachIndex("close", LuceneIndex::close);
+        indexes.clear();
+    }
+
+    @Override
+    public synchronized void alias(String alias, String indexName) throws DaoException {
+        LOGGER.debug("Alias index in Lucene " + printSearchIndexName(indexName) + " [alias=" + alias + "]");
+
+        // Validation
+        if (Strings.isEmpty(alias)) throw new IllegalArgumentException("alias " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        LuceneIndex index = index(indexName, false);
+        String name = alias.toLowerCase();
+        if (!INDEX_NAME.matcher(name).matches()) {
+            throw new DaoException("Invalid alias [" + alias + "]");
+        }
+        if (Files.isDirectory(path.resolve(name))) {
+            throw new DaoException("Alias [" + name + "] is the name of an index");
+        }
+
+        // Written to a temporary file then moved: the file is replaced atomically
+        Properties properties = new Properties();
+        aliases.forEach(properties::setProperty);
+        properties.setProperty(name, index.getName());
+        try {
+            Path temporary = path.resolve(ALIASES_FILE + ".tmp");
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                properties.store(output, "Lucene index aliases (alias=index)");
+            }
+            Files.move(temporary, path.resolve(ALIASES_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOGGER.error("Error while aliasing the index into Lucene " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while aliasing the index into Lucene: " + ex.getMessage());
+        }
+        aliases.put(name, index.getName());
+
+        LOGGER.debug("Index aliased in Lucene " + printSearchIndexName(indexName) + " [alias=" + alias + "]");
+    }
+
+    /**
+     * Get an index, opened on first use
+     *
+     * @param indexName Index name (or alias)
+     * @param create    Create the index if it doesn't exist
+     * @return Index
+     * @throws DaoException if the index doesn't exist (and create is false) or the name is invalid
+     */
+    private LuceneIndex index(String indexName, boolean create) throws DaoException {
+        String name = aliases.getOrDefault(indexName.toLowerCase(), indexName.toLowerCase());
+
+        LuceneIndex index = indexes.get(name);
+        if (index != null) {
+            return index;
+        }
+
+        if (!INDEX_NAME.matcher(name).matches()) {
+            throw new DaoException("Invalid index name [" + indexName + "]");
+        }
+
+        try {
+            index = indexes.computeIfAbsent(name, key -> {
+                try {
+                    Path indexPath = path.resolve(key);
+                    if (!create && !Files.isDirectory(indexPath)) {
+                        return null;
+                    }
+                    Files.createDirectories(indexPath);
+                    return LuceneIndex.open(indexPath, key, analyzer, ramBuffer, create);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw new DaoException("Error while opening the index [" + name + "]: " + ex.getCause().getMessage(), ex.getCause());
+        }
+
+        if (index == null) {
+            throw new DaoException("Index [" + name + "] not found");
+        }
+        return index;
+    }
+
+    /**
+     * Names of all the indexes: opened, or on disk and not opened yet
+     *
+     * @return Index names
+     * @throws DaoException if the directory of the indexes can't be listed
+     */
+    private Set<String> indexNames() throws DaoException {
+        Set<String> names = new TreeSet<>(indexes.keySet());
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(path, Files::isDirectory)) {
+            for (Path directory : directories) {
+                String name = directory.getFileName().toString();
+                if (!names.contains(name) && INDEX_NAME.matcher(name).matches() && hasCommit(directory)) {
+                    names.add(name);
+                }
+            }
+        } catch (IOException ex) {
+            throw new DaoException("Error while listing the indexes in " + path + ": " + ex.getMessage(), ex);
+        }
+        return names;
+    }
+
+    private static boolean hasCommit(Path directory) throws IOException {
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "segments_*")) {
+            return segments.iterator().hasNext();
+        }
+    }
+
+    /**
+     * Run an action on every opened index (errors logged)
+     */
+    private void forEachIndex(String action, IndexAction indexAction) {
+        for (LuceneIndex index : indexes.values()) {
+            try {
+                indexAction.run(index);
+            } catch (Exception ex) {
+                LOGGER.error("Error while running " + action + " on the Lucene index " + printSearchIndexName(index.getName()), ex);
+            }
+        }
+    }
+
+    /**
+     * Run a search on the current searcher of an index and record it in the slow query log (logged if slow)
+     *
+     * @param operation Operation (search, count...)
+     * @param index     Index
+     * @param query     Query
+     * @param search    Search
+     * @return Result of the search
+     */
+    private <T> T execute(String operation, LuceneIndex index, Query query, Search<T> search) throws IOException {
+        long start = System.nanoTime();
+        IndexSearcher searcher = index.acquire();
+        try {
+            return search.run(searcher);
+        } finally {
+            index.release(searcher);
+            slowQueryLog.record(operation, index.getName(), query, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    1, 1, 0, RequestContext.current().getCaller());
+        }
+    }
+
+    /**
+     * Bound a search by the deadline of the current request (see RequestContext): checked before each segment
+     *
+     * @param collector Collector of the search
+     * @return Collector failing when the deadline is exceeded
+     */
+    private static Collector bounded(Collector collector) {
+        RequestContext context = RequestContext.current();
+        if (!context.hasDeadline()) {
+            return collector;
+        }
+        return new FilterCollector(collector) {
+            @Override
+            public LeafCollector getLeafCollector(LeafReaderContext leaf) throws IOException {
+                if (context.isExpired()) {
+                    throw new IOException("Search timed out (deadline exceeded)");
+                }
+                return super.getLeafCollector(leaf);
+            }
+        };
+    }
+
+    /**
+     * Delete a document if it exists (real-time)
+     *
+     * @param index Index
+     * @param id    Document ID
+     * @return true if the document was deleted, false if not found
+     * @throws IOException
+     */
+    private boolean delete(LuceneIndex index, String id) throws IOException {
+        synchronized (writeLocks[Math.floorMod(id.hashCode(), WRITE_LOCKS)]) {
+            if (source(index, id) == null) {
+                return false;
+            }
+            index.delete(ID_FIELD, id);
+            return true;
+        }
+    }
+
+    /**
+     * Source (stored JSON) of a document, real-time: the documents written since the last refresh included
+     *
+     * @param index Index
+     * @param id    Document ID
+     * @return Source or null if not found
+     * @throws IOException
+     */
+    private Map<String, Object> source(LuceneIndex index, String id) throws IOException {
+        Map<String, Object> pending = index.pendingSource(id);
+        if (pending != null) {
+            return pending != LuceneIndex.DELETED ? pending : null;
+        }
+
+        IndexSearcher searcher = index.acquire();
+        try {
+            TopDocs topDocs = searcher.search(new TermQuery(new Term(ID_FIELD, id)), 1);
+            return topDocs.scoreDocs.length > 0 ? source(searcher.doc(topDocs.scoreDocs[0].doc, STORED_FIELDS)) : null;
+        } finally {
+            index.release(searcher);
+        }
+    }
+
+    private Map<String, Object> source(Document document) throws IOException {
+        BytesRef source = document.getBinaryValue(SOURCE_FIELD);
+        return mapper.readValue(source.bytes, source.offset, source.length, new TypeReference<Map<String, Object>>() {
+        });
+    }
+
+    /**
+     * Convert a source to a Lucene document
+     *
+     * @param index  Index (type of the fields)
+     * @param id     Document ID
+     * @param source Source
+     * @return Lucene document
+     * @throws IOException
+     */
+    private Document document(LuceneIndex index, String id, Map<String, Object> source) throws IOException {
+        Document document = new Document();
+        document.add(new StringField(ID_FIELD, id, Field.Store.YES));
+        document.add(new StoredField(SOURCE_FIELD, new BytesRef(mapper.writeValueAsBytes(source))));
+        for (Map.Entry<String, Object> field : source.entrySet()) {
+            if (VERSION_FIELD.equals(field.getKey())) {
+                continue;
+            }
+            addField(index, document, field.getKey(), field.getValue());
+        }
+        return document;
+    }
+
+    /**
+     * Add a field (typed by the index) to a Lucene document: objects are flattened (object.field), arrays are
+     * multi-valued fields
+     */
+    private static void addField(LuceneIndex index, Document document, String name, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Map) {
+            ((Map<?, ?>) value).forEach((key, subValue) -> addField(index, document, name + "." + key, subValue));
+            return;
+        }
+        if (value instanceof Collection) {
+            ((Collection<?>) value).forEach(element -> addField(index, document, name, element));
+            return;
+        }
+
+        FieldType type = index.fieldType(name);
+        if (type == null) {
+            type = index.addField(name, fieldType(value));
+        }
+
+        try {
+            switch (type) {
+                case integer:
+                    long longValue = toLong(value);
+                    document.add(new LongPoint(name, longValue));
+                    document.add(new SortedNumericDocValuesField(name, longValue));
+                    break;
+                case decimal:
+                    double doubleValue = toNumber(value).doubleValue();
+                    document.add(new DoublePoint(name, doubleValue));
+                    document.add(new SortedNumericDocValuesField(name, NumericUtils.doubleToSortableLong(doubleValue)));
+                    break;
+                default:
+                    String stringValue = value.toString();
+                    document.add(new TextField(name + TEXT_FIELD_SUFFIX, stringValue, Field.Store.NO));
+                    if (stringValue.length() <= IGNORE_ABOVE) {
+                        document.add(new StringField(name, stringValue.toLowerCase(), Field.Store.NO));
+                        document.add(new SortedSetDocValuesField(name, new BytesRef(stringValue)));
+                    }
+                    break;
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("failed to parse [" + name + "] of type [" + type + "]: " + value, ex);
+        }
+    }
+
+    private static FieldType fieldType(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof java.math.BigInteger) {
+            return FieldType.integer;
+        }
+        if (value instanceof Number) {
+            return FieldType.decimal;
+        }
+        return FieldType.keyword;
+    }
+
+    /**
+     * Convert a IPFS-Store Query to a Lucene query
+     *
+     * @param index Index (type of the fields)
+     * @param query IPFS-Store Query
+     * @return Lucene query
+     */
+    private org.apache.lucene.search.Query convertQuery(LuceneIndex index, Query query) {
+        LOGGER.trace("Converting query: " + query);
+
+        if (query == null || query.getFilterClauses().isEmpty()) {
+            return new MatchAllDocsQuery();
+        }
+
+        BooleanQuery.Builder luceneQuery = new BooleanQuery.Builder();
+        boolean positive = false;
+
+        for (Filter f : query.getFilterClauses()) {
+
+            Object value = handleNullValue(f.getValue());
+
+            try {
+
+                switch (f.getOperation()) {
+                    case full_text:
+                        luceneQuery.add(fullTextQuery(index, f.getNames(), value), Occur.MUST);
+                        break;
+                    case equals:
+                        luceneQuery.add(termQuery(index, f.getName(), value), Occur.MUST);
+                        break;
+                    case not_equals:
+                        luceneQuery.add(termQuery(index, f.getName(), value), Occur.MUST_NOT);
+                        continue;
+                    case contains:
+                        luceneQuery.add(matchQuery(index, f.getName(), value), Occur.MUST);
+                        break;
+                    case in:
+                        luceneQuery.add(termsQuery(index, f.getName(), value), Occur.FILTER);
+                        break;
+                    case lt:
+                    case lte:
+                    case gt:
+                    case gte:
+                        luceneQuery.add(rangeQuery(index, f, value), Occur.MUST);
+                        break;
+                    default:
+                        LOGGER.warn("Operation [" + f.getOperation() + "] not supported for  filter [" + f + "]- Ignore it!");
+                        continue;
+                }
+                positive = true;
+
+            } catch (Exception e) {
+                LOGGER.warn("Error while converting filter [" + f + "] - Ignore it!", e);
+            }
+        }
+
+        if (!positive) {
+            luceneQuery.add(new MatchAllDocsQuery(), Occur.MUST); // only exclusions
+        }
+
+        org.apache.lucene.search.Query result = luceneQuery.build();
+
+        LOGGER.debug(result.toString());
+
+        return result;
+    }
+
+    private static org.apache.lucene.search.Query termQuery(LuceneIndex index, String name, Object value) {
+        FieldType type = index.fieldType(name);
+        if (type == null) {
+            return new MatchNoDocsQuery("unmapped field [" + name + "]");
+        }
+
+        switch (type) {
+            case integer:
+                Number number = toNumber(value);
+                if (!isIntegral(number)) {
+                    return new MatchNoDocsQuery("decimal value for integer field [" + name + "]");
+                }
+                return LongPoint.newExactQuery(name, number.longValue());
+            case decimal:
+                return DoublePoint.newExactQuery(name, toNumber(value).doubleValue());
+            default:
+                return new TermQuery(new Term(name, value.toString().toLowerCase()));
+        }
+    }
+
+    private org.apache.lucene.search.Query matchQuery(LuceneIndex index, String name, Object value) {
+        if (index.fieldType(name) != FieldType.keyword) {
+            return termQuery(index, name, value);
+        }
+
+        org.apache.lucene.search.Query query = new org.apache.lucene.util.QueryBuilder(analyzer).createBooleanQuery(name + TEXT_FIELD_SUFFIX, value.toString());
+        return query != null ? query : new MatchNoDocsQuery("no term in [" + value + "]");
+    }
+
+    private org.apache.lucene.search.Query fullTextQuery(LuceneIndex index, String[] names, Object value) {
+        List<org.apache.lucene.search.Query> queries = new ArrayList<>();
+        for (String name : names) {
+            try {
+                queries.add(matchQuery(index, name, value));
+            } catch (NumberFormatException ex) {
+                // lenient: numeric field not matching a text
+            }
+        }
+        return new DisjunctionMaxQuery(queries, 0); // score of the best field
+    }
+
+    private static org.apache.lucene.search.Query termsQuery(LuceneIndex index, String name, Object value) {
+        List<?> values = value instanceof Object[] ? Arrays.asList((Object[]) value)
+                : value instanceof Collection ? new ArrayList<>((Collection<?>) value)
+                : Collections.singletonList(value);
+
+        FieldType type = index.fieldType(name);
+        if (type == null) {
+            return new MatchNoDocsQuery("unmapped field [" + name + "]");
+        }
+
+        switch (type) {
+            case integer:
+                return LongPoint.newSetQuery(name, values.stream()
+                        .map(LuceneIndexDao::toNumber)
+                        .filter(LuceneIndexDao::isIntegral)
+                        .mapToLong(Number::longValue)
+                        .toArray());
+            case decimal:
+                return DoublePoint.newSetQuery(name, values.stream()
+                        .map(LuceneIndexDao::toNumber)
+                        .mapToDouble(Number::doubleValue)
+                        .toArray());
+            default:
+                return new TermInSetQuery(name, values.stream()
+                        .map(o -> new BytesRef(o.toString().toLowerCase()))
+                        .collect(Collectors.toList()));
+        }
+    }
+
+    private static org.apache.lucene.search.Query rangeQuery(LuceneIndex index, Filter f, Object value) {
+        String name = f.getName();
+        boolean lower = f.getOperation().name().startsWith("g"); // gt, gte: lower bound
+        boolean inclusive = f.getOperation().name().endsWith("e");
+
+        FieldType type = index.fieldType(name);
+        if (type == null) {
+            return new MatchNoDocsQuery("unmapped field [" + name + "]");
+        }
+
+        switch (type) {
+            case integer:
+                Number number = toNumber(value);
+                long bound;
+                if (isIntegral(number)) {
+                    bound = number.longValue();
+                    if (!inclusive) {
+                        if (bound == (lower ? Long.MAX_VALUE : Long.MIN_VALUE)) {
+                            return new MatchNoDocsQuery("empty range");
+                        }
+                        bound = lower ? bound + 1 : bound - 1;
+                    }
+                } else {
+                    bound = (long) (lower ? Math.ceil(number.doubleValue()) : Math.floor(number.doubleValue()));
+                }
+                return lower ? LongPoint.newRangeQuery(name, bound, Long.MAX_VALUE) : LongPoint.newRangeQuery(name, Long.MIN_VALUE, bound);
+            case decimal:
+                double decimal = toNumber(value).doubleValue();
+                if (!inclusive) {
+                    decimal = lower ? Math.nextUp(decimal) : Math.nextDown(decimal);
+                }
+                return lower ? DoublePoint.newRangeQuery(name, decimal, Double.POSITIVE_INFINITY) : DoublePoint.newRangeQuery(name, Double.NEGATIVE_INFINITY, decimal);
+            default:
+                String term = value.toString().toLowerCase();
+                return lower ? TermRangeQuery.newStringRange(name, term, null, inclusive, false) : TermRangeQuery.newStringRange(name, null, term, false, inclusive);
+        }
+    }
+
+    /**
+     * Sort of a search (fields without any value are ignored, like the unmapped fields in ElasticSearch), the documents
+     * without value last
+     *
+     * @param index    Index (type of the fields)
+     * @param pageable Pagination and Sorting
+     * @return Sort, null to sort by relevance
+     */
+    private static Sort convertSort(LuceneIndex index, Pageable pageable) {
+        if (pageable.getSort() == null) {
+            return null;
+        }
+
+        List<SortField> sortFields = new ArrayList<>();
+        for (Order order : pageable.getSort()) {
+            FieldType type = index.fieldType(order.getProperty());
+            if (type == null) {
+                continue;
+            }
+
+            boolean reverse = !order.isAscending();
+            SortField sortField;
+            switch (type) {
+                case integer:
+                    sortField = new SortedNumericSortField(order.getProperty(), SortField.Type.LONG, reverse);
+                    sortField.setMissingValue(reverse ? Long.MIN_VALUE : Long.MAX_VALUE);
+                    break;
+                case decimal:
+                    sortField = new SortedNumericSortField(order.getProperty(), SortField.Type.DOUBLE, reverse);
+                    sortField.setMissingValue(reverse ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+                    break;
+                default:
+                    sortField = new SortedSetSortField(order.getProperty(), reverse);
+                    sortField.setMissingValue(reverse ? SortField.STRING_FIRST : SortField.STRING_LAST);
+                    break;
+            }
+            sortFields.add(sortField);
+        }
+
+        return sortFields.isEmpty() ? null : new Sort(sortFields.toArray(new SortField[0]));
+    }
+
+    /**
+     * Collector of the documents of a page
+     */
+    private static TopDocsCollector<?> collector(LuceneIndex index, Pageable pageable) throws IOException {
+        int numHits = Math.max(1, pageable.getOffset() + pageable.getPageSize());
+        Sort sort = convertSort(index, pageable);
+        return sort != null
+                ? TopFieldCollector.create(sort, numHits, false, false, false)
+                : TopScoreDocCollector.create(numHits);
+    }
+
+    /**
+     * Convert Lucene search hits to a list of Metadata
+     */
+    private List<Metadata> convert(LuceneIndex index, IndexSearcher searcher, TopDocs topDocs) throws IOException {
+        List<Metadata> result = new ArrayList<>(topDocs.scoreDocs.length);
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            Document document = searcher.doc(scoreDoc.doc, STORED_FIELDS);
+            result.add(convert(index.getName(), document.get(ID_FIELD), source(document)));
+        }
+        return result;
+    }
+
+    /**
+     * Convert a source to a Metadata
+     *
+     * @param index     Index
+     * @param id        ID
+     * @param sourceMap Map of attributes
+     * @return Metadata
+     */
+    private static Metadata convert(String index, String id, Map<String, Object> sourceMap) {
+        Object hash = sourceMap.get(HASH_INDEX_KEY);
+        Object contentType = sourceMap.get(CONTENT_TYPE_INDEX_KEY);
+
+        return new Metadata(
+                index,
+                id,
+                hash != null ? hash.toString() : null,
+                contentType != null ? contentType.toString() : null,
+                sourceMap.entrySet().stream()
+                        .filter(field -> !VERSION_FIELD.equals(field.getKey()))
+                        .map(field -> new IndexField(field.getKey(), field.getValue()))
+                        .collect(Collectors.toList()),
+                sourceMap.containsKey(VERSION_FIELD) ? version(sourceMap) : null);
+    }
+
+    /**
+     * Version of a document source (0 if absent: document indexed before the versioning)
+     */
+    private static long version(Map<String, Object> source) {
+        Object version = source != null ? source.get(VERSION_FIELD) : null;
+        return version instanceof Number ? ((Number) version).longValue() : 0L;
+    }
+
+    /**
+     * Convert a list of IndexField (key/value) to a Map
+     *
+     * @param indexFields List of IndexField
+     * @return Map
+     */
+    private Map<String, Object> convert(List<IndexField> indexFields) {
+        Map<String, Object> map = new HashMap<>();
+        indexFields.forEach(field -> map.put(field.getName(), handleNullValue(field.getValue())));
+        return map;
+    }
+
+    /**
+     * Replace null or empty string value by NULL to add it in the index (same as the ElasticSearch implementations)
+     *
+     * @param value Value
+     * @return Value replaced by NULL if null or empty
+     */
+    private Object handleNullValue(Object value) {
+        if (indexNullValue && (value == null || (value instanceof String && ((String) value).length() == 0))) {
+            return NULL;
+        } else {
+            return value;
+        }
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        String string = value.toString().trim();
+        try {
+            return Long.parseLong(string);
+        } catch (NumberFormatException ex) {
+            return Double.parseDouble(string);
+        }
+    }
+
+    private static long toLong(Object value) {
+        Number number = toNumber(value);
+        return isIntegral(number) ? number.longValue() : (long) number.doubleValue();
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof java.math.BigInteger
+                || number.doubleValue() == Math.rint(number.doubleValue()) && !Double.isInfinite(number.doubleValue());
+    }
+
+    private String printSearchIndexName(String indexName) {
+        return "[indexName=" + indexName + "]";
+    }
+
+    private String printSearchIndex(String indexName, String documentId, List<IndexField> indexFields) {
+        return "[indexName=" + indexName + ", documentId=" + documentId + ", indexFields=" + indexFields + "]";
+    }
+
+    private String printSearchDocument(String indexName, String id) {
+        return "[indexName=" + indexName + ", id=" + id + "]";
+    }
+
+    private String printSearchQuery(String indexName, Query query) {
+        return "[indexName=" + indexName + ", query=" + query + "]";
+    }
+
+    @FunctionalInterface
+    private interface Search<T> {
+
+        T run(IndexSearcher searcher) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface IndexAction {
+
+        void run(LuceneIndex index) throws IOException;
+    }
+}
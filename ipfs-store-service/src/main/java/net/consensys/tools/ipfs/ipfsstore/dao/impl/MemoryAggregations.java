@@ -0,0 +1,151 @@
+package net.consensys.tools.ipfs.ipfsstore.dao.impl;
+
+import java.util.*;
+
+import org.apache.log4j.Logger;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.AggregationBuckets.Interval;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.MemoryIndex.Field;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.MemoryIndex.KeywordField;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.MemoryIndex.NumericField;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationResult;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Aggregation;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationRange;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationType;
+import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
+
+/**
+ * Aggregations of the in-memory implementation of IndexDao, computed from the sorted values of the documents found by
+ * a search (same aggregations as LuceneAggregations)
+ */
+final class MemoryAggregations {
+
+    private static final Logger LOGGER = Logger.getLogger(MemoryAggregations.class);
+
+    private MemoryAggregations() {
+    }
+
+    /**
+     * @param index        Index searched (in a read)
+     * @param docs         Documents found
+     * @param aggregations Aggregations of the query (the invalid ones are ignored)
+     * @return Aggregation results by aggregation name
+     */
+    static Map<String, AggregationResult> aggregate(MemoryIndex index, BitSet docs, List<Aggregation> aggregations) {
+        Map<String, AggregationResult> results = new LinkedHashMap<>();
+        for (Aggregation aggregation : aggregations) {
+            AggregationResult result = aggregate(index, docs, aggregation);
+            if (result != null) {
+                results.put(aggregation.getName(), result);
+            }
+        }
+        return results;
+    }
+
+    private static AggregationResult aggregate(MemoryIndex index, BitSet docs, Aggregation aggregation) {
+        LOGGER.trace("Converting aggregation: " + aggregation);
+
+        if (aggregation.getType() == null || Strings.isEmpty(aggregation.getName()) || Strings.isEmpty(aggregation.getField())) {
+            LOGGER.warn("Aggregation [" + aggregation + "] requires a name, a type and a field - Ignore it!");
+            return null;
+        }
+
+        Field<?> field = index.field(aggregation.getField());
+
+        switch (aggregation.getType()) {
+            case terms:
+                return terms(field, docs, aggregation.getSize() != null ? aggregation.getSize() : AggregationBuckets.DEFAULT_TERMS_SIZE);
+            case cardinality:
+                return cardinality(field, docs);
+            case range:
+            case date_histogram:
+                if (field instanceof KeywordField) {
+                    LOGGER.warn("Aggregation [" + aggregation + "] requires a numeric field - Ignore it!");
+                    return null;
+                }
+                if (aggregation.getType() == AggregationType.range) {
+                    return range((NumericField) field, docs, aggregation.getRanges() != null ? aggregation.getRanges() : Collections.emptyList());
+                }
+                Interval interval = Interval.parse(aggregation.getInterval());
+                if (interval == null) {
+                    LOGGER.warn("Invalid interval for aggregation [" + aggregation + "] - Ignore it!");
+                    return null;
+                }
+                return dateHistogram((NumericField) field, docs, interval);
+            default:
+                LOGGER.warn("Aggregation type [" + aggregation.getType() + "] not supported for aggregation [" + aggregation + "] - Ignore it!");
+                return null;
+        }
+    }
+
+    private static AggregationResult terms(Field<?> field, BitSet docs, int size) {
+        Map<String, Long> counts = new HashMap<>();
+        for (int doc = docs.nextSetBit(0); doc >= 0 && field != null; doc = docs.nextSetBit(doc + 1)) {
+            if (field instanceof KeywordField) {
+                String[] values = ((KeywordField) field).values(doc);
+                for (int i = 0; values != null && i < values.length; i++) {
+                    counts.merge(values[i], 1L, Long::sum);
+                }
+            } else {
+                NumericField numericField = (NumericField) field;
+                long[] values = numericField.values(doc);
+                for (int i = 0; values != null && i < values.length; i++) {
+                    counts.merge(numericField.toKey(values[i]), 1L, Long::sum);
+                }
+            }
+        }
+        return AggregationBuckets.terms(counts, size);
+    }
+
+    private static AggregationResult cardinality(Field<?> field, BitSet docs) {
+        Set<Object> distinct = new HashSet<>();
+        for (int doc = docs.nextSetBit(0); doc >= 0 && field != null; doc = docs.nextSetBit(doc + 1)) {
+            if (field instanceof KeywordField) {
+                String[] values = ((KeywordField) field).values(doc);
+                if (values != null) {
+                    Collections.addAll(distinct, values);
+                }
+            } else {
+                long[] values = ((NumericField) field).values(doc);
+                for (int i = 0; values != null && i < values.length; i++) {
+                    distinct.add(values[i]);
+                }
+            }
+        }
+        return AggregationBuckets.cardinality(distinct.size());
+    }
+
+    private static AggregationResult range(NumericField field, BitSet docs, List<AggregationRange> ranges) {
+        long[] counts = new long[ranges.size()];
+        for (int doc = docs.nextSetBit(0); doc >= 0 && field != null; doc = docs.nextSetBit(doc + 1)) {
+            long[] values = field.values(doc);
+            for (int r = 0; values != null && r < ranges.size(); r++) {
+                AggregationRange range = ranges.get(r);
+                for (long sortable : values) {
+                    double value = field.toDouble(sortable);
+                    if ((range.getFrom() == null || value >= range.getFrom()) && (range.getTo() == null || value < range.getTo())) {
+                        counts[r]++; // a document counts once per range
+                        break;
+                    }
+                }
+            }
+        }
+        return AggregationBuckets.range(ranges, counts);
+    }
+
+    private static AggregationResult dateHistogram(NumericField field, BitSet docs, Interval interval) {
+        SortedMap<Long, Long> counts = new TreeMap<>();
+        for (int doc = docs.nextSetBit(0); doc >= 0 && field != null; doc = docs.nextSetBit(doc + 1)) {
+            long[] values = field.values(doc);
+            long previous = 0;
+            for (int i = 0; values != null && i < values.length; i++) {
+                long key = interval.round((long) field.toDouble(values[i]));
+                if (i == 0 || key != previous) { // sorted values: a document counts once per interval
+                    counts.merge(key, 1L, Long::sum);
+                }
+                previous = key;
+            }
+        }
+        return AggregationBuckets.dateHistogram(interval, counts);
+    }
+}
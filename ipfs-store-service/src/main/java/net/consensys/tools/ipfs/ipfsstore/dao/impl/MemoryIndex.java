@@ -0,0 +1,672 @@
+package net.consensys.tools.ipfs.ipfsstore.dao.impl;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.util.NumericUtils;
+
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
+
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.ObjectIntHashMap;
+
+/**
+ * In-memory index (see MemoryIndexDao): the sources of the documents, numbered by ordinal, and for each field a hash
+ * index (value: documents), a sorted index (distinct values in order: ranges) and the sorted values of each document
+ * (sorting, aggregations). Numeric values are kept as longs (decimals as sortable longs) in primitive maps and the
+ * sets of documents are bitsets.
+ * <p>
+ * Reads and writes are serialized by a read-write lock: a write is visible to the next read (real-time searches).
+ */
+final class MemoryIndex {
+
+    static final String VERSION_FIELD = "_version"; // kept in the source, not indexed
+
+    private static final int IGNORE_ABOVE = 256;
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Type of a field, set by its first value
+     */
+    enum FieldType {
+        keyword,    // Strings and booleans: exact (lower case) value, words and sorted values
+        integer,    // Integers (long)
+        decimal     // Decimals (double, as sortable long)
+    }
+
+    private final String name;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ObjectIntHashMap<String> ordinals = new ObjectIntHashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<Map<String, Object>> sources = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final Map<String, Field<?>> fields = new HashMap<>();
+
+    MemoryIndex(String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Run a read (search) on the index, the writes excluded
+     *
+     * @param read Read
+     * @return Result of the read
+     */
+    <T> T read(Supplier<T> read) {
+        lock.readLock().lock();
+        try {
+            return read.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add or update a document
+     *
+     * @param id     Document ID
+     * @param source Source of the document
+     * @param merge  Merge the source into the source of the existing document (new fields added, others replaced)
+     * @return Source indexed
+     * @throws IllegalArgumentException if a value doesn't match the type of its field (nothing indexed)
+     */
+    Map<String, Object> put(String id, Map<String, Object> source, boolean merge) {
+        lock.writeLock().lock();
+        try {
+            int doc = ordinals.getOrDefault(id, -1);
+            return put(id, doc, doc >= 0 && merge ? sources.get(doc) : null, source);
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Update the fields of an existing document (new fields added, others replaced)
+     *
+     * @param id      Document ID
+     * @param source  Fields to update
+     * @param version Expected version of the document (null: any)
+     * @return Source indexed, null if the document doesn't exist
+     * @throws VersionConflictException if the document is not at the expected version (nothing indexed)
+     * @throws IllegalArgumentException if a value doesn't match the type of its field (nothing indexed)
+     */
+    Map<String, Object> update(String id, Map<String, Object> source, Long version) throws VersionConflictException {
+        lock.writeLock().lock();
+        try {
+            int doc = ordinals.getOrDefault(id, -1);
+            if (doc < 0) {
+                return null;
+            }
+            long current = version(sources.get(doc));
+            if (version != null && version != current) {
+                throw new VersionConflictException("Document [" + id + "] is at version " + current + " (expected " + version + ")");
+            }
+            return put(id, doc, sources.get(doc), source);
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Version of a document source (number of times it was indexed)
+     */
+    static long version(Map<String, Object> source) {
+        Object version = source != null ? source.get(VERSION_FIELD) : null;
+        return version instanceof Number ? ((Number) version).longValue() : 0L;
+    }
+
+    /**
+     * Index a document, the write lock held
+     *
+     * @param id       Document ID
+     * @param doc      Ordinal of the document (-1 if new)
+     * @param existing Source merged with the new source (null: replaced)
+     * @param source   Source of the document
+     * @return Source indexed
+     */
+    private Map<String, Object> put(String id, int doc, Map<String, Object> existing, Map<String, Object> source) {
+        Map<String, Object> indexed = new HashMap<>();
+        if (existing != null) {
+            indexed.putAll(existing);
+        }
+        indexed.putAll(source);
+        indexed.put(VERSION_FIELD, (doc >= 0 ? version(sources.get(doc)) : 0L) + 1);
+
+        // Convert all the values before changing the index
+        Map<String, Field<?>> newFields = new HashMap<>();
+        Map<String, Object> converted = new HashMap<>();
+        for (Map.Entry<String, List<Object>> field : flatten(indexed).entrySet()) {
+            Field<?> indexField = fields.get(field.getKey());
+            if (indexField == null) {
+                indexField = newField(fieldType(field.getValue().get(0)));
+                newFields.put(field.getKey(), indexField);
+            }
+            converted.put(field.getKey(), indexField.convert(field.getKey(), field.getValue()));
+        }
+
+        if (doc >= 0) {
+            unindex(doc);
+        } else {
+            doc = ids.size();
+            ordinals.put(id, doc);
+            ids.add(id);
+            sources.add(null);
+            live.set(doc);
+        }
+
+        fields.putAll(newFields);
+        sources.set(doc, indexed);
+        for (Map.Entry<String, Object> values : converted.entrySet()) {
+            add(fields.get(values.getKey()), doc, values.getValue());
+        }
+        return indexed;
+    }
+
+    /**
+     * Delete a document (its ordinal is not reused)
+     *
+     * @param id Document ID
+     * @return Source of the document deleted, null if not found
+     */
+    Map<String, Object> remove(String id) {
+        lock.writeLock().lock();
+        try {
+            int doc = ordinals.getOrDefault(id, -1);
+            if (doc < 0) {
+                return null;
+            }
+
+            Map<String, Object> source = sources.get(doc);
+            unindex(doc);
+            ordinals.remove(id);
+            ids.set(doc, null);
+            sources.set(doc, null);
+            live.clear(doc);
+            return source;
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param id Document ID
+     * @return Source of the document, null if not found
+     */
+    Map<String, Object> get(String id) {
+        return read(() -> {
+            int doc = ordinals.getOrDefault(id, -1);
+            return doc >= 0 ? sources.get(doc) : null;
+        });
+    }
+
+    /*
+     * Read accessors (to call in a read)
+     */
+
+    /**
+     * @return All the documents (copy)
+     */
+    BitSet all() {
+        return (BitSet) live.clone();
+    }
+
+    /**
+     * @param from First ordinal
+     * @param size Maximum number of documents
+     * @return Documents from an ordinal, in indexing order (an updated document keeps its ordinal)
+     */
+    int[] next(int from, int size) {
+        int[] docs = new int[size];
+        int count = 0;
+        for (int doc = live.nextSetBit(from); doc >= 0 && count < size; doc = live.nextSetBit(doc + 1)) {
+            docs[count++] = doc;
+        }
+        return count < size ? Arrays.copyOf(docs, count) : docs;
+    }
+
+    /**
+     * @param field Field name
+     * @return Field, null if no value of this field was indexed
+     */
+    Field<?> field(String field) {
+        return fields.get(field);
+    }
+
+    String id(int doc) {
+        return ids.get(doc);
+    }
+
+    Map<String, Object> source(int doc) {
+        return sources.get(doc);
+    }
+
+    private void unindex(int doc) {
+        for (String field : flatten(sources.get(doc)).keySet()) {
+            fields.get(field).remove(doc);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void add(Field<V> field, int doc, Object values) {
+        field.add(doc, (V) values);
+    }
+
+    private static Field<?> newField(FieldType type) {
+        return type == FieldType.keyword ? new KeywordField() : new NumericField(type);
+    }
+
+    private static FieldType fieldType(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof java.math.BigInteger) {
+            return FieldType.integer;
+        }
+        if (value instanceof Number) {
+            return FieldType.decimal;
+        }
+        return FieldType.keyword;
+    }
+
+    /**
+     * Values of a source by field: objects are flattened (object.field), arrays are multi-valued fields
+     */
+    private static Map<String, List<Object>> flatten(Map<String, Object> source) {
+        Map<String, List<Object>> fields = new HashMap<>();
+        source.forEach((name, value) -> {
+            if (!VERSION_FIELD.equals(name)) {
+                flatten(fields, name, value);
+            }
+        });
+        return fields;
+    }
+
+    private static void flatten(Map<String, List<Object>> fields, String name, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Map) {
+            ((Map<?, ?>) value).forEach((key, subValue) -> flatten(fields, name + "." + key, subValue));
+            return;
+        }
+        if (value instanceof Collection) {
+            ((Collection<?>) value).forEach(element -> flatten(fields, name, element));
+            return;
+        }
+        fields.computeIfAbsent(name, key -> new ArrayList<>(1)).add(value);
+    }
+
+    /**
+     * @param text Text
+     * @return Words of the text, in lower case
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase())) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static BitSet union(Collection<BitSet> sets) {
+        BitSet union = new BitSet();
+        sets.forEach(union::or);
+        return union;
+    }
+
+    /**
+     * Index of a field
+     *
+     * @param <V> Values of a document, converted to the type of the field
+     */
+    abstract static class Field<V> {
+
+        final FieldType type;
+
+        Field(FieldType type) {
+            this.type = type;
+        }
+
+        abstract V convert(String name, List<Object> values);
+
+        abstract void add(int doc, V values);
+
+        abstract void remove(int doc);
+
+        /**
+         * @return Documents with this value (not to modify)
+         */
+        abstract BitSet term(Object value);
+
+        abstract BitSet terms(Collection<?> values);
+
+        /**
+         * @return Documents matching a word of the text
+         */
+        abstract BitSet match(Object text);
+
+        /**
+         * @param value     Bound
+         * @param lower     Lower bound (gt, gte), upper bound otherwise (lt, lte)
+         * @param inclusive Bound included
+         * @return Documents with a value in the range
+         */
+        abstract BitSet range(Object value, boolean lower, boolean inclusive);
+
+        /**
+         * Compare the smallest values of two documents, the documents without value last
+         */
+        abstract int compare(int doc1, int doc2, boolean reverse);
+    }
+
+    /**
+     * Keyword field: hash index of the exact values in lower case, sorted index of these values, index of the words
+     * and sorted values of each document (values longer than 256 characters: words only)
+     */
+    static final class KeywordField extends Field<String[]> {
+
+        private final Map<String, BitSet> terms = new HashMap<>();
+        private final NavigableMap<String, BitSet> sortedTerms = new TreeMap<>();
+        private final Map<String, BitSet> words = new HashMap<>();
+        private final IntObjectHashMap<String[]> texts = new IntObjectHashMap<>();
+        private final IntObjectHashMap<String[]> values = new IntObjectHashMap<>();
+
+        KeywordField() {
+            super(FieldType.keyword);
+        }
+
+        @Override
+        String[] convert(String name, List<Object> values) {
+            return values.stream().map(Object::toString).toArray(String[]::new);
+        }
+
+        @Override
+        void add(int doc, String[] docTexts) {
+            texts.put(doc, docTexts);
+            SortedSet<String> docValues = new TreeSet<>();
+            for (String text : docTexts) {
+                for (String word : words(text)) {
+                    words.computeIfAbsent(word, key -> new BitSet()).set(doc);
+                }
+                if (text.length() <= IGNORE_ABOVE) {
+                    docValues.add(text);
+                    String term = text.toLowerCase();
+                    BitSet docs = terms.get(term);
+                    if (docs == null) {
+                        docs = new BitSet();
+                        terms.put(term, docs);
+                        sortedTerms.put(term, docs);
+                    }
+                    docs.set(doc);
+                }
+            }
+            if (!docValues.isEmpty()) {
+                values.put(doc, docValues.toArray(new String[0]));
+            }
+        }
+
+        @Override
+        void remove(int doc) {
+            String[] docTexts = texts.remove(doc);
+            values.remove(doc);
+            if (docTexts == null) {
+                return;
+            }
+            for (String text : docTexts) {
+                for (String word : words(text)) {
+                    clear(words, word, doc);
+                }
+                if (text.length() <= IGNORE_ABOVE && clear(terms, text.toLowerCase(), doc)) {
+                    sortedTerms.remove(text.toLowerCase());
+                }
+            }
+        }
+
+        /**
+         * @return true if no document is left with the key
+         */
+        private static boolean clear(Map<String, BitSet> index, String key, int doc) {
+            BitSet docs = index.get(key);
+            if (docs == null) {
+                return false;
+            }
+            docs.clear(doc);
+            if (docs.isEmpty()) {
+                index.remove(key);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        BitSet term(Object value) {
+            return terms.getOrDefault(value.toString().toLowerCase(), new BitSet());
+        }
+
+        @Override
+        BitSet terms(Collection<?> values) {
+            BitSet docs = new BitSet();
+            for (Object value : values) {
+                docs.or(term(value));
+            }
+            return docs;
+        }
+
+        @Override
+        BitSet match(Object text) {
+            BitSet docs = new BitSet();
+            for (String word : words(text.toString())) {
+                BitSet wordDocs = words.get(word);
+                if (wordDocs != null) {
+                    docs.or(wordDocs);
+                }
+            }
+            return docs;
+        }
+
+        @Override
+        BitSet range(Object value, boolean lower, boolean inclusive) {
+            String term = value.toString().toLowerCase();
+            return union((lower ? sortedTerms.tailMap(term, inclusive) : sortedTerms.headMap(term, inclusive)).values());
+        }
+
+        @Override
+        int compare(int doc1, int doc2, boolean reverse) {
+            String[] values1 = values.get(doc1);
+            String[] values2 = values.get(doc2);
+            if (values1 == null || values2 == null) {
+                return values1 == values2 ? 0 : values1 == null ? 1 : -1;
+            }
+            int compare = values1[0].compareTo(values2[0]);
+            return reverse ? -compare : compare;
+        }
+
+        /**
+         * @return Distinct values of a document (sorted), null if none
+         */
+        String[] values(int doc) {
+            return values.get(doc);
+        }
+    }
+
+    /**
+     * Numeric field: hash index of the values, sorted index of the distinct values and sorted values of each document
+     */
+    static final class NumericField extends Field<long[]> {
+
+        private final LongObjectHashMap<BitSet> terms = new LongObjectHashMap<>();
+        private final LongArrayList sortedTerms = new LongArrayList();
+        private final IntObjectHashMap<long[]> values = new IntObjectHashMap<>();
+
+        NumericField(FieldType type) {
+            super(type);
+        }
+
+        @Override
+        long[] convert(String name, List<Object> values) {
+            try {
+                return values.stream()
+                        .mapToLong(value -> type == FieldType.integer ? toLong(value) : NumericUtils.doubleToSortableLong(toNumber(value).doubleValue()))
+                        .sorted()
+                        .distinct()
+                        .toArray();
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("failed to parse [" + name + "] of type [" + type + "]: " + values, ex);
+            }
+        }
+
+        @Override
+        void add(int doc, long[] docValues) {
+            values.put(doc, docValues);
+            for (long value : docValues) {
+                BitSet docs = terms.get(value);
+                if (docs == null) {
+                    docs = new BitSet();
+                    terms.put(value, docs);
+                    sortedTerms.insert(-search(value) - 1, value);
+                }
+                docs.set(doc);
+            }
+        }
+
+        @Override
+        void remove(int doc) {
+            long[] docValues = values.remove(doc);
+            if (docValues == null) {
+                return;
+            }
+            for (long value : docValues) {
+                BitSet docs = terms.get(value);
+                docs.clear(doc);
+                if (docs.isEmpty()) {
+                    terms.remove(value);
+                    sortedTerms.remove(search(value));
+                }
+            }
+        }
+
+        @Override
+        BitSet term(Object value) {
+            Number number = toNumber(value);
+            if (type == FieldType.integer && !isIntegral(number)) {
+                return new BitSet(); // decimal value for integer field
+            }
+            long term = type == FieldType.integer ? number.longValue() : NumericUtils.doubleToSortableLong(number.doubleValue());
+            BitSet docs = terms.get(term);
+            return docs != null ? docs : new BitSet();
+        }
+
+        @Override
+        BitSet terms(Collection<?> values) {
+            BitSet docs = new BitSet();
+            for (Object value : values) {
+                docs.or(term(value));
+            }
+            return docs;
+        }
+
+        @Override
+        BitSet match(Object text) {
+            return term(text);
+        }
+
+        @Override
+        BitSet range(Object value, boolean lower, boolean inclusive) {
+            Number number = toNumber(value);
+            long bound;
+            if (type == FieldType.integer) {
+                if (isIntegral(number)) {
+                    bound = number.longValue();
+                } else {
+                    bound = (long) (lower ? Math.ceil(number.doubleValue()) : Math.floor(number.doubleValue()));
+                    inclusive = true;
+                }
+            } else {
+                bound = NumericUtils.doubleToSortableLong(number.doubleValue());
+            }
+
+            // Range of the sorted index [from, to[
+            int index = search(bound);
+            int from = 0;
+            int to = sortedTerms.size();
+            if (lower) {
+                from = index >= 0 ? (inclusive ? index : index + 1) : -index - 1;
+            } else {
+                to = index >= 0 ? (inclusive ? index + 1 : index) : -index - 1;
+            }
+
+            BitSet docs = new BitSet();
+            for (int i = from; i < to; i++) {
+                docs.or(terms.get(sortedTerms.get(i)));
+            }
+            return docs;
+        }
+
+        @Override
+        int compare(int doc1, int doc2, boolean reverse) {
+            long[] values1 = values.get(doc1);
+            long[] values2 = values.get(doc2);
+            if (values1 == null || values2 == null) {
+                return values1 == values2 ? 0 : values1 == null ? 1 : -1;
+            }
+            int compare = Long.compare(values1[0], values2[0]);
+            return reverse ? -compare : compare;
+        }
+
+        /**
+         * @return Distinct values of a document (sorted, decimals as sortable longs), null if none
+         */
+        long[] values(int doc) {
+            return values.get(doc);
+        }
+
+        /**
+         * @param value Value of a document
+         * @return Value as a double
+         */
+        double toDouble(long value) {
+            return type == FieldType.decimal ? NumericUtils.sortableLongToDouble(value) : value;
+        }
+
+        String toKey(long value) {
+            return type == FieldType.decimal ? Double.toString(NumericUtils.sortableLongToDouble(value)) : Long.toString(value);
+        }
+
+        private int search(long value) {
+            return Arrays.binarySearch(sortedTerms.buffer, 0, sortedTerms.size(), value);
+        }
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        String string = value.toString().trim();
+        try {
+            return Long.parseLong(string);
+        } catch (NumberFormatException ex) {
+            return Double.parseDouble(string);
+        }
+    }
+
+    private static long toLong(Object value) {
+        Number number = toNumber(value);
+        return isIntegral(number) ? number.longValue() : (long) number.doubleValue();
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof java.math.BigInteger
+                || number.doubleValue() == Math.rint(number.doubleValue()) && !Double.isInfinite(number.doubleValue());
+    }
+}
@@ -0,0 +1,626 @@
+package net.consensys.tools.ipfs.ipfsstore.dao.impl;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.stereotype.Service;
+
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.MemoryIndex.Field;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Filter;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.SlowQueryLog;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
+import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
+
+/**
+ * In-memory implementation of IndexDao (nothing persisted), for the tests, the benchmarks and small deployments
+ * <p>
+ * Same semantics as the Lucene implementation: the fields are typed by their first value (integer, decimal or
+ * keyword), keyword values are matched as whole values in lower case (equals, not_equals, in, ranges) or by words
+ * (contains, full_text), and a document indexed again with the same ID is updated (new fields merged). The writes are
+ * visible at once to the searches. The documents are not scored: without sort, they are returned in indexing order.
+ */
+@Service
+@ConditionalOnProperty(name = "index.engine", havingValue = "memory")
+public class MemoryIndexDao implements IndexDao {
+
+    private static final Logger LOGGER = Logger.getLogger(MemoryIndexDao.class);
+    private static final String NULL = "null"; //must be lower case
+
+    private static final String ERROR_NOT_NULL_OR_EMPTY = "cannot be null or empty";
+
+    private final boolean indexNullValue;
+    private final SlowQueryLog slowQueryLog;
+
+    private final Map<String, MemoryIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
+
+    /*
+     * Constructor
+     */
+    public MemoryIndexDao() {
+        this(true, SlowQueryLog.disabled());
+    }
+
+    @Autowired
+    public MemoryIndexDao(
+            @Value("${parameters.indexNullValue:true}") boolean indexNullValue,
+            SlowQueryLog slowQueryLog) {
+        this.indexNullValue = indexNullValue;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+
+    @Override
+    public String index(String indexName, String documentId, String hash, String contentType, List<IndexField> indexFields) throws DaoException {
+        LOGGER.debug("Index document in memory " + printSearchIndex(indexName, documentId, indexFields));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(hash)) throw new IllegalArgumentException("hash " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            MemoryIndex index = index(indexName, true);
+            Map<String, Object> source = new HashMap<>();
+
+            // Populate the document
+            source.put(IndexDao.HASH_INDEX_KEY, hash);
+            source.put(IndexDao.CONTENT_TYPE_INDEX_KEY, contentType);
+            if (indexFields != null) {
+                source.putAll(convert(indexFields));
+            }
+
+            String id = Strings.isEmpty(documentId) ? UUID.randomUUID().toString() : documentId;
+            Tracing.trace("memory.index", Tracing.document(indexName, documentId), () -> index.put(id, source, true));
+
+            LOGGER.debug("Document indexed in memory " + printSearchIndex(indexName, documentId, indexFields) + ". Result ID=" + id);
+
+            return id;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while indexing document into memory " + printSearchIndex(indexName, documentId, indexFields), ex);
+            throw new DaoException("Error while indexing document into memory: " + ex.getMessage());
+        }
+    }
+
+
+    @Override
+    public Metadata update(String indexName, String id, List<IndexField> indexFields, Long version) throws DaoException, NotFoundException, VersionConflictException {
+        LOGGER.debug("Update document in memory " + printSearchIndex(indexName, id, indexFields) + " [version=" + version + "]");
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id " + ERROR_NOT_NULL_OR_EMPTY);
+        if (indexFields == null) throw new IllegalArgumentException("indexFields cannot be null");
+
+        try {
+            MemoryIndex index = index(indexName, false);
+            Map<String, Object> source = Tracing.trace("memory.update", Tracing.document(indexName, id),
+                    () -> index.update(id, convert(indexFields), version));
+
+            if (source == null) {
+                throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
+            }
+
+            Metadata metadata = convert(index.getName(), id, source);
+
+            LOGGER.debug("Document updated in memory " + printSearchDocument(indexName, id) + " [version=" + metadata.getVersion() + "]");
+
+            return metadata;
+
+        } catch (NotFoundException | VersionConflictException ex) {
+            LOGGER.warn("Error while updating document into memory " + printSearchDocument(indexName, id), ex);
+            throw ex;
+        } catch (Exception ex) {
+            LOGGER.error("Error while updating document into memory " + printSearchDocument(indexName, id), ex);
+            throw new DaoException("Error while updating document into memory: " + ex.getMessage());
+        }
+    }
+
+
+    @Override
+    public Metadata searchById(String indexName, String id) throws DaoException, NotFoundException {
+        LOGGER.debug("Search in memory by ID " + printSearchDocument(indexName, id));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName" + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id" + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            MemoryIndex index = index(indexName, false);
+            Map<String, Object> source = Tracing.trace("memory.get", Tracing.document(indexName, id), () -> index.get(id));
+
+            if (source == null) {
+                throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
+            }
+
+            Metadata metadata = convert(index.getName(), id, source);
+
+            LOGGER.debug("Search one document in memory " + printSearchDocument(indexName, id) + " : " + metadata);
+
+            return metadata;
+
+        } catch (NotFoundException ex) {
+            LOGGER.warn("Error while searching into memory " + printSearchDocument(indexName, id), ex);
+            throw ex;
+        } catch (Exception ex) {
+            LOGGER.error("Error while searching into memory " + printSearchDocument(indexName, id), ex);
+            throw new DaoException("Error while searching into memory: " + ex.getMessage());
+        }
+    }
+
+
+    @Override
+    public List<Metadata> search(Pageable pageable, String indexName, Query query) throws DaoException {
+        LOGGER.debug("Search documents in memory " + printSearchQuery(indexName, query));
+
+        // Validation
+        if (pageable == null) throw new IllegalArgumentException("pageable " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            MemoryIndex index = index(indexName, false);
+
+            List<Metadata> result = Tracing.trace("memory.search", Tracing.index(indexName),
+                    () -> execute("search", index, query, () -> convert(index, page(index, convertQuery(index, query), pageable))));
+
+            LOGGER.debug("Search documents in memory " + printSearchQuery(indexName, query) + " : " + result);
+
+            return result;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while searching documents into memory " + printSearchQuery(indexName, query), ex);
+            throw new DaoException("Error while searching documents into memory: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public AggregatedPage<Metadata> searchAndAggregate(Pageable pageable, String indexName, Query query) throws DaoException {
+        LOGGER.debug("Search and aggregate documents in memory " + printSearchQuery(indexName, query));
+
+        // Validation
+        if (pageable == null) throw new IllegalArgumentException("pageable " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            MemoryIndex index = index(indexName, false);
+
+            AggregatedPage<Metadata> result = Tracing.trace("memory.search", Tracing.index(indexName),
+                    () -> execute("searchAndAggregate", index, query, () -> {
+                        BitSet docs = convertQuery(index, query);
+                        return new AggregatedPage<>(
+                                convert(index, page(index, docs, pageable)),
+                                pageable,
+                                docs.cardinality(),
+                                MemoryAggregations.aggregate(index, docs,
+                                        query != null && query.hasAggregations() ? query.getAggregations() : Collections.emptyList()));
+                    }));
+
+            LOGGER.debug("Search and aggregate documents in memory " + printSearchQuery(indexName, query) + " : " + result.getContent() + ", " + result.getAggregations());
+
+            return result;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while searching and aggregating documents into memory " + printSearchQuery(indexName, query), ex);
+            throw new DaoException("Error while searching and aggregating documents into memory: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public long count(String indexName, Query query) throws DaoException {
+        LOGGER.debug("Count in memory " + printSearchQuery(indexName, query));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            MemoryIndex index = index(indexName, false);
+
+            long count = Tracing.trace("memory.count", Tracing.index(indexName),
+                    () -> execute("count", index, query, () -> (long) convertQuery(index, query).cardinality()));
+
+            LOGGER.trace("Count in memory " + printSearchQuery(indexName, query) + " : " + count);
+
+            return count;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while counting into memory " + printSearchQuery(indexName, query), ex);
+            throw new DaoException("Error while counting into memory: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public long countAll(Query query) throws DaoException {
+        long count = 0;
+        for (String indexName : indexes.keySet()) {
+            count += count(indexName, query);
+        }
+        return count;
+    }
+
+    /**
+     * Read all the documents of an index in indexing order with a cursor: each batch resumes after the last document
+     * of the previous one (read lock released between the batches, the documents indexed during the scan are read)
+     */
+    @Override
+    public long scroll(String indexName, int batchSize, Consumer<List<Metadata>> consumer) throws DaoException {
+        LOGGER.debug("Scroll documents in memory " + printSearchIndexName(indexName));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        if (consumer == null) throw new IllegalArgumentException("consumer " + ERROR_NOT_NULL_OR_EMPTY);
+
+        try {
+            MemoryIndex index = index(indexName, false);
+
+            long read = 0;
+            int[] cursor = {0};
+            while (true) {
+                List<Metadata> documents = Tracing.trace("memory.scroll", Tracing.index(indexName), () -> index.read(() -> {
+                    int[] docs = index.next(cursor[0], batchSize);
+                    if (docs.length > 0) {
+                        cursor[0] = docs[docs.length - 1] + 1;
+                    }
+                    return convert(index, docs);
+                }));
+                if (documents.isEmpty()) {
+                    break;
+                }
+                consumer.accept(documents);
+                read += documents.size();
+                if (documents.size() < batchSize) {
+                    break;
+                }
+            }
+
+            LOGGER.debug("Documents scrolled in memory " + printSearchIndexName(indexName) + " : " + read);
+
+            return read;
+
+        } catch (Exception ex) {
+            LOGGER.error("Error while scrolling documents into memory " + printSearchIndexName(indexName), ex);
+            throw new DaoException("Error while scrolling documents into memory: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void createIndex(String indexName) throws DaoException {
+        LOGGER.debug("Create index in memory " + printSearchIndexName(indexName));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        index(indexName, true);
+    }
+
+    @Override
+    public boolean isIndex(String name) {
+
+        // Validation
+        if (Strings.isEmpty(name)) throw new IllegalArgumentException("name " + ERROR_NOT_NULL_OR_EMPTY);
+
+        return indexes.containsKey(name.toLowerCase());
+    }
+
+    @Override
+    public void delete(String indexName, String id) throws DaoException, NotFoundException {
+        LOGGER.debug("Delete document in memory " + printSearchDocument(indexName, id));
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(id)) throw new IllegalArgumentException("id " + ERROR_NOT_NULL_OR_EMPTY);
+
+        MemoryIndex index = index(indexName, false);
+        Map<String, Object> source = Tracing.trace("memory.delete", Tracing.document(indexName, id), () -> index.remove(id));
+
+        if (source == null) {
+            LOGGER.warn("Document " + printSearchDocument(indexName, id) + " not found");
+            throw new NotFoundException("Document " + printSearchDocument(indexName, id) + " not found");
+        }
+
+        LOGGER.debug("Document deleted in memory " + printSearchDocument(indexName, id));
+    }
+
+    @Override
+    public long delete(String indexName, List<String> ids) throws DaoException {
+        LOGGER.debug("Delete documents in memory " + printSearchIndexName(indexName) + " [ids=" + ids + "]");
+
+        // Validation
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+        if (ids == null) throw new IllegalArgumentException("ids " + ERROR_NOT_NULL_OR_EMPTY);
+
+        MemoryIndex index = index(indexName, false);
+        long deleted = Tracing.trace("memory.bulk_delete", Tracing.index(indexName),
+                () -> ids.stream().filter(id -> index.remove(id) != null).count());
+
+        LOGGER.debug("Documents deleted in memory " + printSearchIndexName(indexName) + " : " + deleted);
+
+        return deleted;
+    }
+
+    @Override
+    public synchronized void alias(String alias, String indexName) throws DaoException {
+        LOGGER.debug("Alias index in memory " + printSearchIndexName(indexName) + " [alias=" + alias + "]");
+
+        // Validation
+        if (Strings.isEmpty(alias)) throw new IllegalArgumentException("alias " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(indexName)) throw new IllegalArgumentException("indexName " + ERROR_NOT_NULL_OR_EMPTY);
+
+        MemoryIndex index = index(indexName, false);
+        if (indexes.containsKey(alias.toLowerCase())) {
+            throw new DaoException("Alias [" + alias.toLowerCase() + "] is the name of an index");
+        }
+        aliases.put(alias.toLowerCase(), index.getName());
+
+        LOGGER.debug("Index aliased in memory " + printSearchIndexName(indexName) + " [alias=" + alias + "]");
+    }
+
+    /**
+     * @param indexName Index name (or alias)
+     * @param create    Create the index if it doesn't exist
+     * @return Index
+     * @throws DaoException if the index doesn't exist (and create is false)
+     */
+    private MemoryIndex index(String indexName, boolean create) throws DaoException {
+        String name = aliases.getOrDefault(indexName.toLowerCase(), indexName.toLowerCase());
+        MemoryIndex index = create ? indexes.computeIfAbsent(name, MemoryIndex::new) : indexes.get(name);
+        if (index == null) {
+            throw new DaoException("Index [" + name + "] not found");
+        }
+        return index;
+    }
+
+    /**
+     * Run a search in a read of an index and record it in the slow query log (logged if slow)
+     *
+     * @param operation Operation (search, count...)
+     * @param index     Index
+     * @param query     Query
+     * @param search    Search
+     * @return Result of the search
+     */
+    private <T> T execute(String operation, MemoryIndex index, Query query, Supplier<T> search) {
+        long start = System.nanoTime();
+        try {
+            return index.read(search);
+        } finally {
+            slowQueryLog.record(operation, index.getName(), query, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    1, 1, 0, RequestContext.current().getCaller());
+        }
+    }
+
+    /**
+     * Convert a IPFS-Store Query to the set of documents found
+     *
+     * @param index Index (in a read)
+     * @param query IPFS-Store Query
+     * @return Documents found
+     */
+    private BitSet convertQuery(MemoryIndex index, Query query) {
+        LOGGER.trace("Converting query: " + query);
+
+        BitSet docs = index.all();
+        if (query == null || query.getFilterClauses().isEmpty()) {
+            return docs;
+        }
+
+        for (Filter f : query.getFilterClauses()) {
+
+            Object value = handleNullValue(f.getValue());
+
+            try {
+
+                switch (f.getOperation()) {
+                    case full_text:
+                        docs.and(fullText(index, f.getNames(), value));
+                        break;
+                    case equals:
+                        docs.and(field(index, f.getName()).map(field -> field.term(value)).orElse(new BitSet()));
+                        break;
+                    case not_equals:
+                        field(index, f.getName()).ifPresent(field -> docs.andNot(field.term(value)));
+                        break;
+                    case contains:
+                        docs.and(field(index, f.getName()).map(field -> field.match(value)).orElse(new BitSet()));
+                        break;
+                    case in:
+                        docs.and(field(index, f.getName()).map(field -> field.terms(values(value))).orElse(new BitSet()));
+                        break;
+                    case lt:
+                    case lte:
+                    case gt:
+                    case gte:
+                        boolean lower = f.getOperation().name().startsWith("g"); // gt, gte: lower bound
+                        boolean inclusive = f.getOperation().name().endsWith("e");
+                        docs.and(field(index, f.getName()).map(field -> field.range(value, lower, inclusive)).orElse(new BitSet()));
+                        break;
+                    default:
+                        LOGGER.warn("Operation [" + f.getOperation() + "] not supported for  filter [" + f + "]- Ignore it!");
+                        break;
+                }
+
+            } catch (Exception e) {
+                LOGGER.warn("Error while converting filter [" + f + "] - Ignore it!", e);
+            }
+        }
+
+        return docs;
+    }
+
+    private static Optional<Field<?>> field(MemoryIndex index, String name) {
+        return Optional.ofNullable(index.field(name));
+    }
+
+    private static BitSet fullText(MemoryIndex index, String[] names, Object value) {
+        BitSet docs = new BitSet();
+        for (String name : names) {
+            Field<?> field = index.field(name);
+            try {
+                if (field != null) {
+                    docs.or(field.match(value));
+                }
+            } catch (NumberFormatException ex) {
+                // lenient: numeric field not matching a text
+            }
+        }
+        return docs;
+    }
+
+    private static Collection<?> values(Object value) {
+        return value instanceof Object[] ? Arrays.asList((Object[]) value)
+                : value instanceof Collection ? (Collection<?>) value
+                : Collections.singletonList(value);
+    }
+
+    /**
+     * Documents of a page: sorted by the fields of the sort (fields without any value are ignored, documents without
+     * value last), then in indexing order
+     *
+     * @param index    Index (in a read)
+     * @param docs     Documents found
+     * @param pageable Pagination and Sorting
+     * @return Documents of the page
+     */
+    private static int[] page(MemoryIndex index, BitSet docs, Pageable pageable) {
+        int offset = pageable.getOffset();
+        int size = pageable.getPageSize();
+
+        Comparator<Integer> sort = convertSort(index, pageable);
+        if (sort == null) {
+            return docs.stream().skip(offset).limit(size).toArray();
+        }
+
+        // Top [offset + size] documents
+        int numHits = offset + size;
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, numHits), sort.reversed());
+        for (int doc = docs.nextSetBit(0); doc >= 0 && numHits > 0; doc = docs.nextSetBit(doc + 1)) {
+            if (top.size() < numHits) {
+                top.offer(doc);
+            } else if (sort.compare(doc, top.peek()) < 0) {
+                top.poll();
+                top.offer(doc);
+            }
+        }
+
+        int[] page = new int[Math.max(0, top.size() - offset)];
+        for (int i = top.size() - 1; i >= offset; i--) {
+            page[i - offset] = top.poll(); // worst document first
+        }
+        return page;
+    }
+
+    private static Comparator<Integer> convertSort(MemoryIndex index, Pageable pageable) {
+        if (pageable.getSort() == null) {
+            return null;
+        }
+
+        Comparator<Integer> sort = null;
+        for (Order order : pageable.getSort()) {
+            Field<?> field = index.field(order.getProperty());
+            if (field == null) {
+                continue;
+            }
+            boolean reverse = !order.isAscending();
+            Comparator<Integer> comparator = (doc1, doc2) -> field.compare(doc1, doc2, reverse);
+            sort = sort == null ? comparator : sort.thenComparing(comparator);
+        }
+
+        return sort != null ? sort.thenComparing(Comparator.naturalOrder()) : null;
+    }
+
+    /**
+     * Convert the documents of a page to a list of Metadata
+     */
+    private static List<Metadata> convert(MemoryIndex index, int[] docs) {
+        List<Metadata> result = new ArrayList<>(docs.length);
+        for (int doc : docs) {
+            result.add(convert(index.getName(), index.id(doc), index.source(doc)));
+        }
+        return result;
+    }
+
+    /**
+     * Convert a source to a Metadata
+     *
+     * @param index     Index
+     * @param id        ID
+     * @param sourceMap Map of attributes
+     * @return Metadata
+     */
+    private static Metadata convert(String index, String id, Map<String, Object> sourceMap) {
+        Object hash = sourceMap.get(HASH_INDEX_KEY);
+        Object contentType = sourceMap.get(CONTENT_TYPE_INDEX_KEY);
+
+        return new Metadata(
+                index,
+                id,
+                hash != null ? hash.toString() : null,
+                contentType != null ? contentType.toString() : null,
+                sourceMap.entrySet().stream()
+                        .filter(field -> !MemoryIndex.VERSION_FIELD.equals(field.getKey()))
+                        .map(field -> new IndexField(field.getKey(), field.getValue()))
+                        .collect(Collectors.toList()),
+                MemoryIndex.version(sourceMap));
+    }
+
+    /**
+     * Convert a list of IndexField (key/value) to a Map
+     *
+     * @param indexFields List of IndexField
+     * @return Map
+     */
+    private Map<String, Object> convert(List<IndexField> indexFields) {
+        Map<String, Object> map = new HashMap<>();
+        indexFields.forEach(field -> map.put(field.getName(), handleNullValue(field.getValue())));
+        return map;
+    }
+
+    /**
+     * Replace null or empty string value by NULL to add it in the index (same as the ElasticSearch implementations)
+     *
+     * @param value Value
+     * @return Value replaced by NULL if null or empty
+     */
+    private Object handleNullValue(Object value) {
+        if (indexNullValue && (value == null || (value instanceof String && ((String) value).length() == 0))) {
+            return NULL;
+        } else {
+            return value;
+        }
+    }
+
+    private String printSearchIndexName(String indexName) {
+        return "[indexName=" + indexName + "]";
+    }
+
+    private String printSearchIndex(String indexName, String documentId, List<IndexField> indexFields) {
+        return "[indexName=" + indexName + ", documentId=" + documentId + ", indexFields=" + indexFields + "]";
+    }
+
+    private String printSearchDocument(String indexName, String id) {
+        return "[indexName=" + indexName + ", id=" + id + "]";
+    }
+
+    private String printSearchQuery(String indexName, Query query) {
+        return "[indexName=" + indexName + ", query=" + query + "]";
+    }
+}
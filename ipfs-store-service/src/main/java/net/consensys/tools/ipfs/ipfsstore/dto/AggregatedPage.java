@@ -0,0 +1,52 @@
+package net.consensys.tools.ipfs.ipfsstore.dto;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * AggregatedPage is a page of result returned along with the aggregation results (by aggregation name)
+ * computed in the same search request
+ *
+ * @param <T> Type of object
+ */
+public class AggregatedPage<T> extends PageImpl<T> {
+
+    private static final long serialVersionUID = 6617011843526433012L;
+
+    @JsonProperty("aggregations")
+    private final Map<String, AggregationResult> aggregations;
+
+    public AggregatedPage(List<T> content, Pageable pageable, long total, Map<String, AggregationResult> aggregations) {
+        super(content, pageable, total);
+        this.aggregations = aggregations == null ? Collections.emptyMap() : aggregations;
+    }
+
+    public Map<String, AggregationResult> getAggregations() {
+        return aggregations;
+    }
+
+    public AggregationResult getAggregation(String name) {
+        return aggregations.get(name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+        AggregatedPage<?> that = (AggregatedPage<?>) o;
+        return Objects.equals(aggregations, that.aggregations);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), aggregations);
+    }
+}
@@ -0,0 +1,38 @@
+package net.consensys.tools.ipfs.ipfsstore.dto;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Data
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AggregationBucket implements Serializable {
+
+    private static final long serialVersionUID = 3218420722155961342L;
+
+    @JsonProperty("key")
+    private String key;
+
+    @JsonProperty("from")
+    private Double from;
+
+    @JsonProperty("to")
+    private Double to;
+
+    @JsonProperty("count")
+    private long count;
+
+    public AggregationBucket(String key, long count) {
+        this.key = key;
+        this.count = count;
+    }
+}
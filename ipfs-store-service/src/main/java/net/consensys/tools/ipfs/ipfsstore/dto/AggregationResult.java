@@ -0,0 +1,34 @@
+package net.consensys.tools.ipfs.ipfsstore.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationType;
+
+@Data
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AggregationResult implements Serializable {
+
+    private static final long serialVersionUID = -4660418467342094387L;
+
+    @JsonProperty("type")
+    private AggregationType type;
+
+    @JsonProperty("value")
+    private Long value; // cardinality only
+
+    @JsonProperty("buckets")
+    private List<AggregationBucket> buckets; // terms, range and date_histogram only
+
+}
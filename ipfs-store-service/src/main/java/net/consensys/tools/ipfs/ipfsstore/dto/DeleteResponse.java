@@ -0,0 +1,26 @@
+package net.consensys.tools.ipfs.ipfsstore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Data
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeleteResponse {
+
+    @JsonProperty("index")
+    private String indexName;
+
+    @JsonProperty("deleted")
+    private long deleted;
+
+    @JsonProperty("unpinned")
+    private long unpinned;
+}
@@ -0,0 +1,44 @@
+package net.consensys.tools.ipfs.ipfsstore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * State of the queue of the documents indexed in background (write-behind)
+ */
+@Data
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexQueueStatus {
+
+    /**
+     * Documents waiting to be indexed
+     */
+    @JsonProperty("queued")
+    private long queued;
+
+    /**
+     * Indexing lag: time (ms) the oldest queued document has been waiting
+     */
+    @JsonProperty("lag")
+    private long lag;
+
+    /**
+     * Documents indexed since the start
+     */
+    @JsonProperty("indexed")
+    private long indexed;
+
+    /**
+     * Documents given up since the start (kept aside to be replayed)
+     */
+    @JsonProperty("failed")
+    private long failed;
+}
@@ -24,5 +24,12 @@ public class IndexerResponse {
     @JsonProperty("hash")
     private String hash;
 
+    @JsonProperty("version")
+    private Long version;
+
+    public IndexerResponse(String indexName, String documentId, String hash) {
+        this(indexName, documentId, hash, null);
+    }
+
 
 }
@@ -0,0 +1,62 @@
+package net.consensys.tools.ipfs.ipfsstore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * State of a document indexed in background (write-behind)
+ */
+@Data
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexingStatus {
+
+    public enum State {
+        queued,
+        indexed,
+        failed
+    }
+
+    @JsonProperty("index")
+    private String indexName;
+
+    @JsonProperty("id")
+    private String documentId;
+
+    @JsonProperty("hash")
+    private String hash;
+
+    @JsonProperty("state")
+    private State state;
+
+    /**
+     * Failed indexing attempts
+     */
+    @JsonProperty("attempts")
+    private int attempts;
+
+    /**
+     * Time (ms) the document was queued
+     */
+    @JsonProperty("queued")
+    private long queued;
+
+    /**
+     * Time (ms) the document was indexed or failed
+     */
+    @JsonProperty("updated")
+    private Long updated;
+
+    /**
+     * Error of the last attempt
+     */
+    @JsonProperty("error")
+    private String error;
+}
@@ -36,6 +36,13 @@ public class Metadata implements Serializable {
     @JsonProperty("index_fields")
     private List<IndexField> indexFields;
 
+    @JsonProperty("version")
+    private Long version;
+
+    public Metadata(String indexName, String documentId, String hash, String contentType, List<IndexField> indexFields) {
+        this(indexName, documentId, hash, contentType, indexFields, null);
+    }
+
     public Object getIndexFieldValue(String indexFieldName) {
         if (indexFields == null) {
             return null;
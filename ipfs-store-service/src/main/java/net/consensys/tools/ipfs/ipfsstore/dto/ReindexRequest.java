@@ -0,0 +1,55 @@
+package net.consensys.tools.ipfs.ipfsstore.dto;
+
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Data
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReindexRequest {
+
+    /**
+     * Index (or alias) whose documents are reindexed [source or hashes]
+     */
+    @JsonProperty("source")
+    private String source;
+
+    /**
+     * Hashes of the contents reindexed, document ID: hash, content type unknown (no source document) [source or hashes]
+     */
+    @JsonProperty("hashes")
+    private List<String> hashes;
+
+    @NotNull
+    @JsonProperty("target")
+    private String target;
+
+    /**
+     * Alias pointed to the target index once reindexed, neither the source nor an index [optional]
+     */
+    @JsonProperty("alias")
+    private String alias;
+
+    /**
+     * Contents fetched in parallel [optional]
+     */
+    @JsonProperty("concurrency")
+    private Integer concurrency;
+
+    /**
+     * Documents per bulk request [optional]
+     */
+    @JsonProperty("batch_size")
+    private Integer batchSize;
+}
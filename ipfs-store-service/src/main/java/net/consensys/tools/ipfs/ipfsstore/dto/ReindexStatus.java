@@ -0,0 +1,62 @@
+package net.consensys.tools.ipfs.ipfsstore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Data;
+import lombok.ToString;
+
+@Data
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReindexStatus {
+
+    public enum State {
+        running,
+        completed,
+        failed,     // resumable from the checkpoint
+        cancelled   // resumable from the checkpoint
+    }
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("request")
+    private ReindexRequest request;
+
+    @JsonProperty("state")
+    private State state;
+
+    /**
+     * Documents of the source (known once the job started)
+     */
+    @JsonProperty("total")
+    private long total;
+
+    /**
+     * Documents of the source processed: checkpoint from which the job resumes
+     */
+    @JsonProperty("processed")
+    private long processed;
+
+    @JsonProperty("indexed")
+    private long indexed;
+
+    @JsonProperty("failed")
+    private long failed;
+
+    /**
+     * Documents processed per second since the job (re)started
+     */
+    @JsonProperty("throughput")
+    private double throughput;
+
+    @JsonProperty("started")
+    private long started;
+
+    @JsonProperty("updated")
+    private long updated;
+
+    @JsonProperty("error")
+    private String error;
+}
@@ -0,0 +1,47 @@
+package net.consensys.tools.ipfs.ipfsstore.dto.query;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * An aggregation summarizes an index field (facet counts, ranges, histogram, distinct count) over the documents
+ * matching a query. The result is identified by the aggregation name.
+ */
+@Data
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class Aggregation {
+
+    @JsonProperty("name")
+    private String name;
+
+    @JsonProperty("type")
+    private AggregationType type;
+
+    @JsonProperty("field")
+    private String field;
+
+    @JsonProperty("size")
+    private Integer size; // terms only: number of buckets to return
+
+    @JsonProperty("ranges")
+    private List<AggregationRange> ranges; // range only
+
+    @JsonProperty("interval")
+    private String interval; // date_histogram only: e.g. 1d, 1w, 1M, 1y
+
+    public Aggregation(String name, AggregationType type, String field) {
+        this.name = name;
+        this.type = type;
+        this.field = field;
+    }
+}
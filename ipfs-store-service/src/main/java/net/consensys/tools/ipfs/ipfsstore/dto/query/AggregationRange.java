@@ -0,0 +1,31 @@
+package net.consensys.tools.ipfs.ipfsstore.dto.query;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A bucket definition of a range aggregation: [from, to[
+ * An empty boundary (from or to) means unbounded
+ */
+@Data
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AggregationRange {
+
+    @JsonProperty("key")
+    private String key;
+
+    @JsonProperty("from")
+    private Double from;
+
+    @JsonProperty("to")
+    private Double to;
+
+}
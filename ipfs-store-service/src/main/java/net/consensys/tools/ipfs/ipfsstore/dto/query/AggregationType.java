@@ -0,0 +1,13 @@
+package net.consensys.tools.ipfs.ipfsstore.dto.query;
+
+/**
+ * Aggregation types allowed to summarize the documents matching a query
+ */
+public enum AggregationType {
+
+    terms,          // Document count per distinct value (facet counts)
+    range,          // Document count per numeric range
+    date_histogram, // Document count per date interval
+    cardinality     // Approximate count of distinct values
+
+}
@@ -1,6 +1,7 @@
 package net.consensys.tools.ipfs.ipfsstore.dto.query;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -11,6 +12,7 @@ import lombok.ToString;
 
 /**
  * "Query" accumulates filters and acts as a query builder for each allowed operation
+ * Optionally, a query also carries aggregations (facets) computed on the documents matching the filters
  *
  * @author Gregoire Jeanmart <gregoire.jeanmart@consensys.net>
  */
@@ -22,6 +24,10 @@ public class Query {
     @JsonProperty("query")
     private final List<Filter> filterClauses;
 
+    @JsonProperty("aggregations")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<Aggregation> aggregations = new ArrayList<>();
+
     public Query() {
         this.filterClauses = new ArrayList<>();
     }
@@ -97,4 +103,35 @@ public class Query {
         this.filterClauses.add(new Filter(name, QueryOperation.gte, value));
         return this;
     }
+
+    public Query aggregate(Aggregation aggregation) {
+        this.aggregations.add(aggregation);
+        return this;
+    }
+
+    public Query terms(String name, String field, int size) {
+        Aggregation aggregation = new Aggregation(name, AggregationType.terms, field);
+        aggregation.setSize(size);
+        return this.aggregate(aggregation);
+    }
+
+    public Query range(String name, String field, AggregationRange... ranges) {
+        Aggregation aggregation = new Aggregation(name, AggregationType.range, field);
+        aggregation.setRanges(Arrays.asList(ranges));
+        return this.aggregate(aggregation);
+    }
+
+    public Query dateHistogram(String name, String field, String interval) {
+        Aggregation aggregation = new Aggregation(name, AggregationType.date_histogram, field);
+        aggregation.setInterval(interval);
+        return this.aggregate(aggregation);
+    }
+
+    public Query cardinality(String name, String field) {
+        return this.aggregate(new Aggregation(name, AggregationType.cardinality, field));
+    }
+
+    public boolean hasAggregations() {
+        return this.aggregations != null && !this.aggregations.isEmpty();
+    }
 }
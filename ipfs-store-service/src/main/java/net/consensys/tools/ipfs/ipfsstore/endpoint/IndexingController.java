@@ -0,0 +1,51 @@
+package net.consensys.tools.ipfs.ipfsstore.endpoint;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexQueueStatus;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexingStatus;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.service.writebehind.IndexQueue;
+
+@RestController
+@RequestMapping("${api.base}${api.indexing.uri}")
+public class IndexingController {
+
+    private final IndexQueue indexQueue;
+
+    @Autowired
+    public IndexingController(IndexQueue indexQueue) {
+        this.indexQueue = indexQueue;
+    }
+
+    /**
+     * @return State of the write-behind indexing (documents queued, lag)
+     */
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    IndexQueueStatus getStatus() {
+        return indexQueue.getStatus();
+    }
+
+    /**
+     * @param index Index name
+     * @param id    Document ID
+     * @return State of a document indexed in background (queued, indexed, failed)
+     * @throws NotFoundException
+     */
+    @RequestMapping(value = "/{index}/{id}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    IndexingStatus getStatus(
+            @PathVariable(value = "index") String index,
+            @PathVariable(value = "id") String id)
+            throws NotFoundException {
+
+        return indexQueue.getStatus(index, id);
+    }
+}
@@ -0,0 +1,110 @@
+package net.consensys.tools.ipfs.ipfsstore.endpoint;
+
+import java.util.List;
+
+import javax.validation.Valid;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexRequest;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexStatus;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceException;
+import net.consensys.tools.ipfs.ipfsstore.service.reindex.ReindexService;
+
+@RestController
+@RequestMapping("${api.base}${api.reindex.uri}")
+public class ReindexController {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(ReindexController.class);
+
+    private final ReindexService reindexService;
+
+    @Autowired
+    public ReindexController(ReindexService reindexService) {
+        this.reindexService = reindexService;
+    }
+
+    /**
+     * Start a reindex job (runs in background)
+     *
+     * @param request Reindex request (source index or hashes, target index, alias)
+     * @return Status of the job
+     * @throws ServiceException
+     */
+    @RequestMapping(method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    ReindexStatus start(
+            @RequestBody @Valid ReindexRequest request)
+            throws ServiceException {
+
+        LOGGER.debug("Reindex " + request);
+        return reindexService.start(request);
+    }
+
+    /**
+     * @return Status of the reindex jobs
+     */
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    List<ReindexStatus> getStatuses() {
+        return reindexService.getStatuses();
+    }
+
+    /**
+     * @param id Job ID
+     * @return Status (progress, throughput) of a reindex job
+     * @throws NotFoundException
+     */
+    @RequestMapping(value = "/{id}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    ReindexStatus getStatus(
+            @PathVariable(value = "id") String id)
+            throws NotFoundException {
+
+        return reindexService.getStatus(id);
+    }
+
+    /**
+     * Resume a reindex job from its last checkpoint
+     *
+     * @param id Job ID
+     * @return Status of the job
+     * @throws NotFoundException
+     */
+    @RequestMapping(value = "/{id}/resume", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    ReindexStatus resume(
+            @PathVariable(value = "id") String id)
+            throws NotFoundException {
+
+        LOGGER.debug("Resume reindex " + id);
+        return reindexService.resume(id);
+    }
+
+    /**
+     * Cancel a reindex job (stops after its current batch)
+     *
+     * @param id Job ID
+     * @return Status of the job
+     * @throws NotFoundException
+     */
+    @RequestMapping(value = "/{id}", method = RequestMethod.DELETE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    ReindexStatus cancel(
+            @PathVariable(value = "id") String id)
+            throws NotFoundException {
+
+        LOGGER.debug("Cancel reindex " + id);
+        return reindexService.cancel(id);
+    }
+}
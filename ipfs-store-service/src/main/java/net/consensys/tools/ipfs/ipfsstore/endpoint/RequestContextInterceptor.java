@@ -0,0 +1,83 @@
+package net.consensys.tools.ipfs.ipfsstore.endpoint;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptorAdapter;
+
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
+
+/**
+ * Cancel the context of an asynchronous request when the request times out, when the container reports an error on
+ * the connection (AsyncListener.onError) or when the request completes without result, so the operations still
+ * queued for it are skipped
+ * <p>
+ * Servlet 3.0 gives no notification of a client disconnecting while the result is pending: the container only reports
+ * it when it reads or writes the connection (Tomcat doesn't poll an asynchronous request). Such a request is abandoned
+ * at its deadline.
+ */
+public class RequestContextInterceptor extends DeferredResultProcessingInterceptorAdapter {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(RequestContextInterceptor.class);
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, DeferredResult<T> deferredResult) {
+        RequestContext context = getContext(request);
+        HttpServletRequest servletRequest = request.getNativeRequest(HttpServletRequest.class);
+        if (context == null || servletRequest == null || !servletRequest.isAsyncStarted()) {
+            return;
+        }
+
+        servletRequest.getAsyncContext().addListener(new AsyncListener() {
+
+            @Override
+            public void onError(AsyncEvent event) {
+                LOGGER.debug("Error on the connection of the request (" + event.getThrowable() + "), cancel it");
+                context.cancel();
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) throws IOException {
+            }
+        });
+    }
+
+    @Override
+    public <T> boolean handleTimeout(NativeWebRequest request, DeferredResult<T> deferredResult) {
+        RequestContext context = getContext(request);
+        if (context != null) {
+            LOGGER.debug("Request timed out, cancel it");
+            context.cancel();
+        }
+        return true;
+    }
+
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, DeferredResult<T> deferredResult) {
+        RequestContext context = getContext(request);
+        if (context != null && !deferredResult.hasResult()) {
+            LOGGER.debug("Request completed without result, cancel it");
+            context.cancel();
+        }
+    }
+
+    private static RequestContext getContext(NativeWebRequest request) {
+        return (RequestContext) request.getAttribute(RequestContext.class.getName(), RequestAttributes.SCOPE_REQUEST);
+    }
+}
@@ -0,0 +1,100 @@
+package net.consensys.tools.ipfs.ipfsstore.endpoint;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import net.consensys.tools.ipfs.ipfsstore.exception.DeadlineExceededException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.PayloadTooLargeException;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceUnavailableException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
+
+/**
+ * Translate the exceptions thrown by the endpoints into HTTP errors
+ */
+@ControllerAdvice
+public class RestExceptionHandler {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(RestExceptionHandler.class);
+
+    /**
+     * Service saturated: 503 with a Retry-After header
+     *
+     * @param ex       Exception
+     * @param response HTTP response
+     * @throws IOException
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public void handleServiceUnavailable(ServiceUnavailableException ex, HttpServletResponse response) throws IOException {
+        LOGGER.debug("Service unavailable: " + ex.getMessage());
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter()));
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), ex.getMessage());
+    }
+
+    /**
+     * Uploaded content larger than the upload budget: 413
+     *
+     * @param ex       Exception
+     * @param response HTTP response
+     * @throws IOException
+     */
+    @ExceptionHandler(PayloadTooLargeException.class)
+    public void handlePayloadTooLarge(PayloadTooLargeException ex, HttpServletResponse response) throws IOException {
+        LOGGER.debug("Payload too large: " + ex.getMessage());
+
+        response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), ex.getMessage());
+    }
+
+    /**
+     * Document not found: 404
+     *
+     * @param ex       Exception
+     * @param response HTTP response
+     * @throws IOException
+     */
+    @ExceptionHandler(NotFoundException.class)
+    public void handleNotFound(NotFoundException ex, HttpServletResponse response) throws IOException {
+        LOGGER.debug("Not found: " + ex.getMessage());
+
+        response.sendError(HttpStatus.NOT_FOUND.value(), ex.getMessage());
+    }
+
+    /**
+     * Document modified since the version expected by the request: 409
+     *
+     * @param ex       Exception
+     * @param response HTTP response
+     * @throws IOException
+     */
+    @ExceptionHandler(VersionConflictException.class)
+    public void handleVersionConflict(VersionConflictException ex, HttpServletResponse response) throws IOException {
+        LOGGER.debug("Version conflict: " + ex.getMessage());
+
+        response.sendError(HttpStatus.CONFLICT.value(), ex.getMessage());
+    }
+
+    /**
+     * Deadline of the request exceeded: 504
+     *
+     * @param ex       Exception
+     * @param response HTTP response
+     * @throws IOException
+     */
+    @ExceptionHandler(DeadlineExceededException.class)
+    public void handleDeadlineExceeded(DeadlineExceededException ex, HttpServletResponse response) throws IOException {
+        LOGGER.debug("Deadline exceeded: " + ex.getMessage());
+
+        if (!response.isCommitted()) {
+            response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), ex.getMessage());
+        }
+    }
+}
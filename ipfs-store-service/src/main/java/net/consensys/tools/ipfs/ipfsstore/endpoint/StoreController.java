@@ -3,8 +3,12 @@ package net.consensys.tools.ipfs.ipfsstore.endpoint;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 
@@ -15,7 +19,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -24,19 +30,37 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.AdaptiveLimiters;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.Bulkheads;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.OperationType;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContexts;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.UploadBudget;
+import net.consensys.tools.ipfs.ipfsstore.dto.DeleteResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerResponse;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
 import net.consensys.tools.ipfs.ipfsstore.dto.StoreResponse;
 import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.exception.DeadlineExceededException;
 import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
 import net.consensys.tools.ipfs.ipfsstore.exception.ServiceException;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceUnavailableException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
 import net.consensys.tools.ipfs.ipfsstore.service.StoreService;
+import net.consensys.tools.ipfs.ipfsstore.service.writebehind.IndexQueue;
 import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
 
 @RestController
@@ -47,14 +71,42 @@ public class StoreController {
 
     private static final String DEFAULT_PAGE_SIZE = "20";
     private static final String DEFAULT_PAGE_NO = "0";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    // Endpoint names (adaptive limiters)
+    private static final String ENDPOINT_CONFIG_INDEX = "config_index";
+    private static final String ENDPOINT_STORE = "store";
+    private static final String ENDPOINT_INDEX = "index";
+    private static final String ENDPOINT_STORE_INDEX = "store_index";
+    private static final String ENDPOINT_FETCH = "fetch";
+    private static final String ENDPOINT_SEARCH = "search";
+    private static final String ENDPOINT_UPDATE = "update";
+    private static final String ENDPOINT_DELETE = "delete";
+    private static final String ENDPOINT_DELETE_BY_QUERY = "delete_by_query";
 
     private final ObjectMapper mapper;
 
     private final StoreService storeService;
 
+    private final Bulkheads bulkheads;
+
+    private final AdaptiveLimiters limiters;
+
+    private final UploadBudget uploadBudget;
+
+    private final RequestContexts requestContexts;
+
+    private final IndexQueue indexQueue;
+
     @Autowired
-    public StoreController(StoreService storeService) {
+    public StoreController(StoreService storeService, Bulkheads bulkheads, AdaptiveLimiters limiters, UploadBudget uploadBudget, RequestContexts requestContexts,
+                           IndexQueue indexQueue) {
         this.storeService = storeService;
+        this.indexQueue = indexQueue;
+        this.bulkheads = bulkheads;
+        this.limiters = limiters;
+        this.uploadBudget = uploadBudget;
+        this.requestContexts = requestContexts;
         this.mapper = new ObjectMapper();
     }
 
@@ -65,11 +117,14 @@ public class StoreController {
      * @throws ServiceException
      */
     @RequestMapping(value = "${api.config_index.uri}", method = RequestMethod.POST)
-    public void createIndex(
+    public CompletableFuture<Void> createIndex(
             @PathVariable(value = "index") String index)
             throws ServiceException {
 
-        this.storeService.createIndex(index);
+        return execute(ENDPOINT_CONFIG_INDEX, () -> bulkheads.submit(OperationType.index, () -> {
+            this.storeService.createIndex(index);
+            return null;
+        }));
     }
 
 
@@ -82,17 +137,12 @@ public class StoreController {
      */
     @RequestMapping(value = "${api.store.uri}", method = RequestMethod.POST, consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public @ResponseBody
-    StoreResponse storeFile(
+    CompletableFuture<StoreResponse> storeFile(
             @RequestParam(value = "file") @Valid @NotNull @NotBlank MultipartFile file)
             throws ServiceException {
 
-        try {
-            return new StoreResponse(this.storeService.storeFile(file.getBytes()));
-
-        } catch (IOException e) {
-            LOGGER.error("Error in the rest controller", e);
-            throw new ServiceException(e);
-        }
+        return execute(ENDPOINT_STORE, () -> upload(file,
+                content -> bulkheads.submit(OperationType.add, () -> new StoreResponse(this.storeService.storeFile(content)))));
     }
 
     /**
@@ -104,11 +154,12 @@ public class StoreController {
      */
     @RequestMapping(value = "${api.index.uri}", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
     public @ResponseBody
-    IndexerResponse indexFile(
+    CompletableFuture<IndexerResponse> indexFile(
             @RequestBody @Valid @NotNull IndexerRequest request)
             throws ServiceException {
 
-        return this.storeService.indexFile(request);
+        return execute(ENDPOINT_INDEX,
+                () -> bulkheads.submit(OperationType.index, () -> this.storeService.indexFile(request)));
     }
 
     /**
@@ -116,20 +167,30 @@ public class StoreController {
      *
      * @param requestStr Request containing IDs, Hash and metadata
      * @param file       File sent as a Multipart
+     * @param async      Return once the content is stored, the document being indexed in background (write-behind)
      * @return Response containing the tuple (index, ID, hash)
      * @throws ServiceException
      */
     @RequestMapping(value = "${api.store_index.uri}", method = RequestMethod.POST, consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public @ResponseBody
-    IndexerResponse storeAndIndexFile(
+    CompletableFuture<IndexerResponse> storeAndIndexFile(
             @RequestPart(name = "request") @Valid @NotNull String requestStr,
-            @RequestPart(name = "file") @Valid @NotNull @NotBlank MultipartFile file)
+            @RequestPart(name = "file") @Valid @NotNull @NotBlank MultipartFile file,
+            @RequestParam(value = "async", required = false, defaultValue = "false") boolean async)
             throws ServiceException {
 
         try {
             IndexerRequest request = mapper.readValue(requestStr, IndexerRequest.class);
 
-            return this.storeService.storeAndIndexFile(file.getBytes(), request);
+            // Store the file then index it, each step in its own bulkhead (or queued to the write-behind indexing)
+            return execute(ENDPOINT_STORE_INDEX, () -> upload(file,
+                    content -> unwrap(bulkheads.submit(OperationType.add, () -> this.storeService.storeFile(content))
+                            .thenCompose(hash -> {
+                                request.setHash(hash);
+                                return async
+                                        ? queue(request)
+                                        : bulkheads.submit(OperationType.index, () -> this.storeService.indexFile(request));
+                            }))));
 
         } catch (IOException e) {
             LOGGER.error("Error in the rest controller", e);
@@ -142,36 +203,46 @@ public class StoreController {
      *
      * @param index Index name
      * @param hash  File Unique Identifier
-     * @return File content
+     * @return File content (streamed)
      * @throws ServiceException
      */
     @RequestMapping(value = "${api.fetch.uri}", method = RequestMethod.GET, produces = MediaType.ALL_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
     public @ResponseBody
-    StreamingResponseBody getFile(
+    CompletableFuture<ResponseEntity<StreamingResponseBody>> getFile(
             @PathVariable(value = "index") String index,
-            @PathVariable(value = "hash") String hash,
-            HttpServletResponse response)
+            @PathVariable(value = "hash") String hash)
             throws ServiceException {
 
-        // Search the file in the index by hash
-        try {
-            Metadata metadata = storeService.getFileMetadataByHash(index, hash);
-            response.setContentType(metadata.getContentType());
-        } catch (NotFoundException e) {
-            response.setContentType("application/octet-stream");
-        }
+        return execute(ENDPOINT_FETCH, () -> fetch(index, hash));
+    }
+
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> fetch(String index, String hash) {
+
+        // Search the file in the index by hash (content type), while the content is fetched
+        CompletableFuture<String> contentType = bulkheads.submit(OperationType.search, () -> storeService.getFileMetadataByHash(index, hash))
+                .thenApply(Metadata::getContentType)
+                .exceptionally(ex -> {
+                    if (unwrap(ex) instanceof NotFoundException) {
+                        return DEFAULT_CONTENT_TYPE;
+                    }
+                    throw new CompletionException(unwrap(ex));
+                });
 
         // Get the content in IPFS
-        InputStream inputStream = new ByteArrayInputStream(storeService.getFileByHash(hash));
+        CompletableFuture<byte[]> content = bulkheads.submit(OperationType.cat, () -> storeService.getFileByHash(hash));
 
         // Send the response as a stream
-        return outputStream -> {
-            int nRead;
-            byte[] data = new byte[1024];
-            while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-                outputStream.write(data, 0, nRead);
-            }
-        };
+        return unwrap(content.thenCombine(contentType, (bytes, type) -> ResponseEntity.ok()
+                .contentType(parseContentType(type))
+                .contentLength(bytes.length)
+                .body(outputStream -> {
+                    InputStream inputStream = new ByteArrayInputStream(bytes);
+                    int nRead;
+                    byte[] data = new byte[1024];
+                    while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
+                        outputStream.write(data, 0, nRead);
+                    }
+                })));
     }
 
 
@@ -189,7 +260,7 @@ public class StoreController {
      */
     @RequestMapping(value = "${api.search.uri}", method = RequestMethod.POST, produces = MediaType.ALL_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
     public @ResponseBody
-    Page<Metadata> searchContentsByPost(
+    CompletableFuture<Page<Metadata>> searchContentsByPost(
             @PathVariable(value = "index") String index,
             @RequestParam(value = "page", defaultValue = DEFAULT_PAGE_NO, required = false) int pageNo,
             @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE, required = false) int pageSize,
@@ -215,7 +286,7 @@ public class StoreController {
      */
     @RequestMapping(value = "${api.search.uri}", method = RequestMethod.GET, produces = MediaType.ALL_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
     public @ResponseBody
-    Page<Metadata> searchContentsByGet(
+    CompletableFuture<Page<Metadata>> searchContentsByGet(
             @PathVariable(value = "index") String index,
             @RequestParam(value = "page", defaultValue = DEFAULT_PAGE_NO, required = false) int pageNo,
             @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE, required = false) int pageSize,
@@ -238,7 +309,7 @@ public class StoreController {
         }
     }
 
-    private Page<Metadata> executeSearch(String index, int pageNo, int pageSize, String sortAttribute, Sort.Direction sortDirection, Query query) throws ServiceException {
+    private CompletableFuture<Page<Metadata>> executeSearch(String index, int pageNo, int pageSize, String sortAttribute, Sort.Direction sortDirection, Query query) {
 
         PageRequest pagination;
         if (sortAttribute == null || sortAttribute.isEmpty()) {
@@ -247,8 +318,209 @@ public class StoreController {
             pagination = new PageRequest(pageNo, pageSize, new Sort(sortDirection, sortAttribute));
         }
 
-        return this.storeService.searchFiles(index, query, pagination);
+        return execute(ENDPOINT_SEARCH, () -> unwrap(bulkheads.submit(OperationType.search, () -> this.storeService.searchFilesAsync(index, query, pagination))
+                .thenCompose(page -> page)));
+    }
+
+    /**
+     * Update the index fields of a document, the content (IPFS) unchanged
+     *
+     * @param index       Index name
+     * @param id          Document ID
+     * @param version     Expected version of the document, 409 if it was modified in the meantime [optional]
+     * @param indexFields Fields to add or replace
+     * @return Response containing the tuple (index, ID, hash, version)
+     * @throws ServiceException
+     */
+    @RequestMapping(value = "${api.update.uri}", method = {RequestMethod.PATCH, RequestMethod.POST}, produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    CompletableFuture<IndexerResponse> updateFile(
+            @PathVariable(value = "index") String index,
+            @PathVariable(value = "id") String id,
+            @RequestParam(value = "version", required = false) Long version,
+            @RequestBody @NotNull List<IndexField> indexFields)
+            throws ServiceException {
+
+        return execute(ENDPOINT_UPDATE,
+                () -> bulkheads.submit(OperationType.index, () -> this.storeService.updateFile(index, id, indexFields, version)));
+    }
+
+    /**
+     * Delete a document from the index
+     *
+     * @param index Index name
+     * @param id    Document ID
+     * @param unpin Unpin the content (IPFS) if no other document of any index refers to it [optional - default false]
+     * @return Response containing the number of documents deleted and content unpinned
+     * @throws ServiceException
+     */
+    @RequestMapping(value = "${api.delete.uri}", method = RequestMethod.DELETE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    CompletableFuture<DeleteResponse> deleteFile(
+            @PathVariable(value = "index") String index,
+            @PathVariable(value = "id") String id,
+            @RequestParam(value = "unpin", defaultValue = "false", required = false) boolean unpin)
+            throws ServiceException {
+
+        return execute(ENDPOINT_DELETE,
+                () -> bulkheads.submit(OperationType.index, () -> this.storeService.deleteFile(index, id, unpin)));
+    }
+
+    /**
+     * Delete the documents of the index matching a query, by batches
+     *
+     * @param index Index name
+     * @param unpin Unpin the content (IPFS) no longer referenced by a document of any index [optional - default false]
+     * @param query Query (an empty query matches all the documents)
+     * @return Response containing the number of documents deleted and content unpinned
+     * @throws ServiceException
+     */
+    @RequestMapping(value = "${api.delete_by_query.uri}", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    CompletableFuture<DeleteResponse> deleteFilesByQuery(
+            @PathVariable(value = "index") String index,
+            @RequestParam(value = "unpin", defaultValue = "false", required = false) boolean unpin,
+            @RequestBody @NotNull Query query)
+            throws ServiceException {
+
+        return execute(ENDPOINT_DELETE_BY_QUERY,
+                () -> bulkheads.submit(OperationType.index, () -> this.storeService.deleteFiles(index, query, unpin)));
+    }
+
+    /**
+     * Execute a request within the adaptive limit of its endpoint and the context of the request (deadline), in the
+     * span of the endpoint
+     * The request completes with a DeadlineExceededException as soon as its context is cancelled (deadline exceeded
+     * or connection error, see RequestContextInterceptor).
+     *
+     * @param endpoint Endpoint
+     * @param request  Request
+     * @return Future result of the request
+     */
+    private <T> CompletableFuture<T> execute(String endpoint, Supplier<CompletableFuture<T>> request) {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+
+        RequestContext context = requestContexts.create(endpoint,
+                header -> attributes != null ? attributes.getRequest().getHeader(header) : null,
+                attributes != null ? attributes.getRequest().getRemoteAddr() : null);
+        if (attributes != null) {
+            attributes.setAttribute(RequestContext.class.getName(), context, RequestAttributes.SCOPE_REQUEST);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        context.onCancel(() -> result.completeExceptionally(new DeadlineExceededException("Deadline exceeded [" + endpoint + "]")));
+
+        try (RequestContext.Scope scope = context.attach()) {
+            Attributes spanAttributes = Attributes.of(Tracing.ENDPOINT, endpoint, Tracing.REQUEST_CLASS, context.getRequestClass().name());
+
+            CompletableFuture<T> response = Tracing.traceAsync("endpoint." + endpoint, spanAttributes,
+                    () -> limiters.execute(endpoint, context.getRequestClass(), request));
+
+            response.whenComplete((value, ex) -> {
+                if (ex != null) {
+                    result.completeExceptionally(unwrap(ex));
+                } else {
+                    result.complete(value);
+                }
+                context.close();
+            });
+        }
+
+        return result;
+    }
+
+    /**
+     * Read an uploaded file into memory within the upload budget and store it
+     * The budget is reserved without blocking the calling thread: if it is exhausted, the file is read once budget is
+     * released (in the context of the request). The file is read on the upload bulkhead, never on the thread completing
+     * the reservation (releasing budget or expiring the wait). The budget reserved for the file is released once the
+     * operation completes.
+     *
+     * @param file      Uploaded file
+     * @param operation Operation storing the content
+     * @return Future result of the operation, completed exceptionally with a ServiceUnavailableException if the
+     * budget is exhausted or a PayloadTooLargeException if the file is larger than the budget
+     */
+    private <T> CompletableFuture<T> upload(MultipartFile file, Function<byte[], CompletableFuture<T>> operation) {
+        RequestContext context = RequestContext.current();
+        Context traceContext = Context.current();
+
+        CompletableFuture<Long> reservation = uploadBudget.acquire(file.getSize());
+        context.onCancel(() -> reservation.cancel(false));
+
+        return unwrap(reservation.thenCompose(reserved -> {
+            CompletableFuture<T> future;
+
+            try (RequestContext.Scope scope = context.attach(); Scope traceScope = traceContext.makeCurrent()) {
+                future = bulkheads.submit(OperationType.add, () -> {
+                    try {
+                        byte[] content = Tracing.trace("upload.read", Tracing.bytes(file.getSize()), file::getBytes);
+                        return operation.apply(content);
+
+                    } catch (IOException e) {
+                        LOGGER.error("Error in the rest controller", e);
+                        throw new ServiceException(e);
+                    }
+                }).thenCompose(stored -> stored);
+
+            } catch (RuntimeException e) {
+                uploadBudget.release(reserved);
+                throw e;
+            }
+
+            future.whenComplete((result, ex) -> uploadBudget.release(reserved));
+
+            return future;
+        }));
+    }
+
+    /**
+     * Queue a document to the write-behind indexing (journal written in the calling thread)
+     *
+     * @param request Request containing metadata to index
+     * @return Future response, completed once the document is queued
+     */
+    private CompletableFuture<IndexerResponse> queue(IndexerRequest request) {
+        CompletableFuture<IndexerResponse> future = new CompletableFuture<>();
+        try {
+            future.complete(indexQueue.queue(request));
+        } catch (ServiceException | RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    private MediaType parseContentType(String contentType) {
+        try {
+            return MediaType.parseMediaType(contentType != null ? contentType : DEFAULT_CONTENT_TYPE);
+
+        } catch (InvalidMediaTypeException e) {
+            LOGGER.warn("Invalid content type [" + contentType + "] - Ignore it!");
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
     }
 
+    /**
+     * Future completed with the original failure of a composed future (instead of a CompletionException)
+     * so the exception is resolved as if it was thrown by the endpoint
+     *
+     * @param future Composed future
+     * @return Future
+     */
+    private static <T> CompletableFuture<T> unwrap(CompletableFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, ex) -> {
+            if (ex != null) {
+                result.completeExceptionally(unwrap(ex));
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
 
 }
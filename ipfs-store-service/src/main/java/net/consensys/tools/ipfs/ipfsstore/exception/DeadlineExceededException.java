@@ -0,0 +1,18 @@
+package net.consensys.tools.ipfs.ipfsstore.exception;
+
+/**
+ * DeadlineExceededException is thrown when a request is abandoned because its deadline is exceeded or its connection
+ * failed.
+ */
+public class DeadlineExceededException extends BaseException {
+
+    private static final long serialVersionUID = 5313498431805126617L;
+
+    /**
+     * @param message is the String text or special message given by user.
+     */
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+}
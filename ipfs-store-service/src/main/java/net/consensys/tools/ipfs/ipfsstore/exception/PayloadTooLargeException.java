@@ -0,0 +1,17 @@
+package net.consensys.tools.ipfs.ipfsstore.exception;
+
+/**
+ * PayloadTooLargeException is thrown when an uploaded content is larger than the service can hold in memory.
+ */
+public class PayloadTooLargeException extends BaseException {
+
+    private static final long serialVersionUID = -4377813290846921581L;
+
+    /**
+     * @param message is the String text or special message given by user.
+     */
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+
+}
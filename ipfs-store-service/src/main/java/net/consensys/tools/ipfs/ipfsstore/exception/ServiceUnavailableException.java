@@ -0,0 +1,26 @@
+package net.consensys.tools.ipfs.ipfsstore.exception;
+
+/**
+ * ServiceUnavailableException is thrown when an operation is rejected because the service is saturated.
+ * The client is invited to retry after a delay.
+ */
+public class ServiceUnavailableException extends BaseException {
+
+    private static final long serialVersionUID = -2671846021427906394L;
+
+    private final long retryAfter;
+
+    /**
+     * @param message    is the String text or special message given by user.
+     * @param retryAfter is the delay (in seconds) after which the client can retry
+     */
+    public ServiceUnavailableException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+}
@@ -0,0 +1,18 @@
+package net.consensys.tools.ipfs.ipfsstore.exception;
+
+/**
+ * VersionConflictException is thrown when a document is updated with an expected version which is not its current
+ * version (the document was modified in the meantime).
+ */
+public class VersionConflictException extends BaseException {
+
+    private static final long serialVersionUID = -6386024735094873451L;
+
+    /**
+     * @param message is the String text or special message given by user.
+     */
+    public VersionConflictException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,236 @@
+package net.consensys.tools.ipfs.ipfsstore.monitoring;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+
+/**
+ * Metrics of the DAO operations (StorageDao and IndexDao implementations):
+ * <pre>
+ * dao.operation     : latency histogram     [dao, operation, index, outcome]
+ * dao.errors        : error counter         [dao, operation, index, exception]
+ * dao.payload.bytes : content size (bytes)  [dao, operation] (storage add and cat)
+ * dao.results       : documents returned    [dao, operation, index] (index searches)
+ * </pre>
+ * The asynchronous operations are measured until their future completes. The outcome is success, not_found or error.
+ * <p>
+ * The index names are chosen by the clients (indices created on the fly), the index tag is bounded to keep the number of
+ * series under control: the indices of the allow-list (metrics.dao.indices) if set, the first indices seen up to
+ * metrics.dao.max-indices otherwise; the others are tagged "other".
+ */
+@Aspect
+@Component
+public class DaoMetricsAspect {
+
+    static final String DAO_STORAGE = "storage";
+    static final String DAO_INDEX = "index";
+
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_NOT_FOUND = "not_found";
+    static final String OUTCOME_ERROR = "error";
+
+    static final String NO_INDEX = "none";
+    static final String OTHER_INDEX = "other";
+    private static final String ASYNC_SUFFIX = "Async";
+    private static final String ALIAS_METHOD = "alias";
+    private static final int DEFAULT_MAX_INDICES = 20;
+
+    private final MeterRegistry registry;
+    private final Set<String> allowedIndices;
+    private final int maxIndices;
+    private final Set<String> taggedIndices = ConcurrentHashMap.newKeySet();
+
+    public DaoMetricsAspect(MeterRegistry registry) {
+        this(registry, "", DEFAULT_MAX_INDICES);
+    }
+
+    @Autowired
+    public DaoMetricsAspect(
+            MeterRegistry registry,
+            @Value("${metrics.dao.indices:}") String indices,
+            @Value("${metrics.dao.max-indices:" + DEFAULT_MAX_INDICES + "}") int maxIndices) {
+
+        // Validation
+        if (maxIndices < 0) throw new IllegalArgumentException("metrics.dao.max-indices must be positive or zero");
+
+        this.registry = registry;
+        this.allowedIndices = Arrays.stream(indices.split(","))
+                .map(String::trim)
+                .filter(index -> !index.isEmpty())
+                .map(String::toLowerCase)
+                .collect(Collectors.toSet());
+        this.maxIndices = maxIndices;
+    }
+
+    @Around("execution(* net.consensys.tools.ipfs.ipfsstore.dao.StorageDao+.*(..))")
+    public Object measureStorage(ProceedingJoinPoint joinPoint) throws Throwable {
+        return measure(joinPoint, DAO_STORAGE);
+    }
+
+    @Around("execution(* net.consensys.tools.ipfs.ipfsstore.dao.IndexDao+.*(..))")
+    public Object measureIndex(ProceedingJoinPoint joinPoint) throws Throwable {
+        return measure(joinPoint, DAO_INDEX);
+    }
+
+    private Object measure(ProceedingJoinPoint joinPoint, String dao) throws Throwable {
+        String operation = operation(dao, joinPoint.getSignature().getName());
+        String index = DAO_INDEX.equals(dao) ? indexTag(index(joinPoint.getSignature().getName(), joinPoint.getArgs())) : NO_INDEX;
+
+        if (DAO_STORAGE.equals(dao) && joinPoint.getArgs().length > 0 && joinPoint.getArgs()[0] instanceof byte[]) {
+            recordPayload(dao, operation, ((byte[]) joinPoint.getArgs()[0]).length);
+        }
+
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+
+        } catch (Throwable ex) {
+            record(dao, operation, index, start, null, ex);
+            throw ex;
+        }
+
+        if (result instanceof CompletableFuture) {
+            ((CompletableFuture<?>) result).whenComplete((value, ex) -> record(dao, operation, index, start, value, ex));
+        } else {
+            record(dao, operation, index, start, result, null);
+        }
+
+        return result;
+    }
+
+    private void record(String dao, String operation, String index, long start, Object result, Throwable ex) {
+        Throwable cause = cause(ex);
+        String outcome = outcome(cause);
+
+        Timer.builder("dao.operation")
+                .description("Latency of the DAO operations")
+                .tags("dao", dao, "operation", operation, "index", index, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (OUTCOME_ERROR.equals(outcome)) {
+            Counter.builder("dao.errors")
+                    .description("Errors of the DAO operations")
+                    .tags("dao", dao, "operation", operation, "index", index, "exception", cause.getClass().getSimpleName())
+                    .register(registry)
+                    .increment();
+            return;
+        }
+
+        if (result instanceof byte[]) {
+            recordPayload(dao, operation, ((byte[]) result).length);
+        } else if (result instanceof AggregatedPage) {
+            recordResults(dao, operation, index, ((AggregatedPage<?>) result).getContent().size());
+        } else if (result instanceof Collection) {
+            recordResults(dao, operation, index, ((Collection<?>) result).size());
+        }
+    }
+
+    private void recordPayload(String dao, String operation, long bytes) {
+        DistributionSummary.builder("dao.payload.bytes")
+                .description("Size of the contents stored and fetched")
+                .baseUnit("bytes")
+                .tags("dao", dao, "operation", operation)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(bytes);
+    }
+
+    private void recordResults(String dao, String operation, String index, long count) {
+        DistributionSummary.builder("dao.results")
+                .description("Number of documents returned by the searches")
+                .tags("dao", dao, "operation", operation, "index", index)
+                .register(registry)
+                .record(count);
+    }
+
+    /**
+     * Original failure of an operation (unwrapped from a CompletionException), null if succeeded
+     */
+    static Throwable cause(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    /**
+     * Outcome of an operation: success, not_found or error
+     */
+    static String outcome(Throwable cause) {
+        return cause == null ? OUTCOME_SUCCESS : cause instanceof NotFoundException ? OUTCOME_NOT_FOUND : OUTCOME_ERROR;
+    }
+
+    /**
+     * Name of the operation: IPFS command for the storage (add, cat, pin, unpin, pin_ls, gc), method otherwise (the blocking and
+     * asynchronous variants of a method share the same name)
+     */
+    static String operation(String dao, String method) {
+        if (DAO_STORAGE.equals(dao)) {
+            switch (method) {
+                case "createContent":
+                    return "add";
+                case "getContent":
+                    return "cat";
+                case "listPins":
+                    return "pin_ls";
+                default:
+                    return method;
+            }
+        }
+        return method.endsWith(ASYNC_SUFFIX) ? method.substring(0, method.length() - ASYNC_SUFFIX.length()) : method;
+    }
+
+    /**
+     * Value of the index tag: the index name if allowed (allow-list, or first indices seen up to the maximum), "other"
+     * otherwise
+     */
+    private String indexTag(String index) {
+        if (NO_INDEX.equals(index) || taggedIndices.contains(index)) {
+            return index;
+        }
+        if (!allowedIndices.isEmpty()) {
+            return allowedIndices.contains(index) ? index : OTHER_INDEX;
+        }
+        synchronized (taggedIndices) {
+            if (taggedIndices.size() < maxIndices) {
+                taggedIndices.add(index);
+                return index;
+            }
+        }
+        return OTHER_INDEX;
+    }
+
+    /**
+     * Index name of an IndexDao operation (first String argument of every method, second of alias(alias, indexName))
+     */
+    static String index(String method, Object[] args) {
+        if (ALIAS_METHOD.equals(method) && args.length > 1 && args[1] instanceof String) {
+            return ((String) args[1]).toLowerCase();
+        }
+        for (Object arg : args) {
+            if (arg instanceof String) {
+                return ((String) arg).toLowerCase();
+            }
+        }
+        return NO_INDEX;
+    }
+}
@@ -0,0 +1,109 @@
+package net.consensys.tools.ipfs.ipfsstore.monitoring;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
+
+/**
+ * JDK Flight Recorder events of the DAO operations (StorageDao and IndexDao implementations):
+ * <pre>
+ * net.consensys.ipfsstore.IpfsOperation  : operation, hash, bytes, outcome (add, cat, pin, unpin)
+ * net.consensys.ipfsstore.IndexOperation : operation, index, results, outcome (index, search, count...)
+ * </pre>
+ * The events are only created while a recording enables them, so the aspect costs a check per operation otherwise.
+ * The asynchronous operations are recorded until their future completes.
+ */
+@Aspect
+@Component
+@ConditionalOnClass(name = "jdk.jfr.Event")
+@ConditionalOnProperty(name = "jfr.enabled", havingValue = "true", matchIfMissing = true)
+public class FlightRecorderAspect {
+
+    @Around("execution(* net.consensys.tools.ipfs.ipfsstore.dao.StorageDao+.*(..))")
+    public Object recordStorage(ProceedingJoinPoint joinPoint) throws Throwable {
+        IpfsOperationEvent event = new IpfsOperationEvent();
+        if (!event.isEnabled()) {
+            return joinPoint.proceed();
+        }
+
+        event.begin();
+        event.operation = DaoMetricsAspect.operation(DaoMetricsAspect.DAO_STORAGE, joinPoint.getSignature().getName());
+        for (Object arg : joinPoint.getArgs()) {
+            if (arg instanceof String) {
+                event.hash = (String) arg;
+            } else if (arg instanceof byte[]) {
+                event.bytes = ((byte[]) arg).length;
+            }
+        }
+
+        return proceed(joinPoint, (result, cause) -> {
+            if (result instanceof String) {
+                event.hash = (String) result; // add
+            } else if (result instanceof byte[]) {
+                event.bytes = ((byte[]) result).length; // cat
+            }
+            event.outcome = DaoMetricsAspect.outcome(cause);
+            event.commit();
+        });
+    }
+
+    @Around("execution(* net.consensys.tools.ipfs.ipfsstore.dao.IndexDao+.*(..))")
+    public Object recordIndex(ProceedingJoinPoint joinPoint) throws Throwable {
+        IndexOperationEvent event = new IndexOperationEvent();
+        if (!event.isEnabled()) {
+            return joinPoint.proceed();
+        }
+
+        event.begin();
+        event.operation = DaoMetricsAspect.operation(DaoMetricsAspect.DAO_INDEX, joinPoint.getSignature().getName());
+        event.index = DaoMetricsAspect.index(joinPoint.getSignature().getName(), joinPoint.getArgs());
+
+        return proceed(joinPoint, (result, cause) -> {
+            if (result instanceof AggregatedPage) {
+                event.results = ((AggregatedPage<?>) result).getContent().size();
+            } else if (result instanceof Collection) {
+                event.results = ((Collection<?>) result).size();
+            } else if (result instanceof Long) {
+                event.results = (Long) result; // count
+            }
+            event.outcome = DaoMetricsAspect.outcome(cause);
+            event.commit();
+        });
+    }
+
+    /**
+     * Proceed with an operation and report its result (or its failure), when its future completes if asynchronous
+     */
+    private static Object proceed(ProceedingJoinPoint joinPoint, Recorder recorder) throws Throwable {
+        Object result;
+        try {
+            result = joinPoint.proceed();
+
+        } catch (Throwable ex) {
+            recorder.record(null, ex);
+            throw ex;
+        }
+
+        if (result instanceof CompletableFuture) {
+            ((CompletableFuture<?>) result).whenComplete((value, ex) -> recorder.record(value, DaoMetricsAspect.cause(ex)));
+        } else {
+            recorder.record(result, null);
+        }
+
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface Recorder {
+
+        void record(Object result, Throwable cause);
+    }
+}
@@ -0,0 +1,92 @@
+package net.consensys.tools.ipfs.ipfsstore.monitoring;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Record a JDK Flight Recorder event (net.consensys.ipfsstore.Request) per HTTP request, lasting until the response
+ * is sent, with the route, the index and hash of the request, its size and the status of the response
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnClass(name = "jdk.jfr.Event")
+@ConditionalOnProperty(name = "jfr.enabled", havingValue = "true", matchIfMissing = true)
+public class FlightRecorderFilter extends OncePerRequestFilter {
+
+    private static final String INDEX_VARIABLE = "index";
+    private static final String HASH_VARIABLE = "hash";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+
+        RequestEvent event = new RequestEvent();
+        if (!event.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        event.begin();
+        event.method = request.getMethod();
+        event.bytes = Math.max(request.getContentLengthLong(), 0);
+
+        try {
+            chain.doFilter(request, response);
+
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent asyncEvent) {
+                        commit(event, request, response);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent asyncEvent) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent asyncEvent) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent asyncEvent) {
+                        asyncEvent.getAsyncContext().addListener(this);
+                    }
+                });
+
+            } else {
+                commit(event, request, response);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void commit(RequestEvent event, HttpServletRequest request, HttpServletResponse response) {
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        event.route = route != null ? route.toString() : request.getRequestURI();
+
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables instanceof Map) {
+            event.index = ((Map<String, String>) variables).get(INDEX_VARIABLE);
+            event.hash = ((Map<String, String>) variables).get(HASH_VARIABLE);
+        }
+
+        event.status = response.getStatus();
+        event.commit();
+    }
+}
@@ -0,0 +1,32 @@
+package net.consensys.tools.ipfs.ipfsstore.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a search engine operation (index, search, count...)
+ */
+@Name("net.consensys.ipfsstore.IndexOperation")
+@Label("Index Operation")
+@Description("Call to the search engine")
+@Category({"IPFS-Store", "Index"})
+@StackTrace(false)
+class IndexOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Index")
+    String index;
+
+    @Label("Results")
+    @Description("Number of documents returned")
+    long results;
+
+    @Label("Outcome")
+    String outcome;
+}
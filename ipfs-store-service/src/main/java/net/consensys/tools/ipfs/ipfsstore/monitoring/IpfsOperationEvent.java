@@ -0,0 +1,33 @@
+package net.consensys.tools.ipfs.ipfsstore.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of an IPFS operation (add, cat, pin, unpin)
+ */
+@Name("net.consensys.ipfsstore.IpfsOperation")
+@Label("IPFS Operation")
+@Description("Call to the IPFS node")
+@Category({"IPFS-Store", "Storage"})
+@StackTrace(false)
+class IpfsOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Hash")
+    String hash;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Outcome")
+    String outcome;
+}
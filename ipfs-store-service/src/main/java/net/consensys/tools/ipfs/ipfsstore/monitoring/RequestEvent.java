@@ -0,0 +1,39 @@
+package net.consensys.tools.ipfs.ipfsstore.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of an HTTP request, from its reception to its response (asynchronous requests included)
+ */
+@Name("net.consensys.ipfsstore.Request")
+@Label("HTTP Request")
+@Description("Request handled by the controller")
+@Category({"IPFS-Store", "HTTP"})
+@StackTrace(false)
+class RequestEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Route")
+    String route;
+
+    @Label("Index")
+    String index;
+
+    @Label("Hash")
+    String hash;
+
+    @Label("Request Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Status")
+    int status;
+}
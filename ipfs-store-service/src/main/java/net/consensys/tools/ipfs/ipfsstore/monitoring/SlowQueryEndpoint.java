@@ -0,0 +1,27 @@
+package net.consensys.tools.ipfs.ipfsstore.monitoring;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * Endpoint ranking the slowest kinds of searches of the rolling window (GET /slowqueries)
+ */
+@Component
+public class SlowQueryEndpoint extends AbstractEndpoint<List<SlowQueryLog.SlowQuery>> {
+
+    private final SlowQueryLog slowQueryLog;
+
+    @Autowired
+    public SlowQueryEndpoint(SlowQueryLog slowQueryLog) {
+        super("slowqueries", false);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public List<SlowQueryLog.SlowQuery> invoke() {
+        return slowQueryLog.top();
+    }
+}
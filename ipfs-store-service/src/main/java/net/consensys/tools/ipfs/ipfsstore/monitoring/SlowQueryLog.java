@@ -0,0 +1,199 @@
+package net.consensys.tools.ipfs.ipfsstore.monitoring;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.ToString;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.utils.Queries;
+
+/**
+ * Log of the slow searches: a search or count taking (search engine side) more than a threshold is logged with the
+ * fingerprint of its query, the index, the time taken, the shards and the caller, then aggregated by (operation,
+ * index, fingerprint) over a rolling window to rank the slowest kinds of queries (see SlowQueryEndpoint)
+ * <pre>
+ * slow-query.threshold : time (ms) above which a search is slow (negative: disabled)
+ * slow-query.window    : duration (seconds) of the rolling window
+ * slow-query.top       : number of fingerprints ranked
+ * </pre>
+ * The window is divided into slices: the aggregates of the oldest slice are dropped as time goes by.
+ */
+@Component
+public class SlowQueryLog {
+
+    private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class);
+
+    private static final int SLICES = 10;
+
+    private final long threshold;
+    private final long sliceDuration; // ms
+    private final int top;
+
+    private final Slice[] slices = new Slice[SLICES];
+
+    @Autowired
+    public SlowQueryLog(
+            @Value("${slow-query.threshold:1000}") long threshold,
+            @Value("${slow-query.window:300}") long window,
+            @Value("${slow-query.top:10}") int top) {
+
+        this.threshold = threshold;
+        this.sliceDuration = Math.max(1, window * 1000 / SLICES);
+        this.top = top;
+        for (int i = 0; i < SLICES; i++) {
+            slices[i] = new Slice();
+        }
+
+        LOGGER.info("Slow query log [threshold: " + threshold + "ms, window: " + window + "s, top: " + top + "]");
+    }
+
+    /**
+     * Disabled log (nothing is logged nor aggregated)
+     *
+     * @return Disabled log
+     */
+    public static SlowQueryLog disabled() {
+        return new SlowQueryLog(-1, 0, 0);
+    }
+
+    public boolean isEnabled() {
+        return threshold >= 0;
+    }
+
+    /**
+     * Record a search, logged and aggregated if slow
+     *
+     * @param operation        Operation (search, count...)
+     * @param index            Index name
+     * @param query            Query
+     * @param took             Time taken by the search engine (ms)
+     * @param totalShards      Number of shards searched
+     * @param successfulShards Number of shards searched successfully
+     * @param failedShards     Number of shards failed
+     * @param caller           Caller of the request (see RequestContext)
+     */
+    public void record(String operation, String index, Query query, long took, int totalShards, int successfulShards, int failedShards, String caller) {
+        if (!isEnabled() || took < threshold) {
+            return;
+        }
+
+        String fingerprint = Queries.fingerprint(query);
+
+        LOGGER.warn("Slow " + operation + " [index: " + index + ", fingerprint: " + fingerprint + ", took: " + took + "ms"
+                + ", shards: " + successfulShards + "/" + totalShards + (failedShards > 0 ? " (" + failedShards + " failed)" : "")
+                + ", caller: " + caller + "]");
+
+        long slice = System.currentTimeMillis() / sliceDuration;
+        Slice current = slices[(int) (slice % SLICES)];
+        synchronized (current) {
+            if (current.number != slice) {
+                current.number = slice;
+                current.queries.clear();
+            }
+            current.queries.computeIfAbsent(new Key(operation, index, fingerprint), SlowQuery::new)
+                    .add(took, caller);
+        }
+    }
+
+    /**
+     * @return Slowest fingerprints of the window (by maximum time taken), with their count, average and last caller
+     */
+    public List<SlowQuery> top() {
+        return top(top);
+    }
+
+    /**
+     * @param n Number of fingerprints
+     * @return Slowest fingerprints of the window (by maximum time taken), with their count, average and last caller
+     */
+    public List<SlowQuery> top(int n) {
+        long current = System.currentTimeMillis() / sliceDuration;
+
+        // Oldest slice first, so the last caller is the caller of the most recent query
+        Map<Key, SlowQuery> merged = new HashMap<>();
+        for (long number = current - SLICES + 1; number <= current; number++) {
+            Slice slice = slices[(int) (number % SLICES)];
+            synchronized (slice) {
+                if (slice.number == number) {
+                    slice.queries.forEach((key, query) -> merged.computeIfAbsent(key, SlowQuery::new).merge(query));
+                }
+            }
+        }
+
+        return merged.values().stream()
+                .sorted(Comparator.comparingLong(SlowQuery::getMaxTook).reversed())
+                .limit(n)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Slice of the window
+     */
+    private static final class Slice {
+        private long number = -1;
+        private final Map<Key, SlowQuery> queries = new HashMap<>();
+    }
+
+    /**
+     * Kind of query: operation, index and fingerprint
+     */
+    @lombok.Value
+    private static final class Key {
+        private final String operation;
+        private final String index;
+        private final String fingerprint;
+    }
+
+    /**
+     * Aggregate of the slow queries of a kind
+     */
+    @Getter
+    @ToString
+    public static final class SlowQuery {
+        private final String operation;
+        private final String index;
+        private final String fingerprint;
+        private long count;
+        private long totalTook;
+        private long maxTook;
+        private String lastCaller;
+
+        private SlowQuery(Key key) {
+            this.operation = key.getOperation();
+            this.index = key.getIndex();
+            this.fingerprint = key.getFingerprint();
+        }
+
+        /**
+         * @return Average time taken (ms)
+         */
+        public long getAverageTook() {
+            return count > 0 ? totalTook / count : 0;
+        }
+
+        private void add(long took, String caller) {
+            count++;
+            totalTook += took;
+            maxTook = Math.max(maxTook, took);
+            lastCaller = caller;
+        }
+
+        private void merge(SlowQuery other) {
+            count += other.count;
+            totalTook += other.totalTook;
+            maxTook = Math.max(maxTook, other.maxTook);
+            if (other.lastCaller != null) {
+                lastCaller = other.lastCaller;
+            }
+        }
+    }
+}
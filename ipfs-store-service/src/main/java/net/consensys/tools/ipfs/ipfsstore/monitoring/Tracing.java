@@ -0,0 +1,160 @@
+package net.consensys.tools.ipfs.ipfsstore.monitoring;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+
+/**
+ * Tracing of the requests (OpenTelemetry): the controller, the service and the DAOs open a span around each step and
+ * each call to IPFS or ElasticSearch, child of the span of the HTTP request (see TracingFilter)
+ * <p>
+ * The spans are no-op until an OpenTelemetry SDK is installed (see TracingConfiguration), so the classes can be used
+ * without the Spring context (tests). The current span is carried by the bulkheads to the threads running the
+ * operations of a request.
+ */
+public final class Tracing {
+
+    private static final String INSTRUMENTATION_NAME = "ipfs-store";
+
+    public static final AttributeKey<String> ENDPOINT = AttributeKey.stringKey("ipfs-store.endpoint");
+    public static final AttributeKey<String> REQUEST_CLASS = AttributeKey.stringKey("ipfs-store.request_class");
+    public static final AttributeKey<String> INDEX = AttributeKey.stringKey("ipfs-store.index");
+    public static final AttributeKey<String> DOCUMENT_ID = AttributeKey.stringKey("ipfs-store.document_id");
+    public static final AttributeKey<String> HASH = AttributeKey.stringKey("ipfs-store.hash");
+    public static final AttributeKey<Long> BYTES = AttributeKey.longKey("ipfs-store.bytes");
+    public static final AttributeKey<Long> RESULTS = AttributeKey.longKey("ipfs-store.results");
+
+    private static volatile OpenTelemetry openTelemetry = OpenTelemetry.noop();
+    private static volatile Tracer tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+
+    private Tracing() {
+    }
+
+    /**
+     * Install the OpenTelemetry implementation used to create the spans
+     *
+     * @param instance OpenTelemetry implementation
+     */
+    public static void install(OpenTelemetry instance) {
+        openTelemetry = instance;
+        tracer = instance.getTracer(INSTRUMENTATION_NAME);
+    }
+
+    public static OpenTelemetry get() {
+        return openTelemetry;
+    }
+
+    public static Tracer tracer() {
+        return tracer;
+    }
+
+    /**
+     * Run an operation in a span, child of the current span
+     *
+     * @param name       Name of the span
+     * @param attributes Attributes of the span
+     * @param operation  Operation (can add attributes to Span.current())
+     * @return Result of the operation
+     * @throws E Exception of the operation (recorded in the span)
+     */
+    public static <T, E extends Exception> T trace(String name, Attributes attributes, Operation<T, E> operation) throws E {
+        Span span = tracer.spanBuilder(name).setAllAttributes(attributes).startSpan();
+        try (Scope scope = span.makeCurrent()) {
+            return operation.call();
+
+        } catch (Exception ex) {
+            recordException(span, ex);
+            throw ex;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Run an asynchronous operation in a span ending when its future completes
+     *
+     * @param name       Name of the span
+     * @param attributes Attributes of the span
+     * @param operation  Operation starting the asynchronous work
+     * @return Future result of the operation
+     */
+    public static <T> CompletableFuture<T> traceAsync(String name, Attributes attributes, Supplier<CompletableFuture<T>> operation) {
+        Span span = tracer.spanBuilder(name).setAllAttributes(attributes).startSpan();
+
+        CompletableFuture<T> future;
+        try (Scope scope = span.makeCurrent()) {
+            future = operation.get();
+
+        } catch (RuntimeException ex) {
+            recordException(span, ex);
+            span.end();
+            throw ex;
+        }
+
+        return future.whenComplete((result, ex) -> {
+            if (ex != null) {
+                recordException(span, ex);
+            }
+            span.end();
+        });
+    }
+
+    /**
+     * Attributes of an operation on an index
+     */
+    public static Attributes index(String index) {
+        return index != null ? Attributes.of(INDEX, index.toLowerCase()) : Attributes.empty();
+    }
+
+    /**
+     * Attributes of an operation on a document
+     */
+    public static Attributes document(String index, String documentId) {
+        return documentId != null ? index(index).toBuilder().put(DOCUMENT_ID, documentId).build() : index(index);
+    }
+
+    /**
+     * Attributes of an operation on a content
+     */
+    public static Attributes hash(String hash) {
+        return hash != null ? Attributes.of(HASH, hash) : Attributes.empty();
+    }
+
+    /**
+     * Attributes of an operation on a content of a given size
+     */
+    public static Attributes bytes(long bytes) {
+        return Attributes.of(BYTES, bytes);
+    }
+
+    /**
+     * A document not found is an expected outcome, not an error of the span
+     */
+    private static void recordException(Span span, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof NotFoundException) {
+            span.setAttribute("ipfs-store.not_found", true);
+            return;
+        }
+        span.recordException(cause);
+        span.setStatus(StatusCode.ERROR, cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+    }
+
+    /**
+     * Operation run in a span
+     */
+    @FunctionalInterface
+    public interface Operation<T, E extends Exception> {
+
+        T call() throws E;
+    }
+}
@@ -0,0 +1,142 @@
+package net.consensys.tools.ipfs.ipfsstore.monitoring;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+
+/**
+ * Open the span of each HTTP request, child of the trace of the caller if the request carries a W3C traceparent header
+ * <p>
+ * The span of an asynchronous request ends when the response is sent (not when the servlet thread is released). The
+ * parsing of a multipart request (upload) is traced in its own span.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TracingFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = Logger.getLogger(TracingFilter.class);
+
+    private static final String MULTIPART = "multipart/";
+
+    private static final TextMapGetter<HttpServletRequest> HEADERS = new TextMapGetter<HttpServletRequest>() {
+        @Override
+        public Iterable<String> keys(HttpServletRequest request) {
+            return Collections.list(request.getHeaderNames());
+        }
+
+        @Override
+        public String get(HttpServletRequest request, String name) {
+            return request != null ? request.getHeader(name) : null;
+        }
+    };
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+
+        Context parent = Tracing.get().getPropagators().getTextMapPropagator().extract(Context.root(), request, HEADERS);
+
+        Span span = Tracing.tracer().spanBuilder("HTTP " + request.getMethod())
+                .setParent(parent)
+                .setSpanKind(SpanKind.SERVER)
+                .setAttribute("http.method", request.getMethod())
+                .setAttribute("http.target", request.getRequestURI())
+                .startSpan();
+
+        try (Scope scope = span.makeCurrent()) {
+            if (request.getContentType() != null && request.getContentType().toLowerCase().startsWith(MULTIPART)) {
+                parseMultipart(request);
+            }
+
+            chain.doFilter(request, response);
+
+        } catch (IOException | ServletException | RuntimeException ex) {
+            span.recordException(ex);
+            span.setStatus(StatusCode.ERROR);
+            end(span, request, response);
+            throw ex;
+        }
+
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    end(span, request, response);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                    span.setStatus(StatusCode.ERROR, "Request timed out");
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    if (event.getThrowable() != null) {
+                        span.recordException(event.getThrowable());
+                    }
+                    span.setStatus(StatusCode.ERROR);
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                    event.getAsyncContext().addListener(this);
+                }
+            });
+
+        } else {
+            end(span, request, response);
+        }
+    }
+
+    /**
+     * Parse the multipart content in a span (the parts are cached by the request for the controller)
+     */
+    private static void parseMultipart(HttpServletRequest request) {
+        Span span = Tracing.tracer().spanBuilder("multipart.parse")
+                .setAttribute(Tracing.BYTES, request.getContentLengthLong())
+                .startSpan();
+        try {
+            span.setAttribute("multipart.parts", request.getParts().size());
+
+        } catch (Exception ex) {
+            // Reported by the multipart resolver when the controller reads the parts
+            LOGGER.debug("Error while parsing the multipart request", ex);
+            span.recordException(ex);
+            span.setStatus(StatusCode.ERROR);
+        } finally {
+            span.end();
+        }
+    }
+
+    private static void end(Span span, HttpServletRequest request, HttpServletResponse response) {
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (route != null) {
+            span.updateName(request.getMethod() + " " + route);
+            span.setAttribute("http.route", route.toString());
+        }
+        span.setAttribute("http.status_code", response.getStatus());
+        if (response.getStatus() >= 500) {
+            span.setStatus(StatusCode.ERROR);
+        }
+        span.end();
+    }
+}
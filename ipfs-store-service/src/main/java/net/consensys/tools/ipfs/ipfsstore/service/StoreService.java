@@ -1,14 +1,20 @@
 package net.consensys.tools.ipfs.ipfsstore.service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import net.consensys.tools.ipfs.ipfsstore.dto.DeleteResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerResponse;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
 import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
 import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
 import net.consensys.tools.ipfs.ipfsstore.exception.ServiceException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
 
 /**
  * Storage Service gathers all the logic for the IPFS-Storage
@@ -74,8 +80,18 @@ public interface StoreService {
      */
     Metadata getFileMetadataByHash(String index, String hash) throws ServiceException, NotFoundException;
 
+    /**
+     * Get Content Metadata by File Unique Identifier without blocking the caller
+     *
+     * @param index Index name
+     * @param hash  File Unique Identifier
+     * @return Future Content Metadata, completed exceptionally with a ServiceException or a NotFoundException
+     */
+    CompletableFuture<Metadata> getFileMetadataByHashAsync(String index, String hash);
+
     /**
      * Search in the index a list of content against a multi-criteria search query
+     * If the query contains aggregations, the page returned is an AggregatedPage
      *
      * @param index      Index name
      * @param query      Query
@@ -85,6 +101,54 @@ public interface StoreService {
      */
     Page<Metadata> searchFiles(String index, Query query, Pageable pagination) throws ServiceException;
 
+    /**
+     * Search in the index a list of content against a multi-criteria search query without blocking the caller
+     *
+     * @param index      Index name
+     * @param query      Query
+     * @param pagination Pagination & Sorting
+     * @return Future page of Metadata result, completed exceptionally with a ServiceException
+     */
+    CompletableFuture<Page<Metadata>> searchFilesAsync(String index, Query query, Pageable pagination);
+
+    /**
+     * Update the index fields of a document (partial update: the content stored in IPFS is unchanged)
+     *
+     * @param index       Index name
+     * @param id          Index Unique Identifier
+     * @param indexFields Fields to add or replace
+     * @param version     Expected version of the document (optimistic concurrency), null to update any version
+     * @return Response containing the tuple (index, ID, hash, new version)
+     * @throws ServiceException
+     * @throws NotFoundException        if the document doesn't exist
+     * @throws VersionConflictException if the document is not at the expected version
+     */
+    IndexerResponse updateFile(String index, String id, List<IndexField> indexFields, Long version)
+            throws ServiceException, NotFoundException, VersionConflictException;
+
+    /**
+     * Delete a document from the index
+     *
+     * @param index Index name
+     * @param id    Index Unique Identifier
+     * @param unpin Unpin the content of the document (IPFS) if no other document of any index refers to it
+     * @return Response containing the number of documents deleted and content unpinned
+     * @throws ServiceException
+     * @throws NotFoundException if the document doesn't exist
+     */
+    DeleteResponse deleteFile(String index, String id, boolean unpin) throws ServiceException, NotFoundException;
+
+    /**
+     * Delete the documents of the index matching a query, by batches
+     *
+     * @param index Index name
+     * @param query Query (an empty query matches all the documents)
+     * @param unpin Unpin the content of the documents (IPFS) no longer referenced by a document of any index
+     * @return Response containing the number of documents deleted and content unpinned
+     * @throws ServiceException
+     */
+    DeleteResponse deleteFiles(String index, Query query, boolean unpin) throws ServiceException;
+
     /**
      * Create an index
      *
@@ -92,4 +156,14 @@ public interface StoreService {
      * @throws ServiceException
      */
     void createIndex(String index) throws ServiceException;
+
+    /**
+     * Point an alias to an index (atomically removed from the indices it pointed to), the cached results of the alias
+     * are invalidated
+     *
+     * @param alias Alias
+     * @param index Index name
+     * @throws ServiceException
+     */
+    void alias(String alias, String index) throws ServiceException;
 }
@@ -0,0 +1,241 @@
+package net.consensys.tools.ipfs.ipfsstore.service.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+
+/**
+ * Cache of the metadata of a content by (index, hash), read by the fetches for the content type
+ * <p>
+ * A hash not found in the index is cached too (negative caching, shorter TTL). An entry is invalidated each time a
+ * document with the hash is written into or deleted from the index: the invalidation bumps the version of the
+ * (index, hash), part of the key, so a search started before a write and completed after can't store a stale result
+ * reachable by the next lookups. The versions are retained twice the TTL, longer than any entry they guard. An index
+ * invalidated as a whole (alias moved) bumps the generation of the index, part of the key too.
+ */
+@Component
+public class HashMetadataCache implements PublicMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(HashMetadataCache.class);
+
+    private static final String METRIC_PREFIX = "cache.hash.";
+
+    private final boolean enabled;
+    private final Cache<Key, Metadata> found;
+    private final Cache<Key, Boolean> missing;
+    private final Cache<String, Long> versions;                                            // by index and hash
+    private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>(); // by index
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public HashMetadataCache(
+            @Value("${cache.hash.enabled:false}") boolean enabled,
+            @Value("${cache.hash.ttl:600}") long ttl,
+            @Value("${cache.hash.negative-ttl:30}") long negativeTtl,
+            @Value("${cache.hash.max-size:100000}") long maxSize) {
+
+        this.enabled = enabled;
+        this.found = Caffeine.newBuilder()
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .maximumSize(maxSize)
+                .build();
+        this.missing = Caffeine.newBuilder()
+                .expireAfterWrite(negativeTtl, TimeUnit.SECONDS)
+                .maximumSize(maxSize)
+                .build();
+        this.versions = Caffeine.newBuilder()
+                .expireAfterWrite(2 * Math.max(ttl, negativeTtl), TimeUnit.SECONDS)
+                .build();
+
+        LOGGER.info("Hash metadata cache [enabled: " + enabled + ", ttl: " + ttl + "s, negative-ttl: " + negativeTtl + "s, max-size: " + maxSize + "]");
+    }
+
+    /**
+     * Disabled cache (every lookup is a miss and nothing is stored)
+     *
+     * @return Disabled cache
+     */
+    public static HashMetadataCache disabled() {
+        return new HashMetadataCache(false, 0, 0, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Build the key of a hash, the current generation of the index and version of the hash are captured at this time
+     *
+     * @param index Index name
+     * @param hash  Content hash
+     * @return Key
+     */
+    public Key key(String index, String hash) {
+        String normalizedIndex = index.toLowerCase();
+        String normalizedHash = hash.toLowerCase();
+        Long version = versions.getIfPresent(id(normalizedIndex, normalizedHash));
+        return new Key(normalizedIndex, normalizedHash, generation(normalizedIndex).get(), version != null ? version : 0);
+    }
+
+    /**
+     * Get the metadata of a hash
+     *
+     * @param key Key
+     * @return Metadata, or null if not present or cached as not found (see isMissing)
+     */
+    public Metadata get(Key key) {
+        if (!enabled) {
+            return null;
+        }
+        Metadata metadata = found.getIfPresent(key);
+        if (metadata != null) {
+            hits.incrementAndGet();
+        }
+        return metadata;
+    }
+
+    /**
+     * @param key Key
+     * @return true if the hash is cached as not found in the index
+     */
+    public boolean isMissing(Key key) {
+        if (!enabled) {
+            return false;
+        }
+        if (missing.getIfPresent(key) != null) {
+            negativeHits.incrementAndGet();
+            return true;
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Store the metadata of a hash
+     *
+     * @param key      Key
+     * @param metadata Metadata
+     */
+    public void put(Key key, Metadata metadata) {
+        if (!enabled || metadata == null) {
+            return;
+        }
+        found.put(key, metadata);
+    }
+
+    /**
+     * Store a hash as not found in the index
+     *
+     * @param key Key
+     */
+    public void putMissing(Key key) {
+        if (!enabled) {
+            return;
+        }
+        missing.put(key, Boolean.TRUE);
+    }
+
+    /**
+     * Invalidate the metadata of a hash (document with the hash written or deleted)
+     *
+     * @param index Index name
+     * @param hash  Content hash
+     */
+    public void invalidate(String index, String hash) {
+        if (!enabled || index == null || hash == null) {
+            return;
+        }
+        LOGGER.debug("Invalidate hash metadata cache [index: " + index + ", hash: " + hash + "]");
+
+        Key key = key(index, hash);
+        versions.asMap().merge(id(key.getIndex(), key.getHash()), 1L, Long::sum);
+        found.invalidate(key);
+        missing.invalidate(key);
+    }
+
+    /**
+     * Invalidate the metadata of all the hashes of an index (e.g. alias moved to another index)
+     *
+     * @param index Index name
+     */
+    public void invalidate(String index) {
+        if (!enabled || index == null) {
+            return;
+        }
+        LOGGER.debug("Invalidate hash metadata cache [index: " + index + "]");
+
+        String normalizedIndex = index.toLowerCase();
+        generation(normalizedIndex).incrementAndGet();
+        found.asMap().keySet().removeIf(k -> k.getIndex().equals(normalizedIndex));
+        missing.asMap().keySet().removeIf(k -> k.getIndex().equals(normalizedIndex));
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        if (!enabled) {
+            return metrics;
+        }
+
+        long lookups = hits.get() + negativeHits.get() + misses.get();
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", found.estimatedSize()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "missing.size", missing.estimatedSize()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", hits.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "negative.hit", negativeHits.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", misses.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit.ratio", lookups > 0 ? (double) (hits.get() + negativeHits.get()) / lookups : 0));
+
+        return metrics;
+    }
+
+    private AtomicLong generation(String index) {
+        return generations.computeIfAbsent(index, i -> new AtomicLong());
+    }
+
+    private static String id(String index, String hash) {
+        return index + "/" + hash;
+    }
+
+    /**
+     * Key of the metadata of a hash
+     */
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static final class Key {
+
+        private final String index;
+        private final String hash;
+        private final long generation;
+        private final long version;
+
+        private Key(String index, String hash, long generation, long version) {
+            this.index = index;
+            this.hash = hash;
+            this.generation = generation;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package net.consensys.tools.ipfs.ipfsstore.service.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationResult;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.utils.Queries;
+
+/**
+ * Cache of search results keyed by (index, normalized query, pageable)
+ * <p>
+ * Entries expire after a TTL and are invalidated per index each time a document is written into the index.
+ * Each index carries a generation number, part of the key, incremented on invalidation: a search started before a
+ * write and completed after can't store a stale result reachable by the next searches.
+ * The memory is bounded by an estimation of the weight (in bytes) of each result.
+ */
+@Component
+public class SearchResultCache implements PublicMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(SearchResultCache.class);
+
+    private static final String METRIC_PREFIX = "cache.search.";
+
+    private static final int OBJECT_WEIGHT = 16;
+    private static final int REFERENCE_WEIGHT = 8;
+
+    private final boolean enabled;
+    private final Cache<Key, Page<Metadata>> cache;
+    private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SearchResultCache(
+            @Value("${cache.search.enabled:false}") boolean enabled,
+            @Value("${cache.search.ttl:30}") long ttl,
+            @Value("${cache.search.max-weight:67108864}") long maxWeight) {
+
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .maximumWeight(maxWeight)
+                .weigher((Key key, Page<Metadata> page) -> weight(key, page))
+                .recordStats()
+                .build();
+
+        LOGGER.info("Search result cache [enabled: " + enabled + ", ttl: " + ttl + "s, max-weight: " + maxWeight + " bytes]");
+    }
+
+    /**
+     * Disabled cache (every lookup is a miss and nothing is stored)
+     *
+     * @return Disabled cache
+     */
+    public static SearchResultCache disabled() {
+        return new SearchResultCache(false, 0, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Build the key of a search, the current generation of the index is captured at this time
+     *
+     * @param index    Index name
+     * @param query    Query
+     * @param pageable Pagination and sorting
+     * @return Key
+     */
+    public Key key(String index, Query query, Pageable pageable) {
+        return new Key(index, generation(index).get(), Queries.normalize(query), normalize(pageable));
+    }
+
+    /**
+     * Get the result of a search
+     *
+     * @param key Key
+     * @return Result or null if not present
+     */
+    public Page<Metadata> get(Key key) {
+        if (!enabled) {
+            return null;
+        }
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Store the result of a search
+     *
+     * @param key    Key
+     * @param result Result
+     */
+    public void put(Key key, Page<Metadata> result) {
+        if (!enabled || result == null) {
+            return;
+        }
+        cache.put(key, result);
+    }
+
+    /**
+     * Invalidate all the results of an index
+     *
+     * @param index Index name
+     */
+    public void invalidate(String index) {
+        if (!enabled) {
+            return;
+        }
+        LOGGER.debug("Invalidate search result cache [index: " + index + "]");
+
+        generation(index).incrementAndGet();
+        cache.asMap().keySet().removeIf(k -> k.getIndex().equals(index));
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        if (!enabled) {
+            return metrics;
+        }
+
+        CacheStats stats = cache.stats();
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", cache.estimatedSize()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "weight", cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L)));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit.ratio", stats.hitRate()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "eviction", stats.evictionCount()));
+
+        return metrics;
+    }
+
+    private AtomicLong generation(String index) {
+        return generations.computeIfAbsent(index, i -> new AtomicLong());
+    }
+
+    private static String normalize(Pageable pageable) {
+        if (pageable == null) {
+            return "";
+        }
+        return pageable.getPageNumber() + ":" + pageable.getPageSize() + ":" + pageable.getSort();
+    }
+
+    /**
+     * Estimate the memory footprint (in bytes) of a cache entry
+     */
+    private static int weight(Key key, Page<Metadata> page) {
+        long weight = OBJECT_WEIGHT + weight(key.getIndex()) + weight(key.getQuery()) + weight(key.getPageable());
+
+        for (Metadata metadata : page.getContent()) {
+            weight += OBJECT_WEIGHT
+                    + weight(metadata.getIndexName())
+                    + weight(metadata.getDocumentId())
+                    + weight(metadata.getHash())
+                    + weight(metadata.getContentType());
+
+            if (metadata.getIndexFields() != null) {
+                for (IndexField field : metadata.getIndexFields()) {
+                    weight += OBJECT_WEIGHT + weight(field.getName()) + weight(field.getValue());
+                }
+            }
+        }
+
+        if (page instanceof AggregatedPage && ((AggregatedPage<Metadata>) page).getAggregations() != null) {
+            for (AggregationResult aggregation : ((AggregatedPage<Metadata>) page).getAggregations().values()) {
+                weight += OBJECT_WEIGHT;
+                if (aggregation.getBuckets() != null) {
+                    weight += aggregation.getBuckets().stream().mapToLong(b -> OBJECT_WEIGHT + weight(b.getKey())).sum();
+                }
+            }
+        }
+
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private static long weight(Object value) {
+        if (value == null) {
+            return REFERENCE_WEIGHT;
+        }
+        if (value instanceof CharSequence) {
+            return OBJECT_WEIGHT + 2L * ((CharSequence) value).length();
+        }
+        if (value instanceof Collection) {
+            return OBJECT_WEIGHT + ((Collection<?>) value).stream().mapToLong(SearchResultCache::weight).sum();
+        }
+        return OBJECT_WEIGHT;
+    }
+
+    /**
+     * Key of a search result
+     */
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static final class Key {
+
+        private final String index;
+        private final long generation;
+        private final String query;
+        private final String pageable;
+
+        private Key(String index, long generation, String query, String pageable) {
+            this.index = index;
+            this.generation = generation;
+            this.query = query;
+            this.pageable = pageable;
+        }
+    }
+}
@@ -1,6 +1,14 @@
 package net.consensys.tools.ipfs.ipfsstore.service.impl;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import javax.validation.Configuration;
 import javax.validation.ConstraintViolation;
@@ -10,14 +18,23 @@ import javax.validation.ValidatorFactory;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
 import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
 import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.DeleteResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerResponse;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
@@ -25,7 +42,12 @@ import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
 import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
 import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
 import net.consensys.tools.ipfs.ipfsstore.exception.ServiceException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
 import net.consensys.tools.ipfs.ipfsstore.service.StoreService;
+import net.consensys.tools.ipfs.ipfsstore.service.cache.HashMetadataCache;
+import net.consensys.tools.ipfs.ipfsstore.service.cache.SearchResultCache;
+import net.consensys.tools.ipfs.ipfsstore.service.writebehind.IndexQueue;
 
 /**
  * Implementation of StoreService
@@ -37,15 +59,70 @@ public class StoreServiceImpl implements StoreService {
 
     private static final Logger LOGGER = Logger.getLogger(StoreServiceImpl.class);
 
+    private static final int DEFAULT_DELETE_BATCH_SIZE = 500;
+    private static final int PIN_LOCKS = 64;
+    private static final long STORE_GRACE = 60; // seconds a content just stored is kept pinned (time to index it)
+
     private final Validator validator;
 
     private final IndexDao indexDao;
     private final StorageDao storageDao;
+    private final SearchResultCache searchResultCache;
+    private final HashMetadataCache hashMetadataCache;
+    private final IndexQueue indexQueue;
+
+    private final int deleteBatchSize;
+    private final long deleteBatchPause;
+
+    private final Object[] pinLocks = new Object[PIN_LOCKS];                    // store and unpin of a content, by hash
+    private final Cache<String, Boolean> stored = Caffeine.newBuilder()         // content stored recently, by hash
+            .expireAfterWrite(STORE_GRACE, TimeUnit.SECONDS)
+            .build();
+    private final AtomicLong unpins = new AtomicLong();
 
-    @Autowired
     public StoreServiceImpl(IndexDao indexDao, StorageDao storageDao) {
+        this(indexDao, storageDao, SearchResultCache.disabled());
+    }
+
+    public StoreServiceImpl(IndexDao indexDao, StorageDao storageDao, SearchResultCache searchResultCache) {
+        this(indexDao, storageDao, searchResultCache, DEFAULT_DELETE_BATCH_SIZE, 0);
+    }
+
+    public StoreServiceImpl(IndexDao indexDao, StorageDao storageDao, SearchResultCache searchResultCache, int deleteBatchSize, long deleteBatchPause) {
+        this(indexDao, storageDao, searchResultCache, HashMetadataCache.disabled(), deleteBatchSize, deleteBatchPause);
+    }
+
+    public StoreServiceImpl(IndexDao indexDao, StorageDao storageDao, SearchResultCache searchResultCache, HashMetadataCache hashMetadataCache,
+            int deleteBatchSize, long deleteBatchPause) {
+        this(indexDao, storageDao, searchResultCache, hashMetadataCache, null, deleteBatchSize, deleteBatchPause);
+    }
+
+    /**
+     * @param indexQueue Write-behind indexing queue, its documents not indexed yet keep their content pinned (null: none)
+     */
+    @Autowired
+    public StoreServiceImpl(
+            IndexDao indexDao,
+            StorageDao storageDao,
+            SearchResultCache searchResultCache,
+            HashMetadataCache hashMetadataCache,
+            IndexQueue indexQueue,
+            @Value("${delete.batch-size:500}") int deleteBatchSize,
+            @Value("${delete.batch-pause:0}") long deleteBatchPause) {
+
+        // Validation
+        if (deleteBatchSize <= 0) throw new IllegalArgumentException("deleteBatchSize must be positive");
+
         this.indexDao = indexDao;
         this.storageDao = storageDao;
+        this.searchResultCache = searchResultCache;
+        this.hashMetadataCache = hashMetadataCache;
+        this.indexQueue = indexQueue;
+        this.deleteBatchSize = deleteBatchSize;
+        this.deleteBatchPause = deleteBatchPause;
+        for (int i = 0; i < PIN_LOCKS; i++) {
+            pinLocks[i] = new Object();
+        }
 
         // Validator
         Configuration<?> config = Validation.byDefaultProvider().configure();
@@ -54,16 +131,33 @@ public class StoreServiceImpl implements StoreService {
     }
 
 
+    /**
+     * Store a file, kept pinned for a grace period even if a document of the same content is deleted meanwhile (so it
+     * can be indexed)
+     */
     @Override
     public String storeFile(byte[] file) throws ServiceException {
 
-        try {
-            return this.storageDao.createContent(file);
-
-        } catch (DaoException ex) {
-            LOGGER.error("Exception occur:", ex);
-            throw new ServiceException(ex.getMessage());
-        }
+        return Tracing.trace("service.storeFile", Tracing.bytes(file != null ? file.length : 0), () -> {
+            try {
+                long unpinsBefore = unpins.get();
+                String hash = this.storageDao.createContent(file);
+                Span.current().setAttribute(Tracing.HASH, hash);
+
+                synchronized (pinLock(hash)) {
+                    stored.put(hash.toLowerCase(), Boolean.TRUE);
+                    if (unpins.get() != unpinsBefore) {
+                        // A content was unpinned while this one was added: it may have been the same bytes
+                        this.storageDao.pin(hash);
+                    }
+                }
+                return hash;
+
+            } catch (DaoException ex) {
+                LOGGER.error("Exception occur:", ex);
+                throw new ServiceException(ex.getMessage());
+            }
+        });
     }
 
     @Override
@@ -73,22 +167,31 @@ public class StoreServiceImpl implements StoreService {
 
         LOGGER.trace(request);
 
-        try {
-            indexDao.createIndex(request.getIndexName()); // Create the index if it doesn't exist
+        Attributes attributes = Tracing.document(request.getIndexName(), request.getDocumentId()).toBuilder()
+                .put(Tracing.HASH, request.getHash())
+                .build();
 
-            String documentId = indexDao.index(
-                    request.getIndexName(),
-                    request.getDocumentId(),
-                    request.getHash(),
-                    request.getContentType(),
-                    request.getIndexFields());
+        return Tracing.trace("service.indexFile", attributes, () -> {
+            try {
+                indexDao.createIndex(request.getIndexName()); // Create the index if it doesn't exist
 
-            return new IndexerResponse(request.getIndexName(), documentId, request.getHash());
+                String documentId = indexDao.index(
+                        request.getIndexName(),
+                        request.getDocumentId(),
+                        request.getHash(),
+                        request.getContentType(),
+                        request.getIndexFields());
 
-        } catch (DaoException ex) {
-            LOGGER.error("Exception occur:", ex);
-            throw new ServiceException(ex.getMessage());
-        }
+                searchResultCache.invalidate(request.getIndexName());
+                hashMetadataCache.invalidate(request.getIndexName(), request.getHash());
+
+                return new IndexerResponse(request.getIndexName(), documentId, request.getHash());
+
+            } catch (DaoException ex) {
+                LOGGER.error("Exception occur:", ex);
+                throw new ServiceException(ex.getMessage());
+            }
+        });
     }
 
 
@@ -112,13 +215,17 @@ public class StoreServiceImpl implements StoreService {
     @Override
     public byte[] getFileByHash(String hash) throws ServiceException {
 
-        try {
-            return this.storageDao.getContent(hash);
-
-        } catch (DaoException ex) {
-            LOGGER.error("Exception occur:", ex);
-            throw new ServiceException(ex.getMessage());
-        }
+        return Tracing.trace("service.getFileByHash", Tracing.hash(hash), () -> {
+            try {
+                byte[] content = this.storageDao.getContent(hash);
+                Span.current().setAttribute(Tracing.BYTES, content != null ? content.length : 0);
+                return content;
+
+            } catch (DaoException ex) {
+                LOGGER.error("Exception occur:", ex);
+                throw new ServiceException(ex.getMessage());
+            }
+        });
     }
 
     @Override
@@ -136,22 +243,83 @@ public class StoreServiceImpl implements StoreService {
     @Override
     public Metadata getFileMetadataByHash(String index, String hash) throws ServiceException, NotFoundException {
 
-        Query query = new Query().equals(IndexDao.HASH_INDEX_KEY, hash.toLowerCase()); // TODO ES case sensitive analyser
-        Page<Metadata> search = this.searchFiles(index, query, new PageRequest(0, 1));
+        return join(getFileMetadataByHashAsync(index, hash));
+    }
 
-        if (search.getTotalElements() == 0) {
-            throw new NotFoundException("File [hash=" + hash + "] not found in the index [" + index + "]");
+    @Override
+    public CompletableFuture<Metadata> getFileMetadataByHashAsync(String index, String hash) {
+
+        HashMetadataCache.Key key = hashMetadataCache.key(index, hash);
+        Metadata cached = hashMetadataCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (hashMetadataCache.isMissing(key)) {
+            CompletableFuture<Metadata> notFound = new CompletableFuture<>();
+            notFound.completeExceptionally(new NotFoundException("File [hash=" + hash + "] not found in the index [" + index + "]"));
+            return notFound;
         }
 
-        return search.getContent().get(0);
+        Query query = new Query().equals(IndexDao.HASH_INDEX_KEY, hash.toLowerCase()); // TODO ES case sensitive analyser
+
+        return this.searchFilesAsync(index, query, new PageRequest(0, 1)).thenApply(search -> {
+            if (search.getTotalElements() == 0) {
+                hashMetadataCache.putMissing(key);
+                throw new CompletionException(new NotFoundException("File [hash=" + hash + "] not found in the index [" + index + "]"));
+            }
+            Metadata metadata = search.getContent().get(0);
+            hashMetadataCache.put(key, metadata);
+            return metadata;
+        });
     }
 
 
     @Override
     public void createIndex(String index) throws ServiceException {
 
+        Tracing.trace("service.createIndex", Tracing.index(index), () -> {
+            try {
+                this.indexDao.createIndex(index);
+                return null;
+
+            } catch (DaoException ex) {
+                LOGGER.error("Exception occur:", ex);
+                throw new ServiceException(ex.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void alias(String alias, String index) throws ServiceException {
+
+        Tracing.trace("service.alias", Tracing.index(alias), () -> {
+            try {
+                this.indexDao.alias(alias, index);
+                searchResultCache.invalidate(alias);
+                hashMetadataCache.invalidate(alias);
+                return null;
+
+            } catch (DaoException ex) {
+                LOGGER.error("Exception occur:", ex);
+                throw new ServiceException(ex.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public IndexerResponse updateFile(String index, String id, List<IndexField> indexFields, Long version)
+            throws ServiceException, NotFoundException, VersionConflictException {
+
+        if (indexFields == null) {
+            throw new ServiceException("indexFields cannot be null");
+        }
+
         try {
-            this.indexDao.createIndex(index);
+            Metadata metadata = this.indexDao.update(index, id, indexFields, version);
+            searchResultCache.invalidate(index);
+            hashMetadataCache.invalidate(index, metadata.getHash());
+
+            return new IndexerResponse(index, id, metadata.getHash(), metadata.getVersion());
 
         } catch (DaoException ex) {
             LOGGER.error("Exception occur:", ex);
@@ -159,21 +327,201 @@ public class StoreServiceImpl implements StoreService {
         }
     }
 
+    @Override
+    public DeleteResponse deleteFile(String index, String id, boolean unpin) throws ServiceException, NotFoundException {
+
+        Metadata metadata = this.getFileMetadataById(index, id);
+
+        return Tracing.trace("service.deleteFile", Tracing.document(index, id), () -> {
+            try {
+                this.indexDao.delete(index, id);
+                searchResultCache.invalidate(index);
+                hashMetadataCache.invalidate(index, metadata.getHash());
+
+                long unpinned = unpin ? unpinUnreferenced(index, Collections.singleton(metadata.getHash())) : 0;
+
+                return new DeleteResponse(index, 1, unpinned);
+
+            } catch (NotFoundException ex) {
+                LOGGER.debug("Document [id=" + id + "] already deleted from the index [" + index + "]");
+                return new DeleteResponse(index, 0, 0);
+
+            } catch (DaoException ex) {
+                LOGGER.error("Exception occur:", ex);
+                throw new ServiceException(ex.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public DeleteResponse deleteFiles(String index, Query query, boolean unpin) throws ServiceException {
+
+        if (query == null) {
+            throw new ServiceException("query cannot be null (an empty query matches all the documents)");
+        }
+
+        return Tracing.trace("service.deleteFiles", Tracing.index(index), () -> {
+            long deleted = 0;
+            long unpinned = 0;
+
+            try {
+                // Each batch is the first page of the documents left (the deletions are visible to the next search)
+                Pageable batch = new PageRequest(0, deleteBatchSize);
+                while (true) {
+                    List<Metadata> documents = this.indexDao.search(batch, index, query);
+                    if (documents.isEmpty()) {
+                        break;
+                    }
+
+                    long count = this.indexDao.delete(index, documents.stream().map(Metadata::getDocumentId).collect(Collectors.toList()));
+                    searchResultCache.invalidate(index);
+                    documents.forEach(document -> hashMetadataCache.invalidate(index, document.getHash()));
+                    deleted += count;
+
+                    if (unpin) {
+                        unpinned += unpinUnreferenced(index, documents.stream().map(Metadata::getHash).collect(Collectors.toSet()));
+                    }
+
+                    LOGGER.debug("Batch of documents deleted from the index [" + index + "]: " + count + " (total: " + deleted + ")");
+
+                    if (count == 0) {
+                        LOGGER.warn("No document of the batch deleted from the index [" + index + "] - Stop the deletion");
+                        break;
+                    }
+                    if (documents.size() < deleteBatchSize) {
+                        break;
+                    }
+                    pause(index, deleted);
+                }
+
+            } catch (DaoException ex) {
+                LOGGER.error("Exception occur:", ex);
+                throw new ServiceException(ex.getMessage() + " (" + deleted + " documents deleted)");
+            }
+
+            Span.current().setAttribute(Tracing.RESULTS, deleted);
+
+            return new DeleteResponse(index, deleted, unpinned);
+        });
+    }
+
     @Override
     public Page<Metadata> searchFiles(String index, Query query, Pageable pageable) throws ServiceException {
 
         try {
-           return new PageImpl<>(
-               indexDao.search(pageable, index, query),
-               pageable,
-               indexDao.count(index, query));
-           
-        } catch (DaoException ex) {
+            return join(searchFilesAsync(index, query, pageable));
+
+        } catch (NotFoundException ex) {
             LOGGER.error("Exception occur:", ex);
             throw new ServiceException(ex.getMessage());
         }
     }
 
+    @Override
+    public CompletableFuture<Page<Metadata>> searchFilesAsync(String index, Query query, Pageable pageable) {
+
+        return Tracing.traceAsync("service.searchFiles", Tracing.index(index), () -> doSearchFilesAsync(index, query, pageable));
+    }
+
+    private CompletableFuture<Page<Metadata>> doSearchFilesAsync(String index, Query query, Pageable pageable) {
+
+        SearchResultCache.Key key = searchResultCache.key(index, query, pageable);
+        Page<Metadata> cached = searchResultCache.get(key);
+        Span.current().setAttribute("ipfs-store.cache_hit", cached != null);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        Span span = Span.current();
+        CompletableFuture<Page<Metadata>> result;
+        if (query != null && query.hasAggregations()) {
+            // Hits, total and aggregations are computed in a single request
+            result = indexDao.searchAndAggregateAsync(pageable, index, query).thenApply(page -> page);
+        } else {
+            // Hits and total are requested concurrently
+            CompletableFuture<List<Metadata>> hits = indexDao.searchAsync(pageable, index, query);
+            CompletableFuture<Long> total = indexDao.countAsync(index, query);
+            result = hits.thenCombine(total, (content, count) -> new PageImpl<>(content, pageable, count));
+        }
+
+        return result.whenComplete((page, ex) -> {
+            if (ex == null) {
+                span.setAttribute(Tracing.RESULTS, page.getNumberOfElements());
+                searchResultCache.put(key, page);
+            }
+        });
+    }
+
+    /**
+     * Unpin the content no longer referenced by any document
+     * IPFS stores identical bytes once: a content is kept pinned while a document of any index, indexed or still queued
+     * for write-behind indexing, refers to it, or while it was stored recently (see storeFile): the checks and the unpin
+     * hold the lock of the hash, shared with the store. A failure to unpin a content is logged and doesn't stop the others.
+     *
+     * @param index  Index name
+     * @param hashes File Unique Identifiers of the documents deleted
+     * @return Number of content unpinned
+     * @throws DaoException if the indices can't be searched
+     */
+    private long unpinUnreferenced(String index, Collection<String> hashes) throws DaoException {
+        long unpinned = 0;
+        for (String hash : hashes) {
+            synchronized (pinLock(hash)) {
+                if (stored.getIfPresent(hash.toLowerCase()) != null) {
+                    LOGGER.debug("File [hash=" + hash + "] stored recently - Keep it pinned");
+                    continue;
+                }
+                // The queue is checked first: a queued document leaves it once indexed
+                if (indexQueue != null && indexQueue.isQueued(hash)) {
+                    LOGGER.debug("File [hash=" + hash + "] still referenced by a document queued for indexing - Keep it pinned");
+                    continue;
+                }
+                if (this.indexDao.countAll(new Query().equals(IndexDao.HASH_INDEX_KEY, hash.toLowerCase())) > 0) {
+                    LOGGER.debug("File [hash=" + hash + "] still referenced in an index - Keep it pinned");
+                    continue;
+                }
+
+                try {
+                    this.storageDao.unpin(hash);
+                    unpins.incrementAndGet();
+                    unpinned++;
+                    LOGGER.debug("File [hash=" + hash + "] deleted from the index [" + index + "] and no longer referenced - Unpinned");
+
+                } catch (DaoException ex) {
+                    LOGGER.warn("Error while unpinning the file [hash=" + hash + "] - Ignore it: " + ex.getMessage());
+                }
+            }
+        }
+        return unpinned;
+    }
+
+    private Object pinLock(String hash) {
+        return pinLocks[Math.floorMod(hash.toLowerCase().hashCode(), PIN_LOCKS)];
+    }
+
+    /**
+     * Pause between two batches of deletions (delete.batch-pause), so a large deletion leaves room to the other writes
+     * Stop the deletion if the request was cancelled in the meantime.
+     *
+     * @param index   Index name
+     * @param deleted Number of documents deleted so far
+     * @throws ServiceException if interrupted or cancelled
+     */
+    private void pause(String index, long deleted) throws ServiceException {
+        try {
+            if (deleteBatchPause > 0) {
+                Thread.sleep(deleteBatchPause);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Deletion interrupted (" + deleted + " documents deleted from the index [" + index + "])");
+        }
+
+        if (RequestContext.current().isCancelled()) {
+            throw new ServiceException("Deletion cancelled (" + deleted + " documents deleted from the index [" + index + "])");
+        }
+    }
+
     /**
      * Validate an object
      *
@@ -186,4 +534,26 @@ public class StoreServiceImpl implements StoreService {
             throw new ServiceException(violations.toString());
         }
     }
+
+    /**
+     * Wait for the result of an asynchronous operation and unwrap its failure
+     *
+     * @param future Future result
+     * @return Result
+     * @throws ServiceException
+     * @throws NotFoundException
+     */
+    private static <T> T join(CompletableFuture<T> future) throws ServiceException, NotFoundException {
+        try {
+            return future.join();
+
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof NotFoundException) {
+                throw (NotFoundException) cause;
+            }
+            LOGGER.error("Exception occur:", cause);
+            throw new ServiceException(cause.getMessage());
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package net.consensys.tools.ipfs.ipfsstore.service.reconciliation;
+
+/**
+ * Bloom filter of strings: a set answering "maybe present" or "certainly absent" in a fixed memory, sized from the
+ * number of expected insertions and the false positive rate (about 1.2 bytes per element at 0.1%)
+ * <p>
+ * The bit positions come from two 64-bit hashes combined (Kirsch-Mitzenmacher). Not thread safe.
+ */
+final class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+
+    /**
+     * @param expectedInsertions Number of elements expected
+     * @param falsePositiveRate  False positive rate once the expected elements are inserted (0 < rate < 1)
+     */
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        // Validation
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) throw new IllegalArgumentException("falsePositiveRate must be in ]0, 1[");
+
+        long n = Math.max(expectedInsertions, 1);
+        long m = Math.max((long) Math.ceil(-n * Math.log(falsePositiveRate) / (LN2 * LN2)), Long.SIZE);
+        this.words = new long[(int) Math.min((m + Long.SIZE - 1) / Long.SIZE, Integer.MAX_VALUE - 8)];
+        this.bits = (long) words.length * Long.SIZE;
+        this.hashes = Math.max((int) Math.round((double) bits / n * LN2), 1);
+    }
+
+    void put(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % bits;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return false if the value was certainly not put, true if it was probably put
+     */
+    boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % bits;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Size of the filter (bits)
+     */
+    long bitSize() {
+        return bits;
+    }
+
+    int hashCount() {
+        return hashes;
+    }
+
+    /**
+     * FNV-1a of the characters, then mixed so every bit depends on every character
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of MurmurHash3 (64 bits)
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,398 @@
+package net.consensys.tools.ipfs.ipfsstore.service.reconciliation;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.opentelemetry.api.common.Attributes;
+import lombok.Getter;
+import lombok.ToString;
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
+import net.consensys.tools.ipfs.ipfsstore.service.writebehind.IndexQueue;
+
+/**
+ * Reconciliation of the files pinned in IPFS with the documents of the indices, run in background and configured with:
+ * <pre>
+ * reconciler.enabled        : run the reconciliation periodically (default false)
+ * reconciler.indices        : indices reconciled (comma separated)
+ * reconciler.interval       : time (s) between two runs (default 3600)
+ * reconciler.batch-size     : number of documents read per batch from an index (default 1000)
+ * reconciler.rate           : maximum number of pins and unpins per second (default 10)
+ * reconciler.unpin-orphans  : unpin the orphan files (default false: only counted)
+ * reconciler.false-positive : false positive rate of the filter of the indexed hashes (default 0.001)
+ * reconciler.gc-window      : low-traffic window (HH:mm-HH:mm, local time) in which the IPFS garbage collection runs
+ *                             once after a reconciliation (default: none)
+ * </pre>
+ * A run lists the pins, then scrolls the documents of the indices: an indexed hash not pinned is pinned again and
+ * added to a Bloom filter. A pin certainly absent from the filter is an orphan (e.g. a file stored but never indexed).
+ * An orphan is unpinned only if it was already an orphan at the previous run, so a file stored then indexed in two
+ * steps isn't unpinned in between, and if no document of any index refers to it anymore nor is queued for the
+ * write-behind indexing (point count, in case it was indexed during the scan). A false positive of the filter keeps an orphan pinned until a next run, never the opposite.
+ */
+@Component
+public class PinReconciler implements PublicMetrics, InitializingBean, DisposableBean {
+
+    private static final Logger LOGGER = Logger.getLogger(PinReconciler.class);
+
+    private static final String PROPERTY_PREFIX = "reconciler.";
+    private static final String METRIC_PREFIX = "reconciler.";
+
+    private final IndexDao indexDao;
+    private final StorageDao storageDao;
+    private final IndexQueue indexQueue;
+    private final Clock clock;
+
+    private final boolean enabled;
+    private final List<String> indices;
+    private final long interval;
+    private final int batchSize;
+    private final double rate;
+    private final boolean unpinOrphans;
+    private final double falsePositiveRate;
+    private final LocalTime gcStart;
+    private final LocalTime gcEnd;
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    private Set<String> previousOrphans = Collections.emptySet();
+    private LocalDateTime lastGcWindow;
+    private long nextOperation;
+    private volatile Report lastReport;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong repinned = new AtomicLong();
+    private final AtomicLong unpinned = new AtomicLong();
+    private final AtomicLong garbageCollections = new AtomicLong();
+
+    public PinReconciler(IndexDao indexDao, StorageDao storageDao, Environment environment) {
+        this(indexDao, storageDao, null, environment, Clock.systemDefaultZone());
+    }
+
+    public PinReconciler(IndexDao indexDao, StorageDao storageDao, Environment environment, Clock clock) {
+        this(indexDao, storageDao, null, environment, clock);
+    }
+
+    /**
+     * @param indexQueue Write-behind indexing queue, its documents not indexed yet keep their content pinned (null: none)
+     */
+    @Autowired
+    public PinReconciler(IndexDao indexDao, StorageDao storageDao, IndexQueue indexQueue, Environment environment) {
+        this(indexDao, storageDao, indexQueue, environment, Clock.systemDefaultZone());
+    }
+
+    public PinReconciler(IndexDao indexDao, StorageDao storageDao, IndexQueue indexQueue, Environment environment, Clock clock) {
+        this.indexDao = indexDao;
+        this.storageDao = storageDao;
+        this.indexQueue = indexQueue;
+        this.clock = clock;
+
+        this.enabled = environment.getProperty(PROPERTY_PREFIX + "enabled", Boolean.class, false);
+        this.indices = Arrays.stream(environment.getProperty(PROPERTY_PREFIX + "indices", "").split(","))
+                .map(String::trim)
+                .filter(index -> !index.isEmpty())
+                .collect(Collectors.toList());
+        this.interval = environment.getProperty(PROPERTY_PREFIX + "interval", Long.class, 3600L);
+        this.batchSize = environment.getProperty(PROPERTY_PREFIX + "batch-size", Integer.class, 1000);
+        this.rate = environment.getProperty(PROPERTY_PREFIX + "rate", Double.class, 10.0);
+        this.unpinOrphans = environment.getProperty(PROPERTY_PREFIX + "unpin-orphans", Boolean.class, false);
+        this.falsePositiveRate = environment.getProperty(PROPERTY_PREFIX + "false-positive", Double.class, 0.001);
+
+        // Validation
+        if (interval <= 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "interval must be positive");
+        if (batchSize <= 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "batch-size must be positive");
+        if (rate <= 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "rate must be positive");
+
+        String gcWindow = environment.getProperty(PROPERTY_PREFIX + "gc-window", "").trim();
+        if (gcWindow.isEmpty()) {
+            this.gcStart = null;
+            this.gcEnd = null;
+        } else {
+            String[] boundaries = gcWindow.split("-");
+            if (boundaries.length != 2) throw new IllegalArgumentException(PROPERTY_PREFIX + "gc-window must be HH:mm-HH:mm [" + gcWindow + "]");
+            this.gcStart = LocalTime.parse(boundaries[0].trim());
+            this.gcEnd = LocalTime.parse(boundaries[1].trim());
+        }
+
+        LOGGER.info("Pin reconciler [enabled: " + enabled + ", indices: " + indices + ", interval: " + interval + "s, rate: " + rate
+                + "/s, unpin-orphans: " + unpinOrphans + ", gc-window: " + (gcStart != null ? gcStart + "-" + gcEnd : "none") + "]");
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("reconciler-");
+        threadFactory.setDaemon(true);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+        this.scheduler.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Scheduled run: reconciliation, then garbage collection in the low-traffic window
+     */
+    void run() {
+        try {
+            Report report = Tracing.trace("reconciler.run", Attributes.empty(), this::reconcile);
+            LOGGER.info("Pins reconciled " + report);
+
+        } catch (DaoException | RuntimeException ex) {
+            LOGGER.error("Error while reconciling the pins with the indices", ex);
+        }
+
+        try {
+            collectGarbage();
+
+        } catch (DaoException | RuntimeException ex) {
+            LOGGER.error("Error while garbage collecting IPFS", ex);
+        }
+    }
+
+    /**
+     * Reconcile the pins with the documents of the indices
+     *
+     * @return Report of the run
+     * @throws DaoException if the pins or the documents can't be read (nothing is unpinned)
+     */
+    public synchronized Report reconcile() throws DaoException {
+        runs.incrementAndGet();
+        Report report = new Report();
+
+        try {
+            Set<String> pins = storageDao.listPins();
+            report.pins = pins.size();
+
+            long expected = 0;
+            for (String index : indices) {
+                expected += indexDao.count(index, null);
+            }
+            BloomFilter indexed = new BloomFilter(expected, falsePositiveRate);
+            LOGGER.debug("Bloom filter of the indexed hashes [expected: " + expected + ", bits: " + indexed.bitSize() + ", hashes: " + indexed.hashCount() + "]");
+
+            Set<String> missing = new LinkedHashSet<>();
+            for (String index : indices) {
+                report.documents += indexDao.scrollHashes(index, batchSize, hashes -> {
+                    for (String hash : hashes) {
+                        indexed.put(hash);
+                        if (!pins.contains(hash)) {
+                            missing.add(hash);
+                        }
+                    }
+                });
+            }
+            report.missing = missing.size();
+
+            // Indexed but not pinned: pin again
+            for (String hash : missing) {
+                if (!throttle()) {
+                    return report;
+                }
+                try {
+                    storageDao.pin(hash);
+                    report.repinned++;
+                    repinned.incrementAndGet();
+
+                } catch (DaoException ex) {
+                    LOGGER.warn("Error while pinning the file [hash=" + hash + "] - Ignore it: " + ex.getMessage());
+                }
+            }
+
+            // Pinned but not indexed: unpin the orphans of the previous run still unreferenced
+            Set<String> orphans = pins.stream().filter(hash -> !indexed.mightContain(hash)).collect(Collectors.toSet());
+            report.orphans = orphans.size();
+
+            Set<String> confirmed = orphans.stream().filter(previousOrphans::contains).collect(Collectors.toSet());
+            previousOrphans = orphans;
+
+            if (!unpinOrphans) {
+                if (!confirmed.isEmpty()) {
+                    LOGGER.info(confirmed.size() + " orphan files pinned in IPFS (reconciler.unpin-orphans disabled)");
+                }
+                return report;
+            }
+
+            for (String hash : confirmed) {
+                if (isReferenced(hash)) {
+                    continue;
+                }
+                if (!throttle()) {
+                    return report;
+                }
+                try {
+                    storageDao.unpin(hash);
+                    report.unpinned++;
+                    unpinned.incrementAndGet();
+
+                } catch (DaoException ex) {
+                    LOGGER.warn("Error while unpinning the file [hash=" + hash + "] - Ignore it: " + ex.getMessage());
+                }
+            }
+
+            return report;
+
+        } catch (DaoException | RuntimeException ex) {
+            failures.incrementAndGet();
+            throw ex;
+
+        } finally {
+            lastReport = report;
+        }
+    }
+
+    /**
+     * Run the IPFS garbage collection if the current time is in the low-traffic window and it didn't run yet in this
+     * window
+     *
+     * @return true if the garbage collection ran
+     * @throws DaoException
+     */
+    public synchronized boolean collectGarbage() throws DaoException {
+        LocalDateTime window = currentGcWindow();
+        if (window == null || window.equals(lastGcWindow)) {
+            return false;
+        }
+
+        LOGGER.info("Garbage collect IPFS [window: " + gcStart + "-" + gcEnd + "]");
+        lastGcWindow = window;
+        storageDao.gc();
+        garbageCollections.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return Start of the low-traffic window containing the current time, null if out of the window
+     */
+    private LocalDateTime currentGcWindow() {
+        if (gcStart == null) {
+            return null;
+        }
+
+        LocalDateTime now = LocalDateTime.now(clock);
+        LocalTime time = now.toLocalTime();
+        if (!gcStart.isAfter(gcEnd)) {
+            return !time.isBefore(gcStart) && time.isBefore(gcEnd) ? now.with(gcStart) : null;
+        }
+        // Window across midnight
+        if (!time.isBefore(gcStart)) {
+            return now.with(gcStart);
+        }
+        return time.isBefore(gcEnd) ? now.minusDays(1).with(gcStart) : null;
+    }
+
+    /**
+     * @return true if a document of any index (not only the reconciled ones) or queued for indexing refers to the file
+     */
+    private boolean isReferenced(String hash) throws DaoException {
+        if (indexQueue != null && indexQueue.isQueued(hash)) {
+            LOGGER.debug("File [hash=" + hash + "] queued for indexing - Keep it pinned");
+            return true;
+        }
+        if (indexDao.countAll(new Query().equals(IndexDao.HASH_INDEX_KEY, hash.toLowerCase())) > 0) {
+            LOGGER.debug("File [hash=" + hash + "] referenced in an index - Keep it pinned");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Wait for the next operation slot (reconciler.rate)
+     *
+     * @return false if interrupted (shutdown)
+     */
+    private boolean throttle() {
+        long now = System.nanoTime();
+        long wait = nextOperation - now;
+        nextOperation = Math.max(nextOperation, now) + (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        if (wait <= 0) {
+            return true;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+            return true;
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Reconciliation interrupted");
+            return false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return Report of the last run, null if none
+     */
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "runs", runs.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "failures", failures.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "repinned", repinned.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "unpinned", unpinned.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "gc", garbageCollections.get()));
+
+        Report report = lastReport;
+        if (report != null) {
+            metrics.add(new Metric<>(METRIC_PREFIX + "last.pins", report.pins));
+            metrics.add(new Metric<>(METRIC_PREFIX + "last.documents", report.documents));
+            metrics.add(new Metric<>(METRIC_PREFIX + "last.missing", report.missing));
+            metrics.add(new Metric<>(METRIC_PREFIX + "last.orphans", report.orphans));
+        }
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Report of a reconciliation
+     */
+    @Getter
+    @ToString
+    public static final class Report {
+        /** Files pinned */
+        private long pins;
+        /** Documents read */
+        private long documents;
+        /** Indexed files not pinned */
+        private long missing;
+        /** Indexed files pinned again */
+        private long repinned;
+        /** Pinned files not indexed */
+        private long orphans;
+        /** Orphan files unpinned */
+        private long unpinned;
+    }
+}
@@ -0,0 +1,45 @@
+package net.consensys.tools.ipfs.ipfsstore.service.reindex;
+
+import java.util.List;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+
+/**
+ * Derivation of the index fields of a document from its content, during a reindex (see ReindexService): a bean
+ * implementing this interface replaces the default extractor, which keeps the fields of the source document
+ */
+public interface IndexFieldExtractor {
+
+    /**
+     * Default extractor: the fields of the source document are kept (the content isn't fetched)
+     */
+    IndexFieldExtractor KEEP = new IndexFieldExtractor() {
+        @Override
+        public boolean requiresContent() {
+            return false;
+        }
+
+        @Override
+        public List<IndexField> extract(Metadata document, byte[] content) {
+            return document.getIndexFields();
+        }
+    };
+
+    /**
+     * @return true if the content of the documents is fetched from IPFS for the extraction
+     */
+    default boolean requiresContent() {
+        return true;
+    }
+
+    /**
+     * Extract the index fields of a document
+     *
+     * @param document Source document (ID, hash, content type and fields, no fields if reindexed from a hash)
+     * @param content  Content of the document (null if not required)
+     * @return Index fields of the reindexed document
+     * @throws Exception if the document can't be reindexed (counted as failed, the job goes on)
+     */
+    List<IndexField> extract(Metadata document, byte[] content) throws Exception;
+}
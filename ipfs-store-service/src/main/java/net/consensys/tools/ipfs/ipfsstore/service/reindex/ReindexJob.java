@@ -0,0 +1,240 @@
+package net.consensys.tools.ipfs.ipfsstore.service.reindex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexRequest;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexStatus;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexStatus.State;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.service.StoreService;
+import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
+
+/**
+ * A reindex: the documents of the source (index scrolled in index order, or list of hashes) are read by batches, their
+ * contents fetched in parallel and their fields extracted, then each batch is written to the target index in a single
+ * bulk request and checkpointed. A job resumed skips the documents processed before its checkpoint (the source must
+ * not change in between; a document processed twice is only written twice).
+ */
+class ReindexJob implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(ReindexJob.class);
+
+    private final StoreService storeService;
+    private final IndexDao indexDao;
+    private final StorageDao storageDao;
+    private final IndexFieldExtractor extractor;
+    private final ExecutorService fetchers;
+    private final Consumer<ReindexStatus> checkpoint;
+
+    private final ReindexStatus status;
+    private final int batchSize;
+    private volatile boolean cancelled;
+
+    private long position;   // documents of the source read by this run
+    private long resumedAt;  // checkpoint this run resumed from
+    private long runStarted; // ms
+
+    /**
+     * @param status       Status of the job (new, or checkpoint to resume from)
+     * @param batchSize    Documents per batch
+     * @param storeService Store service (alias swap)
+     * @param indexDao     Index DAO
+     * @param storageDao   Storage DAO (contents)
+     * @param extractor    Extractor of the index fields
+     * @param fetchers     Executor of the content fetches (bounds their concurrency)
+     * @param checkpoint   Consumer of the status after each batch and at the end (persistence)
+     */
+    ReindexJob(ReindexStatus status, int batchSize, StoreService storeService, IndexDao indexDao, StorageDao storageDao,
+               IndexFieldExtractor extractor, ExecutorService fetchers, Consumer<ReindexStatus> checkpoint) {
+        this.status = status;
+        this.batchSize = batchSize;
+        this.storeService = storeService;
+        this.indexDao = indexDao;
+        this.storageDao = storageDao;
+        this.extractor = extractor;
+        this.fetchers = fetchers;
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public void run() {
+        ReindexRequest request = status.getRequest();
+
+        synchronized (this) {
+            resumedAt = status.getProcessed();
+            runStarted = System.currentTimeMillis();
+            status.setState(State.running);
+            status.setError(null);
+            status.setThroughput(0);
+            if (status.getStarted() == 0) {
+                status.setStarted(runStarted);
+            }
+        }
+        LOGGER.info("Reindex " + status.getId() + " started " + request + " (from " + resumedAt + ")");
+
+        try {
+            indexDao.createIndex(request.getTarget());
+
+            if (!Strings.isEmpty(request.getSource())) {
+                long total = indexDao.count(request.getSource(), null);
+                synchronized (this) {
+                    status.setTotal(total);
+                }
+                indexDao.scroll(request.getSource(), batchSize, this::process);
+
+            } else {
+                synchronized (this) {
+                    status.setTotal(request.getHashes().size());
+                }
+                for (int i = 0; i < request.getHashes().size(); i += batchSize) {
+                    process(request.getHashes().subList(i, Math.min(i + batchSize, request.getHashes().size())).stream()
+                            .map(hash -> new Metadata(null, hash, hash, null, null)) // ID: hash, content type unknown
+                            .collect(Collectors.toList()));
+                }
+            }
+
+            if (cancelled) {
+                throw new CancellationException();
+            }
+
+            // Atomic swap: the reads of the alias go to the new index (cached results of the alias invalidated)
+            if (!Strings.isEmpty(request.getAlias())) {
+                storeService.alias(request.getAlias(), request.getTarget());
+            }
+
+            end(State.completed, null);
+            LOGGER.info("Reindex " + status.getId() + " completed " + status());
+
+        } catch (Exception ex) {
+            if (cancelled) {
+                end(State.cancelled, null);
+                LOGGER.info("Reindex " + status.getId() + " cancelled " + status());
+            } else {
+                end(State.failed, ex.getMessage());
+                LOGGER.error("Reindex " + status.getId() + " failed " + status(), ex);
+            }
+        }
+    }
+
+    /**
+     * Process a batch of documents of the source: fetch and extract in parallel, then bulk write and checkpoint
+     */
+    private void process(List<Metadata> documents) {
+        if (cancelled) {
+            throw new CancellationException("Reindex " + status.getId() + " cancelled");
+        }
+
+        // Documents processed before the checkpoint skipped
+        long skipped = Math.max(Math.min(resumedAt - position, documents.size()), 0);
+        position += documents.size();
+        if (skipped == documents.size()) {
+            return;
+        }
+        List<Metadata> batch = documents.subList((int) skipped, documents.size());
+
+        List<Future<Metadata>> futures = batch.stream()
+                .map(document -> fetchers.submit(() -> reindexed(document)))
+                .collect(Collectors.toList());
+
+        List<Metadata> reindexed = new ArrayList<>(batch.size());
+        long failed = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                reindexed.add(futures.get(i).get());
+            } catch (ExecutionException ex) {
+                failed++;
+                LOGGER.warn("Reindex " + status.getId() + ": document [id=" + batch.get(i).getDocumentId() + ", hash=" + batch.get(i).getHash()
+                        + "] failed: " + ex.getCause().getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futures.forEach(future -> future.cancel(true));
+                cancelled = true;
+                throw new CancellationException("Reindex " + status.getId() + " interrupted");
+            }
+        }
+
+        long indexed;
+        try {
+            Map<String, String> failures = reindexed.isEmpty() ? Collections.emptyMap() : indexDao.index(status.getRequest().getTarget(), reindexed);
+            indexed = reindexed.size() - failures.size();
+        } catch (DaoException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+
+        synchronized (this) {
+            status.setProcessed(position);
+            status.setIndexed(status.getIndexed() + indexed);
+            status.setFailed(status.getFailed() + failed + reindexed.size() - indexed);
+            status.setUpdated(System.currentTimeMillis());
+            status.setThroughput(throughput());
+        }
+        checkpoint.accept(status());
+    }
+
+    /**
+     * Document reindexed: content fetched (if required) and fields extracted
+     */
+    private Metadata reindexed(Metadata document) throws Exception {
+        byte[] content = extractor.requiresContent() ? storageDao.getContent(document.getHash()) : null;
+        List<IndexField> indexFields = extractor.extract(document, content);
+
+        // Named as read: by the alias once swapped
+        String name = Strings.isEmpty(status.getRequest().getAlias()) ? status.getRequest().getTarget() : status.getRequest().getAlias();
+
+        return new Metadata(name, document.getDocumentId(), document.getHash(), document.getContentType(), indexFields);
+    }
+
+    private synchronized void end(State state, String error) {
+        status.setState(state);
+        status.setError(error);
+        status.setUpdated(System.currentTimeMillis());
+        status.setThroughput(throughput());
+        checkpoint.accept(status());
+    }
+
+    private double throughput() {
+        long elapsed = System.currentTimeMillis() - runStarted;
+        return elapsed > 0 ? (status.getProcessed() - resumedAt) * 1000.0 / elapsed : 0;
+    }
+
+    /**
+     * Stop the job after the current batch (resumable from its checkpoint)
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return Copy of the status of the job
+     */
+    synchronized ReindexStatus status() {
+        ReindexStatus copy = new ReindexStatus();
+        copy.setId(status.getId());
+        copy.setRequest(status.getRequest());
+        copy.setState(status.getState());
+        copy.setTotal(status.getTotal());
+        copy.setProcessed(status.getProcessed());
+        copy.setIndexed(status.getIndexed());
+        copy.setFailed(status.getFailed());
+        copy.setThroughput(status.getThroughput());
+        copy.setStarted(status.getStarted());
+        copy.setUpdated(status.getUpdated());
+        copy.setError(status.getError());
+        return copy;
+    }
+}
@@ -0,0 +1,325 @@
+package net.consensys.tools.ipfs.ipfsstore.service.reindex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexRequest;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexStatus;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexStatus.State;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceException;
+import net.consensys.tools.ipfs.ipfsstore.service.StoreService;
+import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
+
+/**
+ * Reindex jobs: rebuild of an index from the contents stored in IPFS (see {@link ReindexJob}), configured with:
+ * <pre>
+ * reindex.concurrency     : contents fetched in parallel per job (default 8)
+ * reindex.batch-size      : documents per bulk request (default 500)
+ * reindex.checkpoint-path : directory of the checkpoints of the jobs (default ./data/reindex, empty: in memory only)
+ * reindex.max-jobs        : jobs running at the same time, a job started beyond is rejected (default 2)
+ * </pre>
+ * The fields of the reindexed documents come from the {@link IndexFieldExtractor} bean if any, else are copied from the
+ * source. Once the target is complete, the alias of the request (if any) is moved onto it in a single operation, so
+ * the readers of the alias switch from the previous index to the new one without downtime.
+ * <p>
+ * The status of a job is checkpointed after each batch: a job failed, cancelled or interrupted by a restart is resumed
+ * from its last checkpoint.
+ */
+@Component
+public class ReindexService implements PublicMetrics, DisposableBean {
+
+    private static final Logger LOGGER = Logger.getLogger(ReindexService.class);
+
+    private static final String PROPERTY_PREFIX = "reindex.";
+    private static final String METRIC_PREFIX = "reindex.";
+    private static final String CHECKPOINT_EXTENSION = ".json";
+    private static final String ERROR_NOT_NULL_OR_EMPTY = "cannot be null or empty";
+
+    private final StoreService storeService;
+    private final IndexDao indexDao;
+    private final StorageDao storageDao;
+    private final IndexFieldExtractor extractor;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final int concurrency;
+    private final int batchSize;
+    private final int maxJobs;
+    private final Path checkpointPath;
+
+    private final ExecutorService runner;
+    private final Map<String, ReindexJob> jobs = new ConcurrentHashMap<>();
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong started = new AtomicLong();
+
+    @Autowired
+    public ReindexService(StoreService storeService, IndexDao indexDao, StorageDao storageDao, Environment environment,
+                          ObjectProvider<IndexFieldExtractor> extractor) {
+        this(storeService, indexDao, storageDao, environment, extractor.getIfAvailable());
+    }
+
+    public ReindexService(StoreService storeService, IndexDao indexDao, StorageDao storageDao, Environment environment,
+                          IndexFieldExtractor extractor) {
+        this.storeService = storeService;
+        this.indexDao = indexDao;
+        this.storageDao = storageDao;
+        this.extractor = extractor != null ? extractor : IndexFieldExtractor.KEEP;
+
+        this.concurrency = environment.getProperty(PROPERTY_PREFIX + "concurrency", Integer.class, 8);
+        this.batchSize = environment.getProperty(PROPERTY_PREFIX + "batch-size", Integer.class, 500);
+        this.maxJobs = environment.getProperty(PROPERTY_PREFIX + "max-jobs", Integer.class, 2);
+        String path = environment.getProperty(PROPERTY_PREFIX + "checkpoint-path", "./data/reindex").trim();
+        this.checkpointPath = path.isEmpty() ? null : Paths.get(path);
+
+        // Validation
+        if (concurrency <= 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "concurrency must be positive");
+        if (batchSize <= 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "batch-size must be positive");
+        if (maxJobs <= 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "max-jobs must be positive");
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("reindex-");
+        threadFactory.setDaemon(true);
+        this.runner = Executors.newFixedThreadPool(maxJobs, threadFactory);
+
+        load();
+
+        LOGGER.info("Reindex [concurrency: " + concurrency + ", batch-size: " + batchSize + ", max-jobs: " + maxJobs + ", checkpoint-path: "
+                + (checkpointPath != null ? checkpointPath : "none") + ", extractor: " + this.extractor.getClass().getName() + "]");
+    }
+
+    /**
+     * Start a reindex job
+     *
+     * @param request Reindex request
+     * @return Status of the job started
+     * @throws ServiceException if the alias can't be checked
+     */
+    public ReindexStatus start(ReindexRequest request) throws ServiceException {
+        // Validation
+        if (request == null) throw new IllegalArgumentException("request " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(request.getTarget())) throw new IllegalArgumentException("target " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(request.getSource()) == (request.getHashes() == null || request.getHashes().isEmpty()))
+            throw new IllegalArgumentException("one of source or hashes must be provided");
+        if (request.getTarget().equalsIgnoreCase(request.getSource()))
+            throw new IllegalArgumentException("target must be different from the source");
+        if (request.getTarget().equalsIgnoreCase(request.getAlias()))
+            throw new IllegalArgumentException("alias must be different from the target");
+        if (!Strings.isEmpty(request.getAlias()) && request.getAlias().equalsIgnoreCase(request.getSource()))
+            throw new IllegalArgumentException("alias must be different from the source");
+        if (!Strings.isEmpty(request.getAlias()) && isIndex(request.getAlias()))
+            throw new IllegalArgumentException("alias [" + request.getAlias() + "] is the name of an index");
+        if (request.getConcurrency() != null && request.getConcurrency() <= 0)
+            throw new IllegalArgumentException("concurrency must be positive");
+        if (request.getBatchSize() != null && request.getBatchSize() <= 0)
+            throw new IllegalArgumentException("batch_size must be positive");
+
+        ReindexStatus status = new ReindexStatus();
+        status.setId(UUID.randomUUID().toString());
+        status.setRequest(request);
+        status.setState(State.running);
+
+        return run(status);
+    }
+
+    /**
+     * Resume a job (failed, cancelled or interrupted) from its last checkpoint
+     *
+     * @param id Job ID
+     * @return Status of the job resumed
+     * @throws NotFoundException if the job doesn't exist
+     */
+    public synchronized ReindexStatus resume(String id) throws NotFoundException {
+        ReindexStatus status = getStatus(id);
+
+        // Validation
+        if (running.contains(id) || status.getState() == State.completed)
+            throw new IllegalArgumentException("Reindex " + id + " is " + status.getState());
+
+        return run(status);
+    }
+
+    /**
+     * Cancel a job: it stops after its current batch (resumable)
+     *
+     * @param id Job ID
+     * @return Status of the job
+     * @throws NotFoundException if the job doesn't exist
+     */
+    public ReindexStatus cancel(String id) throws NotFoundException {
+        ReindexJob job = job(id);
+        job.cancel();
+        return job.status();
+    }
+
+    /**
+     * @param id Job ID
+     * @return Status of the job
+     * @throws NotFoundException if the job doesn't exist
+     */
+    public ReindexStatus getStatus(String id) throws NotFoundException {
+        return job(id).status();
+    }
+
+    /**
+     * @return Status of the jobs (latest started first)
+     */
+    public List<ReindexStatus> getStatuses() {
+        return jobs.values().stream()
+                .map(ReindexJob::status)
+                .sorted(Comparator.comparingLong(ReindexStatus::getStarted).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private synchronized ReindexStatus run(ReindexStatus status) {
+        ReindexRequest request = status.getRequest();
+
+        // Validation
+        if (running.size() >= maxJobs)
+            throw new IllegalArgumentException(running.size() + " reindex jobs running (" + PROPERTY_PREFIX + "max-jobs)");
+        running.stream()
+                .filter(id -> jobs.get(id).status().getRequest().getTarget().equalsIgnoreCase(request.getTarget()))
+                .findFirst()
+                .ifPresent(id -> {
+                    throw new IllegalArgumentException("target [" + request.getTarget() + "] is being reindexed by " + id);
+                });
+
+        int jobConcurrency = request.getConcurrency() != null ? request.getConcurrency() : concurrency;
+        int jobBatchSize = request.getBatchSize() != null ? request.getBatchSize() : batchSize;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("reindex-fetch-");
+        threadFactory.setDaemon(true);
+        ExecutorService fetchers = Executors.newFixedThreadPool(jobConcurrency, threadFactory);
+
+        ReindexJob job = new ReindexJob(status, jobBatchSize, storeService, indexDao, storageDao, extractor, fetchers, this::checkpoint);
+        jobs.put(status.getId(), job);
+        started.incrementAndGet();
+
+        status.setState(State.running);
+        running.add(status.getId());
+        runner.execute(() -> {
+            try {
+                job.run();
+            } finally {
+                fetchers.shutdownNow();
+                running.remove(status.getId());
+            }
+        });
+
+        return job.status();
+    }
+
+    private boolean isIndex(String name) throws ServiceException {
+        try {
+            return indexDao.isIndex(name);
+
+        } catch (DaoException ex) {
+            LOGGER.error("Exception occur:", ex);
+            throw new ServiceException(ex.getMessage());
+        }
+    }
+
+    private ReindexJob job(String id) throws NotFoundException {
+        ReindexJob job = jobs.get(id);
+        if (job == null) {
+            throw new NotFoundException("Reindex " + id + " not found");
+        }
+        return job;
+    }
+
+    /**
+     * Save the status of a job (written aside then moved, so a crash never leaves a truncated checkpoint)
+     */
+    private void checkpoint(ReindexStatus status) {
+        if (checkpointPath == null) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(checkpointPath);
+            Path file = checkpointPath.resolve(status.getId() + CHECKPOINT_EXTENSION);
+            Path tmp = checkpointPath.resolve(status.getId() + CHECKPOINT_EXTENSION + ".tmp");
+            mapper.writeValue(tmp.toFile(), status);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException ex) {
+            LOGGER.warn("Error while checkpointing the reindex " + status.getId() + " - Ignore it: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Load the checkpoints of the jobs: a job running when the service stopped is marked as failed (resumable)
+     */
+    private void load() {
+        if (checkpointPath == null || !Files.isDirectory(checkpointPath)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(checkpointPath, "*" + CHECKPOINT_EXTENSION)) {
+            for (Path file : files) {
+                ReindexStatus status = mapper.readValue(file.toFile(), ReindexStatus.class);
+                if (status.getState() == State.running) {
+                    status.setState(State.failed);
+                    status.setError("interrupted");
+                }
+                jobs.put(status.getId(), new ReindexJob(status, batchSize, storeService, indexDao, storageDao, extractor, null, this::checkpoint));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error while loading the reindex checkpoints from " + checkpointPath, ex);
+        }
+
+        LOGGER.debug(jobs.size() + " reindex checkpoints loaded from " + checkpointPath);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<ReindexStatus> statuses = getStatuses();
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "started", started.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "running", running.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "documents", statuses.stream().mapToLong(ReindexStatus::getIndexed).sum()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "failed", statuses.stream().mapToLong(ReindexStatus::getFailed).sum()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "throughput", statuses.stream()
+                .filter(status -> status.getState() == State.running)
+                .mapToDouble(ReindexStatus::getThroughput).sum()));
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        jobs.values().forEach(ReindexJob::cancel);
+        runner.shutdownNow();
+    }
+}
@@ -0,0 +1,531 @@
+package net.consensys.tools.ipfs.ipfsstore.service.writebehind;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.opentelemetry.api.common.Attributes;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexQueueStatus;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexerResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexingStatus;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexingStatus.State;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
+import net.consensys.tools.ipfs.ipfsstore.service.cache.HashMetadataCache;
+import net.consensys.tools.ipfs.ipfsstore.service.cache.SearchResultCache;
+import net.consensys.tools.ipfs.ipfsstore.utils.Strings;
+
+/**
+ * Write-behind indexing: the documents are queued in a local journal (one file per document, written synchronously)
+ * and indexed in background by a pool of workers draining the queue with bulk requests, configured with:
+ * <pre>
+ * write-behind.path         : directory of the journal (default ./data/write-behind, empty: in memory only, lost on a crash)
+ * write-behind.workers      : workers indexing in parallel (default 2)
+ * write-behind.batch-size   : maximum documents per bulk request (default 500)
+ * write-behind.max-attempts : attempts before a document rejected by the index is given up (default 5)
+ * write-behind.max-batch-attempts : attempts before the documents of a bulk request failing as a whole are given up (default 20)
+ * write-behind.retry-delay  : delay (ms) before the first retry, doubled at each consecutive failure up to 1 min (default 1000)
+ * write-behind.states       : states of the indexed and failed documents retained for the status (default 10000)
+ * </pre>
+ * The documents are partitioned among the workers by ID, and a worker retries its failed documents before taking the
+ * next ones: the writes of a document are applied in order. A bulk request failing as a whole (index unreachable) is
+ * retried up to the maximum batch attempts (the queue grows meanwhile), and a document rejected by the index up to the
+ * maximum attempts, then the documents are moved to the "failed" directory of the journal, so a poison batch doesn't
+ * stall its partition forever. The journal is replayed at startup.
+ */
+@Component
+public class IndexQueue implements PublicMetrics, InitializingBean, DisposableBean {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexQueue.class);
+
+    private static final String PROPERTY_PREFIX = "write-behind.";
+    private static final String METRIC_PREFIX = "write-behind.";
+    private static final String ERROR_NOT_NULL_OR_EMPTY = "cannot be null or empty";
+    private static final String JOURNAL_EXTENSION = ".json";
+    private static final String FAILED_DIRECTORY = "failed";
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    private final IndexDao indexDao;
+    private final SearchResultCache searchResultCache;
+    private final HashMetadataCache hashMetadataCache;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path path;
+    private final int workers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final int maxBatchAttempts;
+    private final long retryDelay;
+
+    private final List<BlockingQueue<Entry>> partitions = new ArrayList<>();
+    private final ConcurrentSkipListMap<Long, Entry> queued = new ConcurrentSkipListMap<>(); // by sequence (oldest first)
+    private final Map<String, Entry> pending = new ConcurrentHashMap<>();                    // latest queued write per document
+    private final Map<String, Integer> hashes = new ConcurrentHashMap<>();                   // queued writes per content hash
+    private final Cache<String, IndexingStatus> states;                                       // indexed and failed documents
+    private final Set<String> createdIndices = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public IndexQueue(IndexDao indexDao, SearchResultCache searchResultCache, Environment environment) {
+        this(indexDao, searchResultCache, HashMetadataCache.disabled(), environment);
+    }
+
+    @Autowired
+    public IndexQueue(IndexDao indexDao, SearchResultCache searchResultCache, HashMetadataCache hashMetadataCache, Environment environment) {
+        this.indexDao = indexDao;
+        this.searchResultCache = searchResultCache;
+        this.hashMetadataCache = hashMetadataCache;
+
+        String journal = environment.getProperty(PROPERTY_PREFIX + "path", "./data/write-behind").trim();
+        this.path = journal.isEmpty() ? null : Paths.get(journal);
+        this.workers = environment.getProperty(PROPERTY_PREFIX + "workers", Integer.class, 2);
+        this.batchSize = environment.getProperty(PROPERTY_PREFIX + "batch-size", Integer.class, 500);
+        this.maxAttempts = environment.getProperty(PROPERTY_PREFIX + "max-attempts", Integer.class, 5);
+        this.maxBatchAttempts = environment.getProperty(PROPERTY_PREFIX + "max-batch-attempts", Integer.class, 20);
+        this.retryDelay = environment.getProperty(PROPERTY_PREFIX + "retry-delay", Long.class, 1000L);
+        int retainedStates = environment.getProperty(PROPERTY_PREFIX + "states", Integer.class, 10000);
+
+        // Validation
+        if (workers <= 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "workers must be positive");
+        if (batchSize <= 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "batch-size must be positive");
+        if (maxAttempts <= 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "max-attempts must be positive");
+        if (maxBatchAttempts <= 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "max-batch-attempts must be positive");
+        if (retryDelay < 0) throw new IllegalArgumentException(PROPERTY_PREFIX + "retry-delay must be positive or zero");
+
+        this.states = Caffeine.newBuilder().maximumSize(retainedStates).build();
+        for (int i = 0; i < workers; i++) {
+            partitions.add(new LinkedBlockingQueue<>());
+        }
+
+        load();
+
+        LOGGER.info("Write-behind indexing [path: " + (path != null ? path : "none (in memory)") + ", workers: " + workers
+                + ", batch-size: " + batchSize + ", max-attempts: " + maxAttempts + ", max-batch-attempts: " + maxBatchAttempts + ", queued: " + queued.size() + "]");
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("write-behind-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newFixedThreadPool(workers, threadFactory);
+        this.running = true;
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<Entry> partition = partitions.get(i);
+            executor.execute(() -> drain(partition));
+        }
+    }
+
+    /**
+     * Queue a document to index: returns once the document is written to the journal
+     *
+     * @param request Request containing metadata to index (ID, hash, type, index fields), ID generated if absent
+     * @return Response containing the tuple (index, ID, hash)
+     * @throws ServiceException if the document can't be written to the journal
+     */
+    public IndexerResponse queue(IndexerRequest request) throws ServiceException {
+        // Validation
+        if (request == null) throw new IllegalArgumentException("request " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(request.getIndexName())) throw new IllegalArgumentException("index " + ERROR_NOT_NULL_OR_EMPTY);
+        if (Strings.isEmpty(request.getHash())) throw new IllegalArgumentException("hash " + ERROR_NOT_NULL_OR_EMPTY);
+
+        if (Strings.isEmpty(request.getDocumentId())) {
+            request.setDocumentId(UUID.randomUUID().toString());
+        }
+
+        Entry entry = new Entry();
+        entry.setSequence(sequence.incrementAndGet());
+        entry.setRequest(request);
+        entry.setQueued(System.currentTimeMillis());
+
+        try {
+            write(entry);
+        } catch (IOException ex) {
+            LOGGER.error("Error while queuing the document " + key(request), ex);
+            throw new ServiceException("Error while queuing the document: " + ex.getMessage());
+        }
+
+        queued.put(entry.getSequence(), entry);
+        pending.put(key(request), entry);
+        track(entry);
+        partition(request).offer(entry);
+
+        LOGGER.debug("Document queued " + key(request) + " [hash=" + request.getHash() + ", sequence=" + entry.getSequence() + "]");
+
+        return new IndexerResponse(request.getIndexName(), request.getDocumentId(), request.getHash());
+    }
+
+    /**
+     * @return State of the queue (size, lag)
+     */
+    public IndexQueueStatus getStatus() {
+        Map.Entry<Long, Entry> oldest = queued.firstEntry();
+        long lag = oldest != null ? Math.max(System.currentTimeMillis() - oldest.getValue().getQueued(), 0) : 0;
+        return new IndexQueueStatus(queued.size(), lag, indexed.get(), failed.get());
+    }
+
+    /**
+     * @param index Index name
+     * @param id    Document ID
+     * @return State of the document (latest write queued, or last indexed or failed)
+     * @throws NotFoundException if the document wasn't queued (or its state isn't retained anymore)
+     */
+    public IndexingStatus getStatus(String index, String id) throws NotFoundException {
+        String key = key(index, id);
+
+        Entry entry = pending.get(key);
+        if (entry != null) {
+            return status(entry, State.queued, null);
+        }
+        IndexingStatus status = states.getIfPresent(key);
+        if (status == null) {
+            throw new NotFoundException("Document " + key + " not queued");
+        }
+        return status;
+    }
+
+    /**
+     * @param hash Content hash
+     * @return true if a document queued and not indexed yet refers to the content
+     */
+    public boolean isQueued(String hash) {
+        return hashes.containsKey(hash.toLowerCase());
+    }
+
+    private void track(Entry entry) {
+        if (entry.getRequest().getHash() != null) {
+            hashes.merge(entry.getRequest().getHash().toLowerCase(), 1, Integer::sum);
+        }
+    }
+
+    private void untrack(Entry entry) {
+        if (entry.getRequest().getHash() != null) {
+            hashes.computeIfPresent(entry.getRequest().getHash().toLowerCase(), (hash, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Worker: index the documents of a partition by batches, failed ones retried first
+     */
+    private void drain(BlockingQueue<Entry> partition) {
+        List<Entry> batch = new ArrayList<>();
+        int consecutiveFailures = 0;
+
+        while (running) {
+            try {
+                if (batch.isEmpty()) {
+                    Entry first = partition.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                partition.drainTo(batch, batchSize - batch.size());
+
+                List<Entry> retried = Tracing.trace("write-behind.batch", Attributes.empty(), () -> index(batch));
+                batch.clear();
+                batch.addAll(retried);
+
+                if (retried.isEmpty()) {
+                    consecutiveFailures = 0;
+                } else {
+                    retries.addAndGet(retried.size());
+                    TimeUnit.MILLISECONDS.sleep(Math.min(retryDelay << Math.min(consecutiveFailures++, 16), MAX_RETRY_DELAY));
+                }
+
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+
+            } catch (RuntimeException ex) {
+                LOGGER.error("Error while indexing the queued documents", ex);
+            }
+        }
+    }
+
+    /**
+     * Index a batch: one bulk request per index
+     *
+     * @return Documents to retry (in order)
+     */
+    private List<Entry> index(List<Entry> batch) {
+        batches.incrementAndGet();
+
+        Map<String, List<Entry>> byIndex = new LinkedHashMap<>();
+        batch.forEach(entry -> byIndex.computeIfAbsent(entry.getRequest().getIndexName(), index -> new ArrayList<>()).add(entry));
+
+        List<Entry> retried = new ArrayList<>();
+        byIndex.forEach((index, entries) -> {
+            try {
+                if (!createdIndices.contains(index)) {
+                    indexDao.createIndex(index); // Create the index if it doesn't exist
+                    createdIndices.add(index);
+                }
+
+                List<Metadata> documents = new ArrayList<>(entries.size());
+                for (Entry entry : entries) {
+                    IndexerRequest request = entry.getRequest();
+                    documents.add(new Metadata(index, request.getDocumentId(), request.getHash(), request.getContentType(), request.getIndexFields()));
+                }
+
+                // Only the documents rejected are retried (the others are indexed: indexing them again would bump their version)
+                Map<String, String> failures = indexDao.index(index, documents);
+                for (Entry entry : entries) {
+                    String id = entry.getRequest().getDocumentId();
+                    if (!failures.containsKey(id)) {
+                        indexed(entry);
+                    } else if (rejected(entry, failures.get(id), maxAttempts)) {
+                        retried.add(entry);
+                    }
+                }
+                searchResultCache.invalidate(index);
+
+            } catch (DaoException | RuntimeException ex) {
+                // Bulk request failed as a whole: retried up to the maximum batch attempts
+                LOGGER.warn("Error while indexing " + entries.size() + " queued documents into the index [" + index + "] - Retry: " + ex.getMessage());
+                for (Entry entry : entries) {
+                    if (rejected(entry, ex.getMessage(), maxBatchAttempts)) {
+                        retried.add(entry);
+                    }
+                }
+            }
+        });
+        return retried;
+    }
+
+    private void indexed(Entry entry) {
+        String key = key(entry.getRequest());
+        hashMetadataCache.invalidate(entry.getRequest().getIndexName(), entry.getRequest().getHash());
+        delete(entry, null);
+        if (queued.remove(entry.getSequence()) != null) {
+            untrack(entry);
+        }
+        if (pending.remove(key, entry)) {
+            states.put(key, status(entry, State.indexed, System.currentTimeMillis()));
+        }
+        indexed.incrementAndGet();
+    }
+
+    /**
+     * @param limit Maximum attempts
+     * @return true if the document is retried, false if given up
+     */
+    private boolean rejected(Entry entry, String error, int limit) {
+        entry.setAttempts(entry.getAttempts() + 1);
+        entry.setError(error);
+        if (entry.getAttempts() < limit) {
+            return true;
+        }
+
+        String key = key(entry.getRequest());
+        LOGGER.error("Document " + key + " not indexed after " + entry.getAttempts() + " attempts - Give up: " + error);
+        delete(entry, FAILED_DIRECTORY);
+        if (queued.remove(entry.getSequence()) != null) {
+            untrack(entry);
+        }
+        if (pending.remove(key, entry)) {
+            states.put(key, status(entry, State.failed, System.currentTimeMillis()));
+        }
+        failed.incrementAndGet();
+        return false;
+    }
+
+    private BlockingQueue<Entry> partition(IndexerRequest request) {
+        return partitions.get(Math.floorMod(key(request).hashCode(), partitions.size()));
+    }
+
+    /**
+     * Write an entry to the journal (written aside then moved, so a crash never leaves a truncated entry)
+     */
+    private void write(Entry entry) throws IOException {
+        if (path == null) {
+            return;
+        }
+
+        Files.createDirectories(path);
+        Path file = path.resolve(entry.getSequence() + JOURNAL_EXTENSION);
+        Path tmp = path.resolve(entry.getSequence() + JOURNAL_EXTENSION + ".tmp");
+        Files.write(tmp, mapper.writeValueAsBytes(entry),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.DSYNC);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Remove an entry from the journal
+     *
+     * @param directory Sub-directory the entry is moved to (null: deleted)
+     */
+    private void delete(Entry entry, String directory) {
+        if (path == null) {
+            return;
+        }
+
+        Path file = path.resolve(entry.getSequence() + JOURNAL_EXTENSION);
+        try {
+            if (directory == null) {
+                Files.deleteIfExists(file);
+            } else {
+                Path target = path.resolve(directory);
+                Files.createDirectories(target);
+                try {
+                    Files.move(file, target.resolve(file.getFileName()));
+                } catch (FileAlreadyExistsException ex) {
+                    // Never overwrite an entry given up earlier (journal replaced or sequence reused)
+                    Files.move(file, target.resolve(entry.getSequence() + "-" + UUID.randomUUID() + JOURNAL_EXTENSION));
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Error while removing the document " + key(entry.getRequest()) + " from the journal - Ignore it: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Replay the journal: the documents queued and not indexed yet are queued again, in order. The sequence resumes
+     * after the highest one of the journal and of the failed entries, so an entry name is never reused.
+     */
+    private void load() {
+        if (path == null || !Files.isDirectory(path)) {
+            return;
+        }
+
+        Path failedDirectory = path.resolve(FAILED_DIRECTORY);
+        if (Files.isDirectory(failedDirectory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(failedDirectory, "*" + JOURNAL_EXTENSION)) {
+                for (Path file : files) {
+                    sequence.accumulateAndGet(sequence(file), Math::max);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Error while reading the write-behind journal " + failedDirectory, ex);
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "*" + JOURNAL_EXTENSION)) {
+            for (Path file : files) {
+                entries.add(mapper.readValue(file.toFile(), Entry.class));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error while reading the write-behind journal " + path, ex);
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::getSequence));
+        for (Entry entry : entries) {
+            queued.put(entry.getSequence(), entry);
+            pending.put(key(entry.getRequest()), entry);
+            track(entry);
+            partition(entry.getRequest()).offer(entry);
+            sequence.accumulateAndGet(entry.getSequence(), Math::max);
+        }
+    }
+
+    /**
+     * @return Sequence of a journal file ([sequence].json or [sequence]-[uuid].json), 0 if not a journal file
+     */
+    private static long sequence(Path file) {
+        String name = file.getFileName().toString();
+        int end = name.indexOf('-');
+        try {
+            return Long.parseLong(name.substring(0, end >= 0 ? end : name.length() - JOURNAL_EXTENSION.length()));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static IndexingStatus status(Entry entry, State state, Long updated) {
+        IndexerRequest request = entry.getRequest();
+        return new IndexingStatus(request.getIndexName(), request.getDocumentId(), request.getHash(), state, entry.getAttempts(),
+                entry.getQueued(), updated, entry.getError());
+    }
+
+    private static String key(IndexerRequest request) {
+        return key(request.getIndexName(), request.getDocumentId());
+    }
+
+    private static String key(String index, String id) {
+        return "[indexName=" + index.toLowerCase() + ", id=" + id + "]";
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        IndexQueueStatus status = getStatus();
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "queued", status.getQueued()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "lag", status.getLag()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "indexed", indexed.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "failed", failed.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "retries", retries.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "batches", batches.get()));
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Document queued (entry of the journal)
+     */
+    @Data
+    @NoArgsConstructor
+    static final class Entry {
+        private long sequence;
+        private IndexerRequest request;
+        private long queued;
+        private int attempts;
+        private String error;
+    }
+}
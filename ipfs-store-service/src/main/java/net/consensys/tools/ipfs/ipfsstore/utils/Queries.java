@@ -0,0 +1,82 @@
+package net.consensys.tools.ipfs.ipfsstore.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Filter;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+
+public interface Queries {
+
+    /**
+     * Canonical representation of a query: two queries returning the same results have the same representation.
+     * Filter clauses are combined with AND so their order is irrelevant and they are sorted, aggregations keep
+     * their order as it drives the order of the response.
+     *
+     * @param query Query (nullable)
+     * @return Canonical representation
+     */
+    static String normalize(Query query) {
+        if (query == null) {
+            return "";
+        }
+
+        String filters = query.getFilterClauses() == null ? "" : query.getFilterClauses().stream()
+                .map(Queries::normalize)
+                .sorted()
+                .collect(Collectors.joining("&"));
+
+        String aggregations = query.getAggregations() == null ? "" : query.getAggregations().stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining("&"));
+
+        return filters + "|" + aggregations;
+    }
+
+    /**
+     * Fingerprint of a query: its shape without the values, so queries differing only by their values (searched
+     * text, terms, size of the lists...) share the same fingerprint. Filter clauses are sorted as in the canonical
+     * representation.
+     *
+     * @param query Query (nullable)
+     * @return Fingerprint ("*" for a query matching all the documents)
+     */
+    static String fingerprint(Query query) {
+        if (query == null || ((query.getFilterClauses() == null || query.getFilterClauses().isEmpty()) && !query.hasAggregations())) {
+            return "*";
+        }
+
+        String filters = query.getFilterClauses() == null ? "" : query.getFilterClauses().stream()
+                .map(filter -> filter.getOperation() + "(" + normalizeNames(filter) + ")")
+                .sorted()
+                .collect(Collectors.joining("&"));
+
+        String aggregations = !query.hasAggregations() ? "" : query.getAggregations().stream()
+                .map(aggregation -> aggregation.getType() + "(" + aggregation.getField() + ")")
+                .collect(Collectors.joining("&"));
+
+        return aggregations.isEmpty() ? filters : filters + "|" + aggregations;
+    }
+
+    static String normalize(Filter filter) {
+        return filter.getOperation() + "(" + normalizeNames(filter) + ")=" + normalizeValue(filter.getValue());
+    }
+
+    static String normalizeNames(Filter filter) {
+        String[] names = filter.getNames().clone();
+        Arrays.sort(names, (n1, n2) -> String.valueOf(n1).compareTo(String.valueOf(n2)));
+
+        return String.join(",", Arrays.asList(names));
+    }
+
+    static String normalizeValue(Object value) {
+        if (value instanceof Object[]) {
+            return Arrays.deepToString((Object[]) value);
+        }
+        if (value instanceof Collection) {
+            return Arrays.deepToString(((Collection<?>) value).toArray());
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,108 @@
+package net.consensys.tools.ipfs.ipfsstore.test.concurrency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.consensys.tools.ipfs.ipfsstore.concurrency.AdaptiveLimiter;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceUnavailableException;
+
+public class AdaptiveLimiterTest {
+
+    private AdaptiveLimiter underTest;
+
+    @Before
+    public void setup() {
+        underTest = new AdaptiveLimiter("store", 2, 1, 3, 60000, 0.5, 5);
+    }
+
+    @Test
+    public void executeShedTest() throws Exception {
+
+        CompletableFuture<String> pending1 = new CompletableFuture<>();
+        CompletableFuture<String> pending2 = new CompletableFuture<>();
+        underTest.execute(() -> pending1);
+        underTest.execute(() -> pending2);
+
+        // #################################################
+        CompletableFuture<String> future = underTest.execute(() -> CompletableFuture.completedFuture("hello"));
+        // #################################################
+
+        assertEquals(2, underTest.getInFlight());
+        assertEquals(1, underTest.getRejected());
+        try {
+            future.get();
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ServiceUnavailableException);
+            assertEquals(5, ((ServiceUnavailableException) ex.getCause()).getRetryAfter());
+            return;
+        }
+        throw new AssertionError("ServiceUnavailableException expected");
+    }
+
+    @Test
+    public void executeIncreaseTest() throws Exception {
+
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        underTest.execute(() -> pending);
+
+        // #################################################
+        pending.complete("hello");
+        // #################################################
+
+        assertEquals(0, underTest.getInFlight());
+        assertEquals(3, underTest.getLimit());
+
+        // Bounded by the maximum limit
+        CompletableFuture<String> pending2 = new CompletableFuture<>();
+        CompletableFuture<String> pending3 = new CompletableFuture<>();
+        underTest.execute(() -> pending2);
+        underTest.execute(() -> pending3);
+        pending2.complete("hello");
+        pending3.complete("hello");
+        assertEquals(3, underTest.getLimit());
+    }
+
+    @Test
+    public void executeDecreaseOnOverloadTest() throws Exception {
+
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        underTest.execute(() -> pending);
+
+        // #################################################
+        pending.completeExceptionally(new ServiceUnavailableException("saturated", 1));
+        // #################################################
+
+        assertEquals(0, underTest.getInFlight());
+        assertEquals(1, underTest.getLimit());
+
+        // Bounded by the minimum limit
+        CompletableFuture<String> pending2 = new CompletableFuture<>();
+        underTest.execute(() -> pending2);
+        pending2.completeExceptionally(new ServiceUnavailableException("saturated", 1));
+        assertEquals(1, underTest.getLimit());
+    }
+
+    @Test
+    public void executeDecreaseOnLatencyTest() throws Exception {
+        underTest = new AdaptiveLimiter("search", 2, 1, 3, 0, 0.5, 5);
+
+        // #################################################
+        underTest.execute(() -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture("hello");
+        });
+        // #################################################
+
+        assertEquals(1, underTest.getLimit());
+    }
+}
@@ -0,0 +1,220 @@
+package net.consensys.tools.ipfs.ipfsstore.test.concurrency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.consensys.tools.ipfs.ipfsstore.concurrency.Bulkhead;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.OperationType;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestClass;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.DeadlineExceededException;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceUnavailableException;
+
+public class BulkheadTest {
+
+    private Bulkhead underTest;
+
+    @Before
+    public void setup() {
+        underTest = new Bulkhead(OperationType.cat, 1, 1, 5);
+    }
+
+    @After
+    public void tearDown() {
+        underTest.shutdown();
+    }
+
+    @Test
+    public void submitSuccessTest() throws Exception {
+
+        // #################################################
+        CompletableFuture<String> future = underTest.submit(() -> "hello");
+        // #################################################
+
+        assertEquals("hello", future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void submitExceptionTest() throws Exception {
+
+        // #################################################
+        CompletableFuture<String> future = underTest.submit(() -> {
+            throw new DaoException("error");
+        });
+        // #################################################
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof DaoException);
+            return;
+        }
+        throw new AssertionError("DaoException expected");
+    }
+
+    @Test
+    public void submitRejectedTest() throws Exception {
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // One operation running, one waiting
+        CompletableFuture<Boolean> first = underTest.submit(() -> {
+            running.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        running.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> second = underTest.submit(() -> "waiting");
+
+        assertEquals(1, underTest.getActive());
+        assertEquals(1, underTest.getQueueDepth());
+
+        // #################################################
+        CompletableFuture<String> third = underTest.submit(() -> "rejected");
+        // #################################################
+
+        assertTrue(third.isCompletedExceptionally());
+        try {
+            third.get();
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ServiceUnavailableException);
+            assertEquals(5, ((ServiceUnavailableException) ex.getCause()).getRetryAfter());
+        }
+        assertEquals(1, underTest.getRejected());
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertEquals("waiting", second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void submitExpiredTest() throws Exception {
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> first = underTest.submit(() -> {
+            running.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        running.await(5, TimeUnit.SECONDS);
+
+        // Request expired while its operation is waiting
+        CompletableFuture<String> second;
+        try (RequestContext.Scope scope = RequestContext.withTimeout(0).attach()) {
+            // #################################################
+            second = underTest.submit(() -> "expired");
+            // #################################################
+        }
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        try {
+            second.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof DeadlineExceededException);
+            assertEquals(1, underTest.getExpired());
+            return;
+        }
+        throw new AssertionError("DeadlineExceededException expected");
+    }
+
+    @Test
+    public void submitCancelledTest() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        RequestContext context = RequestContext.withTimeout(60000);
+
+        CompletableFuture<Boolean> future;
+        try (RequestContext.Scope scope = context.attach()) {
+            future = underTest.submit(() -> release.await(5, TimeUnit.SECONDS));
+        }
+
+        // #################################################
+        context.cancel();
+        // #################################################
+
+        assertTrue(future.isCompletedExceptionally());
+        release.countDown();
+        try {
+            future.get();
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof DeadlineExceededException);
+            return;
+        }
+        throw new AssertionError("DeadlineExceededException expected");
+    }
+
+    @Test
+    public void submitPriorityTest() throws Exception {
+        underTest.shutdown();
+        underTest = new Bulkhead(OperationType.search, 1, 10, 1, 5);
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Boolean> first = underTest.submit(() -> {
+            running.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        running.await(5, TimeUnit.SECONDS);
+
+        // #################################################
+        CompletableFuture<Boolean> batch;
+        try (RequestContext.Scope scope = RequestContext.withTimeout(RequestClass.batch, 60000).attach()) {
+            batch = underTest.submit(() -> order.add("batch"));
+        }
+        CompletableFuture<Boolean> interactive = underTest.submit(() -> order.add("interactive"));
+        // #################################################
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        batch.get(5, TimeUnit.SECONDS);
+        interactive.get(5, TimeUnit.SECONDS);
+
+        assertEquals("interactive", order.get(0));
+        assertEquals("batch", order.get(1));
+    }
+
+    @Test
+    public void submitBatchShareTest() throws Exception {
+        underTest.shutdown();
+        underTest = new Bulkhead(OperationType.search, 2, 10, 1, 5);
+
+        CountDownLatch release = new CountDownLatch(1);
+
+        // #################################################
+        CompletableFuture<Boolean> batch1;
+        CompletableFuture<String> batch2;
+        try (RequestContext.Scope scope = RequestContext.withTimeout(RequestClass.batch, 60000).attach()) {
+            batch1 = underTest.submit(() -> release.await(5, TimeUnit.SECONDS));
+            batch2 = underTest.submit(() -> "batch");
+        }
+        // #################################################
+
+        // The second batch operation waits for the first one, the interactive operation takes the free thread
+        assertEquals(1, underTest.getBatchWaiting());
+        assertEquals("interactive", underTest.submit(() -> "interactive").get(5, TimeUnit.SECONDS));
+        assertFalse(batch2.isDone());
+
+        release.countDown();
+        assertTrue(batch1.get(5, TimeUnit.SECONDS));
+        assertEquals("batch", batch2.get(5, TimeUnit.SECONDS));
+        assertEquals(0, underTest.getBatchWaiting());
+    }
+
+}
@@ -0,0 +1,125 @@
+package net.consensys.tools.ipfs.ipfsstore.test.concurrency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.consensys.tools.ipfs.ipfsstore.concurrency.UploadBudget;
+import net.consensys.tools.ipfs.ipfsstore.exception.PayloadTooLargeException;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceUnavailableException;
+
+public class UploadBudgetTest {
+
+    private UploadBudget underTest;
+
+    @Before
+    public void setup() {
+        underTest = new UploadBudget(100, 50, 5);
+    }
+
+    @After
+    public void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    public void acquireSuccessTest() throws Exception {
+
+        // #################################################
+        long reserved = underTest.acquire(60).get();
+        // #################################################
+
+        assertEquals(60, reserved);
+        assertEquals(60, underTest.getUsed());
+
+        underTest.release(reserved);
+        assertEquals(0, underTest.getUsed());
+    }
+
+    @Test
+    public void acquireLargerThanCapacityTest() throws Exception {
+
+        // #################################################
+        CompletableFuture<Long> reserved = underTest.acquire(500);
+        // #################################################
+
+        assertEquals(PayloadTooLargeException.class, cause(reserved).getClass());
+        assertEquals(1, underTest.getTooLarge());
+        assertEquals(0, underTest.getUsed());
+    }
+
+    @Test
+    public void acquireRejectedTest() throws Exception {
+        underTest.acquire(60).get();
+
+        // #################################################
+        CompletableFuture<Long> reserved = underTest.acquire(60);
+        // #################################################
+
+        Throwable cause = cause(reserved);
+        assertEquals(ServiceUnavailableException.class, cause.getClass());
+        assertEquals(5, ((ServiceUnavailableException) cause).getRetryAfter());
+        assertEquals(1, underTest.getRejected());
+        assertEquals(60, underTest.getUsed());
+        assertEquals(0, underTest.getWaiting());
+    }
+
+    @Test
+    public void acquireWaitTest() throws Exception {
+        underTest = new UploadBudget(100, 5000, 5);
+        long reserved = underTest.acquire(60).get();
+
+        CompletableFuture<Long> first = underTest.acquire(60);
+        CompletableFuture<Long> second = underTest.acquire(10); // fits, but doesn't overtake the first
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(2, underTest.getWaiting());
+
+        // #################################################
+        underTest.release(reserved);
+        // #################################################
+
+        assertEquals(60L, (long) first.get(5, TimeUnit.SECONDS));
+        assertEquals(10L, (long) second.get(5, TimeUnit.SECONDS));
+        assertEquals(70, underTest.getUsed());
+        assertEquals(0, underTest.getWaiting());
+    }
+
+    @Test
+    public void acquireCancelTest() throws Exception {
+        underTest = new UploadBudget(100, 5000, 5);
+        long reserved = underTest.acquire(60).get();
+
+        CompletableFuture<Long> first = underTest.acquire(60);
+        CompletableFuture<Long> second = underTest.acquire(40);
+
+        // #################################################
+        first.cancel(false);
+        // #################################################
+
+        assertTrue(first.isCancelled());
+        assertEquals(40L, (long) second.get(5, TimeUnit.SECONDS)); // no longer blocked by the first
+        underTest.release(reserved);
+        assertEquals(40, underTest.getUsed());
+    }
+
+    private static Throwable cause(CompletableFuture<Long> future) throws InterruptedException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+            return ex.getCause();
+        } catch (TimeoutException ex) {
+            throw new AssertionError("Future not completed");
+        }
+        throw new AssertionError("Exception expected");
+    }
+}
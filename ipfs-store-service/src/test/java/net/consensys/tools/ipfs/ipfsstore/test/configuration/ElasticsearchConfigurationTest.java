@@ -0,0 +1,50 @@
+package net.consensys.tools.ipfs.ipfsstore.test.configuration;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.common.transport.TransportAddress;
+import org.junit.Test;
+
+import net.consensys.tools.ipfs.ipfsstore.configuration.ElasticsearchConfiguration;
+
+public class ElasticsearchConfigurationTest {
+
+    @Test
+    public void parseClusterNodesTest() {
+
+        // #################################################
+        List<TransportAddress> addresses = ElasticsearchConfiguration.parseClusterNodes(" 127.0.0.1:9301, 127.0.0.2 ,,es-node.invalid:9300,127.0.0.3: 9302");
+        // #################################################
+
+        assertEquals("127.0.0.1:9301, 127.0.0.2:9300, 127.0.0.3:9302", addresses.stream() // default port, unresolved node skipped
+                .map(address -> address.getAddress() + ":" + address.getPort())
+                .collect(Collectors.joining(", ")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseClusterNodesNoneResolvedTest() {
+
+        // #################################################
+        ElasticsearchConfiguration.parseClusterNodes("es-node1.invalid:9300,es-node2.invalid:9300");
+        // #################################################
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseClusterNodesEmptyTest() {
+
+        // #################################################
+        ElasticsearchConfiguration.parseClusterNodes(" , ");
+        // #################################################
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseClusterNodesInvalidPortTest() {
+
+        // #################################################
+        ElasticsearchConfiguration.parseClusterNodes("127.0.0.1:9300,127.0.0.2:http");
+        // #################################################
+    }
+}
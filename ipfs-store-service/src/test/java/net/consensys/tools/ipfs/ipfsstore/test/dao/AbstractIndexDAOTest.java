@@ -0,0 +1,336 @@
+package net.consensys.tools.ipfs.ipfsstore.test.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationBucket;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationRange;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
+
+/**
+ * Contract of the embedded implementations of IndexDao (same semantics): each implementation runs these tests and
+ * adds its own
+ */
+public abstract class AbstractIndexDAOTest<T extends IndexDao> {
+
+    protected static final String INDEX = "Documents";
+    protected static final String HASH = "QmNN4RaVXNMVaEPLrmS7SUQpPZEQ2eJ6s5WxLw9w4GTm34";
+    protected static final long DAY = 24 * 3600 * 1000L;
+
+    protected T underTest;
+
+    /**
+     * @return Implementation under test (empty)
+     */
+    protected abstract T create() throws Exception;
+
+    /**
+     * Release the implementation under test
+     */
+    protected void destroy() {
+    }
+
+    @Before
+    public void setup() throws Exception {
+        underTest = create();
+
+        index("1", "Hello Doc", "Gregoire Jeanmart", 10, 4.5, 0);
+        index("2", "Hello World", "John Doe", 3, 2.0, DAY);
+        index("3", "Goodbye", "John Doe", 7, 3.5, 2 * DAY + 1);
+        index("4", "Another doc", "Jane Roe", 1, 1.0, 4 * DAY);
+    }
+
+    @After
+    public void tearDown() {
+        destroy();
+    }
+
+    @Test
+    public void indexAndSearchByIdTest() throws DaoException, NotFoundException {
+
+        // #################################################
+        Metadata metadata = underTest.searchById(INDEX, "1");
+        underTest.index(INDEX, "1", HASH, "application/pdf", Arrays.asList(new IndexField("votes", 11), new IndexField("tag", "new")));
+        Metadata updated = underTest.searchById(INDEX, "1");
+        // #################################################
+
+        assertEquals("documents", metadata.getIndexName());
+        assertEquals("1", metadata.getDocumentId());
+        assertEquals(HASH + "1", metadata.getHash());
+        assertEquals("application/pdf", metadata.getContentType());
+        assertEquals("Hello Doc", metadata.getIndexFieldValue("title"));
+        assertEquals(10, metadata.getIndexFieldValue("votes"));
+
+        // New fields merged into the document
+        assertEquals(HASH, updated.getHash());
+        assertEquals("Hello Doc", updated.getIndexFieldValue("title"));
+        assertEquals(11, updated.getIndexFieldValue("votes"));
+        assertEquals("new", updated.getIndexFieldValue("tag"));
+        assertEquals(4, underTest.count(INDEX, null));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void searchByIdNotFoundTest() throws DaoException, NotFoundException {
+        underTest.searchById(INDEX, "unknown");
+    }
+
+    @Test(expected = DaoException.class)
+    public void searchUnknownIndexTest() throws DaoException {
+        underTest.search(new PageRequest(0, 20), "unknown", null);
+    }
+
+    @Test
+    public void searchTest() throws DaoException {
+
+        // #################################################
+        // #################################################
+
+        assertEquals(Arrays.asList("1"), ids(Query.newQuery().equals("__hash", (HASH + "1").toLowerCase())));
+        assertEquals(Arrays.asList("2", "3"), ids(Query.newQuery().equals("author", "john doe")));
+        assertEquals(Arrays.asList("1", "4"), ids(Query.newQuery().notEquals("author", "John Doe")));
+        assertEquals(Arrays.asList("1", "2"), ids(Query.newQuery().contains("title", "hello")));
+        assertEquals(Arrays.asList("1", "4"), ids(Query.newQuery().fullText(new String[]{"title", "author"}, "doc")));
+        assertEquals(Arrays.asList("1", "4"), ids(Query.newQuery().in("author", "Jane Roe", "Gregoire Jeanmart")));
+        assertEquals(Arrays.asList("2", "4"), ids(Query.newQuery().lessThan("votes", "5")));
+        assertEquals(Arrays.asList("2", "3", "4"), ids(Query.newQuery().lessThanOrEquals("votes", 7)));
+        assertEquals(Arrays.asList("1"), ids(Query.newQuery().greaterThan("votes", 7.5)));
+        assertEquals(Arrays.asList("1", "3"), ids(Query.newQuery().greaterThanOrEquals("rating", 3.5)));
+        assertEquals(Arrays.asList("3"), ids(Query.newQuery().greaterThan("rating", 2.0).lessThan("rating", 4.5)));
+        assertEquals(Arrays.asList(), ids(Query.newQuery().equals("unknown", "value")));
+        assertEquals(2, underTest.count(INDEX, Query.newQuery().equals("author", "John Doe")));
+    }
+
+    @Test
+    public void sortAndPageTest() throws DaoException {
+
+        // #################################################
+        List<Metadata> page1 = underTest.search(new PageRequest(0, 3, new Sort(Sort.Direction.DESC, "votes")), INDEX, null);
+        List<Metadata> page2 = underTest.search(new PageRequest(1, 3, new Sort(Sort.Direction.DESC, "votes")), INDEX, null);
+        List<Metadata> byTitle = underTest.search(new PageRequest(0, 10, new Sort(Sort.Direction.ASC, "title")), INDEX, null);
+        // #################################################
+
+        assertEquals(Arrays.asList("1", "3", "2"), page1.stream().map(Metadata::getDocumentId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("4"), page2.stream().map(Metadata::getDocumentId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("4", "3", "1", "2"), byTitle.stream().map(Metadata::getDocumentId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void searchAndAggregateTest() throws DaoException {
+
+        Query query = Query.newQuery()
+                .terms("authors", "author", 10)
+                .range("votes", "votes", new AggregationRange("low", null, 5.0), new AggregationRange("high", 5.0, null))
+                .dateHistogram("days", "date_created", "1d")
+                .cardinality("count", "author");
+
+        // #################################################
+        AggregatedPage<Metadata> result = underTest.searchAndAggregate(new PageRequest(0, 2), INDEX, query);
+        // #################################################
+
+        assertEquals(2, result.getContent().size());
+        assertEquals(4, result.getTotalElements());
+
+        List<AggregationBucket> authors = result.getAggregation("authors").getBuckets();
+        assertEquals("John Doe", authors.get(0).getKey());
+        assertEquals(2, authors.get(0).getCount());
+        assertEquals(3, authors.size());
+
+        List<AggregationBucket> votes = result.getAggregation("votes").getBuckets();
+        assertEquals(2, votes.get(0).getCount());
+        assertEquals(2, votes.get(1).getCount());
+
+        List<AggregationBucket> days = result.getAggregation("days").getBuckets();
+        assertEquals("1970-01-01T00:00:00.000Z", days.get(0).getKey());
+        assertEquals(Arrays.asList(1L, 1L, 1L, 0L, 1L), days.stream().map(AggregationBucket::getCount).collect(Collectors.toList()));
+
+        assertEquals(Long.valueOf(3), result.getAggregation("count").getValue());
+    }
+
+    @Test
+    public void updateTest() throws DaoException, NotFoundException {
+
+        // #################################################
+        underTest.index(INDEX, "2", HASH, "text/plain", Arrays.asList(new IndexField("author", "Jane Roe"), new IndexField("votes", 12)));
+        // #################################################
+
+        assertEquals(4, underTest.count(INDEX, null));
+        assertEquals(Arrays.asList("2", "4"), ids(Query.newQuery().equals("author", "jane roe")));
+        assertEquals(Arrays.asList("1", "3"), ids(Query.newQuery().notEquals("author", "jane roe")));
+        assertEquals(Arrays.asList("1", "2"), ids(Query.newQuery().greaterThanOrEquals("votes", 10)));
+        assertEquals(Arrays.asList("2"), ids(Query.newQuery().contains("title", "world"))); // fields kept
+    }
+
+    @Test
+    public void updateFieldsTest() throws Exception {
+        Metadata before = underTest.searchById(INDEX, "2");
+
+        // #################################################
+        Metadata updated = underTest.update(INDEX, "2", Arrays.asList(new IndexField("votes", 12), new IndexField("tag", "new")), before.getVersion());
+        // #################################################
+
+        assertEquals(Long.valueOf(1), before.getVersion());
+        assertEquals(Long.valueOf(2), updated.getVersion());
+        assertEquals(HASH + "2", updated.getHash()); // content unchanged
+        assertEquals("Hello World", updated.getIndexFieldValue("title"));
+        assertEquals(12, updated.getIndexFieldValue("votes"));
+        assertEquals(null, updated.getIndexFieldValue("_version"));
+        assertEquals(Long.valueOf(2), underTest.searchById(INDEX, "2").getVersion());
+        assertEquals(Arrays.asList("1", "2"), ids(Query.newQuery().greaterThanOrEquals("votes", 10)));
+        assertEquals(Arrays.asList("2"), ids(Query.newQuery().equals("tag", "new")));
+    }
+
+    @Test
+    public void updateVersionConflictTest() throws Exception {
+        underTest.update(INDEX, "2", Arrays.asList(new IndexField("votes", 12)), 1L);
+
+        try {
+            // #################################################
+            underTest.update(INDEX, "2", Arrays.asList(new IndexField("votes", 13)), 1L); // stale version
+            // #################################################
+            fail("VersionConflictException expected");
+        } catch (VersionConflictException ex) {
+            // expected
+        }
+
+        assertEquals(12, underTest.searchById(INDEX, "2").getIndexFieldValue("votes"));
+        assertEquals(Long.valueOf(3), underTest.update(INDEX, "2", Arrays.asList(new IndexField("votes", 14)), null).getVersion());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void updateNotFoundTest() throws Exception {
+        underTest.update(INDEX, "unknown", Arrays.asList(new IndexField("votes", 1)), null);
+    }
+
+    @Test
+    public void deleteTest() throws DaoException, NotFoundException {
+
+        // #################################################
+        underTest.delete(INDEX, "2");
+        long deleted = underTest.delete(INDEX, Arrays.asList("3", "unknown"));
+        // #################################################
+
+        assertEquals(1, deleted);
+        assertEquals(2, underTest.count(INDEX, null));
+        assertEquals(Arrays.asList("4"), ids(Query.newQuery().lessThan("votes", 5)));
+        assertEquals(Arrays.asList(), ids(Query.newQuery().equals("author", "john doe")));
+
+        try {
+            underTest.searchById(INDEX, "2");
+            fail("Document deleted");
+        } catch (NotFoundException ex) {
+            // expected
+        }
+
+        // Deleted then indexed again: a new document
+        underTest.index(INDEX, "2", HASH, "text/plain", Arrays.asList(new IndexField("votes", 2)));
+        assertEquals(null, underTest.searchById(INDEX, "2").getIndexFieldValue("title"));
+        assertEquals(Arrays.asList("2", "4"), ids(Query.newQuery().lessThan("votes", 5)));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void deleteNotFoundTest() throws DaoException, NotFoundException {
+        underTest.delete(INDEX, "unknown");
+    }
+
+    @Test
+    public void countAllTest() throws Exception {
+        underTest.index("archive", "1", HASH + "1", "application/pdf", null); // same content in another index
+
+        // #################################################
+        long shared = underTest.countAll(Query.newQuery().equals(IndexDao.HASH_INDEX_KEY, (HASH + "1").toLowerCase()));
+        long single = underTest.countAll(Query.newQuery().equals(IndexDao.HASH_INDEX_KEY, (HASH + "2").toLowerCase()));
+        // #################################################
+
+        assertEquals(2, shared);
+        assertEquals(1, single);
+    }
+
+    @Test
+    public void scrollTest() throws DaoException, NotFoundException {
+        underTest.delete(INDEX, "2");
+        List<Integer> batches = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+
+        // #################################################
+        long read = underTest.scroll(INDEX, 2, documents -> {
+            batches.add(documents.size());
+            documents.forEach(document -> ids.add(document.getDocumentId()));
+        });
+        // #################################################
+
+        assertEquals(3, read);
+        assertEquals(Arrays.asList(2, 1), batches);
+        assertEquals(Arrays.asList("1", "3", "4"), ids); // indexing order
+    }
+
+    @Test
+    public void aliasTest() throws DaoException, NotFoundException {
+        underTest.index("documents_v2", "1", HASH, "text/plain", Arrays.asList(new IndexField("title", "Reindexed")));
+
+        // #################################################
+        underTest.alias("docs", INDEX);
+        long before = underTest.count("docs", null);
+        underTest.alias("docs", "documents_v2"); // swap
+        long after = underTest.count("docs", null);
+        // #################################################
+
+        assertEquals(4, before);
+        assertEquals(1, after);
+        assertEquals(4, underTest.count(INDEX, null)); // previous index kept
+        assertEquals("Reindexed", underTest.searchById("docs", "1").getIndexFieldValue("title"));
+    }
+
+    @Test(expected = DaoException.class)
+    public void aliasIndexNameTest() throws DaoException {
+        underTest.index("documents_v2", "1", HASH, "text/plain", null);
+        underTest.alias(INDEX, "documents_v2");
+    }
+
+    @Test
+    public void isIndexTest() throws DaoException {
+        underTest.alias("docs", INDEX);
+
+        // #################################################
+        // #################################################
+
+        assertTrue(underTest.isIndex(INDEX));
+        assertFalse(underTest.isIndex("docs")); // alias
+        assertFalse(underTest.isIndex("unknown"));
+    }
+
+    protected void index(String id, String title, String author, int votes, double rating, long date) throws DaoException {
+        underTest.index(INDEX, id, HASH + id, "application/pdf", Arrays.asList(
+                new IndexField("title", title),
+                new IndexField("author", author),
+                new IndexField("votes", votes),
+                new IndexField("rating", rating),
+                new IndexField("date_created", date)));
+    }
+
+    protected List<String> ids(Query query) throws DaoException {
+        return underTest.search(new PageRequest(0, 20, new Sort("votes").and(new Sort("title"))), INDEX, query).stream()
+                .map(Metadata::getDocumentId)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -1,6 +1,7 @@
 package net.consensys.tools.ipfs.ipfsstore.test.dao;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
@@ -16,6 +17,7 @@ import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import org.assertj.core.util.Arrays;
+import org.elasticsearch.ElasticsearchTimeoutException;
 import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
@@ -35,10 +37,17 @@ import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.AdminClient;
 import org.elasticsearch.client.IndicesAdminClient;
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+import org.elasticsearch.search.aggregations.metrics.cardinality.CardinalityAggregationBuilder;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.json.JSONException;
 import org.junit.Before;
@@ -64,13 +73,18 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
 import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
 import net.consensys.tools.ipfs.ipfsstore.dao.impl.ElasticSearchIndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationResult;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationType;
 import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
 import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
 import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.SlowQueryLog;
 
 @RunWith(PowerMockRunner.class)
 @PowerMockRunnerDelegate(SpringJUnit4ClassRunner.class)
@@ -1374,6 +1388,143 @@ public class ElasticSearchDAOTest {
 
     }
 
+    @Test
+    public void searchTimedOutRecordedTest() throws JSONException {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(0, 300, 10);
+        underTest = new ElasticSearchIndexDao(client, slowQueryLog);
+
+        // Mock
+        ListenableActionFuture listenableActionFuture = mock(ListenableActionFuture.class);
+
+        SearchRequestBuilder searchRequestBuilder = mock(SearchRequestBuilder.class);
+        PowerMockito.when(client.prepareSearch(anyString())).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.setSearchType(eq(SearchType.DFS_QUERY_THEN_FETCH))).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.setQuery(any(QueryBuilder.class))).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.setFrom(anyInt())).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.setSize(anyInt())).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.execute()).thenReturn(listenableActionFuture);
+        when(listenableActionFuture.actionGet(any(TimeValue.class))).thenThrow(new ElasticsearchTimeoutException("Timeout waiting for task."));
+
+        // #################################################
+        try (RequestContext.Scope scope = RequestContext.withTimeout(60000).attach()) {
+            underTest.search(new PageRequest(0, 20), indexName, null);
+            fail("Search timed out");
+        } catch (DaoException ex) {
+            // expected
+        }
+        // #################################################
+
+        assertEquals(1, slowQueryLog.top().size()); // recorded without response
+        assertEquals("search", slowQueryLog.top().get(0).getOperation());
+        assertEquals(indexName, slowQueryLog.top().get(0).getIndex());
+    }
+
+
+    // #########################################################
+    // ####################### searchAndAggregate
+    // #########################################################
+
+    @Test
+    public void searchAndAggregateSuccessTest() throws DaoException, JSONException {
+        int pageNo = 0;
+        int pageSize = 20;
+        long total = 42;
+        Pageable pagination = new PageRequest(pageNo, pageSize);
+
+        String hash = "QmNN4RaVXNMVaEPLrmS7SUQpPZEQ2eJ6s5WxLw9w4GTm34";
+        String contentType = "application/pdf";
+        String documentId = "123";
+
+        Query query = Query.newQuery()
+                .equals("status", "published")
+                .terms("by_author", "author", 5)
+                .cardinality("authors", "author");
+
+        // Mock
+        Map<String, Object> sourceMap = new HashMap<>();
+        sourceMap.put(IndexDao.HASH_INDEX_KEY, hash);
+        sourceMap.put(IndexDao.CONTENT_TYPE_INDEX_KEY, contentType);
+
+        SearchHit searchHit1 = mock(SearchHit.class);
+        when(searchHit1.getSourceAsMap()).thenReturn(sourceMap);
+        when(searchHit1.getId()).thenReturn(documentId);
+        when(searchHit1.getIndex()).thenReturn(indexName);
+
+        SearchHits searchHits = mock(SearchHits.class);
+        when(searchHits.getHits()).thenReturn(Arrays.array(searchHit1));
+        when(searchHits.getTotalHits()).thenReturn(total);
+
+        Terms.Bucket bucket1 = mock(Terms.Bucket.class);
+        when(bucket1.getKeyAsString()).thenReturn("Gregoire Jeanmart");
+        when(bucket1.getDocCount()).thenReturn(40L);
+        Terms.Bucket bucket2 = mock(Terms.Bucket.class);
+        when(bucket2.getKeyAsString()).thenReturn("Joshua Cassidy");
+        when(bucket2.getDocCount()).thenReturn(2L);
+        List<Terms.Bucket> buckets = new ArrayList<>();
+        buckets.add(bucket1);
+        buckets.add(bucket2);
+
+        Terms terms = mock(Terms.class);
+        when(terms.getName()).thenReturn("by_author");
+        when(terms.getType()).thenReturn("sterms");
+        Mockito.doReturn(buckets).when(terms).getBuckets();
+
+        Cardinality cardinality = mock(Cardinality.class);
+        when(cardinality.getName()).thenReturn("authors");
+        when(cardinality.getValue()).thenReturn(2L);
+
+        List<org.elasticsearch.search.aggregations.Aggregation> aggregationList = new ArrayList<>();
+        aggregationList.add(terms);
+        aggregationList.add(cardinality);
+
+        SearchResponse searchResponse = mock(SearchResponse.class);
+        when(searchResponse.getHits()).thenReturn(searchHits);
+        when(searchResponse.getAggregations()).thenReturn(new Aggregations(aggregationList));
+
+        ListenableActionFuture listenableActionFuture = mock(ListenableActionFuture.class);
+
+        SearchRequestBuilder searchRequestBuilder = mock(SearchRequestBuilder.class);
+        PowerMockito.when(client.prepareSearch(anyString())).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.setSearchType(eq(SearchType.DFS_QUERY_THEN_FETCH))).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.setQuery(any(QueryBuilder.class))).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.setFrom(anyInt())).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.setSize(anyInt())).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.addAggregation(any(AggregationBuilder.class))).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.execute()).thenReturn(listenableActionFuture);
+        when(listenableActionFuture.actionGet()).thenReturn(searchResponse);
+
+        // #################################################
+        AggregatedPage<Metadata> searchResult = underTest.searchAndAggregate(pagination, indexName, query);
+        // #################################################
+
+        // Hits and aggregations are retrieved in a single request
+        Mockito.verify(client, Mockito.times(1)).prepareSearch(anyString());
+        Mockito.verify(listenableActionFuture, Mockito.times(1)).actionGet();
+
+        ArgumentCaptor<AggregationBuilder> argumentCaptorAggregation = ArgumentCaptor.forClass(AggregationBuilder.class);
+        Mockito.verify(searchRequestBuilder, Mockito.times(2)).addAggregation(argumentCaptorAggregation.capture());
+        List<AggregationBuilder> aggregationsCaptured = argumentCaptorAggregation.getAllValues();
+        TermsAggregationBuilder termsCaptured = (TermsAggregationBuilder) aggregationsCaptured.get(0);
+        assertEquals("by_author", termsCaptured.getName());
+        assertEquals("author", termsCaptured.field());
+        CardinalityAggregationBuilder cardinalityCaptured = (CardinalityAggregationBuilder) aggregationsCaptured.get(1);
+        assertEquals("authors", cardinalityCaptured.getName());
+        assertEquals("author", cardinalityCaptured.field());
+
+        assertEquals(total, searchResult.getTotalElements());
+        assertEquals(1, searchResult.getContent().size());
+        assertEquals(hash, searchResult.getContent().get(0).getHash());
+
+        assertEquals(2, searchResult.getAggregations().size());
+        AggregationResult byAuthor = searchResult.getAggregation("by_author");
+        assertEquals(AggregationType.terms, byAuthor.getType());
+        assertEquals(2, byAuthor.getBuckets().size());
+        assertEquals("Gregoire Jeanmart", byAuthor.getBuckets().get(0).getKey());
+        assertEquals(40L, byAuthor.getBuckets().get(0).getCount());
+        AggregationResult authors = searchResult.getAggregation("authors");
+        assertEquals(AggregationType.cardinality, authors.getType());
+        assertEquals(Long.valueOf(2), authors.getValue());
+    }
 
     // #########################################################
     // ####################### count
@@ -0,0 +1,281 @@
+package net.consensys.tools.ipfs.ipfsstore.test.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.http.StatusLine;
+import org.assertj.core.util.Arrays;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.modules.junit4.PowerMockRunnerDelegate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.ElasticSearchRestIndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockRunnerDelegate(SpringJUnit4ClassRunner.class)
+public class ElasticSearchRestDAOTest {
+
+    private IndexDao underTest;
+
+    private RestHighLevelClient client;
+    private RestClient lowLevelClient;
+
+    private final String indexName = "myIndex";
+
+    @Before
+    public void setup() {
+        client = mock(RestHighLevelClient.class);
+        lowLevelClient = mock(RestClient.class);
+
+        underTest = new ElasticSearchRestIndexDao(client, lowLevelClient);
+    }
+
+
+    // #########################################################
+    // ####################### index
+    // #########################################################
+
+    @Test
+    public void indexCreateSuccessTest() throws DaoException, IOException {
+
+        String hash = "QmNN4RaVXNMVaEPLrmS7SUQpPZEQ2eJ6s5WxLw9w4GTm34";
+        String contentType = "application/pdf";
+        String documentId = "123";
+
+        // Mock
+        IndexResponse response = mock(IndexResponse.class);
+        when(response.getId()).thenReturn(documentId);
+        when(client.exists(any(GetRequest.class))).thenReturn(false);
+        when(client.index(any(IndexRequest.class))).thenReturn(response);
+
+        // #################################################
+        String hashReturned = underTest.index(indexName, documentId, hash, contentType, ElasticSearchDAOTest.getIndexFields("test", "test123"));
+        // #################################################
+
+        ArgumentCaptor<IndexRequest> argumentCaptorRequest = ArgumentCaptor.forClass(IndexRequest.class);
+        Mockito.verify(client, Mockito.times(1)).index(argumentCaptorRequest.capture());
+        IndexRequest requestCaptured = argumentCaptorRequest.getValue();
+
+        assertEquals(indexName.toLowerCase(), requestCaptured.index());
+        assertEquals(documentId, requestCaptured.id());
+        assertEquals(hash, requestCaptured.sourceAsMap().get(IndexDao.HASH_INDEX_KEY));
+        assertEquals(documentId, hashReturned);
+
+        // Index refreshed
+        Mockito.verify(lowLevelClient, Mockito.times(1)).performRequest(eq("POST"), eq("/" + indexName + "/_refresh"));
+    }
+
+    // #########################################################
+    // ####################### searchById
+    // #########################################################
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void searchByIdSuccessTest() throws DaoException, NotFoundException {
+
+        String hash = "QmNN4RaVXNMVaEPLrmS7SUQpPZEQ2eJ6s5WxLw9w4GTm34";
+        String contentType = "application/pdf";
+        String documentId = "123";
+
+        // Mock
+        Map<String, Object> sourceMap = new HashMap<>();
+        sourceMap.put(IndexDao.HASH_INDEX_KEY, hash);
+        sourceMap.put(IndexDao.CONTENT_TYPE_INDEX_KEY, contentType);
+
+        GetResponse response = mock(GetResponse.class);
+        when(response.isExists()).thenReturn(true);
+        when(response.getIndex()).thenReturn(indexName);
+        when(response.getId()).thenReturn(documentId);
+        when(response.getSourceAsMap()).thenReturn(sourceMap);
+
+        Mockito.doAnswer(invocation -> {
+            ((ActionListener<GetResponse>) invocation.getArguments()[1]).onResponse(response);
+            return null;
+        }).when(client).getAsync(any(GetRequest.class), any(ActionListener.class));
+
+        // #################################################
+        Metadata metadata = underTest.searchById(indexName, documentId);
+        // #################################################
+
+        assertEquals(indexName, metadata.getIndexName());
+        assertEquals(documentId, metadata.getDocumentId());
+        assertEquals(hash, metadata.getHash());
+        assertEquals(contentType, metadata.getContentType());
+    }
+
+    @Test(expected = NotFoundException.class)
+    @SuppressWarnings("unchecked")
+    public void searchByIdNotFoundExceptionTest() throws DaoException, NotFoundException {
+
+        // Mock
+        GetResponse response = mock(GetResponse.class);
+        when(response.isExists()).thenReturn(false);
+
+        Mockito.doAnswer(invocation -> {
+            ((ActionListener<GetResponse>) invocation.getArguments()[1]).onResponse(response);
+            return null;
+        }).when(client).getAsync(any(GetRequest.class), any(ActionListener.class));
+
+        // #################################################
+        underTest.searchById(indexName, "123");
+        // #################################################
+    }
+
+    // #########################################################
+    // ####################### search
+    // #########################################################
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void searchAsyncSuccessTest() throws InterruptedException, ExecutionException {
+
+        String hash = "QmNN4RaVXNMVaEPLrmS7SUQpPZEQ2eJ6s5WxLw9w4GTm34";
+        Pageable pagination = new PageRequest(2, 20);
+
+        // Mock
+        Map<String, Object> sourceMap = new HashMap<>();
+        sourceMap.put(IndexDao.HASH_INDEX_KEY, hash);
+
+        SearchHit searchHit = mock(SearchHit.class);
+        when(searchHit.getSourceAsMap()).thenReturn(sourceMap);
+        when(searchHit.getId()).thenReturn("123");
+        when(searchHit.getIndex()).thenReturn(indexName);
+
+        SearchHits searchHits = mock(SearchHits.class);
+        when(searchHits.getHits()).thenReturn(Arrays.array(searchHit));
+
+        SearchResponse searchResponse = mock(SearchResponse.class);
+        when(searchResponse.getHits()).thenReturn(searchHits);
+
+        Mockito.doAnswer(invocation -> {
+            ((ActionListener<SearchResponse>) invocation.getArguments()[1]).onResponse(searchResponse);
+            return null;
+        }).when(client).searchAsync(any(SearchRequest.class), any(ActionListener.class));
+
+        // #################################################
+        CompletableFuture<List<Metadata>> future = underTest.searchAsync(pagination, indexName, Query.newQuery().equals("author", "Gregoire Jeanmart"));
+        // #################################################
+
+        ArgumentCaptor<SearchRequest> argumentCaptorRequest = ArgumentCaptor.forClass(SearchRequest.class);
+        Mockito.verify(client, Mockito.times(1)).searchAsync(argumentCaptorRequest.capture(), any(ActionListener.class));
+        SearchRequest requestCaptured = argumentCaptorRequest.getValue();
+
+        assertEquals(indexName, requestCaptured.indices()[0]);
+        assertEquals(SearchType.DFS_QUERY_THEN_FETCH, requestCaptured.searchType());
+        assertEquals(40, requestCaptured.source().from());
+        assertEquals(20, requestCaptured.source().size());
+        assertTrue(requestCaptured.source().query().toString().contains("Gregoire Jeanmart"));
+
+        List<Metadata> result = future.get();
+        assertEquals(1, result.size());
+        assertEquals(hash, result.get(0).getHash());
+    }
+
+    @Test(expected = DaoException.class)
+    @SuppressWarnings("unchecked")
+    public void searchUnexpectedExceptionTest() throws DaoException {
+
+        // Mock
+        Mockito.doAnswer(invocation -> {
+            ((ActionListener<SearchResponse>) invocation.getArguments()[1]).onFailure(new IOException("connection refused"));
+            return null;
+        }).when(client).searchAsync(any(SearchRequest.class), any(ActionListener.class));
+
+        // #################################################
+        underTest.search(new PageRequest(0, 20), indexName, null);
+        // #################################################
+    }
+
+    // #########################################################
+    // ####################### count
+    // #########################################################
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void countSuccessTest() throws DaoException {
+
+        long total = 10;
+
+        // Mock
+        SearchHits searchHits = mock(SearchHits.class);
+        when(searchHits.getTotalHits()).thenReturn(total);
+
+        SearchResponse searchResponse = mock(SearchResponse.class);
+        when(searchResponse.getHits()).thenReturn(searchHits);
+
+        Mockito.doAnswer(invocation -> {
+            ((ActionListener<SearchResponse>) invocation.getArguments()[1]).onResponse(searchResponse);
+            return null;
+        }).when(client).searchAsync(any(SearchRequest.class), any(ActionListener.class));
+
+        // #################################################
+        long count = underTest.count(indexName, null);
+        // #################################################
+
+        ArgumentCaptor<SearchRequest> argumentCaptorRequest = ArgumentCaptor.forClass(SearchRequest.class);
+        Mockito.verify(client, Mockito.times(1)).searchAsync(argumentCaptorRequest.capture(), any(ActionListener.class));
+        assertEquals(0, argumentCaptorRequest.getValue().source().size());
+
+        assertEquals(total, count);
+    }
+
+    // #########################################################
+    // ####################### createIndex
+    // #########################################################
+
+    @Test
+    public void createIndexSuccessTest() throws DaoException, IOException {
+
+        // Mock
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(404);
+        Response response = mock(Response.class);
+        when(response.getStatusLine()).thenReturn(statusLine);
+        when(lowLevelClient.performRequest(anyString(), anyString())).thenReturn(response);
+
+        // #################################################
+        underTest.createIndex(indexName);
+        // #################################################
+
+        Mockito.verify(lowLevelClient, Mockito.times(1)).performRequest(eq("HEAD"), eq("/" + indexName));
+        Mockito.verify(lowLevelClient, Mockito.times(1)).performRequest(eq("PUT"), eq("/" + indexName));
+    }
+
+}
@@ -0,0 +1,132 @@
+package net.consensys.tools.ipfs.ipfsstore.test.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.LuceneIndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+
+public class LuceneDAOTest extends AbstractIndexDAOTest<LuceneIndexDao> {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Override
+    protected LuceneIndexDao create() {
+        return new LuceneIndexDao(folder.getRoot().getPath(), 0);
+    }
+
+    @Override
+    protected void destroy() {
+        underTest.destroy();
+    }
+
+    @Test
+    public void reopenTest() throws DaoException, NotFoundException {
+
+        // #################################################
+        underTest.destroy();
+        underTest = new LuceneIndexDao(folder.getRoot().getPath(), 0);
+        // #################################################
+
+        assertEquals(4, underTest.count(INDEX, null));
+        assertEquals("Hello Doc", underTest.searchById(INDEX, "1").getIndexFieldValue("title"));
+        assertEquals(Arrays.asList("2", "4"), ids(Query.newQuery().lessThan("votes", 5))); // field types kept
+    }
+
+    @Test
+    public void refreshIntervalTest() throws DaoException, NotFoundException {
+        underTest.destroy();
+        underTest = new LuceneIndexDao(folder.getRoot().getPath(), 60000);
+
+        // #################################################
+        underTest.index(INDEX, "5", HASH, "text/plain", Arrays.asList(new IndexField("title", "Not yet")));
+        // #################################################
+
+        assertEquals(4, underTest.count(INDEX, null)); // not refreshed
+        assertEquals("Not yet", underTest.searchById(INDEX, "5").getIndexFieldValue("title")); // real-time
+        assertNull(underTest.searchById(INDEX, "1").getIndexFieldValue("tag"));
+        assertTrue(ids(Query.newQuery().equals("title", "Not yet")).isEmpty());
+    }
+
+    @Test
+    public void deleteRealTimeTest() throws DaoException, NotFoundException {
+        underTest.destroy();
+        underTest = new LuceneIndexDao(folder.getRoot().getPath(), 60000);
+
+        // #################################################
+        underTest.delete(INDEX, "1");
+        // #################################################
+
+        assertEquals(4, underTest.count(INDEX, null)); // not refreshed
+        try {
+            underTest.searchById(INDEX, "1"); // real-time
+            fail("Document deleted");
+        } catch (NotFoundException ex) {
+            // expected
+        }
+        assertEquals(0, underTest.delete(INDEX, Arrays.asList("1")));
+        assertEquals(3, underTest.count(INDEX, null)); // refreshed by the batch deletion
+    }
+
+    @Test
+    public void countAllNotOpenedTest() throws Exception {
+        underTest.index("archive", "1", HASH + "1", "application/pdf", null); // same content in another index
+        folder.newFolder("not_an_index");
+        underTest.destroy();
+        underTest = new LuceneIndexDao(folder.getRoot().getPath(), 0); // indexes not opened yet
+
+        // #################################################
+        long shared = underTest.countAll(Query.newQuery().equals(IndexDao.HASH_INDEX_KEY, (HASH + "1").toLowerCase()));
+        // #################################################
+
+        assertEquals(2, shared);
+    }
+
+    @Test
+    public void scrollPointInTimeTest() throws DaoException {
+        List<String> ids = new ArrayList<>();
+
+        // #################################################
+        long read = underTest.scroll(INDEX, 2, documents -> {
+            documents.forEach(document -> ids.add(document.getDocumentId()));
+            try {
+                underTest.index(INDEX, "5", HASH + "5", "application/pdf", null); // written during the scroll
+            } catch (DaoException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        // #################################################
+
+        assertEquals(4, read);
+        assertEquals(Arrays.asList("1", "2", "3", "4"), ids); // point-in-time
+        assertEquals(5, underTest.count(INDEX, null));
+    }
+
+    @Test
+    public void aliasPersistedTest() throws DaoException, NotFoundException {
+        underTest.index("documents_v2", "1", HASH, "text/plain", Arrays.asList(new IndexField("title", "Reindexed")));
+        underTest.alias("docs", "documents_v2");
+
+        // #################################################
+        underTest.destroy();
+        underTest = new LuceneIndexDao(folder.getRoot().getPath(), 0);
+        // #################################################
+
+        assertEquals("Reindexed", underTest.searchById("docs", "1").getIndexFieldValue("title"));
+    }
+}
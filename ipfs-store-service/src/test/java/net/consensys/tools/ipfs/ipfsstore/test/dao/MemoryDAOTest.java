@@ -0,0 +1,58 @@
+package net.consensys.tools.ipfs.ipfsstore.test.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.MemoryIndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+
+public class MemoryDAOTest extends AbstractIndexDAOTest<MemoryIndexDao> {
+
+    @Override
+    protected MemoryIndexDao create() {
+        return new MemoryIndexDao();
+    }
+
+    @Test
+    public void unsortedTest() throws DaoException {
+
+        // #################################################
+        List<Metadata> unsorted = underTest.search(new PageRequest(1, 2, new Sort("unknown")), INDEX, null);
+        // #################################################
+
+        assertEquals(Arrays.asList("3", "4"), unsorted.stream().map(Metadata::getDocumentId).collect(Collectors.toList())); // indexing order
+    }
+
+    @Test
+    public void scrollCursorTest() throws DaoException {
+        List<Integer> batches = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+
+        // #################################################
+        long read = underTest.scroll(INDEX, 3, documents -> {
+            batches.add(documents.size());
+            documents.forEach(document -> ids.add(document.getDocumentId()));
+            try {
+                underTest.index(INDEX, "1", HASH, "text/plain", Arrays.asList(new IndexField("votes", 11))); // updated: not read again
+                underTest.index(INDEX, "5", HASH + "5", "application/pdf", null); // indexed during the scroll: read
+            } catch (DaoException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        // #################################################
+
+        assertEquals(5, read);
+        assertEquals(Arrays.asList(3, 2), batches);
+        assertEquals(Arrays.asList("1", "2", "3", "4", "5"), ids);
+    }
+}
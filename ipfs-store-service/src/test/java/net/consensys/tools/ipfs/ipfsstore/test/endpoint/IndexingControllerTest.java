@@ -0,0 +1,81 @@
+package net.consensys.tools.ipfs.ipfsstore.test.endpoint;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexQueueStatus;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexingStatus;
+import net.consensys.tools.ipfs.ipfsstore.endpoint.IndexingController;
+import net.consensys.tools.ipfs.ipfsstore.endpoint.RestExceptionHandler;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.service.writebehind.IndexQueue;
+
+public class IndexingControllerTest {
+
+    private static final String URI = "/ipfs-store/indexing";
+
+    private IndexQueue indexQueue;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setup() {
+        indexQueue = Mockito.mock(IndexQueue.class);
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new IndexingController(indexQueue))
+                .setControllerAdvice(new RestExceptionHandler())
+                .addPlaceholderValue("api.base", "/ipfs-store")
+                .addPlaceholderValue("api.indexing.uri", "/indexing")
+                .build();
+    }
+
+    @Test
+    public void queueStatusTest() throws Exception {
+        IndexQueueStatus queueStatus = new IndexQueueStatus();
+        queueStatus.setQueued(3);
+        queueStatus.setIndexed(10);
+        Mockito.when(indexQueue.getStatus()).thenReturn(queueStatus);
+
+        // #################################################
+        mockMvc.perform(get(URI))
+        // #################################################
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.queued").value(3))
+                .andExpect(jsonPath("$.indexed").value(10));
+    }
+
+    @Test
+    public void documentStatusTest() throws Exception {
+        IndexingStatus documentStatus = new IndexingStatus();
+        documentStatus.setIndexName("documents");
+        documentStatus.setDocumentId("doc1");
+        documentStatus.setState(IndexingStatus.State.failed);
+        documentStatus.setAttempts(5);
+        documentStatus.setError("mapper_parsing_exception");
+        Mockito.when(indexQueue.getStatus("documents", "doc1")).thenReturn(documentStatus);
+
+        // #################################################
+        mockMvc.perform(get(URI + "/documents/doc1"))
+        // #################################################
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("failed"))
+                .andExpect(jsonPath("$.attempts").value(5))
+                .andExpect(jsonPath("$.error").value("mapper_parsing_exception"));
+    }
+
+    @Test
+    public void documentStatusNotFoundTest() throws Exception {
+        Mockito.when(indexQueue.getStatus("documents", "unknown")).thenThrow(new NotFoundException("not found"));
+
+        // #################################################
+        mockMvc.perform(get(URI + "/documents/unknown"))
+        // #################################################
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,109 @@
+package net.consensys.tools.ipfs.ipfsstore.test.endpoint;
+
+import static org.mockito.Matchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexRequest;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexStatus;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexStatus.State;
+import net.consensys.tools.ipfs.ipfsstore.endpoint.ReindexController;
+import net.consensys.tools.ipfs.ipfsstore.endpoint.RestExceptionHandler;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.service.reindex.ReindexService;
+
+public class ReindexControllerTest {
+
+    private static final String URI = "/ipfs-store/reindex";
+
+    private ReindexService reindexService;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setup() {
+        reindexService = Mockito.mock(ReindexService.class);
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new ReindexController(reindexService))
+                .setControllerAdvice(new RestExceptionHandler())
+                .addPlaceholderValue("api.base", "/ipfs-store")
+                .addPlaceholderValue("api.reindex.uri", "/reindex")
+                .build();
+    }
+
+    @Test
+    public void startTest() throws Exception {
+        Mockito.when(reindexService.start(any(ReindexRequest.class))).thenReturn(reindexStatus("job", State.running));
+
+        // #################################################
+        mockMvc.perform(post(URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"source\": \"documents_v1\", \"target\": \"documents_v2\", \"alias\": \"documents\"}"))
+        // #################################################
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("job"))
+                .andExpect(jsonPath("$.state").value("running"));
+
+        Mockito.verify(reindexService).start(new ReindexRequest("documents_v1", null, "documents_v2", "documents", null, null));
+    }
+
+    @Test
+    public void statusesTest() throws Exception {
+        Mockito.when(reindexService.getStatuses()).thenReturn(Collections.singletonList(reindexStatus("job", State.completed)));
+
+        // #################################################
+        mockMvc.perform(get(URI))
+        // #################################################
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].state").value("completed"));
+    }
+
+    @Test
+    public void statusNotFoundTest() throws Exception {
+        Mockito.when(reindexService.getStatus("unknown")).thenThrow(new NotFoundException("Reindex unknown not found"));
+
+        // #################################################
+        mockMvc.perform(get(URI + "/unknown"))
+        // #################################################
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void resumeTest() throws Exception {
+        Mockito.when(reindexService.resume("job")).thenReturn(reindexStatus("job", State.running));
+
+        // #################################################
+        mockMvc.perform(post(URI + "/job/resume"))
+        // #################################################
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("running"));
+    }
+
+    @Test
+    public void cancelNotFoundTest() throws Exception {
+        Mockito.when(reindexService.cancel("unknown")).thenThrow(new NotFoundException("Reindex unknown not found"));
+
+        // #################################################
+        mockMvc.perform(delete(URI + "/unknown"))
+        // #################################################
+                .andExpect(status().isNotFound());
+    }
+
+    private static ReindexStatus reindexStatus(String id, State state) {
+        ReindexStatus status = new ReindexStatus();
+        status.setId(id);
+        status.setState(state);
+        return status;
+    }
+}
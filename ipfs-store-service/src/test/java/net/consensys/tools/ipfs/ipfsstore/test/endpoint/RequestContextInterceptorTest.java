@@ -0,0 +1,78 @@
+package net.consensys.tools.ipfs.ipfsstore.test.endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContext;
+import net.consensys.tools.ipfs.ipfsstore.endpoint.RequestContextInterceptor;
+
+public class RequestContextInterceptorTest {
+
+    private MockHttpServletRequest request;
+    private ServletWebRequest webRequest;
+    private RequestContext context;
+    private RequestContextInterceptor underTest;
+
+    @Before
+    public void setup() {
+        request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        webRequest = new ServletWebRequest(request, new MockHttpServletResponse());
+        context = RequestContext.withTimeout(60000);
+        request.setAttribute(RequestContext.class.getName(), context);
+        underTest = new RequestContextInterceptor();
+    }
+
+    @Test
+    public void connectionErrorTest() throws Exception {
+        request.startAsync();
+        underTest.preProcess(webRequest, new DeferredResult<>());
+        MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+        assertEquals(1, asyncContext.getListeners().size());
+
+        // #################################################
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onError(new AsyncEvent(asyncContext, new IOException("Broken pipe")));
+        }
+        // #################################################
+
+        assertTrue(context.isCancelled());
+    }
+
+    @Test
+    public void timeoutTest() throws Exception {
+
+        // #################################################
+        boolean proceed = underTest.handleTimeout(webRequest, new DeferredResult<>());
+        // #################################################
+
+        assertTrue(proceed);
+        assertTrue(context.isCancelled());
+    }
+
+    @Test
+    public void completedWithResultTest() throws Exception {
+        DeferredResult<String> result = new DeferredResult<>();
+        result.setResult("done");
+
+        // #################################################
+        underTest.afterCompletion(webRequest, result);
+        // #################################################
+
+        assertFalse(context.isCancelled());
+    }
+}
@@ -1,56 +1,331 @@
-//package net.consensys.tools.ipfs.ipfsstore.test.endpoint;
-//
-//import org.json.JSONException;
-//import org.junit.Test;
-//import org.junit.runner.RunWith;
-//import org.skyscreamer.jsonassert.JSONAssert;
-//import org.springframework.boot.context.embedded.LocalServerPort;
-//import org.springframework.boot.test.context.SpringBootTest;
-//import org.springframework.boot.test.mock.mockito.MockBean;
-//import org.springframework.boot.test.web.client.TestRestTemplate;
-//import org.springframework.http.HttpEntity;
-//import org.springframework.http.HttpHeaders;
-//import org.springframework.http.HttpMethod;
-//import org.springframework.http.ResponseEntity;
-//import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
-//
-//import net.consensys.tools.ipfs.ipfsstore.Application;
-//import net.consensys.tools.ipfs.ipfsstore.service.StoreService;
-//
-//@RunWith(SpringJUnit4ClassRunner.class)
-//@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
-//public class StoreControllerTest {
-//
-//    
-//    @MockBean
-//    private StoreService storeService;
-//    
-//    TestRestTemplate restTemplate = new TestRestTemplate();
-//
-//    HttpHeaders headers = new HttpHeaders();
-//
-//    @Test
-//    public void testRetrieveStudentCourse() throws JSONException {
-//
-//        HttpEntity<String> entity = new HttpEntity<String>(null, headers);
-//
-//        ResponseEntity<String> response = restTemplate.exchange(
-//                createURLWithPort("${api.store.uri}"),
-//                HttpMethod.GET, entity, String.class);
-//
-//        String expected = "{\n" + 
-//                "    \"hash\": \"QmWPCRv8jBfr9sDjKuB5sxpVzXhMycZzwqxifrZZdQ6K9o\"\n" + 
-//                "}";
-//
-//        JSONAssert.assertEquals(expected, response.getBody(), false);
-//    }   
-//    
-//    
-//
-//
-//    private String createURLWithPort(String uri) {
-//        return "http://localhost:${local.server.port}" + uri;
-//    }
-//    
-//    
-//}
+package net.consensys.tools.ipfs.ipfsstore.test.endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.fileUpload;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import net.consensys.tools.ipfs.ipfsstore.concurrency.AdaptiveLimiters;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.Bulkheads;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.RequestContexts;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.UploadBudget;
+import net.consensys.tools.ipfs.ipfsstore.dto.DeleteResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexerResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.endpoint.RestExceptionHandler;
+import net.consensys.tools.ipfs.ipfsstore.endpoint.StoreController;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
+import net.consensys.tools.ipfs.ipfsstore.service.StoreService;
+import net.consensys.tools.ipfs.ipfsstore.service.writebehind.IndexQueue;
+
+public class StoreControllerTest {
+
+    private static final String BASE = "/ipfs-store";
+    private static final String INDEX = "documents";
+    private static final String HASH = "QmWPCRv8jBfr9sDjKuB5sxpVzXhMycZzwqxifrZZdQ6K9o";
+    private static final long BUDGET = 1024;
+
+    private StoreService storeService;
+    private IndexQueue indexQueue;
+    private Bulkheads bulkheads;
+    private UploadBudget uploadBudget;
+    private RequestContexts requestContexts;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setup() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("bulkhead.retry-after", "3")
+                .withProperty("limiter.search.initial-limit", "1")
+                .withProperty("limiter.search.max-limit", "1")
+                .withProperty("deadline.default", "10000");
+
+        storeService = Mockito.mock(StoreService.class);
+        indexQueue = Mockito.mock(IndexQueue.class);
+        bulkheads = new Bulkheads(environment);
+        uploadBudget = new UploadBudget(BUDGET, 100, 3);
+        requestContexts = new RequestContexts(environment);
+
+        StoreController controller = new StoreController(storeService, bulkheads, new AdaptiveLimiters(environment), uploadBudget,
+                requestContexts, indexQueue);
+
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new RestExceptionHandler())
+                .addPlaceholderValue("api.base", BASE)
+                .addPlaceholderValue("api.store.uri", "/store")
+                .addPlaceholderValue("api.index.uri", "/index")
+                .addPlaceholderValue("api.store_index.uri", "/store_index")
+                .addPlaceholderValue("api.search.uri", "/search/{index}")
+                .addPlaceholderValue("api.fetch.uri", "/fetch/{index}/{hash}")
+                .addPlaceholderValue("api.config_index.uri", "/config/index/{index}")
+                .addPlaceholderValue("api.update.uri", "/update/{index}/{id}")
+                .addPlaceholderValue("api.delete.uri", "/delete/{index}/{id}")
+                .addPlaceholderValue("api.delete_by_query.uri", "/delete/{index}")
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        bulkheads.destroy();
+        uploadBudget.destroy();
+        requestContexts.destroy();
+    }
+
+    @Test
+    public void storeTest() throws Exception {
+        Mockito.when(storeService.storeFile(any(byte[].class))).thenReturn(HASH);
+
+        // #################################################
+        MvcResult result = mockMvc.perform(fileUpload(BASE + "/store").file(file(100)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hash").value(HASH));
+    }
+
+    @Test
+    public void storeTooLargeTest() throws Exception {
+
+        // #################################################
+        MvcResult result = mockMvc.perform(fileUpload(BASE + "/store").file(file((int) BUDGET + 1)))
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPayloadTooLarge());
+        Mockito.verify(storeService, Mockito.never()).storeFile(any(byte[].class));
+    }
+
+    @Test
+    public void storeBudgetExhaustedTest() throws Exception {
+        long reserved = uploadBudget.acquire(BUDGET).get(); // held by another upload
+
+        // #################################################
+        MvcResult result = mockMvc.perform(fileUpload(BASE + "/store").file(file(100)))
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"));
+        uploadBudget.release(reserved);
+    }
+
+    @Test
+    public void storeAndIndexAsyncTest() throws Exception {
+        Mockito.when(storeService.storeFile(any(byte[].class))).thenReturn(HASH);
+        Mockito.when(indexQueue.queue(any(IndexerRequest.class))).thenReturn(new IndexerResponse(INDEX, "doc1", HASH));
+
+        // #################################################
+        MvcResult result = mockMvc.perform(fileUpload(BASE + "/store_index").file(file(100))
+                .file(new MockMultipartFile("request", "", MediaType.APPLICATION_JSON_VALUE,
+                        ("{\"index\": \"" + INDEX + "\", \"id\": \"doc1\", \"content_type\": \"text/plain\"}").getBytes()))
+                .param("async", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("doc1"))
+                .andExpect(jsonPath("$.hash").value(HASH));
+        Mockito.verify(storeService, Mockito.never()).indexFile(any(IndexerRequest.class)); // indexed in background
+    }
+
+    @Test
+    public void indexTest() throws Exception {
+        Mockito.when(storeService.indexFile(any(IndexerRequest.class))).thenReturn(new IndexerResponse(INDEX, "doc1", HASH, 1L));
+
+        // #################################################
+        MvcResult result = mockMvc.perform(post(BASE + "/index")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"index\": \"" + INDEX + "\", \"id\": \"doc1\", \"hash\": \"" + HASH + "\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.index").value(INDEX))
+                .andExpect(jsonPath("$.version").value(1));
+    }
+
+    @Test
+    public void fetchTest() throws Exception {
+        Mockito.when(storeService.getFileMetadataByHash(INDEX, HASH)).thenReturn(new Metadata(INDEX, "doc1", HASH, "text/plain", null));
+        Mockito.when(storeService.getFileByHash(HASH)).thenReturn("Hello".getBytes());
+
+        // #################################################
+        MvcResult result = mockMvc.perform(get(BASE + "/fetch/" + INDEX + "/" + HASH).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // #################################################
+
+        MvcResult streamed = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/plain"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 5))
+                .andExpect(request().asyncStarted()) // body streamed
+                .andReturn();
+        streamed.getAsyncResult();
+        assertEquals("Hello", streamed.getResponse().getContentAsString());
+    }
+
+    @Test
+    public void fetchNotIndexedTest() throws Exception {
+        Mockito.when(storeService.getFileMetadataByHash(INDEX, HASH)).thenThrow(new NotFoundException("not found"));
+        Mockito.when(storeService.getFileByHash(HASH)).thenReturn("Hello".getBytes());
+
+        // #################################################
+        MvcResult result = mockMvc.perform(get(BASE + "/fetch/" + INDEX + "/" + HASH).contentType(MediaType.APPLICATION_JSON))
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE));
+    }
+
+    @Test
+    public void searchTest() throws Exception {
+        Page<Metadata> page = new PageImpl<>(Collections.singletonList(new Metadata(INDEX, "doc1", HASH, "text/plain", null)));
+        Mockito.when(storeService.searchFilesAsync(eq(INDEX), any(Query.class), any(Pageable.class)))
+                .thenReturn(CompletableFuture.completedFuture(page));
+
+        // #################################################
+        MvcResult result = mockMvc.perform(search())
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(1));
+    }
+
+    @Test
+    public void searchLimitedTest() throws Exception {
+        CompletableFuture<Page<Metadata>> pending = new CompletableFuture<>();
+        Mockito.when(storeService.searchFilesAsync(eq(INDEX), any(Query.class), any(Pageable.class))).thenReturn(pending);
+        mockMvc.perform(search()).andReturn(); // holds the only slot of the limiter
+
+        // #################################################
+        MvcResult result = mockMvc.perform(search()).andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"));
+        pending.complete(new PageImpl<>(Collections.emptyList()));
+    }
+
+    @Test
+    public void searchDeadlineTest() throws Exception {
+        Mockito.when(storeService.searchFilesAsync(eq(INDEX), any(Query.class), any(Pageable.class))).thenReturn(new CompletableFuture<>());
+
+        // #################################################
+        MvcResult result = mockMvc.perform(get(BASE + "/search/" + INDEX)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("X-Request-Timeout", "50"))
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isGatewayTimeout());
+    }
+
+    @Test
+    public void updateConflictTest() throws Exception {
+        Mockito.when(storeService.updateFile(eq(INDEX), eq("doc1"), anyListOf(IndexField.class), eq(1L)))
+                .thenThrow(new VersionConflictException("version conflict"));
+
+        // #################################################
+        MvcResult result = mockMvc.perform(patch(BASE + "/update/" + INDEX + "/doc1")
+                .param("version", "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"name\": \"title\", \"value\": \"Updated\"}]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void deleteTest() throws Exception {
+        Mockito.when(storeService.deleteFile(INDEX, "doc1", true)).thenReturn(new DeleteResponse(INDEX, 1, 1));
+
+        // #################################################
+        MvcResult result = mockMvc.perform(delete(BASE + "/delete/" + INDEX + "/doc1").param("unpin", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        Mockito.verify(storeService).deleteFile(INDEX, "doc1", true);
+    }
+
+    @Test
+    public void deleteNotFoundTest() throws Exception {
+        Mockito.when(storeService.deleteFile(anyString(), anyString(), anyBoolean())).thenThrow(new NotFoundException("not found"));
+
+        // #################################################
+        MvcResult result = mockMvc.perform(delete(BASE + "/delete/" + INDEX + "/unknown"))
+                .andReturn();
+        // #################################################
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
+    }
+
+    private static MockMultipartFile file(int size) {
+        return new MockMultipartFile("file", "file.txt", MediaType.TEXT_PLAIN_VALUE, new byte[size]);
+    }
+
+    private static RequestBuilder search() {
+        return post(BASE + "/search/" + INDEX)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content("{\"query\": []}");
+    }
+}
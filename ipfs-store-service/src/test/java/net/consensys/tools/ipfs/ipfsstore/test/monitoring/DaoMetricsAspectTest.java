@@ -0,0 +1,137 @@
+package net.consensys.tools.ipfs.ipfsstore.test.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.data.domain.PageRequest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.DaoMetricsAspect;
+
+public class DaoMetricsAspectTest {
+
+    private static final String INDEX = "Documents";
+    private static final String HASH = "QmWPCRv8jBfr9sDjKuB5sxpVzXhMycZzwqxifrZZdQ6K9o";
+
+    private MeterRegistry registry;
+    private StorageDao storageDaoMock;
+    private IndexDao indexDaoMock;
+    private StorageDao storageDao;
+    private IndexDao indexDao;
+
+    @Before
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        storageDaoMock = mock(StorageDao.class);
+        indexDaoMock = mock(IndexDao.class);
+        storageDao = proxy(storageDaoMock);
+        indexDao = proxy(indexDaoMock);
+    }
+
+    @Test
+    public void storageSuccessTest() throws Exception {
+        when(storageDaoMock.createContent(any(byte[].class))).thenReturn(HASH);
+
+        // #################################################
+        storageDao.createContent(new byte[100]);
+        // #################################################
+
+        assertEquals(1, registry.get("dao.operation").tags("dao", "storage", "operation", "add", "outcome", "success").timer().count());
+        assertEquals(100, registry.get("dao.payload.bytes").tags("operation", "add").summary().totalAmount(), 0);
+    }
+
+    @Test
+    public void storageErrorTest() throws Exception {
+        when(storageDaoMock.getContent(HASH)).thenThrow(new DaoException("error"));
+
+        try {
+            // #################################################
+            storageDao.getContent(HASH);
+            // #################################################
+        } catch (DaoException ex) {
+            assertEquals(1, registry.get("dao.operation").tags("operation", "cat", "outcome", "error").timer().count());
+            assertEquals(1, registry.get("dao.errors").tags("operation", "cat", "exception", "DaoException").counter().count(), 0);
+            return;
+        }
+        throw new AssertionError("DaoException expected");
+    }
+
+    @Test
+    public void indexAsyncTest() throws Exception {
+        CompletableFuture<Metadata> notFound = new CompletableFuture<>();
+        when(indexDaoMock.searchByIdAsync(INDEX, "1")).thenReturn(notFound);
+        when(indexDaoMock.search(any(PageRequest.class), any(String.class), any()))
+                .thenReturn(Arrays.asList(new Metadata(), new Metadata()));
+
+        // #################################################
+        indexDao.searchByIdAsync(INDEX, "1");
+        indexDao.search(new PageRequest(0, 20), INDEX, null);
+        // #################################################
+
+        assertTrue(registry.find("dao.operation").tags("operation", "searchById").timers().isEmpty());
+        notFound.completeExceptionally(new NotFoundException("not found"));
+
+        assertEquals(1, registry.get("dao.operation").tags("dao", "index", "operation", "searchById", "index", "documents", "outcome", "not_found").timer().count());
+        assertEquals(2, registry.get("dao.results").tags("operation", "search", "index", "documents").summary().totalAmount(), 0);
+    }
+
+    @Test
+    public void indexTagBoundedTest() throws Exception {
+        indexDao = proxy(indexDaoMock, new DaoMetricsAspect(registry, "", 2));
+
+        // #################################################
+        indexDao.count("index1", null);
+        indexDao.count("index2", null);
+        indexDao.count("index3", null);
+        indexDao.count("index1", null);
+        indexDao.alias("alias", "index4");
+        // #################################################
+
+        assertEquals(2, registry.get("dao.operation").tags("operation", "count", "index", "index1").timer().count());
+        assertEquals(1, registry.get("dao.operation").tags("operation", "count", "index", "index2").timer().count());
+        assertEquals(1, registry.get("dao.operation").tags("operation", "count", "index", "other").timer().count());
+        assertEquals(1, registry.get("dao.operation").tags("operation", "alias", "index", "other").timer().count());
+    }
+
+    @Test
+    public void indexTagAllowListTest() throws Exception {
+        indexDao = proxy(indexDaoMock, new DaoMetricsAspect(registry, "Documents, archive", 0));
+
+        // #################################################
+        indexDao.count(INDEX, null);
+        indexDao.count("unknown", null);
+        indexDao.alias("alias", "archive");
+        // #################################################
+
+        assertEquals(1, registry.get("dao.operation").tags("operation", "count", "index", "documents").timer().count());
+        assertEquals(1, registry.get("dao.operation").tags("operation", "count", "index", "other").timer().count());
+        assertEquals(1, registry.get("dao.operation").tags("operation", "alias", "index", "archive").timer().count());
+    }
+
+    private <T> T proxy(T target) {
+        return proxy(target, new DaoMetricsAspect(registry));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(T target, DaoMetricsAspect aspect) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setInterfaces(target.getClass().getInterfaces());
+        factory.addAspect(aspect);
+        return (T) factory.getProxy();
+    }
+}
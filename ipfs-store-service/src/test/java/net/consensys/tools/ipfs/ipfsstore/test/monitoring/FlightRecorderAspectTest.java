@@ -0,0 +1,129 @@
+package net.consensys.tools.ipfs.ipfsstore.test.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.data.domain.PageRequest;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.FlightRecorderAspect;
+
+public class FlightRecorderAspectTest {
+
+    private static final String INDEX = "Documents";
+    private static final String HASH = "QmWPCRv8jBfr9sDjKuB5sxpVzXhMycZzwqxifrZZdQ6K9o";
+
+    private static final String IPFS_EVENT = "net.consensys.ipfsstore.IpfsOperation";
+    private static final String INDEX_EVENT = "net.consensys.ipfsstore.IndexOperation";
+
+    private Recording recording;
+    private StorageDao storageDaoMock;
+    private IndexDao indexDaoMock;
+    private StorageDao storageDao;
+    private IndexDao indexDao;
+
+    @Before
+    public void setup() {
+        storageDaoMock = mock(StorageDao.class);
+        indexDaoMock = mock(IndexDao.class);
+        storageDao = proxy(storageDaoMock);
+        indexDao = proxy(indexDaoMock);
+
+        recording = new Recording();
+        recording.enable(IPFS_EVENT);
+        recording.enable(INDEX_EVENT);
+        recording.start();
+    }
+
+    @After
+    public void tearDown() {
+        recording.close();
+    }
+
+    @Test
+    public void storageTest() throws Exception {
+        when(storageDaoMock.createContent(any(byte[].class))).thenReturn(HASH);
+        when(storageDaoMock.getContent(HASH)).thenThrow(new DaoException("error"));
+
+        // #################################################
+        storageDao.createContent(new byte[100]);
+        try {
+            storageDao.getContent(HASH);
+        } catch (DaoException ex) {
+            // expected
+        }
+        // #################################################
+
+        List<RecordedEvent> events = events(IPFS_EVENT);
+        assertEquals(2, events.size());
+
+        RecordedEvent add = events.get(0);
+        assertEquals("add", add.getString("operation"));
+        assertEquals(HASH, add.getString("hash"));
+        assertEquals(100, add.getLong("bytes"));
+        assertEquals("success", add.getString("outcome"));
+
+        RecordedEvent cat = events.get(1);
+        assertEquals("cat", cat.getString("operation"));
+        assertEquals(HASH, cat.getString("hash"));
+        assertEquals("error", cat.getString("outcome"));
+    }
+
+    @Test
+    public void indexTest() throws Exception {
+        when(indexDaoMock.search(any(PageRequest.class), any(String.class), any()))
+                .thenReturn(Arrays.asList(new Metadata(), new Metadata()));
+
+        // #################################################
+        indexDao.search(new PageRequest(0, 20), INDEX, null);
+        // #################################################
+
+        List<RecordedEvent> events = events(INDEX_EVENT);
+        assertEquals(1, events.size());
+        assertEquals("search", events.get(0).getString("operation"));
+        assertEquals("documents", events.get(0).getString("index"));
+        assertEquals(2, events.get(0).getLong("results"));
+        assertTrue(events.get(0).getDuration().toNanos() >= 0);
+    }
+
+    private List<RecordedEvent> events(String name) throws Exception {
+        recording.stop();
+        Path file = Files.createTempFile("ipfs-store", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals(name))
+                    .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setInterfaces(target.getClass().getInterfaces());
+        factory.addAspect(new FlightRecorderAspect());
+        return (T) factory.getProxy();
+    }
+}
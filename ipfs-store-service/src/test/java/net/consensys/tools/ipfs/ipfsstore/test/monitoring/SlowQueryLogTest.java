@@ -0,0 +1,73 @@
+package net.consensys.tools.ipfs.ipfsstore.test.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.SlowQueryLog;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.SlowQueryLog.SlowQuery;
+
+public class SlowQueryLogTest {
+
+    private static final String INDEX = "documents";
+
+    @Test
+    public void thresholdTest() {
+        SlowQueryLog log = new SlowQueryLog(100, 300, 10);
+
+        // #################################################
+        log.record("search", INDEX, Query.newQuery().equals("author", "Paul"), 99, 5, 5, 0, "billing");
+        log.record("search", INDEX, Query.newQuery().equals("author", "Paul"), 100, 5, 5, 0, "billing");
+        // #################################################
+
+        List<SlowQuery> top = log.top();
+        assertEquals(1, top.size());
+        assertEquals(1, top.get(0).getCount());
+        assertEquals(100, top.get(0).getMaxTook());
+    }
+
+    @Test
+    public void fingerprintTest() {
+        SlowQueryLog log = new SlowQueryLog(0, 300, 10);
+
+        // #################################################
+        log.record("search", INDEX, Query.newQuery().equals("author", "Paul").fullText("title", "ipfs"), 200, 5, 5, 0, "billing");
+        log.record("search", INDEX, Query.newQuery().fullText("title", "elasticsearch").equals("author", "John"), 400, 5, 4, 1, "search");
+        log.record("count", INDEX, Query.newQuery().equals("author", "Paul"), 1000, 5, 5, 0, "billing");
+        log.record("search", INDEX, null, 10, 5, 5, 0, "billing");
+        // #################################################
+
+        List<SlowQuery> top = log.top();
+        assertEquals(3, top.size());
+
+        assertEquals("count", top.get(0).getOperation());
+        assertEquals("equals(author)", top.get(0).getFingerprint());
+
+        SlowQuery search = top.get(1);
+        assertEquals("search", search.getOperation());
+        assertEquals(INDEX, search.getIndex());
+        assertEquals("equals(author)&full_text(title)", search.getFingerprint());
+        assertEquals(2, search.getCount());
+        assertEquals(300, search.getAverageTook());
+        assertEquals(400, search.getMaxTook());
+        assertEquals("search", search.getLastCaller());
+
+        assertEquals("*", top.get(2).getFingerprint());
+        assertEquals(1, log.top(1).size());
+    }
+
+    @Test
+    public void disabledTest() {
+        SlowQueryLog log = SlowQueryLog.disabled();
+
+        // #################################################
+        log.record("search", INDEX, Query.newQuery(), 60000, 5, 5, 0, "billing");
+        // #################################################
+
+        assertTrue(log.top().isEmpty());
+    }
+}
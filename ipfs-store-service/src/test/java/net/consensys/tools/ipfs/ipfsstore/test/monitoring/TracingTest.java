@@ -0,0 +1,149 @@
+package net.consensys.tools.ipfs.ipfsstore.test.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.Bulkhead;
+import net.consensys.tools.ipfs.ipfsstore.concurrency.OperationType;
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.ServiceException;
+import net.consensys.tools.ipfs.ipfsstore.monitoring.Tracing;
+import net.consensys.tools.ipfs.ipfsstore.service.StoreService;
+import net.consensys.tools.ipfs.ipfsstore.service.impl.StoreServiceImpl;
+
+public class TracingTest {
+
+    private static final String HASH = "QmWPCRv8jBfr9sDjKuB5sxpVzXhMycZzwqxifrZZdQ6K9o";
+
+    private final List<SpanData> spans = new CopyOnWriteArrayList<>();
+
+    private StorageDao storageDao;
+    private StoreService storeService;
+
+    @Before
+    public void setup() {
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(new SpanExporter() {
+                    @Override
+                    public CompletableResultCode export(Collection<SpanData> exported) {
+                        spans.addAll(exported);
+                        return CompletableResultCode.ofSuccess();
+                    }
+
+                    @Override
+                    public CompletableResultCode flush() {
+                        return CompletableResultCode.ofSuccess();
+                    }
+
+                    @Override
+                    public CompletableResultCode shutdown() {
+                        return CompletableResultCode.ofSuccess();
+                    }
+                }))
+                .build();
+        Tracing.install(OpenTelemetrySdk.builder().setTracerProvider(tracerProvider).build());
+
+        storageDao = mock(StorageDao.class);
+        storeService = new StoreServiceImpl(mock(IndexDao.class), storageDao);
+    }
+
+    @After
+    public void tearDown() {
+        Tracing.install(OpenTelemetry.noop());
+    }
+
+    @Test
+    public void traceServiceStepTest() throws Exception {
+
+        when(storageDao.createContent(any(byte[].class))).thenReturn(HASH);
+
+        Span request = Tracing.tracer().spanBuilder("HTTP POST").startSpan();
+
+        // #################################################
+        try (Scope scope = request.makeCurrent()) {
+            storeService.storeFile("hello".getBytes());
+        }
+        // #################################################
+        request.end();
+
+        SpanData span = find("service.storeFile");
+        assertEquals(request.getSpanContext().getSpanId(), span.getParentSpanId());
+        assertEquals(Long.valueOf(5), span.getAttributes().get(Tracing.BYTES));
+        assertEquals(HASH, span.getAttributes().get(Tracing.HASH));
+        assertEquals(StatusCode.UNSET, span.getStatus().getStatusCode());
+    }
+
+    @Test
+    public void traceErrorTest() throws Exception {
+
+        when(storageDao.getContent(HASH)).thenThrow(new DaoException("IPFS unreachable"));
+
+        // #################################################
+        try {
+            storeService.getFileByHash(HASH);
+        } catch (ServiceException ex) {
+            // expected
+        }
+        // #################################################
+
+        SpanData span = find("service.getFileByHash");
+        assertEquals(HASH, span.getAttributes().get(Tracing.HASH));
+        assertEquals(StatusCode.ERROR, span.getStatus().getStatusCode());
+        assertFalse(span.getEvents().isEmpty()); // exception recorded
+    }
+
+    @Test
+    public void traceAcrossBulkheadTest() throws Exception {
+
+        Bulkhead bulkhead = new Bulkhead(OperationType.cat, 1, 10, 5);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        // #################################################
+        CompletableFuture<String> future = Tracing.traceAsync("endpoint.fetch", Tracing.hash(HASH),
+                () -> bulkhead.submit(() -> Tracing.trace("ipfs.cat", Tracing.hash(HASH), () -> "hello")).thenCompose(result -> pending));
+        // #################################################
+
+        bulkhead.submit(() -> null).get(5, TimeUnit.SECONDS); // the operation ran
+        assertEquals(1, spans.size()); // the endpoint span is still open
+        pending.complete("hello");
+        future.get(5, TimeUnit.SECONDS);
+        bulkhead.shutdown();
+
+        SpanData endpoint = find("endpoint.fetch");
+        SpanData operation = find("ipfs.cat");
+        assertEquals(endpoint.getTraceId(), operation.getTraceId());
+        assertEquals(endpoint.getSpanId(), operation.getParentSpanId());
+    }
+
+    private SpanData find(String name) {
+        return spans.stream()
+                .filter(span -> span.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Span " + name + " not found in " + spans));
+    }
+}
@@ -0,0 +1,84 @@
+package net.consensys.tools.ipfs.ipfsstore.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.service.cache.HashMetadataCache;
+
+public class HashMetadataCacheTest {
+
+    private HashMetadataCache underTest;
+
+    @Before
+    public void setup() {
+        underTest = new HashMetadataCache(true, 600, 30, 1000);
+    }
+
+    @Test
+    public void invalidateHashTest() {
+        underTest.put(underTest.key("documents", "QmA"), metadata("documents", "QmA"));
+        underTest.put(underTest.key("documents", "QmB"), metadata("documents", "QmB"));
+        underTest.putMissing(underTest.key("documents", "QmC"));
+
+        // #################################################
+        underTest.invalidate("documents", "QmA");
+        underTest.invalidate("documents", "QmC");
+        // #################################################
+
+        assertNull(underTest.get(underTest.key("documents", "QmA")));
+        assertFalse(underTest.isMissing(underTest.key("documents", "QmC")));
+        assertNotNull(underTest.get(underTest.key("documents", "QmB"))); // other hashes kept
+    }
+
+    @Test
+    public void staleResultTest() {
+        HashMetadataCache.Key key = underTest.key("documents", "QmA"); // search started
+
+        // #################################################
+        underTest.invalidate("documents", "QmA"); // document written meanwhile
+        underTest.put(key, metadata("documents", "QmA")); // search completed
+        // #################################################
+
+        assertNull(underTest.get(underTest.key("documents", "QmA")));
+    }
+
+    @Test
+    public void invalidateIndexTest() {
+        underTest.put(underTest.key("documents", "QmA"), metadata("documents", "QmA"));
+        underTest.put(underTest.key("images", "QmA"), metadata("images", "QmA"));
+        HashMetadataCache.Key key = underTest.key("documents", "QmB"); // search started
+
+        // #################################################
+        underTest.invalidate("documents");
+        underTest.put(key, metadata("documents", "QmB"));
+        // #################################################
+
+        assertNull(underTest.get(underTest.key("documents", "QmA")));
+        assertNull(underTest.get(underTest.key("documents", "QmB")));
+        assertEquals("images", underTest.get(underTest.key("images", "QmA")).getIndexName()); // other indexes kept
+    }
+
+    @Test
+    public void disabledTest() {
+        HashMetadataCache disabled = HashMetadataCache.disabled();
+
+        // #################################################
+        disabled.put(disabled.key("documents", "QmA"), metadata("documents", "QmA"));
+        // #################################################
+
+        assertFalse(disabled.isEnabled());
+        assertNull(disabled.get(disabled.key("documents", "QmA")));
+        assertTrue(underTest.isEnabled());
+    }
+
+    private static Metadata metadata(String index, String hash) {
+        return new Metadata(index, "doc", hash, "text/plain", null);
+    }
+}
@@ -0,0 +1,269 @@
+package net.consensys.tools.ipfs.ipfsstore.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.springframework.mock.env.MockEnvironment;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.MemoryIndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexQueueStatus;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexerResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexingStatus;
+import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
+import net.consensys.tools.ipfs.ipfsstore.service.cache.SearchResultCache;
+import net.consensys.tools.ipfs.ipfsstore.service.writebehind.IndexQueue;
+
+public class IndexQueueTest {
+
+    private static final String INDEX = "documents";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockEnvironment environment;
+    private IndexQueue underTest;
+
+    @Before
+    public void setup() {
+        environment = new MockEnvironment()
+                .withProperty("write-behind.path", folder.getRoot().getPath())
+                .withProperty("write-behind.batch-size", "2")
+                .withProperty("write-behind.max-attempts", "2")
+                .withProperty("write-behind.retry-delay", "0");
+    }
+
+    @After
+    public void tearDown() {
+        if (underTest != null) {
+            underTest.destroy();
+        }
+    }
+
+    @Test
+    public void queueAndIndexTest() throws Exception {
+        IndexDao indexDao = new MemoryIndexDao();
+        underTest = new IndexQueue(indexDao, SearchResultCache.disabled(), environment);
+        underTest.afterPropertiesSet();
+
+        // #################################################
+        underTest.queue(request("doc1", "QmA"));
+        underTest.queue(request("doc2", "QmB"));
+        IndexerResponse generated = underTest.queue(request(null, "QmC"));
+        await();
+        // #################################################
+
+        assertNotNull(generated.getDocumentId());
+        assertEquals(3, indexDao.count(INDEX, null));
+        assertEquals("QmC", indexDao.searchById(INDEX, generated.getDocumentId()).getHash());
+        assertEquals("Title QmA", indexDao.searchById(INDEX, "doc1").getIndexFieldValue("title"));
+
+        IndexingStatus status = underTest.getStatus(INDEX, "doc2");
+        assertEquals(IndexingStatus.State.indexed, status.getState());
+        assertEquals("QmB", status.getHash());
+        assertEquals(3, underTest.getStatus().getIndexed());
+        assertEquals(0, journal().length); // journal emptied
+    }
+
+    @Test
+    public void replayTest() throws Exception {
+        IndexDao indexDao = new MemoryIndexDao();
+        IndexQueue stopped = new IndexQueue(indexDao, SearchResultCache.disabled(), environment); // workers not started
+        stopped.queue(request("doc1", "QmA"));
+        stopped.queue(request("doc2", "QmB"));
+        assertEquals(IndexingStatus.State.queued, stopped.getStatus(INDEX, "doc1").getState());
+        stopped.destroy();
+
+        // #################################################
+        underTest = new IndexQueue(indexDao, SearchResultCache.disabled(), environment);
+        long replayed = underTest.getStatus().getQueued();
+        underTest.afterPropertiesSet();
+        await();
+        // #################################################
+
+        assertEquals(2, replayed);
+        assertEquals(2, indexDao.count(INDEX, null));
+        assertEquals(0, journal().length);
+    }
+
+    @Test
+    public void isQueuedTest() throws Exception {
+        IndexDao indexDao = new MemoryIndexDao();
+        IndexQueue stopped = new IndexQueue(indexDao, SearchResultCache.disabled(), environment); // workers not started
+        stopped.queue(request("doc1", "QmA"));
+        stopped.queue(request("doc2", "QmA")); // same content
+        stopped.destroy();
+        underTest = new IndexQueue(indexDao, SearchResultCache.disabled(), environment); // replayed
+        underTest.queue(request("doc3", "QmB"));
+
+        assertTrue(underTest.isQueued("qma"));
+        assertTrue(underTest.isQueued("QmB"));
+        assertFalse(underTest.isQueued("QmC"));
+
+        // #################################################
+        underTest.afterPropertiesSet();
+        await();
+        // #################################################
+
+        assertFalse(underTest.isQueued("QmA")); // both documents indexed
+        assertFalse(underTest.isQueued("QmB"));
+    }
+
+    @Test
+    public void retryTest() throws Exception {
+        IndexDao indexDao = Mockito.mock(IndexDao.class);
+        Mockito.when(indexDao.index(eq(INDEX), anyList()))
+                .thenThrow(new DaoException("unreachable"))
+                .thenThrow(new DaoException("unreachable"))
+                .thenReturn(Collections.emptyMap());
+        environment.setProperty("write-behind.workers", "1"); // single batch
+        underTest = new IndexQueue(indexDao, SearchResultCache.disabled(), environment);
+
+        // #################################################
+        underTest.queue(request("doc1", "QmA"));
+        underTest.queue(request("doc2", "QmB"));
+        underTest.afterPropertiesSet();
+        await();
+        // #################################################
+
+        // Bulk failed as a whole: retried beyond the max attempts (up to the max batch attempts)
+        assertEquals(IndexingStatus.State.indexed, underTest.getStatus(INDEX, "doc1").getState());
+        assertEquals(2, underTest.getStatus().getIndexed());
+        Mockito.verify(indexDao, Mockito.times(3)).index(eq(INDEX), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void rejectedTest() throws Exception {
+        IndexDao indexDao = Mockito.mock(IndexDao.class);
+        AtomicInteger doc1Writes = new AtomicInteger();
+        Mockito.when(indexDao.index(eq(INDEX), anyList())).thenAnswer(invocation -> {
+            List<Metadata> documents = (List<Metadata>) invocation.getArguments()[1];
+            doc1Writes.addAndGet((int) documents.stream().filter(document -> document.getDocumentId().equals("doc1")).count());
+            return documents.stream().anyMatch(document -> document.getDocumentId().equals("doc2"))
+                    ? Collections.singletonMap("doc2", "mapper_parsing_exception") // rejected
+                    : Collections.emptyMap();
+        });
+        environment.setProperty("write-behind.workers", "1"); // single batch
+        underTest = new IndexQueue(indexDao, SearchResultCache.disabled(), environment);
+
+        // #################################################
+        underTest.queue(request("doc1", "QmA"));
+        underTest.queue(request("doc2", "QmB"));
+        underTest.afterPropertiesSet();
+        await();
+        // #################################################
+
+        IndexQueueStatus status = underTest.getStatus();
+        assertEquals(1, status.getIndexed());
+        assertEquals(1, status.getFailed());
+
+        IndexingStatus rejected = underTest.getStatus(INDEX, "doc2");
+        assertEquals(IndexingStatus.State.failed, rejected.getState());
+        assertEquals(2, rejected.getAttempts());
+        assertEquals("mapper_parsing_exception", rejected.getError());
+        assertEquals(IndexingStatus.State.indexed, underTest.getStatus(INDEX, "doc1").getState());
+        assertEquals(1, doc1Writes.get()); // only the rejected document retried
+        Mockito.verify(indexDao, Mockito.never()).index(eq(INDEX), anyString(), anyString(), anyString(), any());
+
+        // Kept aside to be replayed
+        assertEquals(0, journal().length);
+        assertEquals(1, new File(folder.getRoot(), "failed").list().length);
+    }
+
+    @Test
+    public void batchGivenUpTest() throws Exception {
+        IndexDao indexDao = Mockito.mock(IndexDao.class);
+        Mockito.when(indexDao.index(eq(INDEX), anyList())).thenThrow(new DaoException("unreachable"));
+        environment.setProperty("write-behind.workers", "1"); // single batch
+        environment.setProperty("write-behind.max-batch-attempts", "3");
+        underTest = new IndexQueue(indexDao, SearchResultCache.disabled(), environment);
+
+        // #################################################
+        underTest.queue(request("doc1", "QmA"));
+        underTest.queue(request("doc2", "QmB"));
+        underTest.afterPropertiesSet();
+        await();
+        // #################################################
+
+        // Bulk failing as a whole: given up after the max batch attempts, the partition isn't stalled
+        IndexingStatus givenUp = underTest.getStatus(INDEX, "doc1");
+        assertEquals(IndexingStatus.State.failed, givenUp.getState());
+        assertEquals(3, givenUp.getAttempts());
+        assertEquals("unreachable", givenUp.getError());
+        assertEquals(2, underTest.getStatus().getFailed());
+        Mockito.verify(indexDao, Mockito.times(3)).index(eq(INDEX), anyList());
+        assertEquals(0, journal().length);
+        assertEquals(2, new File(folder.getRoot(), "failed").list().length);
+    }
+
+    @Test
+    public void failedNotOverwrittenTest() throws Exception {
+        IndexDao indexDao = Mockito.mock(IndexDao.class);
+        Mockito.when(indexDao.index(eq(INDEX), anyList())).thenReturn(Collections.singletonMap("doc1", "mapper_parsing_exception"));
+        environment.setProperty("write-behind.max-attempts", "1");
+        underTest = new IndexQueue(indexDao, SearchResultCache.disabled(), environment);
+        underTest.afterPropertiesSet();
+        underTest.queue(request("doc1", "QmA"));
+        await();
+        underTest.destroy();
+
+        // #################################################
+        underTest = new IndexQueue(indexDao, SearchResultCache.disabled(), environment); // journal empty: sequence resumed from the failed entries
+        underTest.afterPropertiesSet();
+        underTest.queue(request("doc1", "QmB"));
+        await();
+        // #################################################
+
+        assertEquals(2, new File(folder.getRoot(), "failed").list().length);
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void statusNotFoundTest() throws Exception {
+        underTest = new IndexQueue(new MemoryIndexDao(), SearchResultCache.disabled(), environment);
+        underTest.getStatus(INDEX, "unknown");
+    }
+
+    private static IndexerRequest request(String id, String hash) {
+        IndexerRequest request = new IndexerRequest();
+        request.setIndexName(INDEX);
+        request.setDocumentId(id);
+        request.setHash(hash);
+        request.setContentType("text/plain");
+        request.setIndexFields(Arrays.asList(new IndexField("title", "Title " + hash)));
+        return request;
+    }
+
+    private File[] journal() {
+        return folder.getRoot().listFiles((dir, name) -> name.endsWith(".json"));
+    }
+
+    private void await() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (underTest.getStatus().getQueued() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package net.consensys.tools.ipfs.ipfsstore.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.env.MockEnvironment;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.MemoryIndexDao;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.service.reconciliation.PinReconciler;
+
+public class PinReconcilerTest {
+
+    private static final String INDEX = "documents";
+
+    private IndexDao indexDao;
+    private StorageDao storageDao;
+    private MockEnvironment environment;
+
+    @Before
+    public void setup() {
+        indexDao = new MemoryIndexDao();
+        storageDao = Mockito.mock(StorageDao.class);
+        environment = new MockEnvironment()
+                .withProperty("reconciler.indices", INDEX)
+                .withProperty("reconciler.batch-size", "2")
+                .withProperty("reconciler.rate", "1000");
+    }
+
+    @Test
+    public void reconcileTest() throws Exception {
+        indexDao.index(INDEX, "a", "QmA", "text/plain", null);
+        indexDao.index(INDEX, "b", "QmB", "text/plain", null);
+        indexDao.index(INDEX, "c", "QmB", "text/plain", null); // same content
+        environment.setProperty("reconciler.unpin-orphans", "true");
+        PinReconciler underTest = new PinReconciler(indexDao, storageDao, environment);
+
+        Mockito.when(storageDao.listPins()).thenReturn(pins("QmA", "QmOrphan"));
+
+        // #################################################
+        PinReconciler.Report first = underTest.reconcile();
+        // #################################################
+
+        assertEquals(2, first.getPins());
+        assertEquals(3, first.getDocuments());
+        assertEquals(1, first.getMissing());
+        assertEquals(1, first.getRepinned());
+        assertEquals(1, first.getOrphans());
+        assertEquals(0, first.getUnpinned()); // first time seen orphan
+        Mockito.verify(storageDao, Mockito.times(1)).pin(eq("QmB"));
+        Mockito.verify(storageDao, Mockito.never()).unpin(anyString());
+
+        Mockito.when(storageDao.listPins()).thenReturn(pins("QmA", "QmB", "QmOrphan", "QmNew"));
+
+        // #################################################
+        PinReconciler.Report second = underTest.reconcile();
+        // #################################################
+
+        assertEquals(0, second.getMissing());
+        assertEquals(2, second.getOrphans());
+        assertEquals(1, second.getUnpinned()); // QmNew stored since the first run, kept until the next one
+        Mockito.verify(storageDao, Mockito.times(1)).unpin(eq("QmOrphan"));
+        Mockito.verify(storageDao, Mockito.times(1)).unpin(anyString());
+        assertEquals(second, underTest.getLastReport());
+    }
+
+    @Test
+    public void reconcileReferencedElsewhereTest() throws Exception {
+        indexDao.index(INDEX, "a", "QmA", "text/plain", null);
+        indexDao.index("archive", "a", "QmArchived", "text/plain", null); // index not reconciled
+        environment.setProperty("reconciler.unpin-orphans", "true");
+        PinReconciler underTest = new PinReconciler(indexDao, storageDao, environment);
+
+        Mockito.when(storageDao.listPins()).thenReturn(pins("QmA", "QmArchived"));
+
+        // #################################################
+        underTest.reconcile();
+        PinReconciler.Report report = underTest.reconcile();
+        // #################################################
+
+        assertEquals(1, report.getOrphans()); // absent from the reconciled indices
+        assertEquals(0, report.getUnpinned()); // but still referenced
+        Mockito.verify(storageDao, Mockito.never()).unpin(anyString());
+    }
+
+    @Test
+    public void reconcileOrphansKeptTest() throws Exception {
+        indexDao.index(INDEX, "a", "QmA", "text/plain", null);
+        PinReconciler underTest = new PinReconciler(indexDao, storageDao, environment);
+
+        Mockito.when(storageDao.listPins()).thenReturn(pins("QmA", "QmOrphan"));
+
+        // #################################################
+        underTest.reconcile();
+        PinReconciler.Report report = underTest.reconcile();
+        // #################################################
+
+        assertEquals(1, report.getOrphans());
+        assertEquals(0, report.getUnpinned()); // reconciler.unpin-orphans disabled
+        Mockito.verify(storageDao, Mockito.never()).unpin(anyString());
+        Mockito.verify(storageDao, Mockito.never()).pin(anyString());
+    }
+
+    @Test
+    public void reconcileNoFalseNegativeTest() throws Exception {
+        Set<String> pins = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            indexDao.index(INDEX, "doc" + i, "Qm" + i, "text/plain", null);
+            pins.add("Qm" + i);
+        }
+        environment.setProperty("reconciler.batch-size", "100");
+        environment.setProperty("reconciler.unpin-orphans", "true");
+        PinReconciler underTest = new PinReconciler(indexDao, storageDao, environment);
+
+        Mockito.when(storageDao.listPins()).thenReturn(pins);
+
+        // #################################################
+        underTest.reconcile();
+        PinReconciler.Report report = underTest.reconcile();
+        // #################################################
+
+        assertEquals(1000, report.getDocuments());
+        assertEquals(0, report.getMissing());
+        assertEquals(0, report.getOrphans()); // every indexed hash is in the filter
+        Mockito.verify(storageDao, Mockito.never()).unpin(anyString());
+    }
+
+    @Test(expected = DaoException.class)
+    public void reconcileExceptionTest() throws Exception {
+        indexDao.index(INDEX, "a", "QmA", "text/plain", null);
+        environment.setProperty("reconciler.unpin-orphans", "true");
+        PinReconciler underTest = new PinReconciler(indexDao, storageDao, environment);
+
+        Mockito.when(storageDao.listPins()).thenThrow(new DaoException("error"));
+
+        // #################################################
+        underTest.reconcile();
+        // #################################################
+    }
+
+    @Test
+    public void collectGarbageTest() throws Exception {
+        environment.setProperty("reconciler.gc-window", "23:00-01:00");
+
+        PinReconciler beforeMidnight = new PinReconciler(indexDao, storageDao, environment, clock(2018, 3, 1, 23, 30));
+        PinReconciler afterMidnight = new PinReconciler(indexDao, storageDao, environment, clock(2018, 3, 2, 0, 30));
+        PinReconciler outOfWindow = new PinReconciler(indexDao, storageDao, environment, clock(2018, 3, 2, 12, 0));
+
+        // #################################################
+        boolean first = beforeMidnight.collectGarbage();
+        boolean again = beforeMidnight.collectGarbage();
+        boolean wrapped = afterMidnight.collectGarbage();
+        boolean out = outOfWindow.collectGarbage();
+        // #################################################
+
+        assertTrue(first);
+        assertFalse(again); // once per window
+        assertTrue(wrapped);
+        assertFalse(out);
+        Mockito.verify(storageDao, Mockito.times(2)).gc();
+    }
+
+    @Test
+    public void collectGarbageDisabledTest() throws Exception {
+        PinReconciler underTest = new PinReconciler(indexDao, storageDao, environment);
+
+        // #################################################
+        boolean collected = underTest.collectGarbage();
+        // #################################################
+
+        assertFalse(collected);
+        Mockito.verify(storageDao, Mockito.never()).gc();
+    }
+
+    private static Set<String> pins(String... hashes) {
+        return new HashSet<>(Arrays.asList(hashes));
+    }
+
+    private static Clock clock(int year, int month, int day, int hour, int minute) {
+        return Clock.fixed(LocalDateTime.of(year, month, day, hour, minute).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,238 @@
+package net.consensys.tools.ipfs.ipfsstore.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.MemoryIndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexRequest;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexStatus;
+import net.consensys.tools.ipfs.ipfsstore.dto.ReindexStatus.State;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
+import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
+import net.consensys.tools.ipfs.ipfsstore.service.StoreService;
+import net.consensys.tools.ipfs.ipfsstore.service.cache.HashMetadataCache;
+import net.consensys.tools.ipfs.ipfsstore.service.cache.SearchResultCache;
+import net.consensys.tools.ipfs.ipfsstore.service.impl.StoreServiceImpl;
+import net.consensys.tools.ipfs.ipfsstore.service.reindex.IndexFieldExtractor;
+import net.consensys.tools.ipfs.ipfsstore.service.reindex.ReindexService;
+
+public class ReindexServiceTest {
+
+    private static final String SOURCE = "documents_v1";
+    private static final String TARGET = "documents_v2";
+    private static final String ALIAS = "documents";
+
+    /** Field "text": content of the document */
+    private static final IndexFieldExtractor CONTENT_EXTRACTOR = (document, content) ->
+            Collections.singletonList(new IndexField("text", new String(content, StandardCharsets.UTF_8)));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private IndexDao indexDao;
+    private StorageDao storageDao;
+    private SearchResultCache searchResultCache;
+    private HashMetadataCache hashMetadataCache;
+    private StoreService storeService;
+    private MockEnvironment environment;
+    private ReindexService underTest;
+
+    @Before
+    public void setup() throws Exception {
+        indexDao = new MemoryIndexDao();
+        storageDao = Mockito.mock(StorageDao.class);
+        searchResultCache = new SearchResultCache(true, 30, 1000000);
+        hashMetadataCache = new HashMetadataCache(true, 600, 30, 1000);
+        storeService = new StoreServiceImpl(indexDao, storageDao, searchResultCache, hashMetadataCache, 500, 0);
+        environment = new MockEnvironment()
+                .withProperty("reindex.concurrency", "2")
+                .withProperty("reindex.batch-size", "2")
+                .withProperty("reindex.checkpoint-path", folder.getRoot().getPath());
+
+        for (int i = 0; i < 5; i++) {
+            indexDao.index(SOURCE, "doc" + i, "Qm" + i, "text/plain", Arrays.asList(new IndexField("title", "Title " + i)));
+            Mockito.when(storageDao.getContent(eq("Qm" + i))).thenReturn(("Content " + i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (underTest != null) {
+            underTest.destroy();
+        }
+    }
+
+    @Test
+    public void reindexTest() throws Exception {
+        indexDao.alias(ALIAS, SOURCE);
+        underTest = new ReindexService(storeService, indexDao, storageDao, environment, (IndexFieldExtractor) null);
+
+        // Results of the alias cached
+        Pageable pageable = new PageRequest(0, 10);
+        storeService.searchFilesAsync(ALIAS, new Query(), pageable).get();
+        storeService.getFileMetadataByHashAsync(ALIAS, "Qm3").get();
+        assertNotNull(searchResultCache.get(searchResultCache.key(ALIAS, new Query(), pageable)));
+        assertNotNull(hashMetadataCache.get(hashMetadataCache.key(ALIAS, "Qm3")));
+
+        // #################################################
+        ReindexStatus status = await(underTest.start(new ReindexRequest(SOURCE, null, TARGET, ALIAS, null, null)));
+        // #################################################
+
+        assertEquals(State.completed, status.getState());
+        assertEquals(5, status.getTotal());
+        assertEquals(5, status.getProcessed());
+        assertEquals(5, status.getIndexed());
+        assertEquals(0, status.getFailed());
+
+        // Fields kept, alias swapped
+        assertEquals(5, indexDao.count(TARGET, null));
+        assertEquals("Title 3", indexDao.searchById(ALIAS, "doc3").getIndexFieldValue("title"));
+        indexDao.index(SOURCE, "doc5", "Qm5", "text/plain", null);
+        assertEquals(5, indexDao.count(ALIAS, null));
+        assertNull(searchResultCache.get(searchResultCache.key(ALIAS, new Query(), pageable))); // cached results of the alias invalidated
+        assertNull(hashMetadataCache.get(hashMetadataCache.key(ALIAS, "Qm3")));
+        Mockito.verify(storageDao, Mockito.never()).getContent(anyString()); // content not required
+
+        assertTrue(new File(folder.getRoot(), status.getId() + ".json").exists());
+        assertEquals(status.getId(), underTest.getStatuses().get(0).getId());
+    }
+
+    @Test
+    public void reindexHashesTest() throws Exception {
+        Mockito.when(storageDao.getContent(eq("Qm2"))).thenThrow(new DaoException("error"));
+        underTest = new ReindexService(storeService, indexDao, storageDao, environment, CONTENT_EXTRACTOR);
+
+        // #################################################
+        ReindexStatus status = await(underTest.start(new ReindexRequest(null, Arrays.asList("Qm1", "Qm2", "Qm3"), TARGET, null, null, null)));
+        // #################################################
+
+        assertEquals(State.completed, status.getState());
+        assertEquals(3, status.getProcessed());
+        assertEquals(2, status.getIndexed());
+        assertEquals(1, status.getFailed()); // fetch failed, job goes on
+        assertEquals("Content 3", indexDao.searchById(TARGET, "Qm3").getIndexFieldValue("text"));
+        assertNull(indexDao.searchById(TARGET, "Qm3").getContentType()); // no source document
+        assertEquals(2, indexDao.count(TARGET, null));
+    }
+
+    @Test
+    public void resumeTest() throws Exception {
+        // Checkpoint of a job interrupted after its first batch
+        ReindexStatus checkpoint = new ReindexStatus();
+        checkpoint.setId("job");
+        checkpoint.setRequest(new ReindexRequest(SOURCE, null, TARGET, null, null, null));
+        checkpoint.setState(State.running);
+        checkpoint.setTotal(5);
+        checkpoint.setProcessed(2);
+        checkpoint.setIndexed(2);
+        checkpoint.setStarted(System.currentTimeMillis());
+        new ObjectMapper().writeValue(new File(folder.getRoot(), "job.json"), checkpoint);
+
+        underTest = new ReindexService(storeService, indexDao, storageDao, environment, CONTENT_EXTRACTOR);
+        assertEquals(State.failed, underTest.getStatus("job").getState());
+
+        // #################################################
+        ReindexStatus status = await(underTest.resume("job"));
+        // #################################################
+
+        assertEquals(State.completed, status.getState());
+        assertEquals(5, status.getProcessed());
+        assertEquals(5, status.getIndexed());
+        assertEquals(3, indexDao.count(TARGET, null)); // first batch skipped
+        Mockito.verify(storageDao, Mockito.times(3)).getContent(anyString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reindexSameIndexTest() throws Exception {
+        underTest = new ReindexService(storeService, indexDao, storageDao, environment, (IndexFieldExtractor) null);
+        underTest.start(new ReindexRequest(SOURCE, null, SOURCE, null, null, null));
+    }
+
+    @Test
+    public void reindexInvalidAliasTest() throws Exception {
+        indexDao.createIndex("archive");
+        underTest = new ReindexService(storeService, indexDao, storageDao, environment, (IndexFieldExtractor) null);
+
+        for (String alias : Arrays.asList(SOURCE, "archive")) {
+            try {
+                // #################################################
+                underTest.start(new ReindexRequest(SOURCE, null, TARGET, alias, null, null));
+                // #################################################
+                fail("IllegalArgumentException expected [alias: " + alias + "]");
+            } catch (IllegalArgumentException ex) {
+                // expected: alias is the source or an index
+            }
+        }
+        assertTrue(underTest.getStatuses().isEmpty());
+    }
+
+    @Test
+    public void reindexRunningTest() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        environment.setProperty("reindex.max-jobs", "2");
+        underTest = new ReindexService(storeService, indexDao, storageDao, environment, (document, content) -> {
+            blocked.await();
+            return document.getIndexFields();
+        });
+        ReindexStatus first = underTest.start(new ReindexRequest(SOURCE, null, TARGET, null, null, null));
+
+        try {
+            // #################################################
+            underTest.start(new ReindexRequest(SOURCE, null, TARGET.toUpperCase(), null, null, null));
+            // #################################################
+            fail("IllegalArgumentException expected: target being reindexed");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+
+        underTest.start(new ReindexRequest(SOURCE, null, "documents_v3", null, null, null));
+        try {
+            // #################################################
+            underTest.start(new ReindexRequest(SOURCE, null, "documents_v4", null, null, null));
+            // #################################################
+            fail("IllegalArgumentException expected: max jobs running");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+
+        blocked.countDown();
+        assertEquals(State.completed, await(first).getState());
+        assertEquals(2, underTest.getStatuses().size());
+    }
+
+    private ReindexStatus await(ReindexStatus started) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        ReindexStatus status = underTest.getStatus(started.getId());
+        while (status.getState() == State.running && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = underTest.getStatus(started.getId());
+        }
+        return status;
+    }
+}
@@ -3,15 +3,21 @@ package net.consensys.tools.ipfs.ipfsstore.test.service;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,19 +25,31 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import net.consensys.tools.ipfs.ipfsstore.dao.IndexDao;
 import net.consensys.tools.ipfs.ipfsstore.dao.StorageDao;
+import net.consensys.tools.ipfs.ipfsstore.dao.impl.MemoryIndexDao;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregatedPage;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationBucket;
+import net.consensys.tools.ipfs.ipfsstore.dto.AggregationResult;
+import net.consensys.tools.ipfs.ipfsstore.dto.DeleteResponse;
+import net.consensys.tools.ipfs.ipfsstore.dto.IndexField;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerRequest;
 import net.consensys.tools.ipfs.ipfsstore.dto.IndexerResponse;
 import net.consensys.tools.ipfs.ipfsstore.dto.Metadata;
+import net.consensys.tools.ipfs.ipfsstore.dto.query.AggregationType;
 import net.consensys.tools.ipfs.ipfsstore.dto.query.Query;
 import net.consensys.tools.ipfs.ipfsstore.exception.DaoException;
 import net.consensys.tools.ipfs.ipfsstore.exception.NotFoundException;
 import net.consensys.tools.ipfs.ipfsstore.exception.ServiceException;
+import net.consensys.tools.ipfs.ipfsstore.exception.VersionConflictException;
 import net.consensys.tools.ipfs.ipfsstore.service.StoreService;
+import net.consensys.tools.ipfs.ipfsstore.service.cache.HashMetadataCache;
+import net.consensys.tools.ipfs.ipfsstore.service.cache.SearchResultCache;
 import net.consensys.tools.ipfs.ipfsstore.service.impl.StoreServiceImpl;
+import net.consensys.tools.ipfs.ipfsstore.service.writebehind.IndexQueue;
 import net.consensys.tools.ipfs.ipfsstore.test.dao.ElasticSearchDAOTest;
 import net.consensys.tools.ipfs.ipfsstore.test.utils.TestUtils;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -51,8 +69,37 @@ public class StoreServiceTest {
 
 
     @Before
-    public void setup() {
+    public void setup() throws Exception {
         underTest = new StoreServiceImpl(indexDao, storageDao);
+
+        // Asynchronous calls of the mocked DAO are answered by the blocking ones (as the default implementation)
+        Mockito.when(indexDao.searchAsync(any(Pageable.class), anyString(), any(Query.class))).thenAnswer(invocation -> {
+            CompletableFuture<List<Metadata>> future = new CompletableFuture<>();
+            try {
+                future.complete(indexDao.search(invocation.getArgumentAt(0, Pageable.class), invocation.getArgumentAt(1, String.class), invocation.getArgumentAt(2, Query.class)));
+            } catch (DaoException ex) {
+                future.completeExceptionally(ex);
+            }
+            return future;
+        });
+        Mockito.when(indexDao.searchAndAggregateAsync(any(Pageable.class), anyString(), any(Query.class))).thenAnswer(invocation -> {
+            CompletableFuture<AggregatedPage<Metadata>> future = new CompletableFuture<>();
+            try {
+                future.complete(indexDao.searchAndAggregate(invocation.getArgumentAt(0, Pageable.class), invocation.getArgumentAt(1, String.class), invocation.getArgumentAt(2, Query.class)));
+            } catch (DaoException ex) {
+                future.completeExceptionally(ex);
+            }
+            return future;
+        });
+        Mockito.when(indexDao.countAsync(anyString(), any(Query.class))).thenAnswer(invocation -> {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            try {
+                future.complete(indexDao.count(invocation.getArgumentAt(0, String.class), invocation.getArgumentAt(1, Query.class)));
+            } catch (DaoException ex) {
+                future.completeExceptionally(ex);
+            }
+            return future;
+        });
     }
 
     @Test
@@ -533,6 +580,340 @@ public class StoreServiceTest {
         Mockito.verify(indexDao, Mockito.times(1)).count(eq(index), any(Query.class));
 
     }
-    
+
+    @Test
+    public void searchFilesWithAggregationsSuccessTest() throws Exception {
+
+        int total = 1;
+        int pageNo = 0;
+        int pageSize = 20;
+
+        String hash = "QmNN4RaVXNMVaEPLrmS7SUQpPZEQ2eJ6s5WxLw9w4GTm34";
+        String contentType = "application/json";
+        String index = "documents";
+        String id = "hello_doc";
+        String attribute = "author";
+        String value = "Gregoire Jeanmart";
+
+        Pageable pagination = new PageRequest(pageNo, pageSize);
+        Query query = Query.newQuery().equals(attribute, value).terms("by_author", attribute, 10);
+
+        // Mock
+        List<Metadata> list = new ArrayList<>();
+        list.add(new Metadata(index, id, hash, contentType, ElasticSearchDAOTest.getIndexFields(attribute, value)));
+        Map<String, AggregationResult> aggregations = new HashMap<>();
+        aggregations.put("by_author", new AggregationResult(AggregationType.terms, null, Collections.singletonList(new AggregationBucket(value, total))));
+        Mockito.when(indexDao.searchAndAggregate(any(Pageable.class), eq(index), any(Query.class)))
+                .thenReturn(new AggregatedPage<>(list, pagination, total, aggregations));
+
+        // #################################################
+        Page<Metadata> pageReturned = underTest.searchFiles(index, query, pagination);
+        // #################################################
+
+        assertEquals(pageReturned.getTotalElements(), total);
+        assertEquals(pageReturned.getNumberOfElements(), 1);
+        assertEquals(((AggregatedPage<Metadata>) pageReturned).getAggregation("by_author").getBuckets().get(0).getCount(), total);
+
+        // Total and aggregations come with the hits: no extra count request
+        Mockito.verify(indexDao, Mockito.times(1)).searchAndAggregate(any(Pageable.class), eq(index), any(Query.class));
+        Mockito.verify(indexDao, Mockito.never()).search(any(Pageable.class), eq(index), any(Query.class));
+        Mockito.verify(indexDao, Mockito.never()).count(eq(index), any(Query.class));
+
+    }
+
+    @Test
+    public void searchFilesCachedSuccessTest() throws Exception {
+
+        int total = 1;
+        int pageSize = 20;
+
+        String hash = "QmNN4RaVXNMVaEPLrmS7SUQpPZEQ2eJ6s5WxLw9w4GTm34";
+        String contentType = "application/json";
+        String index = "documents";
+        String id = "hello_doc";
+        String attribute = "author";
+        String value = "Gregoire Jeanmart";
+
+        underTest = new StoreServiceImpl(indexDao, storageDao, new SearchResultCache(true, 60, 1024 * 1024));
+
+        Pageable pagination = new PageRequest(0, pageSize);
+
+        // Mock
+        List<Metadata> list = new ArrayList<>();
+        list.add(new Metadata(index, id, hash, contentType, ElasticSearchDAOTest.getIndexFields(attribute, value)));
+        Mockito.when(indexDao.search(any(Pageable.class), eq(index), any(Query.class))).thenReturn(list);
+        Mockito.when(indexDao.count(eq(index), any(Query.class))).thenReturn(Long.valueOf(total));
+        Mockito.when(indexDao.index(eq(index), any(String.class), any(String.class), any(String.class), anyList())).thenReturn(id);
+
+        // #################################################
+        underTest.searchFiles(index, Query.newQuery().equals(attribute, value).equals("title", "Hello"), pagination);
+        // Same filters in a different order
+        Page<Metadata> pageReturned = underTest.searchFiles(index, Query.newQuery().equals("title", "Hello").equals(attribute, value), new PageRequest(0, pageSize));
+        // #################################################
+
+        assertEquals(pageReturned.getTotalElements(), total);
+        Mockito.verify(indexDao, Mockito.times(1)).search(any(Pageable.class), eq(index), any(Query.class));
+        Mockito.verify(indexDao, Mockito.times(1)).count(eq(index), any(Query.class));
+
+        // A write into the index invalidates the cache
+        IndexerRequest request = new IndexerRequest();
+        request.setContentType(contentType);
+        request.setDocumentId(id);
+        request.setHash(hash);
+        request.setIndexName(index);
+        request.setIndexFields(ElasticSearchDAOTest.getIndexFields(attribute, value));
+
+        // #################################################
+        underTest.indexFile(request);
+        underTest.searchFiles(index, Query.newQuery().equals(attribute, value).equals("title", "Hello"), pagination);
+        // #################################################
+
+        Mockito.verify(indexDao, Mockito.times(2)).search(any(Pageable.class), eq(index), any(Query.class));
+        Mockito.verify(indexDao, Mockito.times(2)).count(eq(index), any(Query.class));
+
+    }
+
+    @Test
+    public void getFileMetadataByHashCacheTest() throws Exception {
+
+        String hash = "QmNN4RaVXNMVaEPLrmS7SUQpPZEQ2eJ6s5WxLw9w4GTm34";
+        String unknownHash = "QmUnknown";
+        String contentType = "application/pdf";
+        String index = "documents";
+        String id = "hello_doc";
+
+        MemoryIndexDao memoryIndexDao = Mockito.spy(new MemoryIndexDao());
+        memoryIndexDao.index(index, id, hash, contentType, null);
+        underTest = new StoreServiceImpl(memoryIndexDao, storageDao, SearchResultCache.disabled(), new HashMetadataCache(true, 60, 60, 100), 500, 0);
+
+        // #################################################
+        underTest.getFileMetadataByHash(index, hash);
+        Metadata cached = underTest.getFileMetadataByHash(index, hash);
+        for (int i = 0; i < 2; i++) {
+            try {
+                underTest.getFileMetadataByHash(index, unknownHash);
+            } catch (NotFoundException ex) {
+                // expected (second time: cached as not found)
+            }
+        }
+        // #################################################
+
+        assertEquals(contentType, cached.getContentType());
+        Mockito.verify(memoryIndexDao, Mockito.times(2)).search(any(Pageable.class), eq(index), any(Query.class));
+
+        // A document written with the hash invalidates it
+        IndexerRequest request = new IndexerRequest();
+        request.setIndexName(index);
+        request.setDocumentId("other_doc");
+        request.setHash(unknownHash);
+        request.setContentType("text/plain");
+
+        // #################################################
+        underTest.indexFile(request);
+        Metadata indexed = underTest.getFileMetadataByHash(index, unknownHash);
+        underTest.getFileMetadataByHash(index, hash);
+        // #################################################
+
+        assertEquals("text/plain", indexed.getContentType());
+        Mockito.verify(memoryIndexDao, Mockito.times(3)).search(any(Pageable.class), eq(index), any(Query.class));
+    }
+
+    @Test
+    public void updateFileTest() throws Exception {
+
+        String index = "documents";
+        IndexDao memoryIndexDao = new MemoryIndexDao();
+        memoryIndexDao.index(index, "a", "QmA", "text/plain", Collections.singletonList(new IndexField("author", "John Doe")));
+
+        underTest = new StoreServiceImpl(memoryIndexDao, storageDao);
+
+        // #################################################
+        IndexerResponse response = underTest.updateFile(index, "a", Collections.singletonList(new IndexField("author", "Jane Roe")), 1L);
+        // #################################################
+
+        assertEquals(index, response.getIndexName());
+        assertEquals("a", response.getDocumentId());
+        assertEquals("QmA", response.getHash());
+        assertEquals(Long.valueOf(2), response.getVersion());
+        assertEquals(1, underTest.searchFiles(index, Query.newQuery().equals("author", "jane roe"), new PageRequest(0, 10)).getTotalElements());
+        Mockito.verifyZeroInteractions(storageDao); // content not stored again
+    }
+
+    @Test(expected = VersionConflictException.class)
+    public void updateFileVersionConflictTest() throws Exception {
+
+        String index = "documents";
+        IndexDao memoryIndexDao = new MemoryIndexDao();
+        memoryIndexDao.index(index, "a", "QmA", "text/plain", null);
+        memoryIndexDao.index(index, "a", "QmA", "text/plain", null); // version 2
+
+        underTest = new StoreServiceImpl(memoryIndexDao, storageDao);
+
+        // #################################################
+        underTest.updateFile(index, "a", Collections.singletonList(new IndexField("author", "Jane Roe")), 1L);
+        // #################################################
+    }
+
+    @Test(expected = ServiceException.class)
+    public void updateFileExceptionTest() throws Exception {
+
+        Mockito.when(indexDao.update(anyString(), anyString(), anyList(), any())).thenThrow(new DaoException("error"));
+
+        // #################################################
+        underTest.updateFile("documents", "a", Collections.emptyList(), null);
+        // #################################################
+    }
+
+    @Test
+    public void deleteFileUnpinTest() throws Exception {
+
+        String index = "documents";
+        IndexDao memoryIndexDao = new MemoryIndexDao();
+        memoryIndexDao.index(index, "a", "QmA", "text/plain", null);
+        memoryIndexDao.index(index, "b", "QmA", "text/plain", null); // same content
+        memoryIndexDao.index(index, "c", "QmC", "text/plain", null);
+
+        underTest = new StoreServiceImpl(memoryIndexDao, storageDao);
+
+        // #################################################
+        DeleteResponse shared = underTest.deleteFile(index, "a", true);
+        DeleteResponse unshared = underTest.deleteFile(index, "c", true);
+        DeleteResponse kept = underTest.deleteFile(index, "b", false);
+        // #################################################
+
+        assertEquals(1, shared.getDeleted());
+        assertEquals(0, shared.getUnpinned()); // still referenced by b
+        assertEquals(1, unshared.getDeleted());
+        assertEquals(1, unshared.getUnpinned());
+        assertEquals(0, kept.getUnpinned());
+        assertEquals(0, memoryIndexDao.count(index, null));
+        Mockito.verify(storageDao, Mockito.times(1)).unpin(anyString());
+        Mockito.verify(storageDao, Mockito.times(1)).unpin(eq("QmC"));
+    }
+
+    @Test
+    public void deleteFileUnpinSharedTest() throws Exception {
+
+        IndexDao memoryIndexDao = new MemoryIndexDao();
+        memoryIndexDao.index("documents", "a", "QmA", "text/plain", null);
+        memoryIndexDao.index("archive", "a", "QmA", "text/plain", null); // same content in another index
+        memoryIndexDao.index("documents", "b", "QmB", "text/plain", null);
+
+        IndexQueue indexQueue = new IndexQueue(memoryIndexDao, SearchResultCache.disabled(),
+                new MockEnvironment().withProperty("write-behind.path", "")); // workers not started
+        IndexerRequest request = new IndexerRequest();
+        request.setIndexName("other");
+        request.setDocumentId("q");
+        request.setHash("QmB");
+        indexQueue.queue(request); // same content, not indexed yet
+
+        underTest = new StoreServiceImpl(memoryIndexDao, storageDao, SearchResultCache.disabled(), HashMetadataCache.disabled(), indexQueue, 500, 0);
+
+        // #################################################
+        DeleteResponse sharedAcrossIndices = underTest.deleteFile("documents", "a", true);
+        DeleteResponse sharedWithQueued = underTest.deleteFile("documents", "b", true);
+        // #################################################
+
+        assertEquals(1, sharedAcrossIndices.getDeleted());
+        assertEquals(0, sharedAcrossIndices.getUnpinned());
+        assertEquals(1, sharedWithQueued.getDeleted());
+        assertEquals(0, sharedWithQueued.getUnpinned());
+        Mockito.verify(storageDao, Mockito.never()).unpin(anyString());
+        indexQueue.destroy();
+    }
+
+    @Test
+    public void deleteFileUnpinStoredTest() throws Exception {
+
+        IndexDao memoryIndexDao = new MemoryIndexDao();
+        memoryIndexDao.index("documents", "a", "QmA", "text/plain", null);
+        Mockito.when(storageDao.createContent(any(byte[].class))).thenReturn("QmA");
+
+        underTest = new StoreServiceImpl(memoryIndexDao, storageDao);
+        underTest.storeFile("hello".getBytes()); // same content, to be indexed
+
+        // #################################################
+        DeleteResponse response = underTest.deleteFile("documents", "a", true);
+        // #################################################
+
+        assertEquals(1, response.getDeleted());
+        assertEquals(0, response.getUnpinned()); // stored recently
+        Mockito.verify(storageDao, Mockito.never()).unpin(anyString());
+    }
+
+    @Test
+    public void storeFileRepinTest() throws Exception {
+
+        IndexDao memoryIndexDao = new MemoryIndexDao();
+        memoryIndexDao.index("documents", "a", "QmA", "text/plain", null);
+
+        underTest = new StoreServiceImpl(memoryIndexDao, storageDao);
+        Mockito.when(storageDao.createContent(any(byte[].class))).thenAnswer(invocation -> {
+            assertEquals(1, underTest.deleteFile("documents", "a", true).getUnpinned()); // same content unpinned meanwhile
+            return "QmA";
+        });
+
+        // #################################################
+        String hash = underTest.storeFile("hello".getBytes());
+        // #################################################
+
+        assertEquals("QmA", hash);
+        InOrder order = Mockito.inOrder(storageDao);
+        order.verify(storageDao).unpin(eq("QmA"));
+        order.verify(storageDao).pin(eq("QmA"));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void deleteFileNotFoundTest() throws Exception {
+
+        underTest = new StoreServiceImpl(new MemoryIndexDao(), storageDao);
+        underTest.createIndex("documents");
+
+        // #################################################
+        underTest.deleteFile("documents", "unknown", true);
+        // #################################################
+    }
+
+    @Test
+    public void deleteFilesByQueryTest() throws Exception {
+
+        String index = "documents";
+        IndexDao memoryIndexDao = Mockito.spy(new MemoryIndexDao());
+        for (int i = 0; i < 5; i++) {
+            memoryIndexDao.index(index, "doc" + i, "Qm" + (i % 3), "text/plain", Collections.singletonList(new IndexField("author", "John Doe")));
+        }
+        memoryIndexDao.index(index, "other", "Qm0", "text/plain", Collections.singletonList(new IndexField("author", "Jane Roe")));
+
+        underTest = new StoreServiceImpl(memoryIndexDao, storageDao, SearchResultCache.disabled(), 2, 0);
+
+        // #################################################
+        DeleteResponse response = underTest.deleteFiles(index, Query.newQuery().equals("author", "john doe"), true);
+        // #################################################
+
+        assertEquals(index, response.getIndexName());
+        assertEquals(5, response.getDeleted());
+        assertEquals(2, response.getUnpinned()); // Qm0 still referenced by "other"
+        assertEquals(1, memoryIndexDao.count(index, null));
+        Mockito.verify(memoryIndexDao, Mockito.times(3)).delete(eq(index), anyList()); // batches of 2
+        Mockito.verify(storageDao, Mockito.times(1)).unpin(eq("Qm1"));
+        Mockito.verify(storageDao, Mockito.times(1)).unpin(eq("Qm2"));
+        Mockito.verify(storageDao, Mockito.never()).unpin(eq("Qm0"));
+    }
+
+    @Test(expected = ServiceException.class)
+    public void deleteFilesByQueryExceptionTest() throws Exception {
+
+        String index = "documents";
+
+        // Mock
+        List<Metadata> list = new ArrayList<>();
+        list.add(new Metadata(index, "doc", "QmA", "text/plain", null));
+        Mockito.when(indexDao.search(any(Pageable.class), eq(index), any(Query.class))).thenReturn(list);
+        Mockito.when(indexDao.delete(eq(index), anyList())).thenThrow(new DaoException("error"));
+
+        // #################################################
+        underTest.deleteFiles(index, Query.newQuery(), true);
+        // #################################################
+    }
 
 }